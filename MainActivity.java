@@ -17,6 +17,13 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 
+import com.example.kayakstabilizer.ingest.IngestQueue;
+import com.example.kayakstabilizer.ingest.SafetyFrameClassifier;
+import com.example.kayakstabilizer.telemetry.TelemetryFormat;
+import com.example.kayakstabilizer.telemetry.TelemetryParser;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.LineFramer;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -25,6 +32,8 @@ import java.util.UUID;
 public class MainActivity extends AppCompatActivity {
     private static final UUID BT_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
     private static final int REQUEST_BLUETOOTH_PERMISSIONS = 1;
+    private static final int MAX_FRAME_LENGTH = 256;
+    private static final int DISPLAY_QUEUE_CAPACITY = 32;
 
     private BluetoothAdapter bluetoothAdapter;
     private BluetoothSocket bluetoothSocket;
@@ -38,12 +47,29 @@ public class MainActivity extends AppCompatActivity {
 
     private Handler handler = new Handler(Looper.getMainLooper());
 
+    // Reader thread state; complete lines go through the queue so a slow display never stalls
+    // socket reads
+    private final LineFramer lineFramer = new LineFramer(MAX_FRAME_LENGTH);
+    private final SafetyFrameClassifier safetyClassifier = new SafetyFrameClassifier();
+    private final IngestQueue ingestQueue = new IngestQueue(MAX_FRAME_LENGTH, safetyClassifier);
+
+    // Display consumer thread state
+    private final TelemetrySnapshot frameSnapshot = new TelemetrySnapshot();
+
+    // Latest values for the UI, guarded by itself; fields accumulate until the UI consumes them
+    private final TelemetrySnapshot pendingSnapshot = new TelemetrySnapshot();
+    private boolean uiUpdatePending = false;
+    private final TelemetrySnapshot uiSnapshot = new TelemetrySnapshot();
+    private final StringBuilder labelBuilder = new StringBuilder(32);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         initializeViews();
+        ingestQueue.subscribe("display", IngestQueue.Policy.DROP_OLDEST, DISPLAY_QUEUE_CAPACITY, 0,
+                displayConsumer);
         setupBluetooth();
         setupSeekBars();
         setupButtons();
@@ -181,16 +207,16 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void startDataListener() {
+        lineFramer.reset();
+        safetyClassifier.reset();
         new Thread(new Runnable() {
             @Override
             public void run() {
-                byte[] buffer = new byte[1024];
-                int bytes;
                 while (isConnected) {
                     try {
-                        bytes = inputStream.read(buffer);
-                        String data = new String(buffer, 0, bytes);
-                        parseAndUpdateUI(data);
+                        if (lineFramer.readFrom(inputStream, frameListener) < 0) {
+                            break;
+                        }
                     } catch (IOException e) {
                         break;
                     }
@@ -199,28 +225,72 @@ public class MainActivity extends AppCompatActivity {
         }).start();
     }
 
-    private void parseAndUpdateUI(String data) {
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                // Parse data like "ROLL:1.23,PITCH:-0.45,L_SERVO:95,R_SERVO:85"
-                String[] parts = data.split(",");
-                for (String part : parts) {
-                    if (part.startsWith("ROLL:")) {
-                        tvRoll.setText("Roll: " + part.substring(5) + "°");
-                    } else if (part.startsWith("PITCH:")) {
-                        tvPitch.setText("Pitch: " + part.substring(6) + "°");
-                    } else if (part.startsWith("BATTERY:")) {
-                        tvBattery.setText("Battery: " + part.substring(8) + "V");
-                    }
-                }
+    // Runs on the reader thread for every complete line
+    private final LineFramer.FrameListener frameListener = new LineFramer.FrameListener() {
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            ingestQueue.publish(buffer, offset, length, System.nanoTime());
+        }
+    };
+
+    // Runs on the display consumer thread; frames are shed here under load, never in the reader
+    private final IngestQueue.Consumer displayConsumer = new IngestQueue.Consumer() {
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length, long receivedNanos, boolean critical) {
+            // Parse data like "ROLL:1.23,PITCH:-0.45,L_SERVO:95,R_SERVO:85"
+            TelemetryParser.parse(buffer, offset, length, frameSnapshot);
+            if (frameSnapshot.fields == 0) {
+                return;
             }
-        });
+            boolean post;
+            synchronized (pendingSnapshot) {
+                int fields = pendingSnapshot.fields | frameSnapshot.fields;
+                pendingSnapshot.copyFrom(frameSnapshot);
+                pendingSnapshot.fields = fields;
+                post = !uiUpdatePending;
+                uiUpdatePending = true;
+            }
+            if (post) {
+                handler.post(updateUiRunnable);
+            }
+        }
+    };
+
+    private final Runnable updateUiRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (pendingSnapshot) {
+                uiSnapshot.copyFrom(pendingSnapshot);
+                pendingSnapshot.fields = 0;
+                uiUpdatePending = false;
+            }
+            updateUI(uiSnapshot);
+        }
+    };
+
+    private void updateUI(TelemetrySnapshot snapshot) {
+        StringBuilder sb = labelBuilder;
+        if (snapshot.has(TelemetrySnapshot.FIELD_ROLL)) {
+            sb.setLength(0);
+            TelemetryFormat.appendFixed(sb.append("Roll: "), snapshot.roll, 2).append('°');
+            tvRoll.setText(sb);
+        }
+        if (snapshot.has(TelemetrySnapshot.FIELD_PITCH)) {
+            sb.setLength(0);
+            TelemetryFormat.appendFixed(sb.append("Pitch: "), snapshot.pitch, 2).append('°');
+            tvPitch.setText(sb);
+        }
+        if (snapshot.has(TelemetrySnapshot.FIELD_BATTERY)) {
+            sb.setLength(0);
+            TelemetryFormat.appendFixed(sb.append("Battery: "), snapshot.batteryVoltage, 2).append('V');
+            tvBattery.setText(sb);
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
         disconnectFromDevice();
+        ingestQueue.close();
     }
 }
\ No newline at end of file
@@ -3,21 +3,17 @@ package com.example.kayakstabilizer;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
-import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.BluetoothProfile;
-import android.bluetooth.le.BluetoothLeScanner;
-import android.bluetooth.le.ScanCallback;
-import android.bluetooth.le.ScanResult;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.ArrayAdapter;
@@ -32,54 +28,174 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.kayakstabilizer.alarm.AlarmRule;
+import com.example.kayakstabilizer.ble.BleConnectionManager;
+import com.example.kayakstabilizer.ble.BleScanner;
+import com.example.kayakstabilizer.command.CommandException;
+import com.example.kayakstabilizer.command.CommandProtocol;
+import com.example.kayakstabilizer.command.CommandResult;
+import com.example.kayakstabilizer.service.TelemetryService;
+import com.example.kayakstabilizer.stats.TelemetryStats;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.ui.TelemetryChartView;
+import com.example.kayakstabilizer.ui.TelemetryUiBinder;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "KayakStabilizer";
     private static final int REQUEST_BLUETOOTH_PERMISSIONS = 1;
     private static final int REQUEST_ENABLE_BT = 2;
 
-    // BLE UUIDs (these should match ESP32 firmware)
-    private static final UUID SERVICE_UUID = UUID.fromString("4fafc201-1fb5-459e-8fcc-c5c9c331914b");
-    private static final UUID CHARACTERISTIC_UUID_DATA = UUID.fromString("beb5483e-36e1-4688-b7f5-ea07361b26a8");
-    private static final UUID CHARACTERISTIC_UUID_COMMAND = UUID.fromString("beb5483f-36e1-4688-b7f5-ea07361b26a8");
+    private static final String STATE_STABILIZATION = "stabilization_enabled";
+
+    private static final long DEBUG_OVERLAY_REFRESH_MS = 500;
+    private static final long STATS_REFRESH_MS = 1000;
+    private static final long STATS_WINDOW_MS = 30_000;
 
     // UI elements
     private Button btnScan, btnConnect, btnStabilizationToggle, btnEmergencyStop;
-    private TextView tvConnectionStatus, tvRoll, tvPitch, tvBattery;
+    private TextView tvConnectionStatus, tvRoll, tvPitch, tvBattery, tvStats, tvDebugOverlay;
     private TextView tvKpValue, tvKiValue, tvKdValue;
-    private SeekBar sbKp, sbKi, sbKd;
+    private SeekBar sbKp, sbKi, sbKd, sbReplay;
     private ListView lvDevices;
 
-    // BLE components
+    // BLE components; the link itself lives in TelemetryService
     private BluetoothManager bluetoothManager;
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothLeScanner bluetoothLeScanner;
-    private BluetoothGatt bluetoothGatt;
-    private BluetoothGattCharacteristic dataCharacteristic;
-    private BluetoothGattCharacteristic commandCharacteristic;
+    private BleScanner bleScanner;
+    private TelemetryService telemetryService;
 
     // State variables
-    private boolean isScanning = false;
-    private boolean isConnected = false;
     private boolean stabilizationEnabled = false;
     private List<BluetoothDevice> discoveredDevices = new ArrayList<>();
     private ArrayAdapter<String> deviceAdapter;
 
+    // elapsedRealtime() at launch; time-to-connect for the cached device is measured from here
+    private long launchElapsedMillis;
+    // Connect to the cached device on first launch, not after rotation
+    private boolean connectOnLaunch = false;
+    private boolean launchConnectPending = false;
+
+    private TelemetryUiBinder telemetryUiBinder;
+    private TelemetryChartView chart;
+    private final StringBuilder debugOverlayText = new StringBuilder(256);
+    private final StringBuilder statsText = new StringBuilder(128);
+
     // Handler for UI updates
     private Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        launchElapsedMillis = SystemClock.elapsedRealtime();
         setContentView(R.layout.activity_main);
 
         initializeViews();
         initializeBluetooth();
         setupEventListeners();
-        checkPermissions();
+        if (savedInstanceState != null) {
+            stabilizationEnabled = savedInstanceState.getBoolean(STATE_STABILIZATION);
+            updateStabilizationButton();
+        }
+        checkPermissions(savedInstanceState == null);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        bindService(new Intent(this, TelemetryService.class), serviceConnection, Context.BIND_AUTO_CREATE);
+        if (tvDebugOverlay.getVisibility() == View.VISIBLE) {
+            debugOverlayUpdater.run();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The service keeps the link (and recording) going while it is wanted
+        mainHandler.removeCallbacks(statsUpdater);
+        mainHandler.removeCallbacks(debugOverlayUpdater);
+        if (telemetryService != null) {
+            telemetryService.removeObserver(telemetryObserver);
+            telemetryService = null;
+        }
+        unbindService(serviceConnection);
+        enableControls(false);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_STABILIZATION, stabilizationEnabled);
+    }
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            telemetryService = ((TelemetryService.LocalBinder) binder).getService();
+            telemetryService.addObserver(telemetryObserver);
+            chart.setHistories(telemetryService.getHistory(), telemetryService.getDiagnosticHistory());
+            statsUpdater.run();
+            runPendingLaunchConnect();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            telemetryService = null;
+        }
+    };
+
+    // Lightweight observer: status on the main thread, telemetry handed to the binder without
+    // the UI thread ever being on the ingestion path
+    private final TelemetryService.Observer telemetryObserver = new TelemetryService.Observer() {
+        @Override
+        public void onLinkStatusChanged(BleConnectionManager.State state, int attempt, long retryDelayMillis) {
+            MainActivity.this.onLinkStatusChanged(state, attempt, retryDelayMillis);
+        }
+
+        @Override
+        public void onTelemetry(TelemetrySnapshot snapshot) {
+            telemetryUiBinder.publish(snapshot);
+        }
+
+        @Override
+        public void onHistoryAppended() {
+            chart.notifyDataChanged();
+        }
+
+        @Override
+        public void onGainsResult(CommandResult result, CommandException error) {
+            if (error != null) {
+                showToast(getString(R.string.pid_not_applied, error.getMessage()));
+            } else if (!result.isAck()) {
+                showToast(getString(R.string.pid_not_applied,
+                        CommandProtocol.statusName(result.status)));
+            }
+        }
+
+        @Override
+        public void onAlarmChanged(AlarmRule rule, boolean active, float value) {
+            if (!active) {
+                return;
+            }
+            if (rule.source == AlarmRule.Source.BATTERY_VOLTAGE) {
+                showToast(getString(R.string.low_battery_warning));
+            } else if (rule.source == AlarmRule.Source.EMERGENCY) {
+                showToast(getString(R.string.emergency_stop_active));
+            }
+        }
+    };
+
+    private BleConnectionManager.State getLinkState() {
+        return telemetryService != null ? telemetryService.getLinkState() : BleConnectionManager.State.DISCONNECTED;
+    }
+
+    private boolean isConnected() {
+        return telemetryService != null && telemetryService.isConnected();
     }
 
     private void initializeViews() {
@@ -92,6 +208,9 @@ public class MainActivity extends AppCompatActivity {
         tvRoll = findViewById(R.id.tvRoll);
         tvPitch = findViewById(R.id.tvPitch);
         tvBattery = findViewById(R.id.tvBattery);
+        tvStats = findViewById(R.id.tvStats);
+        tvDebugOverlay = findViewById(R.id.tvDebugOverlay);
+        chart = findViewById(R.id.chart);
 
         tvKpValue = findViewById(R.id.tvKpValue);
         tvKiValue = findViewById(R.id.tvKiValue);
@@ -100,6 +219,11 @@ public class MainActivity extends AppCompatActivity {
         sbKp = findViewById(R.id.sbKp);
         sbKi = findViewById(R.id.sbKi);
         sbKd = findViewById(R.id.sbKd);
+        sbReplay = findViewById(R.id.sbReplay);
+
+        telemetryUiBinder = new TelemetryUiBinder(tvRoll, tvPitch, tvBattery,
+                getString(R.string.roll_label), getString(R.string.pitch_label),
+                getString(R.string.battery_label), this::onTelemetryRendered);
 
         lvDevices = findViewById(R.id.lvDevices);
         deviceAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
@@ -116,12 +240,12 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
+        bleScanner = new BleScanner(bluetoothAdapter);
     }
 
     private void setupEventListeners() {
         btnScan.setOnClickListener(v -> {
-            if (!isScanning) {
+            if (!bleScanner.isScanning()) {
                 startScanning();
             } else {
                 stopScanning();
@@ -129,36 +253,68 @@ public class MainActivity extends AppCompatActivity {
         });
 
         btnConnect.setOnClickListener(v -> {
-            if (!isConnected) {
+            if (getLinkState() != BleConnectionManager.State.DISCONNECTED) {
+                // Disconnects, or cancels a pending connect or reconnect
+                disconnectFromDevice();
+            } else if (!discoveredDevices.isEmpty()) {
                 // Connect to first discovered device (in real app, let user select)
-                if (!discoveredDevices.isEmpty()) {
-                    connectToDevice(discoveredDevices.get(0));
-                }
+                connectToDevice(discoveredDevices.get(0));
             } else {
-                disconnectFromDevice();
+                connectToCachedDevice(SystemClock.elapsedRealtime());
             }
         });
 
+        btnConnect.setOnLongClickListener(v -> {
+            if (telemetryService != null && getLinkState() == BleConnectionManager.State.DISCONNECTED) {
+                replayLastSession();
+                return true;
+            }
+            return false;
+        });
+
+        // Long-press the connection status to show or hide the telemetry debug overlay
+        tvConnectionStatus.setOnLongClickListener(v -> {
+            toggleDebugOverlay();
+            return true;
+        });
+
         btnStabilizationToggle.setOnClickListener(v -> {
             stabilizationEnabled = !stabilizationEnabled;
             updateStabilizationButton();
-            sendCommand(stabilizationEnabled ? "STABILIZATION_ON" : "STABILIZATION_OFF");
+            sendCommand("STABILIZATION", stabilizationEnabled ? "STABILIZATION_ON" : "STABILIZATION_OFF");
         });
 
-        btnEmergencyStop.setOnClickListener(v -> sendCommand("EMERGENCY_STOP"));
+        btnEmergencyStop.setOnClickListener(v -> {
+            if (telemetryService != null) {
+                telemetryService.emergencyStop();
+            }
+        });
 
         setupSeekBarListeners();
         setupDeviceListListener();
     }
 
     private void setupSeekBarListeners() {
+        sbReplay.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {}
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                if (telemetryService != null) {
+                    telemetryService.seekReplay(seekBar.getProgress() * 1000L);
+                }
+            }
+        });
+
         sbKp.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                if (fromUser && isConnected) {
+                if (fromUser && isConnected()) {
                     float kpValue = progress / 10.0f;
                     tvKpValue.setText(String.format("%.1f", kpValue));
-                    sendCommand("SET_KP:" + kpValue);
+                    sendGains();
                 }
             }
             @Override
@@ -170,10 +326,10 @@ public class MainActivity extends AppCompatActivity {
         sbKi.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                if (fromUser && isConnected) {
+                if (fromUser && isConnected()) {
                     float kiValue = progress / 100.0f;
                     tvKiValue.setText(String.format("%.2f", kiValue));
-                    sendCommand("SET_KI:" + kiValue);
+                    sendGains();
                 }
             }
             @Override
@@ -185,10 +341,10 @@ public class MainActivity extends AppCompatActivity {
         sbKd.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                if (fromUser && isConnected) {
+                if (fromUser && isConnected()) {
                     float kdValue = progress / 10.0f;
                     tvKdValue.setText(String.format("%.1f", kdValue));
-                    sendCommand("SET_KD:" + kdValue);
+                    sendGains();
                 }
             }
             @Override
@@ -198,6 +354,14 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    // All three gains go together so the controller never runs a half-updated set
+    private void sendGains() {
+        if (telemetryService != null) {
+            telemetryService.setPid(sbKp.getProgress() / 10.0f, sbKi.getProgress() / 100.0f,
+                    sbKd.getProgress() / 10.0f);
+        }
+    }
+
     private void setupDeviceListListener() {
         lvDevices.setOnItemClickListener((parent, view, position, id) -> {
             if (position < discoveredDevices.size()) {
@@ -207,7 +371,8 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    private void checkPermissions() {
+    private void checkPermissions(boolean firstLaunch) {
+        connectOnLaunch = firstLaunch;
         List<String> permissionsNeeded = new ArrayList<>();
 
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
@@ -226,6 +391,13 @@ public class MainActivity extends AppCompatActivity {
             }
         }
 
+        // For the service's notification; the link works without it
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            permissionsNeeded.add(Manifest.permission.POST_NOTIFICATIONS);
+        }
+
         if (!permissionsNeeded.isEmpty()) {
             ActivityCompat.requestPermissions(this,
                     permissionsNeeded.toArray(new String[0]),
@@ -239,6 +411,8 @@ public class MainActivity extends AppCompatActivity {
         if (!bluetoothAdapter.isEnabled()) {
             Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
             startActivityForResult(enableBtIntent, REQUEST_ENABLE_BT);
+        } else {
+            requestLaunchConnect();
         }
     }
 
@@ -250,31 +424,27 @@ public class MainActivity extends AppCompatActivity {
 
         discoveredDevices.clear();
         deviceAdapter.clear();
+        if (!bleScanner.start(scanListener)) {
+            showToast(getString(R.string.bluetooth_disabled));
+            return;
+        }
         lvDevices.setVisibility(View.VISIBLE);
-
-        isScanning = true;
         btnScan.setText("Stop Scan");
 
-        bluetoothLeScanner.startScan(scanCallback);
-        Log.d(TAG, "Started BLE scanning");
-
         // Stop scanning after 10 seconds
-        mainHandler.postDelayed(() -> {
-            if (isScanning) {
-                stopScanning();
-            }
-        }, 10000);
+        mainHandler.postDelayed(stopScanRunnable, 10000);
     }
 
     private void stopScanning() {
-        if (isScanning && hasScanPermission()) {
-            bluetoothLeScanner.stopScan(scanCallback);
-            isScanning = false;
+        mainHandler.removeCallbacks(stopScanRunnable);
+        if (bleScanner != null && bleScanner.isScanning() && hasScanPermission()) {
+            bleScanner.stop();
             btnScan.setText(getString(R.string.scan_devices));
-            Log.d(TAG, "Stopped BLE scanning");
         }
     }
 
+    private final Runnable stopScanRunnable = this::stopScanning;
+
     private boolean hasScanPermission() {
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S) {
             return ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_SCAN)
@@ -285,24 +455,25 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private final ScanCallback scanCallback = new ScanCallback() {
+    // Throttled by the scanner, so rebuilding the adapter here is cheap
+    private final BleScanner.Listener scanListener = new BleScanner.Listener() {
         @Override
-        public void onScanResult(int callbackType, ScanResult result) {
-            BluetoothDevice device = result.getDevice();
-            if (device != null && device.getName() != null &&
-                    device.getName().contains("Kayak") && !discoveredDevices.contains(device)) {
-                discoveredDevices.add(device);
-                mainHandler.post(() -> {
-                    deviceAdapter.add(device.getName() + "\n" + device.getAddress());
-                    deviceAdapter.notifyDataSetChanged();
-                });
+        public void onDevicesChanged(List<BleScanner.DiscoveredDevice> devices) {
+            discoveredDevices.clear();
+            deviceAdapter.setNotifyOnChange(false);
+            deviceAdapter.clear();
+            for (BleScanner.DiscoveredDevice found : devices) {
+                discoveredDevices.add(found.device);
+                String name = found.getName() != null ? found.getName() : getString(R.string.unknown_device);
+                deviceAdapter.add(name + "\n" + found.address + "  " + found.getRssi() + " dBm");
             }
+            deviceAdapter.notifyDataSetChanged();
         }
 
         @Override
         public void onScanFailed(int errorCode) {
-            Log.e(TAG, "Scan failed with error: " + errorCode);
-            mainHandler.post(() -> showToast("Scan failed"));
+            stopScanning();
+            showToast("Scan failed");
         }
     };
 
@@ -311,18 +482,44 @@ public class MainActivity extends AppCompatActivity {
             showToast(getString(R.string.permission_denied));
             return;
         }
+        if (telemetryService == null) {
+            return;
+        }
 
         stopScanning();
         lvDevices.setVisibility(View.GONE);
+        telemetryService.connect(device);
+    }
 
-        tvConnectionStatus.setText(getString(R.string.connecting));
-        bluetoothGatt = device.connectGatt(this, false, gattCallback);
-        Log.d(TAG, "Connecting to: " + device.getAddress());
+    // Skips the scan when the boat from the last session is known
+    private void connectToCachedDevice(long requestedAtMillis) {
+        if (!hasConnectPermission() || telemetryService == null) {
+            return;
+        }
+        telemetryService.connectToCachedDevice(requestedAtMillis);
+    }
+
+    // On first launch, once permissions and Bluetooth are ready, connect as soon as the
+    // service is bound
+    private void requestLaunchConnect() {
+        if (!connectOnLaunch) {
+            return;
+        }
+        connectOnLaunch = false;
+        launchConnectPending = true;
+        runPendingLaunchConnect();
+    }
+
+    private void runPendingLaunchConnect() {
+        if (launchConnectPending && telemetryService != null) {
+            launchConnectPending = false;
+            connectToCachedDevice(launchElapsedMillis);
+        }
     }
 
     private void disconnectFromDevice() {
-        if (bluetoothGatt != null) {
-            bluetoothGatt.disconnect();
+        if (telemetryService != null) {
+            telemetryService.disconnect();
         }
     }
 
@@ -334,103 +531,130 @@ public class MainActivity extends AppCompatActivity {
         return true;
     }
 
-    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
-        @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                if (newState == BluetoothProfile.STATE_CONNECTED) {
-                    isConnected = true;
-                    mainHandler.post(() -> {
-                        tvConnectionStatus.setText(getString(R.string.connected));
-                        btnConnect.setText(getString(R.string.disconnect));
-                        enableControls(true);
-                    });
-                    bluetoothGatt.discoverServices();
-                    Log.d(TAG, "Connected to GATT server");
-                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                    isConnected = false;
-                    mainHandler.post(() -> {
-                        tvConnectionStatus.setText(getString(R.string.disconnected));
-                        btnConnect.setText(getString(R.string.connect));
-                        enableControls(false);
-                    });
-                    Log.d(TAG, "Disconnected from GATT server");
-                }
-            } else {
-                Log.e(TAG, "Connection state change failed: " + status);
-                mainHandler.post(() -> showToast(getString(R.string.connection_failed)));
-            }
+    private void onLinkStatusChanged(BleConnectionManager.State state, int attempt, long retryDelayMillis) {
+        switch (state) {
+            case CONNECTING:
+            case DISCOVERING:
+                tvConnectionStatus.setText(attempt > 0
+                        ? getString(R.string.reconnecting_attempt, attempt) : getString(R.string.connecting));
+                btnConnect.setText(getString(R.string.cancel));
+                enableControls(false);
+                break;
+            case WAITING_TO_RECONNECT:
+                tvConnectionStatus.setText(getString(R.string.reconnecting_in,
+                        (retryDelayMillis + 999) / 1000, attempt));
+                btnConnect.setText(getString(R.string.cancel));
+                enableControls(false);
+                break;
+            case CONNECTED:
+                tvConnectionStatus.setText(getString(R.string.connected_in,
+                        telemetryService != null ? telemetryService.getLastTimeToConnectMillis() : 0));
+                btnConnect.setText(getString(R.string.disconnect));
+                enableControls(true);
+                break;
+            default:
+                tvConnectionStatus.setText(getString(R.string.disconnected));
+                btnConnect.setText(getString(R.string.connect));
+                enableControls(false);
+                break;
         }
+    }
 
-        @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                BluetoothGattService service = gatt.getService(SERVICE_UUID);
-                if (service != null) {
-                    dataCharacteristic = service.getCharacteristic(CHARACTERISTIC_UUID_DATA);
-                    commandCharacteristic = service.getCharacteristic(CHARACTERISTIC_UUID_COMMAND);
-
-                    if (dataCharacteristic != null) {
-                        bluetoothGatt.setCharacteristicNotification(dataCharacteristic, true);
-                    }
-                    Log.d(TAG, "Services discovered successfully");
-                }
-            }
+    private void sendCommand(String key, String command) {
+        if (telemetryService != null) {
+            telemetryService.sendCommand(key, command);
+        }
+    }
+
+    private void onTelemetryRendered(TelemetrySnapshot snapshot) {
+        if (telemetryService != null) {
+            telemetryService.getMetrics().onDisplayed(snapshot, System.nanoTime());
+        }
+    }
+
+    private void replayLastSession() {
+        String name = telemetryService.toggleReplay();
+        if (name != null) {
+            showToast("Replaying " + name);
+        }
+        updateReplayBar();
+    }
+
+    // Shown while a replay runs; dragging it seeks, in whole seconds
+    private void updateReplayBar() {
+        TelemetryService service = telemetryService;
+        if (service == null || !service.isReplaying()) {
+            sbReplay.setVisibility(View.GONE);
+            return;
         }
+        sbReplay.setVisibility(View.VISIBLE);
+        if (!sbReplay.isPressed()) {
+            sbReplay.setMax((int) (service.getReplayDurationMillis() / 1000));
+            sbReplay.setProgress((int) (service.getReplayPositionMillis() / 1000));
+        }
+    }
 
+    // The overlay doubles as the diagnostic mode: full-rate IMU samples while it is shown
+    private void toggleDebugOverlay() {
+        boolean show = tvDebugOverlay.getVisibility() != View.VISIBLE;
+        if (telemetryService != null && !telemetryService.setDiagnostics(show)) {
+            showToast(getString(R.string.diagnostics_unavailable));
+        }
+        if (!show) {
+            tvDebugOverlay.setVisibility(View.GONE);
+            mainHandler.removeCallbacks(debugOverlayUpdater);
+        } else {
+            tvDebugOverlay.setVisibility(View.VISIBLE);
+            debugOverlayUpdater.run();
+        }
+    }
+
+    private final Runnable debugOverlayUpdater = new Runnable() {
         @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            if (CHARACTERISTIC_UUID_DATA.equals(characteristic.getUuid())) {
-                final String data = characteristic.getStringValue(0);
-                mainHandler.post(() -> parseAndUpdateSensorData(data));
+        public void run() {
+            debugOverlayText.setLength(0);
+            if (telemetryService != null) {
+                telemetryService.getMetrics().appendOverlay(debugOverlayText, System.nanoTime());
             }
+            tvDebugOverlay.setText(debugOverlayText);
+            mainHandler.postDelayed(this, DEBUG_OVERLAY_REFRESH_MS);
         }
+    };
 
+    private final Runnable statsUpdater = new Runnable() {
         @Override
-        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-            if (status != BluetoothGatt.GATT_SUCCESS) {
-                Log.e(TAG, "Characteristic write failed: " + status);
+        public void run() {
+            TelemetryService service = telemetryService;
+            if (service == null) {
+                return;
             }
+            TelemetryStats stats = service.getStats();
+            stats.expire(SystemClock.elapsedRealtime());
+            int window = stats.findWindow(STATS_WINDOW_MS);
+            statsText.setLength(0);
+            stats.appendSummary(statsText, window);
+            tvStats.setText(statsText);
+            updateReplayBar();
+            mainHandler.postDelayed(this, STATS_REFRESH_MS);
         }
     };
 
-    private void sendCommand(String command) {
-        if (!isConnected || commandCharacteristic == null) {
+    // adb shell dumpsys activity com.example.kayakstabilizer/.MainActivity
+    @Override
+    public void dump(@NonNull String prefix, FileDescriptor fd, @NonNull PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        TelemetryService service = telemetryService;
+        if (service == null) {
             return;
         }
-
-        commandCharacteristic.setValue(command);
-        bluetoothGatt.writeCharacteristic(commandCharacteristic);
-        Log.d(TAG, "Sent command: " + command);
-    }
-
-    private void parseAndUpdateSensorData(String data) {
-        try {
-            String[] parts = data.split(",");
-            for (String part : parts) {
-                if (part.contains("ROLL:")) {
-                    String rollValue = part.split(":")[1];
-                    tvRoll.setText(getString(R.string.roll_label) + rollValue + "°");
-                } else if (part.contains("PITCH:")) {
-                    String pitchValue = part.split(":")[1];
-                    tvPitch.setText(getString(R.string.pitch_label) + pitchValue + "°");
-                } else if (part.contains("BATTERY:")) {
-                    String batteryValue = part.split(":")[1];
-                    tvBattery.setText(getString(R.string.battery_label) + batteryValue + "V");
-
-                    // Check for low battery warning
-                    try {
-                        float voltage = Float.parseFloat(batteryValue);
-                        if (voltage < 3.3f) {
-                            showToast(getString(R.string.low_battery_warning));
-                        }
-                    } catch (NumberFormatException e) {
-                        Log.e(TAG, "Invalid battery voltage format: " + batteryValue);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing sensor data: " + data, e);
+        StringBuilder sb = new StringBuilder(1024);
+        service.getMetrics().dump(sb, System.nanoTime());
+        writer.print(prefix);
+        writer.println("Telemetry metrics:");
+        for (String line : sb.toString().split("\n")) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.println(line);
         }
     }
 
@@ -459,8 +683,10 @@ public class MainActivity extends AppCompatActivity {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == REQUEST_BLUETOOTH_PERMISSIONS) {
             boolean allGranted = true;
-            for (int result : grantResults) {
-                if (result != PackageManager.PERMISSION_GRANTED) {
+            for (int i = 0; i < grantResults.length; i++) {
+                // Notifications are optional
+                if (grantResults[i] != PackageManager.PERMISSION_GRANTED
+                        && !Manifest.permission.POST_NOTIFICATIONS.equals(permissions[i])) {
                     allGranted = false;
                     break;
                 }
@@ -479,6 +705,7 @@ public class MainActivity extends AppCompatActivity {
         if (requestCode == REQUEST_ENABLE_BT) {
             if (resultCode == RESULT_OK) {
                 Log.d(TAG, "Bluetooth enabled");
+                requestLaunchConnect();
             } else {
                 showToast(getString(R.string.bluetooth_disabled));
             }
@@ -488,10 +715,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (bluetoothGatt != null) {
-            bluetoothGatt.close();
-            bluetoothGatt = null;
-        }
+        telemetryUiBinder.detach();
+        mainHandler.removeCallbacks(debugOverlayUpdater);
         stopScanning();
     }
 }
\ No newline at end of file
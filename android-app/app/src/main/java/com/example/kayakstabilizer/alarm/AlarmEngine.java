@@ -0,0 +1,164 @@
+package com.example.kayakstabilizer.alarm;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+/**
+ * Evaluates a fixed set of {@link AlarmRule}s against every decoded frame and reports only
+ * state changes. Per frame this is a few comparisons per rule on primitive fields, with all
+ * state in arrays, so it can run on a telemetry thread at any frame rate; the listener hears
+ * about an alarm once when it is raised and once when it clears, subject to the rule's
+ * debounce and report interval.
+ *
+ * Not thread-safe: {@link #evaluate} and {@link #reset()} must be called from one thread; the
+ * counters may be read from any.
+ */
+public final class AlarmEngine {
+
+    public interface Listener {
+        /**
+         * Called on the evaluating thread when an alarm is raised or cleared.
+         *
+         * @param value the value that completed the transition
+         */
+        void onAlarmChanged(AlarmRule rule, boolean active, float value, long timeMillis);
+    }
+
+    private static final long NOT_PENDING = Long.MIN_VALUE;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final AlarmRule[] rules;
+    private final Listener listener;
+
+    private final boolean[] active;
+    // Whether the current raise was reported, so its clear is reported too
+    private final boolean[] reported;
+    // When the condition for leaving the current state was first seen, or NOT_PENDING
+    private final long[] pendingSince;
+    private final long[] lastReportMillis;
+
+    private volatile long raised;
+    private volatile long suppressed;
+
+    public AlarmEngine(Listener listener, AlarmRule... rules) {
+        this.rules = rules.clone();
+        this.listener = listener;
+        active = new boolean[rules.length];
+        reported = new boolean[rules.length];
+        pendingSince = new long[rules.length];
+        lastReportMillis = new long[rules.length];
+        reset();
+    }
+
+    /**
+     * Feeds one decoded frame. Rules whose source field is not in the frame keep their state
+     * and pending timers.
+     *
+     * @param timeMillis frame arrival time; must not decrease
+     */
+    public void evaluate(long timeMillis, TelemetrySnapshot snapshot) {
+        int battery = AlarmRule.batteryIndex(snapshot);
+        for (int i = 0; i < rules.length; i++) {
+            AlarmRule rule = rules[i];
+            float value;
+            switch (rule.source) {
+                case BATTERY_VOLTAGE:
+                    if (!snapshot.has(TelemetrySnapshot.FIELD_BATTERY)) {
+                        continue;
+                    }
+                    value = snapshot.batteryVoltage;
+                    break;
+                case ROLL:
+                    if (!snapshot.has(TelemetrySnapshot.FIELD_ROLL)) {
+                        continue;
+                    }
+                    value = Math.abs(snapshot.roll);
+                    break;
+                case PITCH:
+                    if (!snapshot.has(TelemetrySnapshot.FIELD_PITCH)) {
+                        continue;
+                    }
+                    value = Math.abs(snapshot.pitch);
+                    break;
+                case EMERGENCY:
+                    if (!snapshot.has(TelemetrySnapshot.FIELD_EMERGENCY)) {
+                        continue;
+                    }
+                    value = snapshot.emergencyStop ? 1f : 0f;
+                    break;
+                default:
+                    if (!snapshot.has(TelemetrySnapshot.FIELD_LOW_BATTERY)) {
+                        continue;
+                    }
+                    value = snapshot.lowBattery ? 1f : 0f;
+                    break;
+            }
+
+            // Inside the hysteresis band neither condition holds and any pending change lapses
+            boolean leaving;
+            if (active[i]) {
+                float clear = rule.clearAt[battery];
+                leaving = rule.below ? value > clear : value < clear;
+            } else {
+                float raise = rule.raiseAt[battery];
+                leaving = rule.below ? value < raise : value > raise;
+            }
+            if (!leaving) {
+                pendingSince[i] = NOT_PENDING;
+                continue;
+            }
+            if (pendingSince[i] == NOT_PENDING) {
+                pendingSince[i] = timeMillis;
+            }
+            long delay = active[i] ? rule.clearAfterMillis : rule.raiseAfterMillis;
+            if (timeMillis - pendingSince[i] >= delay) {
+                pendingSince[i] = NOT_PENDING;
+                transition(i, value, timeMillis);
+            }
+        }
+    }
+
+    private void transition(int i, float value, long timeMillis) {
+        AlarmRule rule = rules[i];
+        active[i] = !active[i];
+        if (active[i]) {
+            raised++;
+            reported[i] = lastReportMillis[i] == NEVER
+                    || timeMillis - lastReportMillis[i] >= rule.minReportIntervalMillis;
+            if (!reported[i]) {
+                suppressed++;
+                return;
+            }
+            lastReportMillis[i] = timeMillis;
+        } else if (!reported[i]) {
+            return;
+        }
+        listener.onAlarmChanged(rule, active[i], value, timeMillis);
+    }
+
+    public boolean isActive(int ruleIndex) {
+        return active[ruleIndex];
+    }
+
+    /** Alarms raised, reported or not. */
+    public long getRaised() {
+        return raised;
+    }
+
+    /** Raises not reported because the previous report was too recent. */
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * Clears every alarm and timer without reporting, e.g. for a new connection; the next
+     * raise of each rule is reported regardless of the interval.
+     */
+    public void reset() {
+        for (int i = 0; i < rules.length; i++) {
+            active[i] = false;
+            reported[i] = false;
+            pendingSince[i] = NOT_PENDING;
+            lastReportMillis[i] = NEVER;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.kayakstabilizer.alarm;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+/**
+ * One condition watched by the {@link AlarmEngine}: a telemetry value crossing a threshold
+ * that depends on the battery type, a separate threshold to clear it again (the hysteresis
+ * band between the two never changes state), how long each condition has to hold, and how
+ * often the alarm may be reported. Configure before adding it to an engine.
+ */
+public final class AlarmRule {
+
+    public enum Source {
+        BATTERY_VOLTAGE,
+        /** Absolute roll, degrees. */
+        ROLL,
+        /** Absolute pitch, degrees. */
+        PITCH,
+        /** 1 while the firmware reports an emergency stop, else 0. */
+        EMERGENCY,
+        /** 1 while the firmware reports a low battery, else 0. */
+        LOW_BATTERY
+    }
+
+    // Indexed by TelemetrySnapshot.BATTERY_*
+    public static final int BATTERY_TYPES = 3;
+
+    // Recovery needed to clear, well above the sag of a loaded pack
+    private static final float[] LOW_VOLTAGE_HYSTERESIS = {0.2f, 0.5f, 0.5f};
+
+    public final String name;
+    public final Source source;
+
+    /** Raise when the value falls below {@link #raiseAt}, rather than rising above it. */
+    public boolean below;
+    /** Threshold to raise, per battery type. */
+    public final float[] raiseAt = new float[BATTERY_TYPES];
+    /** Threshold to clear, per battery type; on the safe side of {@link #raiseAt}. */
+    public final float[] clearAt = new float[BATTERY_TYPES];
+    /** How long the raise condition must hold before the alarm is raised. */
+    public long raiseAfterMillis;
+    /** How long the clear condition must hold before the alarm is cleared. */
+    public long clearAfterMillis;
+    /** Minimum time between two reported raises; quicker repeats change state silently. */
+    public long minReportIntervalMillis;
+
+    public AlarmRule(String name, Source source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    /** Sets the same thresholds for every battery type. */
+    public AlarmRule thresholds(float raise, float clear) {
+        for (int i = 0; i < BATTERY_TYPES; i++) {
+            raiseAt[i] = raise;
+            clearAt[i] = clear;
+        }
+        return this;
+    }
+
+    /** The firmware's low-voltage cut-off for the pack in use, held for a couple of seconds. */
+    public static AlarmRule lowBattery() {
+        AlarmRule rule = new AlarmRule("low battery", Source.BATTERY_VOLTAGE);
+        rule.below = true;
+        for (int i = 0; i < BATTERY_TYPES; i++) {
+            rule.raiseAt[i] = TelemetrySnapshot.lowVoltageThreshold(i);
+            rule.clearAt[i] = TelemetrySnapshot.lowVoltageThreshold(i) + LOW_VOLTAGE_HYSTERESIS[i];
+        }
+        // Paddling strokes and servo moves sag the voltage briefly
+        rule.raiseAfterMillis = 2000;
+        rule.clearAfterMillis = 5000;
+        rule.minReportIntervalMillis = 60_000;
+        return rule;
+    }
+
+    /** The firmware's emergency stop, reported as soon as it is seen. */
+    public static AlarmRule emergencyStop() {
+        return new AlarmRule("emergency stop", Source.EMERGENCY).thresholds(0.5f, 0.5f);
+    }
+
+    /** Battery type the thresholds are taken from; unknown types use the LiPo values. */
+    static int batteryIndex(TelemetrySnapshot snapshot) {
+        int type = snapshot.batteryType;
+        return type >= 0 && type < BATTERY_TYPES ? type : TelemetrySnapshot.BATTERY_LIPO;
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.kayakstabilizer.ble;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.kayakstabilizer.transport.ReconnectBackoff;
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import java.util.UUID;
+
+/**
+ * Owns the GATT link to one stabilizer. Remembers the last device so the next launch connects
+ * straight to its address without scanning, re-enables notifications after every connect, and
+ * after an unexpected disconnect keeps reconnecting with {@link ReconnectBackoff} until
+ * {@link #disconnect()} is called.
+ *
+ * The first attempt for a device is a direct connect, which completes in well under a second
+ * when the boat is in range. Retries use autoConnect so the controller waits for the boat's
+ * advertisements itself instead of timing out.
+ *
+ * Connection handling runs on the manager's looper (the main thread unless one is given);
+ * connection changes reach the {@link StabilizerTransport.Listener} there too, while telemetry
+ * and write completions are forwarded on the GATT callback thread.
+ */
+public final class BleConnectionManager implements StabilizerTransport {
+    private static final String TAG = "BleConnectionManager";
+
+    public static final UUID SERVICE_UUID = UUID.fromString("4fafc201-1fb5-459e-8fcc-c5c9c331914b");
+    public static final UUID CHARACTERISTIC_UUID_DATA = UUID.fromString("beb5483e-36e1-4688-b7f5-ea07361b26a8");
+    public static final UUID CHARACTERISTIC_UUID_COMMAND = UUID.fromString("beb5483f-36e1-4688-b7f5-ea07361b26a8");
+    private static final UUID CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private static final String PREFS_NAME = "ble_connection";
+    private static final String PREF_LAST_ADDRESS = "last_address";
+
+    // A direct connect that has not completed by then is abandoned for an autoConnect retry
+    private static final long DIRECT_CONNECT_TIMEOUT_MS = 5_000;
+
+    public static final int DEFAULT_MTU = 23;
+    // Fits a 244-byte notification in one link-layer packet with data length extension
+    private static final int REQUESTED_MTU = 247;
+
+    public enum State {
+        DISCONNECTED,
+        CONNECTING,
+        DISCOVERING,
+        CONNECTED,
+        WAITING_TO_RECONNECT
+    }
+
+    public interface StatusListener {
+        /** Called on the manager's looper. {@code retryDelayMillis} is only set while waiting. */
+        void onStatusChanged(State state, int attempt, long retryDelayMillis);
+    }
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    private final SharedPreferences prefs;
+    private final Handler handler;
+    private final ReconnectBackoff backoff;
+    // Set for fleet links: connect(Listener) targets this boat and the cached address is untouched
+    private final BluetoothDevice fixedDevice;
+
+    private volatile Listener listener;
+    private StatusListener statusListener;
+
+    private BluetoothDevice device;
+    private volatile BluetoothGatt gatt;
+    private volatile BluetoothGattCharacteristic commandCharacteristic;
+    private volatile State state = State.DISCONNECTED;
+    private volatile int mtu = DEFAULT_MTU;
+    private boolean wantConnected;
+    private boolean everConnected;
+
+    // Time-to-connect, measured from the connect request (or app launch) on elapsedRealtime()
+    private long connectRequestedAt;
+    private volatile boolean awaitingFirstTelemetry;
+    private volatile long lastTimeToConnectMillis = -1;
+    private volatile long lastTimeToTelemetryMillis = -1;
+
+    public BleConnectionManager(Context context, BluetoothAdapter adapter) {
+        this(context, adapter, Looper.getMainLooper());
+    }
+
+    public BleConnectionManager(Context context, BluetoothAdapter adapter, Looper looper) {
+        this(context, adapter, new ReconnectBackoff(), looper);
+    }
+
+    public BleConnectionManager(Context context, BluetoothAdapter adapter, ReconnectBackoff backoff,
+                                Looper looper) {
+        this(context, adapter, backoff, looper, null);
+    }
+
+    private BleConnectionManager(Context context, BluetoothAdapter adapter, ReconnectBackoff backoff,
+                                 Looper looper, BluetoothDevice fixedDevice) {
+        this.handler = new Handler(looper);
+        this.context = context.getApplicationContext();
+        this.adapter = adapter;
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.backoff = backoff;
+        this.fixedDevice = fixedDevice;
+    }
+
+    /**
+     * A link to one specific boat, e.g. for a {@link com.example.kayakstabilizer.fleet.FleetSessionManager}.
+     * Its connects do not replace the cached device used on the next launch.
+     */
+    public static BleConnectionManager forDevice(Context context, BluetoothAdapter adapter,
+                                                 BluetoothDevice device) {
+        return new BleConnectionManager(context, adapter, new ReconnectBackoff(), Looper.getMainLooper(), device);
+    }
+
+    public void setStatusListener(StatusListener statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    /** Address of the last stabilizer connected to, or null. */
+    public String getCachedAddress() {
+        return prefs.getString(PREF_LAST_ADDRESS, null);
+    }
+
+    public void forgetCachedDevice() {
+        prefs.edit().remove(PREF_LAST_ADDRESS).apply();
+    }
+
+    /**
+     * {@link StabilizerTransport} entry point: connects to the fixed device if there is one,
+     * otherwise to the cached device. Use {@link #connect(BluetoothDevice, Listener, long)} the
+     * first time.
+     */
+    @Override
+    public void connect(Listener listener) {
+        if (fixedDevice != null) {
+            connect(fixedDevice, listener, SystemClock.elapsedRealtime());
+        } else {
+            connectToCachedDevice(listener, SystemClock.elapsedRealtime());
+        }
+    }
+
+    /**
+     * Connects to the cached device without scanning.
+     *
+     * @param requestedAtMillis elapsedRealtime() the time-to-connect is measured from, e.g. the
+     *                          app launch
+     * @return false if there is no cached device
+     */
+    public boolean connectToCachedDevice(Listener listener, long requestedAtMillis) {
+        String address = getCachedAddress();
+        if (address == null || !BluetoothAdapter.checkBluetoothAddress(address)) {
+            return false;
+        }
+        connect(adapter.getRemoteDevice(address), listener, requestedAtMillis);
+        return true;
+    }
+
+    public void connect(BluetoothDevice device, Listener listener, long requestedAtMillis) {
+        handler.post(() -> {
+            // Replacing a live link ends it for whoever was told it is up, as a drop would
+            if (state == State.CONNECTED && this.listener != null) {
+                this.listener.onConnectionStateChanged(false);
+            }
+            closeGatt();
+            handler.removeCallbacks(reconnectRunnable);
+            this.device = device;
+            this.listener = listener;
+            wantConnected = true;
+            everConnected = false;
+            backoff.reset();
+            connectRequestedAt = requestedAtMillis;
+            if (fixedDevice == null) {
+                prefs.edit().putString(PREF_LAST_ADDRESS, device.getAddress()).apply();
+            }
+            openGatt(false);
+        });
+    }
+
+    @Override
+    public boolean writeCommand(String command) {
+        BluetoothGatt g = gatt;
+        BluetoothGattCharacteristic characteristic = commandCharacteristic;
+        if (state != State.CONNECTED || g == null || characteristic == null) {
+            return false;
+        }
+        characteristic.setValue(command);
+        return g.writeCharacteristic(characteristic);
+    }
+
+    @Override
+    public boolean writeCommand(byte[] frame) {
+        BluetoothGatt g = gatt;
+        BluetoothGattCharacteristic characteristic = commandCharacteristic;
+        if (state != State.CONNECTED || g == null || characteristic == null) {
+            return false;
+        }
+        characteristic.setValue(frame);
+        return g.writeCharacteristic(characteristic);
+    }
+
+    /** Disconnects and stops reconnecting. */
+    @Override
+    public void disconnect() {
+        handler.post(() -> {
+            wantConnected = false;
+            handler.removeCallbacks(reconnectRunnable);
+            handler.removeCallbacks(connectTimeout);
+            if (gatt != null && (state == State.CONNECTED || state == State.DISCOVERING)) {
+                // Closed once the disconnect callback arrives
+                gatt.disconnect();
+            } else {
+                closeGatt();
+                setState(State.DISCONNECTED, 0, 0);
+            }
+        });
+    }
+
+    @Override
+    public boolean isConnected() {
+        return state == State.CONNECTED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /** ATT MTU negotiated for the current link; notifications carry at most mtu - 3 bytes. */
+    public int getMtu() {
+        return mtu;
+    }
+
+    /** Milliseconds from the connect request to notifications being enabled, or -1. */
+    public long getLastTimeToConnectMillis() {
+        return lastTimeToConnectMillis;
+    }
+
+    /** Milliseconds from the connect request to the first telemetry notification, or -1. */
+    public long getLastTimeToTelemetryMillis() {
+        return lastTimeToTelemetryMillis;
+    }
+
+    /** Releases the link for good; call on the manager's looper. */
+    public void close() {
+        handler.removeCallbacksAndMessages(null);
+        wantConnected = false;
+        closeGatt();
+        state = State.DISCONNECTED;
+    }
+
+    private void openGatt(boolean autoConnect) {
+        setState(State.CONNECTING, backoff.getAttempt(), 0);
+        Log.d(TAG, "Connecting to " + device.getAddress() + (autoConnect ? " (autoConnect)" : ""));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            gatt = device.connectGatt(context, autoConnect, gattCallback, BluetoothDevice.TRANSPORT_LE);
+        } else {
+            gatt = device.connectGatt(context, autoConnect, gattCallback);
+        }
+        if (!autoConnect) {
+            handler.postDelayed(connectTimeout, DIRECT_CONNECT_TIMEOUT_MS);
+        }
+    }
+
+    private void closeGatt() {
+        handler.removeCallbacks(connectTimeout);
+        commandCharacteristic = null;
+        mtu = DEFAULT_MTU;
+        if (gatt != null) {
+            gatt.close();
+            gatt = null;
+        }
+    }
+
+    private void onLinkLost() {
+        boolean wasConnected = state == State.CONNECTED;
+        closeGatt();
+        if (wasConnected && listener != null) {
+            listener.onConnectionStateChanged(false);
+        }
+        if (!wantConnected) {
+            setState(State.DISCONNECTED, 0, 0);
+            return;
+        }
+        if (wasConnected) {
+            // Unexpected drop: reconnect time is measured from here
+            connectRequestedAt = SystemClock.elapsedRealtime();
+        }
+        long delay = backoff.nextDelayMillis();
+        setState(State.WAITING_TO_RECONNECT, backoff.getAttempt(), delay);
+        Log.d(TAG, "Reconnect attempt " + backoff.getAttempt() + " in " + delay + " ms");
+        handler.postDelayed(reconnectRunnable, delay);
+    }
+
+    private void onReady() {
+        handler.removeCallbacks(connectTimeout);
+        backoff.reset();
+        lastTimeToConnectMillis = SystemClock.elapsedRealtime() - connectRequestedAt;
+        awaitingFirstTelemetry = true;
+        boolean reconnect = everConnected;
+        everConnected = true;
+        setState(State.CONNECTED, 0, 0);
+        Log.d(TAG, (reconnect ? "Reconnected" : "Connected") + " in " + lastTimeToConnectMillis + " ms");
+        if (listener != null) {
+            listener.onConnectionStateChanged(true);
+        }
+    }
+
+    private void setState(State newState, int attempt, long retryDelayMillis) {
+        state = newState;
+        if (statusListener != null) {
+            statusListener.onStatusChanged(newState, attempt, retryDelayMillis);
+        }
+    }
+
+    private final Runnable reconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (wantConnected && device != null) {
+                openGatt(true);
+            }
+        }
+    };
+
+    private final Runnable connectTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (state == State.CONNECTING || state == State.DISCOVERING) {
+                Log.d(TAG, "Direct connect timed out");
+                onLinkLost();
+            }
+        }
+    };
+
+    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt g, int status, int newState) {
+            handler.post(() -> {
+                if (g != gatt) {
+                    // Late callback from a GATT object that was already replaced
+                    g.close();
+                    return;
+                }
+                if (status == BluetoothGatt.GATT_SUCCESS && newState == BluetoothProfile.STATE_CONNECTED) {
+                    setState(State.DISCOVERING, backoff.getAttempt(), 0);
+                    // Shorter connection interval while discovering and streaming telemetry
+                    g.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+                    // Larger notifications for diagnostic batches; discovery follows the answer
+                    if (!g.requestMtu(REQUESTED_MTU)) {
+                        g.discoverServices();
+                    }
+                } else {
+                    if (status != BluetoothGatt.GATT_SUCCESS) {
+                        Log.e(TAG, "Connection state change failed: " + status);
+                    }
+                    onLinkLost();
+                }
+            });
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt g, int newMtu, int status) {
+            handler.post(() -> {
+                if (g != gatt || state != State.DISCOVERING) {
+                    return;
+                }
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    mtu = newMtu;
+                }
+                Log.d(TAG, "MTU " + mtu);
+                g.discoverServices();
+            });
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt g, int status) {
+            handler.post(() -> {
+                if (g != gatt) {
+                    return;
+                }
+                BluetoothGattService service = status == BluetoothGatt.GATT_SUCCESS
+                        ? g.getService(SERVICE_UUID) : null;
+                BluetoothGattCharacteristic data = service != null
+                        ? service.getCharacteristic(CHARACTERISTIC_UUID_DATA) : null;
+                if (data == null) {
+                    Log.e(TAG, "Stabilizer service not found: " + status);
+                    g.disconnect();
+                    return;
+                }
+                commandCharacteristic = service.getCharacteristic(CHARACTERISTIC_UUID_COMMAND);
+
+                g.setCharacteristicNotification(data, true);
+                BluetoothGattDescriptor cccd = data.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG);
+                if (cccd == null) {
+                    onReady();
+                    return;
+                }
+                cccd.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                if (!g.writeDescriptor(cccd)) {
+                    onReady();
+                }
+            });
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt g, BluetoothGattDescriptor descriptor, int status) {
+            handler.post(() -> {
+                if (g == gatt && state == State.DISCOVERING) {
+                    onReady();
+                }
+            });
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic characteristic) {
+            if (!CHARACTERISTIC_UUID_DATA.equals(characteristic.getUuid())) {
+                return;
+            }
+            if (awaitingFirstTelemetry) {
+                awaitingFirstTelemetry = false;
+                lastTimeToTelemetryMillis = SystemClock.elapsedRealtime() - connectRequestedAt;
+                Log.d(TAG, "First telemetry " + lastTimeToTelemetryMillis + " ms after connect request");
+            }
+            Listener l = listener;
+            if (l != null) {
+                byte[] value = characteristic.getValue();
+                l.onTelemetry(value, 0, value.length);
+            }
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt g, BluetoothGattCharacteristic characteristic, int status) {
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                Log.e(TAG, "Characteristic write failed: " + status);
+            }
+            Listener l = listener;
+            if (l != null && CHARACTERISTIC_UUID_COMMAND.equals(characteristic.getUuid())) {
+                l.onCommandWritten(status == BluetoothGatt.GATT_SUCCESS);
+            }
+        }
+    };
+}
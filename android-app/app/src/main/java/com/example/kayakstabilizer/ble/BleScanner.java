@@ -0,0 +1,221 @@
+package com.example.kayakstabilizer.ble;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans for stabilizers only. A {@link ScanFilter} on the service UUID lets the Bluetooth
+ * controller drop every other advertiser on a crowded beach before the app is woken, and where
+ * the controller supports it results are batched with {@link ScanSettings.Builder#setReportDelay}.
+ * Devices are de-duplicated by address in a hash map, their RSSI is kept current, and the
+ * listener is told about changes at most every {@link #UPDATE_INTERVAL_MS}.
+ */
+public final class BleScanner {
+    private static final String TAG = "BleScanner";
+
+    static final long REPORT_DELAY_MS = 500;
+    static final long UPDATE_INTERVAL_MS = 250;
+
+    public static final class DiscoveredDevice {
+        public final BluetoothDevice device;
+        public final String address;
+        private String name;
+        private int rssi;
+        private long lastSeenMillis;
+
+        DiscoveredDevice(BluetoothDevice device) {
+            this.device = device;
+            this.address = device.getAddress();
+        }
+
+        /** Advertised name, or null if none has been seen yet. */
+        public String getName() {
+            return name;
+        }
+
+        public int getRssi() {
+            return rssi;
+        }
+
+        /** elapsedRealtime() of the last advertisement. */
+        public long getLastSeenMillis() {
+            return lastSeenMillis;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called on the main thread with the devices found so far, in discovery order. The list
+         * is a copy owned by the listener.
+         */
+        void onDevicesChanged(List<DiscoveredDevice> devices);
+
+        void onScanFailed(int errorCode);
+    }
+
+    private final BluetoothAdapter adapter;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Map<String, DiscoveredDevice> devicesByAddress = new HashMap<>();
+    private final List<DiscoveredDevice> devices = new ArrayList<>();
+    private boolean changed;
+    private boolean updatePending;
+    private long lastUpdateMillis;
+
+    private BluetoothLeScanner scanner;
+    private Listener listener;
+
+    public BleScanner(BluetoothAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Starts a fresh scan; devices from a previous scan are forgotten.
+     *
+     * @return false if Bluetooth is off
+     */
+    public boolean start(Listener listener) {
+        stop();
+        scanner = adapter.getBluetoothLeScanner();
+        if (scanner == null) {
+            return false;
+        }
+        this.listener = listener;
+        synchronized (devicesByAddress) {
+            devicesByAddress.clear();
+            devices.clear();
+            changed = false;
+        }
+
+        List<ScanFilter> filters = Collections.singletonList(new ScanFilter.Builder()
+                .setServiceUuid(new ParcelUuid(BleConnectionManager.SERVICE_UUID))
+                .build());
+        ScanSettings.Builder settings = new ScanSettings.Builder()
+                .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY);
+        // A report delay without controller support makes startScan fail
+        if (adapter.isOffloadedScanBatchingSupported()) {
+            settings.setReportDelay(REPORT_DELAY_MS);
+        }
+        scanner.startScan(filters, settings.build(), scanCallback);
+        Log.d(TAG, "Started BLE scanning" + (adapter.isOffloadedScanBatchingSupported() ? " (batched)" : ""));
+        return true;
+    }
+
+    public void stop() {
+        if (scanner == null) {
+            return;
+        }
+        if (adapter.isEnabled()) {
+            scanner.stopScan(scanCallback);
+        }
+        scanner = null;
+        handler.removeCallbacks(publishUpdate);
+        updatePending = false;
+        listener = null;
+        Log.d(TAG, "Stopped BLE scanning");
+    }
+
+    public boolean isScanning() {
+        return scanner != null;
+    }
+
+    private void onResult(ScanResult result) {
+        BluetoothDevice device = result.getDevice();
+        if (device == null) {
+            return;
+        }
+        ScanRecord record = result.getScanRecord();
+        String name = record != null ? record.getDeviceName() : null;
+
+        synchronized (devicesByAddress) {
+            DiscoveredDevice discovered = devicesByAddress.get(device.getAddress());
+            if (discovered == null) {
+                discovered = new DiscoveredDevice(device);
+                devicesByAddress.put(discovered.address, discovered);
+                devices.add(discovered);
+                changed = true;
+            }
+            if (name != null && !name.equals(discovered.name)) {
+                discovered.name = name;
+                changed = true;
+            }
+            if (discovered.rssi != result.getRssi()) {
+                discovered.rssi = result.getRssi();
+                changed = true;
+            }
+            discovered.lastSeenMillis = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private void scheduleUpdate() {
+        synchronized (devicesByAddress) {
+            if (!changed || updatePending) {
+                return;
+            }
+            updatePending = true;
+        }
+        long wait = lastUpdateMillis + UPDATE_INTERVAL_MS - SystemClock.elapsedRealtime();
+        handler.postDelayed(publishUpdate, Math.max(0, wait));
+    }
+
+    private final Runnable publishUpdate = new Runnable() {
+        @Override
+        public void run() {
+            List<DiscoveredDevice> snapshot;
+            synchronized (devicesByAddress) {
+                updatePending = false;
+                changed = false;
+                snapshot = new ArrayList<>(devices);
+            }
+            lastUpdateMillis = SystemClock.elapsedRealtime();
+            Listener l = listener;
+            if (l != null) {
+                l.onDevicesChanged(snapshot);
+            }
+        }
+    };
+
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            onResult(result);
+            scheduleUpdate();
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            for (int i = 0; i < results.size(); i++) {
+                onResult(results.get(i));
+            }
+            scheduleUpdate();
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e(TAG, "Scan failed with error: " + errorCode);
+            handler.post(() -> {
+                Listener l = listener;
+                if (l != null) {
+                    l.onScanFailed(errorCode);
+                }
+            });
+        }
+    };
+}
@@ -0,0 +1,244 @@
+package com.example.kayakstabilizer.command;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelined client for the binary command protocol ({@link CommandProtocol}). Each call
+ * assigns a request id, queues the frame on the {@link CommandDispatcher} and returns a
+ * {@link CommandFuture} at once; several commands can be awaiting their acknowledgements at
+ * the same time, and responses are matched by request id in whatever order they arrive. A
+ * command with no response within the timeout fails with {@link CommandException.Reason#TIMEOUT}.
+ *
+ * Thread-safe. Responses are fed in from the Bluetooth callback thread with
+ * {@link #onResponse(byte[], int, int)}.
+ */
+public final class CommandClient {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private static final class Request {
+        final CommandFuture future;
+        final byte[] frame;
+        volatile ScheduledFuture<?> timeout;
+
+        Request(CommandFuture future, byte[] frame) {
+            this.future = future;
+            this.frame = frame;
+        }
+    }
+
+    private final CommandDispatcher dispatcher;
+    private final ScheduledExecutorService timer;
+    private final long timeoutMillis;
+
+    // In-flight requests by request id; guarded by this
+    private final HashMap<Integer, Request> inFlight = new HashMap<>();
+    private int nextRequestId = 1;
+
+    private final CommandResult decoded = new CommandResult();
+    private volatile long acked;
+    private volatile long nacked;
+    private volatile long timedOut;
+    private volatile long unmatched;
+
+    public CommandClient(CommandDispatcher dispatcher, ScheduledExecutorService timer) {
+        this(dispatcher, timer, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param timer runs the timeouts; a single daemon thread is enough
+     */
+    public CommandClient(CommandDispatcher dispatcher, ScheduledExecutorService timer,
+                         long timeoutMillis) {
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.timeoutMillis = timeoutMillis;
+        dispatcher.setFrameListener(this::onFrameWritten);
+    }
+
+    /** Sets all three gains in one update. */
+    public CommandFuture setPid(float kp, float ki, float kd) {
+        int id = allocateId();
+        return send(CommandProtocol.OP_SET_PID, id, CommandProtocol.encodeSetPid(id, kp, ki, kd));
+    }
+
+    public CommandFuture setStabilization(boolean enabled) {
+        int id = allocateId();
+        return send(CommandProtocol.OP_SET_STABILIZATION, id,
+                CommandProtocol.encodeSetStabilization(id, enabled));
+    }
+
+    public CommandFuture resetEmergency() {
+        return send(CommandProtocol.OP_RESET_EMERGENCY);
+    }
+
+    /**
+     * Starts the diagnostic stream with {@code samplesPerBatch} samples per notification, or
+     * stops it with 0.
+     */
+    public CommandFuture setDiagnostics(int samplesPerBatch) {
+        int id = allocateId();
+        return send(CommandProtocol.OP_SET_DIAGNOSTICS, id,
+                CommandProtocol.encodeSetDiagnostics(id, samplesPerBatch));
+    }
+
+    /** Asks for the gains and flags in effect without changing anything. */
+    public CommandFuture getStatus() {
+        return send(CommandProtocol.OP_GET_STATUS);
+    }
+
+    /**
+     * Handles a notification from the data characteristic.
+     *
+     * @return false if it was not a command response, e.g. telemetry
+     */
+    public boolean onResponse(byte[] data, int offset, int length) {
+        Request request;
+        CommandResult result;
+        synchronized (this) {
+            if (!CommandProtocol.decodeResponse(data, offset, length, decoded)) {
+                return false;
+            }
+            request = inFlight.get(decoded.requestId);
+            if (request == null || request.future.getOpcode() != decoded.opcode) {
+                // Late answer to a request that timed out or was cancelled; a request under a
+                // reused id keeps waiting for its own answer
+                unmatched++;
+                return true;
+            }
+            inFlight.remove(decoded.requestId);
+            result = new CommandResult();
+            result.copyFrom(decoded);
+            if (result.isAck()) {
+                acked++;
+            } else {
+                nacked++;
+            }
+        }
+        cancelTimeout(request);
+        request.future.complete(result);
+        return true;
+    }
+
+    /**
+     * Fails every request still waiting for an answer, e.g. when the link drops.
+     */
+    public void failAll(CommandException.Reason reason) {
+        List<Request> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(inFlight.values());
+            inFlight.clear();
+        }
+        for (Request request : pending) {
+            cancelTimeout(request);
+            request.future.fail(new CommandException(reason, describe(request.future) + " " + reason));
+        }
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getAckedCount() {
+        return acked;
+    }
+
+    public long getNackedCount() {
+        return nacked;
+    }
+
+    public long getTimedOutCount() {
+        return timedOut;
+    }
+
+    /** Responses that matched no waiting request. */
+    public long getUnmatchedCount() {
+        return unmatched;
+    }
+
+    void forget(CommandFuture future) {
+        Request request;
+        synchronized (this) {
+            request = inFlight.get(future.getRequestId());
+            if (request == null || request.future != future) {
+                return;
+            }
+            inFlight.remove(future.getRequestId());
+        }
+        cancelTimeout(request);
+    }
+
+    private CommandFuture send(int opcode) {
+        int id = allocateId();
+        return send(opcode, id, CommandProtocol.encode(opcode, id));
+    }
+
+    private CommandFuture send(int opcode, int id, byte[] frame) {
+        CommandFuture future = new CommandFuture(opcode, id, this);
+        Request request = new Request(future, frame);
+        synchronized (this) {
+            inFlight.put(id, request);
+        }
+        // The clock starts at submission, so time spent queued behind other writes counts
+        request.timeout = timer.schedule(() -> onTimeout(request), timeoutMillis, TimeUnit.MILLISECONDS);
+        dispatcher.submitFrame(frame);
+        return future;
+    }
+
+    private synchronized int allocateId() {
+        // 16-bit ids wrap; skip any still in flight so answers cannot be confused
+        int id;
+        do {
+            id = nextRequestId;
+            nextRequestId = (nextRequestId + 1) & 0xFFFF;
+        } while (inFlight.containsKey(id));
+        return id;
+    }
+
+    private void onTimeout(Request request) {
+        synchronized (this) {
+            if (inFlight.get(request.future.getRequestId()) != request) {
+                return;
+            }
+            inFlight.remove(request.future.getRequestId());
+            timedOut++;
+        }
+        request.future.fail(new CommandException(CommandException.Reason.TIMEOUT,
+                describe(request.future) + " timed out after " + timeoutMillis + " ms"));
+    }
+
+    // Dispatcher callback, made under its lock: only looks up and completes
+    private void onFrameWritten(byte[] frame, boolean started) {
+        if (started) {
+            return;
+        }
+        Request request;
+        synchronized (this) {
+            int id = CommandProtocol.getShort(frame, 2);
+            request = inFlight.get(id);
+            if (request == null || request.frame != frame) {
+                return;
+            }
+            inFlight.remove(id);
+        }
+        cancelTimeout(request);
+        request.future.fail(new CommandException(CommandException.Reason.WRITE_FAILED,
+                describe(request.future) + " write refused"));
+    }
+
+    private static void cancelTimeout(Request request) {
+        ScheduledFuture<?> timeout = request.timeout;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+
+    private static String describe(CommandFuture future) {
+        return CommandProtocol.opcodeName(future.getOpcode()) + "#" + future.getRequestId();
+    }
+}
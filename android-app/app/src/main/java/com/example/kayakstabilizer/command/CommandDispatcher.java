@@ -0,0 +1,249 @@
+package com.example.kayakstabilizer.command;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialises commands onto a link that accepts one outstanding write at a time, such as a GATT
+ * characteristic. Each command is queued under a key; a newer command for a key that has not
+ * been sent yet replaces the older one, so dragging a PID slider sends the first and the last
+ * value rather than every tick. The next command is written only after
+ * {@link #onWriteComplete(boolean)} reports the previous one. Binary command frames (see
+ * {@link CommandProtocol}) share the same single write slot; they are sent in order after
+ * urgent commands and are never coalesced.
+ *
+ * A write the link refuses is counted as failed. A refused urgent or keyed command stays at the
+ * head of its queue, still open to a newer value for its key, and nothing behind it is sent
+ * until it is tried again after {@link #RETRY_DELAY_MILLIS} when a retry timer is given,
+ * otherwise on the next submit or completion. A refused binary frame is dropped and reported
+ * to the {@link FrameListener}, whose caller fails the request.
+ *
+ * Thread-safe: commands are usually submitted on the main thread and completions arrive on
+ * the Bluetooth binder thread.
+ */
+public final class CommandDispatcher {
+    public static final long RETRY_DELAY_MILLIS = 50;
+
+    public interface CommandWriter {
+        /**
+         * Starts writing {@code command}.
+         *
+         * @return true if the write was started and a completion will follow
+         */
+        boolean write(String command);
+    }
+
+    public interface FrameWriter {
+        /**
+         * Starts writing a binary command frame.
+         *
+         * @return true if the write was started and a completion will follow
+         */
+        boolean write(byte[] frame);
+    }
+
+    private final CommandWriter writer;
+    private final FrameWriter frameWriter;
+    private final ScheduledExecutorService retryTimer;
+
+    // Pending commands by key, in the order each key was first queued
+    private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+    // Commands sent ahead of everything else, e.g. EMERGENCY_STOP
+    private final ArrayDeque<String> urgent = new ArrayDeque<>();
+    // Binary frames in submission order
+    private final ArrayDeque<byte[]> frames = new ArrayDeque<>();
+    private FrameListener frameListener;
+    private boolean writeInFlight = false;
+    private boolean retryScheduled = false;
+
+    private long submittedCount;
+    private long sentCount;
+    private long coalescedCount;
+    private long failedCount;
+
+    /**
+     * Told whether each binary frame's write was started; a frame the link refused never
+     * reaches the firmware.
+     */
+    public interface FrameListener {
+        void onFrameWritten(byte[] frame, boolean started);
+    }
+
+    public CommandDispatcher(CommandWriter writer) {
+        this(writer, null);
+    }
+
+    public CommandDispatcher(CommandWriter writer, FrameWriter frameWriter) {
+        this(writer, frameWriter, null);
+    }
+
+    /**
+     * @param retryTimer runs retries of refused commands; may be null
+     */
+    public CommandDispatcher(CommandWriter writer, FrameWriter frameWriter, ScheduledExecutorService retryTimer) {
+        this.writer = writer;
+        this.frameWriter = frameWriter;
+        this.retryTimer = retryTimer;
+    }
+
+    public synchronized void setFrameListener(FrameListener listener) {
+        frameListener = listener;
+    }
+
+    /**
+     * Queues {@code command}, replacing any unsent command with the same key.
+     */
+    public synchronized void submit(String key, String command) {
+        submittedCount++;
+        if (pending.put(key, command) != null) {
+            coalescedCount++;
+        }
+        pump();
+    }
+
+    /**
+     * Queues {@code command} using the command itself as key, so repeats collapse.
+     */
+    public void submit(String command) {
+        submit(command, command);
+    }
+
+    /**
+     * Queues {@code command} ahead of all keyed commands. Urgent commands are never coalesced.
+     */
+    public synchronized void submitUrgent(String command) {
+        submittedCount++;
+        urgent.add(command);
+        pump();
+    }
+
+    /**
+     * Queues a binary command frame behind urgent commands and earlier frames.
+     *
+     * @throws IllegalStateException if the dispatcher has no {@link FrameWriter}
+     */
+    public synchronized void submitFrame(byte[] frame) {
+        if (frameWriter == null) {
+            throw new IllegalStateException("No frame writer");
+        }
+        submittedCount++;
+        frames.add(frame);
+        pump();
+    }
+
+    /**
+     * Reports that the outstanding write finished and sends the next pending command, if any.
+     */
+    public synchronized void onWriteComplete(boolean success) {
+        if (!success) {
+            failedCount++;
+        }
+        writeInFlight = false;
+        pump();
+    }
+
+    /**
+     * Drops all pending commands and forgets the outstanding write, e.g. after a disconnect.
+     */
+    public synchronized void reset() {
+        pending.clear();
+        urgent.clear();
+        frames.clear();
+        writeInFlight = false;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size() + urgent.size() + frames.size();
+    }
+
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    private void pump() {
+        if (writeInFlight) {
+            return;
+        }
+        String command = urgent.peek();
+        if (command != null) {
+            if (writer.write(command)) {
+                urgent.poll();
+                sentCount++;
+                writeInFlight = true;
+            } else {
+                // The link refused the write (busy or gone); nothing overtakes a safety command
+                failedCount++;
+                scheduleRetry();
+            }
+            return;
+        }
+
+        while (!writeInFlight) {
+            if (!frames.isEmpty()) {
+                byte[] frame = frames.poll();
+                boolean started = frameWriter.write(frame);
+                if (started) {
+                    sentCount++;
+                    writeInFlight = true;
+                } else {
+                    failedCount++;
+                }
+                if (frameListener != null) {
+                    frameListener.onFrameWritten(frame, started);
+                }
+                continue;
+            }
+            Iterator<Map.Entry<String, String>> it = pending.entrySet().iterator();
+            if (!it.hasNext()) {
+                return;
+            }
+            Map.Entry<String, String> next = it.next();
+            String key = next.getKey();
+            if (writer.write(next.getValue())) {
+                pending.remove(key);
+                sentCount++;
+                writeInFlight = true;
+            } else {
+                // Kept first in line: it may be the last slider position or a one-shot command
+                failedCount++;
+                scheduleRetry();
+                return;
+            }
+        }
+    }
+
+    private void scheduleRetry() {
+        if (retryTimer == null || retryScheduled) {
+            return;
+        }
+        retryScheduled = true;
+        try {
+            retryTimer.schedule(() -> {
+                synchronized (CommandDispatcher.this) {
+                    retryScheduled = false;
+                    pump();
+                }
+            }, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Timer shut down; the next submit or completion retries instead
+            retryScheduled = false;
+        }
+    }
+}
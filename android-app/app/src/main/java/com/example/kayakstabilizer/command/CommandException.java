@@ -0,0 +1,29 @@
+package com.example.kayakstabilizer.command;
+
+/**
+ * Why a binary command has no answer. A nack is not an exception: it completes the future with
+ * a {@link CommandResult} whose status says why the command was refused.
+ */
+public final class CommandException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        /** No response within the timeout; the command may or may not have been applied. */
+        TIMEOUT,
+        /** The link refused the write. */
+        WRITE_FAILED,
+        /** The link went down before the response arrived. */
+        DISCONNECTED
+    }
+
+    private final Reason reason;
+
+    public CommandException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.kayakstabilizer.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending answer to one binary command sent by {@link CommandClient}. Completes with the
+ * firmware's {@link CommandResult} (ack or nack), or fails with a {@link CommandException}.
+ * Callers either block in {@link #get()} off the main thread or register a {@link Listener}.
+ */
+public final class CommandFuture implements Future<CommandResult> {
+
+    public interface Listener {
+        /**
+         * Called once, on the thread that completed the future (the Bluetooth callback or
+         * timeout thread), or immediately if it is already done. Exactly one of {@code result}
+         * and {@code error} is non-null, unless the future was cancelled, when both are null.
+         */
+        void onComplete(CommandFuture future, CommandResult result, CommandException error);
+    }
+
+    private final int opcode;
+    private final int requestId;
+
+    // Guarded by this
+    private boolean done;
+    private boolean cancelled;
+    private CommandResult result;
+    private CommandException error;
+    private List<Listener> listeners;
+    private CommandClient client;
+
+    CommandFuture(int opcode, int requestId, CommandClient client) {
+        this.opcode = opcode;
+        this.requestId = requestId;
+        this.client = client;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public void addListener(Listener listener) {
+        synchronized (this) {
+            if (!done) {
+                if (listeners == null) {
+                    listeners = new ArrayList<>(1);
+                }
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.onComplete(this, result, error);
+    }
+
+    /**
+     * Stops waiting for the answer. A command already written may still be applied.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        CommandClient owner;
+        synchronized (this) {
+            owner = client;
+        }
+        if (!finish(null, null, true)) {
+            return false;
+        }
+        if (owner != null) {
+            owner.forget(this);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized CommandResult get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized CommandResult get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    boolean complete(CommandResult value) {
+        return finish(value, null, false);
+    }
+
+    boolean fail(CommandException exception) {
+        return finish(null, exception, false);
+    }
+
+    private boolean finish(CommandResult value, CommandException exception, boolean cancel) {
+        List<Listener> toNotify;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            cancelled = cancel;
+            result = value;
+            error = exception;
+            client = null;
+            toNotify = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        if (toNotify != null) {
+            for (Listener listener : toNotify) {
+                listener.onComplete(this, value, exception);
+            }
+        }
+        return true;
+    }
+
+    private CommandResult report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.kayakstabilizer.command;
+
+/**
+ * Binary command frames written to the command characteristic and the acknowledgements the
+ * firmware notifies on the data characteristic. Multi-byte fields are little-endian:
+ *
+ * <pre>
+ * command                         response (notification)
+ * offset size field               offset size field
+ *   0     1   magic 0xC1            0     1   magic 0xA1
+ *   1     1   opcode                1     1   opcode being answered
+ *   2     2   request id (uint16)   2     2   request id (uint16)
+ *   4     n   arguments             4     1   status: 0 ack, else nack reason
+ *                                   5     4   Kp in effect (float32)
+ *                                   9     4   Ki in effect (float32)
+ *                                  13     4   Kd in effect (float32)
+ *                                  17     1   telemetry flags in effect
+ * </pre>
+ *
+ * SET_PID carries Kp, Ki and Kd as three float32 values and is applied as one update, so the
+ * controller never runs with a mix of old and new gains. Every command, including a rejected
+ * one, is answered with the state in effect afterwards. Neither magic is printable ASCII or a
+ * telemetry frame magic, so both formats share their characteristics with the ASCII ones.
+ */
+public final class CommandProtocol {
+    public static final int COMMAND_MAGIC = 0xC1;
+    public static final int RESPONSE_MAGIC = 0xA1;
+    public static final int HEADER_SIZE = 4;
+    public static final int RESPONSE_SIZE = 18;
+
+    public static final int OP_SET_PID = 0x01;
+    public static final int OP_SET_STABILIZATION = 0x02;
+    public static final int OP_EMERGENCY_STOP = 0x03;
+    public static final int OP_RESET_EMERGENCY = 0x04;
+    public static final int OP_GET_STATUS = 0x05;
+    /** Turns the batched diagnostic stream on (samples per notification) or off (0). */
+    public static final int OP_SET_DIAGNOSTICS = 0x06;
+
+    public static final int STATUS_ACK = 0;
+    public static final int STATUS_UNKNOWN_OPCODE = 1;
+    public static final int STATUS_BAD_LENGTH = 2;
+    public static final int STATUS_OUT_OF_RANGE = 3;
+    /** The command is valid but not allowed now, e.g. enabling stabilization during a stop. */
+    public static final int STATUS_REJECTED = 4;
+
+    /** Gains outside [0, MAX_GAIN] are refused with {@link #STATUS_OUT_OF_RANGE}. */
+    public static final float MAX_GAIN = 100f;
+
+    private CommandProtocol() {
+    }
+
+    public static byte[] encodeSetPid(int requestId, float kp, float ki, float kd) {
+        byte[] frame = header(OP_SET_PID, requestId, 12);
+        putFloat(frame, HEADER_SIZE, kp);
+        putFloat(frame, HEADER_SIZE + 4, ki);
+        putFloat(frame, HEADER_SIZE + 8, kd);
+        return frame;
+    }
+
+    public static byte[] encodeSetStabilization(int requestId, boolean enabled) {
+        byte[] frame = header(OP_SET_STABILIZATION, requestId, 1);
+        frame[HEADER_SIZE] = (byte) (enabled ? 1 : 0);
+        return frame;
+    }
+
+    public static byte[] encodeSetDiagnostics(int requestId, int samplesPerBatch) {
+        byte[] frame = header(OP_SET_DIAGNOSTICS, requestId, 1);
+        frame[HEADER_SIZE] = (byte) samplesPerBatch;
+        return frame;
+    }
+
+    /** Encodes a command without arguments, e.g. {@link #OP_GET_STATUS}. */
+    public static byte[] encode(int opcode, int requestId) {
+        return header(opcode, requestId, 0);
+    }
+
+    public static boolean isResponse(byte[] data, int offset, int length) {
+        return length >= RESPONSE_SIZE && (data[offset] & 0xFF) == RESPONSE_MAGIC;
+    }
+
+    /**
+     * @return false if the value is not a response frame
+     */
+    public static boolean decodeResponse(byte[] data, int offset, int length, CommandResult out) {
+        if (!isResponse(data, offset, length)) {
+            return false;
+        }
+        out.opcode = data[offset + 1] & 0xFF;
+        out.requestId = getShort(data, offset + 2);
+        out.status = data[offset + 4] & 0xFF;
+        out.kp = getFloat(data, offset + 5);
+        out.ki = getFloat(data, offset + 9);
+        out.kd = getFloat(data, offset + 13);
+        out.flags = data[offset + 17] & 0xFF;
+        return true;
+    }
+
+    /**
+     * Writes a response frame; the firmware simulator's side of the protocol.
+     */
+    public static byte[] encodeResponse(int opcode, int requestId, int status,
+                                        float kp, float ki, float kd, int flags) {
+        byte[] frame = new byte[RESPONSE_SIZE];
+        frame[0] = (byte) RESPONSE_MAGIC;
+        frame[1] = (byte) opcode;
+        frame[2] = (byte) requestId;
+        frame[3] = (byte) (requestId >>> 8);
+        frame[4] = (byte) status;
+        putFloat(frame, 5, kp);
+        putFloat(frame, 9, ki);
+        putFloat(frame, 13, kd);
+        frame[17] = (byte) flags;
+        return frame;
+    }
+
+    public static boolean isCommand(byte[] data, int offset, int length) {
+        return length >= HEADER_SIZE && (data[offset] & 0xFF) == COMMAND_MAGIC;
+    }
+
+    public static int getShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    public static float getFloat(byte[] data, int offset) {
+        return Float.intBitsToFloat((data[offset] & 0xFF)
+                | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16
+                | (data[offset + 3] & 0xFF) << 24);
+    }
+
+    public static String opcodeName(int opcode) {
+        switch (opcode) {
+            case OP_SET_PID: return "SET_PID";
+            case OP_SET_STABILIZATION: return "SET_STABILIZATION";
+            case OP_EMERGENCY_STOP: return "EMERGENCY_STOP";
+            case OP_RESET_EMERGENCY: return "RESET_EMERGENCY";
+            case OP_GET_STATUS: return "GET_STATUS";
+            case OP_SET_DIAGNOSTICS: return "SET_DIAGNOSTICS";
+            default: return "OP_" + opcode;
+        }
+    }
+
+    public static String statusName(int status) {
+        switch (status) {
+            case STATUS_ACK: return "ACK";
+            case STATUS_UNKNOWN_OPCODE: return "UNKNOWN_OPCODE";
+            case STATUS_BAD_LENGTH: return "BAD_LENGTH";
+            case STATUS_OUT_OF_RANGE: return "OUT_OF_RANGE";
+            case STATUS_REJECTED: return "REJECTED";
+            default: return "STATUS_" + status;
+        }
+    }
+
+    private static byte[] header(int opcode, int requestId, int argumentBytes) {
+        byte[] frame = new byte[HEADER_SIZE + argumentBytes];
+        frame[0] = (byte) COMMAND_MAGIC;
+        frame[1] = (byte) opcode;
+        frame[2] = (byte) requestId;
+        frame[3] = (byte) (requestId >>> 8);
+        return frame;
+    }
+
+    private static void putFloat(byte[] frame, int offset, float value) {
+        int bits = Float.floatToIntBits(value);
+        frame[offset] = (byte) bits;
+        frame[offset + 1] = (byte) (bits >>> 8);
+        frame[offset + 2] = (byte) (bits >>> 16);
+        frame[offset + 3] = (byte) (bits >>> 24);
+    }
+}
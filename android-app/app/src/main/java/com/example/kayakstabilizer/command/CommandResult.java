@@ -0,0 +1,47 @@
+package com.example.kayakstabilizer.command;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+/**
+ * The firmware's answer to one binary command: whether it was applied and the settings in
+ * effect afterwards.
+ */
+public final class CommandResult {
+    public int opcode;
+    public int requestId;
+    public int status;
+    public float kp;
+    public float ki;
+    public float kd;
+    // TelemetrySnapshot FLAG_* bits
+    public int flags;
+
+    public boolean isAck() {
+        return status == CommandProtocol.STATUS_ACK;
+    }
+
+    public boolean isStabilizationEnabled() {
+        return (flags & TelemetrySnapshot.FLAG_STABILIZATION) != 0;
+    }
+
+    public boolean isEmergencyStop() {
+        return (flags & TelemetrySnapshot.FLAG_EMERGENCY) != 0;
+    }
+
+    public void copyFrom(CommandResult other) {
+        opcode = other.opcode;
+        requestId = other.requestId;
+        status = other.status;
+        kp = other.kp;
+        ki = other.ki;
+        kd = other.kd;
+        flags = other.flags;
+    }
+
+    @Override
+    public String toString() {
+        return CommandProtocol.opcodeName(opcode) + "#" + requestId + " "
+                + CommandProtocol.statusName(status)
+                + " kp=" + kp + " ki=" + ki + " kd=" + kd + " flags=0x" + Integer.toHexString(flags);
+    }
+}
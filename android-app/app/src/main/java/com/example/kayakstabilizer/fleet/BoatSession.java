@@ -0,0 +1,383 @@
+package com.example.kayakstabilizer.fleet;
+
+import com.example.kayakstabilizer.command.CommandDispatcher;
+import com.example.kayakstabilizer.ingest.SafetyFrameClassifier;
+import com.example.kayakstabilizer.metrics.TelemetryMetrics;
+import com.example.kayakstabilizer.telemetry.TelemetryDecoder;
+import com.example.kayakstabilizer.telemetry.TelemetryHistory;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * One boat of a {@link FleetSessionManager}: its link, connection state, command queue,
+ * telemetry history and metrics.
+ *
+ * Transport callbacks only copy the notification into a small inbox and return, so a link that
+ * shares its callback thread with other boats (as every GATT connection of an app does) is never
+ * held up by this one. Decoding, history appends and {@link FleetSessionManager.Listener} calls
+ * run on the boat's own executor. When that executor falls behind, the oldest queued
+ * notifications are dropped and counted. Safety-critical frames (see
+ * {@link SafetyFrameClassifier}) have slots of their own, as in IngestQueue, and are given up
+ * only when the inbox holds nothing else. Command completions and connection changes bypass the
+ * executor so an emergency stop is never queued behind a stalled boat.
+ */
+public final class BoatSession implements StabilizerTransport.Listener {
+
+    public enum State {
+        IDLE,
+        CONNECTING,
+        CONNECTED,
+        /** Link lost while still wanted; the transport is expected to reconnect. */
+        RECONNECTING,
+        CLOSED
+    }
+
+    static final int INBOX_CAPACITY = 64;
+    static final int INBOX_SLOT_SIZE = 128;
+    // Extra slots for critical frames beyond INBOX_CAPACITY
+    static final int INBOX_CRITICAL_CAPACITY = 16;
+    private static final int INBOX_SLOTS = INBOX_CAPACITY + INBOX_CRITICAL_CAPACITY;
+
+    private final String id;
+    private final StabilizerTransport transport;
+    private final Executor executor;
+    private final FleetSessionManager.Listener listener;
+
+    private final CommandDispatcher dispatcher;
+    private final TelemetryHistory history;
+    private final TelemetryMetrics metrics = new TelemetryMetrics();
+
+    // Executor thread only
+    private final TelemetrySnapshot decoded = new TelemetrySnapshot();
+    private byte[] drainBuffer = new byte[INBOX_SLOT_SIZE];
+    private long droppedSeen;
+
+    // Merged view of everything received since connecting; guarded by itself
+    private final TelemetrySnapshot latest = new TelemetrySnapshot();
+
+    // Ring of raw notifications waiting for the executor; guarded by inbox
+    private final byte[][] inbox = new byte[INBOX_SLOTS][INBOX_SLOT_SIZE];
+    private final int[] inboxLength = new int[INBOX_SLOTS];
+    private final long[] inboxNanos = new long[INBOX_SLOTS];
+    private final boolean[] inboxCritical = new boolean[INBOX_SLOTS];
+    private final SafetyFrameClassifier classifier = new SafetyFrameClassifier();
+    private int inboxHead;
+    private int inboxCount;
+    private int inboxCriticalCount;
+    private boolean drainScheduled;
+
+    private volatile State state = State.IDLE;
+    private volatile boolean wantConnected;
+
+    private volatile long framesReceived;
+    private volatile long framesDecoded;
+    private volatile long framesDropped;
+    private volatile long criticalDropped;
+
+    BoatSession(String id, StabilizerTransport transport, Executor executor,
+                FleetSessionManager.Listener listener, int historySeconds, int historyRateHz) {
+        this.id = id;
+        this.transport = transport;
+        this.executor = executor;
+        this.listener = listener;
+        this.dispatcher = new CommandDispatcher(transport::writeCommand);
+        this.history = TelemetryHistory.forDuration(historySeconds, historyRateHz);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isConnected() {
+        return state == State.CONNECTED;
+    }
+
+    void connect() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        wantConnected = true;
+        setState(State.CONNECTING);
+        transport.connect(this);
+    }
+
+    void disconnect() {
+        wantConnected = false;
+        transport.disconnect();
+        if (state != State.CLOSED) {
+            setState(State.IDLE);
+        }
+    }
+
+    void close() {
+        disconnect();
+        setState(State.CLOSED);
+    }
+
+    /**
+     * Queues a keyed command for this boat; see {@link CommandDispatcher#submit(String, String)}.
+     *
+     * @return false if the boat is not connected
+     */
+    public boolean submit(String key, String command) {
+        if (state != State.CONNECTED) {
+            return false;
+        }
+        dispatcher.submit(key, command);
+        return true;
+    }
+
+    /**
+     * Sends EMERGENCY_STOP ahead of everything queued for this boat.
+     *
+     * @return false if the boat is not connected
+     */
+    public boolean emergencyStop() {
+        if (state != State.CONNECTED) {
+            return false;
+        }
+        dispatcher.submitUrgent("EMERGENCY_STOP");
+        return true;
+    }
+
+    public TelemetryHistory getHistory() {
+        return history;
+    }
+
+    public TelemetryMetrics getMetrics() {
+        return metrics;
+    }
+
+    public CommandDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    /** Notifications discarded because this boat's executor fell behind. */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /**
+     * Safety-critical notifications among {@link #getFramesDropped()}, given up only when the
+     * inbox held nothing but critical frames.
+     */
+    public long getCriticalDropped() {
+        return criticalDropped;
+    }
+
+    /**
+     * Copies the boat's current state into {@code out}. Safe to call from any thread.
+     */
+    public BoatStatus getStatus(BoatStatus out) {
+        out.id = id;
+        out.state = state;
+        synchronized (latest) {
+            out.telemetry.copyFrom(latest);
+        }
+        out.framesReceived = framesReceived;
+        out.framesDecoded = framesDecoded;
+        out.framesDropped = framesDropped;
+        out.criticalDropped = criticalDropped;
+        out.lostFrames = metrics.getLostFrames();
+        out.pendingCommands = dispatcher.getPendingCount();
+        return out;
+    }
+
+    @Override
+    public void onConnectionStateChanged(boolean connected) {
+        if (connected) {
+            synchronized (latest) {
+                latest.reset();
+            }
+            metrics.reset();
+            synchronized (inbox) {
+                classifier.reset();
+            }
+            setState(State.CONNECTED);
+        } else {
+            dispatcher.reset();
+            if (state != State.CLOSED) {
+                setState(wantConnected ? State.RECONNECTING : State.IDLE);
+            }
+        }
+    }
+
+    @Override
+    public void onTelemetry(byte[] data, int offset, int length) {
+        long receivedNanos = System.nanoTime();
+        metrics.onNotification(receivedNanos);
+        framesReceived++;
+
+        boolean schedule = false;
+        synchronized (inbox) {
+            boolean critical = classifier.isCritical(data, offset, length);
+            int nonCritical = inboxCount - inboxCriticalCount;
+            if (critical) {
+                if (inboxCount == INBOX_SLOTS) {
+                    dropOldest(nonCritical > 0);
+                }
+            } else if (nonCritical == INBOX_CAPACITY || inboxCount == INBOX_SLOTS) {
+                if (nonCritical == 0) {
+                    // Every slot holds a critical frame; this one gives way
+                    framesDropped++;
+                    return;
+                }
+                dropOldest(true);
+            }
+            int slot = (inboxHead + inboxCount) % INBOX_SLOTS;
+            if (inbox[slot].length < length) {
+                inbox[slot] = new byte[length];
+            }
+            System.arraycopy(data, offset, inbox[slot], 0, length);
+            inboxLength[slot] = length;
+            inboxNanos[slot] = receivedNanos;
+            inboxCritical[slot] = critical;
+            inboxCount++;
+            if (critical) {
+                inboxCriticalCount++;
+            }
+            if (!drainScheduled) {
+                drainScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            execute(drainInbox);
+        }
+    }
+
+    // Discards the oldest queued frame, or the oldest non-critical one; frames queued ahead of
+    // it move up one slot, keeping their order. Called with the inbox lock held.
+    private void dropOldest(boolean skipCritical) {
+        int index = inboxHead;
+        while (skipCritical && inboxCritical[index]) {
+            index = (index + 1) % INBOX_SLOTS;
+        }
+        if (inboxCritical[index]) {
+            inboxCriticalCount--;
+            criticalDropped++;
+        }
+        byte[] freed = inbox[index];
+        while (index != inboxHead) {
+            int previous = (index + INBOX_SLOTS - 1) % INBOX_SLOTS;
+            inbox[index] = inbox[previous];
+            inboxLength[index] = inboxLength[previous];
+            inboxNanos[index] = inboxNanos[previous];
+            inboxCritical[index] = inboxCritical[previous];
+            index = previous;
+        }
+        inbox[inboxHead] = freed;
+        inboxHead = (inboxHead + 1) % INBOX_SLOTS;
+        inboxCount--;
+        framesDropped++;
+    }
+
+    @Override
+    public void onCommandWritten(boolean success) {
+        dispatcher.onWriteComplete(success);
+    }
+
+    private final Runnable drainInbox = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                byte[] data;
+                int length;
+                long receivedNanos;
+                long dropped;
+                synchronized (inbox) {
+                    if (inboxCount == 0) {
+                        drainScheduled = false;
+                        return;
+                    }
+                    // Swap buffers instead of copying; the slot gets the previous drain buffer
+                    data = inbox[inboxHead];
+                    inbox[inboxHead] = drainBuffer;
+                    drainBuffer = data;
+                    length = inboxLength[inboxHead];
+                    receivedNanos = inboxNanos[inboxHead];
+                    if (inboxCritical[inboxHead]) {
+                        inboxCriticalCount--;
+                    }
+                    inboxHead = (inboxHead + 1) % INBOX_SLOTS;
+                    inboxCount--;
+                    dropped = framesDropped;
+                }
+                if (dropped != droppedSeen) {
+                    // Shed by the inbox, not lost on the link
+                    metrics.onQueueDropped(dropped - droppedSeen);
+                    droppedSeen = dropped;
+                }
+                process(data, length, receivedNanos);
+            }
+        }
+    };
+
+    private void process(byte[] data, int length, long receivedNanos) {
+        TelemetrySnapshot snapshot = decoded;
+        snapshot.receivedNanos = receivedNanos;
+        long decodeStart = System.nanoTime();
+        boolean ok = TelemetryDecoder.decode(data, 0, length, snapshot);
+        metrics.onDecoded(snapshot, System.nanoTime() - decodeStart, ok);
+        if (!ok && snapshot.fields == 0) {
+            return;
+        }
+        framesDecoded++;
+
+        synchronized (latest) {
+            merge(snapshot, latest);
+        }
+        if (snapshot.has(TelemetrySnapshot.FIELD_ROLL)) {
+            history.append(receivedNanos / 1_000_000L, snapshot);
+        }
+        if (listener != null) {
+            listener.onTelemetry(this, snapshot);
+        }
+    }
+
+    // Event frames such as LOW_BATTERY carry only some fields; keep the rest from earlier frames
+    private static void merge(TelemetrySnapshot from, TelemetrySnapshot into) {
+        if (from.has(TelemetrySnapshot.FIELD_ROLL)) into.roll = from.roll;
+        if (from.has(TelemetrySnapshot.FIELD_PITCH)) into.pitch = from.pitch;
+        if (from.has(TelemetrySnapshot.FIELD_BATTERY)) into.batteryVoltage = from.batteryVoltage;
+        if (from.has(TelemetrySnapshot.FIELD_BATTERY_TYPE)) into.batteryType = from.batteryType;
+        if (from.has(TelemetrySnapshot.FIELD_STABILIZATION)) into.stabilizationEnabled = from.stabilizationEnabled;
+        if (from.has(TelemetrySnapshot.FIELD_EMERGENCY)) into.emergencyStop = from.emergencyStop;
+        if (from.has(TelemetrySnapshot.FIELD_LOW_BATTERY)) into.lowBattery = from.lowBattery;
+        if (from.has(TelemetrySnapshot.FIELD_SEQUENCE)) into.sequence = from.sequence;
+        if (from.has(TelemetrySnapshot.FIELD_DEVICE_TIME)) into.deviceMillis = from.deviceMillis;
+        into.receivedNanos = from.receivedNanos;
+        into.fields |= from.fields;
+    }
+
+    private void setState(State newState) {
+        State old = state;
+        state = newState;
+        if (old != newState && listener != null) {
+            execute(() -> listener.onStateChanged(this, newState));
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Executor shut down while the session was closing
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.kayakstabilizer.fleet;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+/**
+ * Point-in-time copy of one boat's state for the fleet view. Instances are reused by
+ * {@link FleetSessionManager#getFleetStatus(java.util.List)} so refreshing the view does not
+ * allocate.
+ */
+public final class BoatStatus {
+    public String id;
+    public BoatSession.State state;
+    // Latest values received; check telemetry.has(...) before showing a field
+    public final TelemetrySnapshot telemetry = new TelemetrySnapshot();
+    public long framesReceived;
+    public long framesDecoded;
+    public long framesDropped;
+    // Safety-critical frames among framesDropped; nonzero only under a flood of them
+    public long criticalDropped;
+    public long lostFrames;
+    public int pendingCommands;
+
+    public boolean hasTelemetry() {
+        return telemetry.fields != 0;
+    }
+
+    /** Milliseconds since the last telemetry notification, or -1 if none was received. */
+    public long getTelemetryAgeMillis(long nowNanos) {
+        return hasTelemetry() ? (nowNanos - telemetry.receivedNanos) / 1_000_000L : -1;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.kayakstabilizer.fleet;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps concurrent links to several stabilizers, e.g. a guide's phone watching a group of
+ * rental kayaks. Each boat is a {@link BoatSession} with its own single-thread executor, so a
+ * slow or flapping boat delays only its own telemetry. The boat list is copy-on-write: adding
+ * or removing boats is rare, while the fleet view and the emergency-stop broadcast iterate it
+ * without locking.
+ *
+ * Works with any {@link StabilizerTransport}: one BLE connection per boat on the phone, or
+ * simulated boats on the JVM.
+ */
+public final class FleetSessionManager {
+
+    public static final int DEFAULT_HISTORY_SECONDS = 5 * 60;
+    public static final int DEFAULT_HISTORY_RATE_HZ = 20;
+
+    public interface Listener {
+        /** Called on the boat's executor. */
+        void onStateChanged(BoatSession boat, BoatSession.State state);
+
+        /**
+         * Called on the boat's executor for every decoded notification. {@code snapshot} is
+         * reused and only valid during the call.
+         */
+        void onTelemetry(BoatSession boat, TelemetrySnapshot snapshot);
+    }
+
+    private static final class Entry {
+        final BoatSession session;
+        final ExecutorService executor;
+
+        Entry(BoatSession session, ExecutorService executor) {
+            this.session = session;
+            this.executor = executor;
+        }
+    }
+
+    private final Listener listener;
+    private final int historySeconds;
+    private final int historyRateHz;
+
+    private volatile Entry[] entries = new Entry[0];
+
+    public FleetSessionManager(Listener listener) {
+        this(listener, DEFAULT_HISTORY_SECONDS, DEFAULT_HISTORY_RATE_HZ);
+    }
+
+    public FleetSessionManager(Listener listener, int historySeconds, int historyRateHz) {
+        this.listener = listener;
+        this.historySeconds = historySeconds;
+        this.historyRateHz = historyRateHz;
+    }
+
+    /**
+     * Adds a boat and connects it.
+     *
+     * @throws IllegalArgumentException if a boat with this id is already present
+     */
+    public BoatSession addBoat(String id, StabilizerTransport transport) {
+        Entry entry;
+        synchronized (this) {
+            if (find(id) != null) {
+                throw new IllegalArgumentException("Duplicate boat id: " + id);
+            }
+            ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Boat-" + id);
+                thread.setDaemon(true);
+                return thread;
+            });
+            entry = new Entry(new BoatSession(id, transport, executor, listener,
+                    historySeconds, historyRateHz), executor);
+
+            Entry[] current = entries;
+            Entry[] grown = new Entry[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[current.length] = entry;
+            entries = grown;
+        }
+        entry.session.connect();
+        return entry.session;
+    }
+
+    /**
+     * Disconnects and forgets a boat.
+     *
+     * @return false if there is no boat with this id
+     */
+    public boolean removeBoat(String id) {
+        Entry entry;
+        synchronized (this) {
+            entry = find(id);
+            if (entry == null) {
+                return false;
+            }
+            Entry[] current = entries;
+            Entry[] shrunk = new Entry[current.length - 1];
+            int j = 0;
+            for (Entry e : current) {
+                if (e != entry) {
+                    shrunk[j++] = e;
+                }
+            }
+            entries = shrunk;
+        }
+        shutdown(entry);
+        return true;
+    }
+
+    public BoatSession getBoat(String id) {
+        Entry entry = find(id);
+        return entry != null ? entry.session : null;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public int getConnectedCount() {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.session.isConnected()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sends EMERGENCY_STOP to every connected boat, ahead of anything queued for it. Runs on the
+     * caller's thread and does not wait for any boat's executor.
+     *
+     * @return the number of boats the stop was sent to
+     */
+    public int emergencyStopAll() {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.session.emergencyStop()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Queues the same keyed command for every connected boat.
+     *
+     * @return the number of boats it was queued for
+     */
+    public int broadcast(String key, String command) {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.session.submit(key, command)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fills {@code out} with one status per boat, in the order boats were added, reusing the
+     * {@link BoatStatus} objects already in the list.
+     *
+     * @return the number of boats
+     */
+    public int getFleetStatus(List<BoatStatus> out) {
+        Entry[] current = entries;
+        while (out.size() > current.length) {
+            out.remove(out.size() - 1);
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (i < out.size()) {
+                current[i].session.getStatus(out.get(i));
+            } else {
+                out.add(current[i].session.getStatus(new BoatStatus()));
+            }
+        }
+        return current.length;
+    }
+
+    /** Disconnects every boat and stops their executors. */
+    public void close() {
+        Entry[] current;
+        synchronized (this) {
+            current = entries;
+            entries = new Entry[0];
+        }
+        for (Entry entry : current) {
+            shutdown(entry);
+        }
+    }
+
+    private Entry find(String id) {
+        for (Entry entry : entries) {
+            if (entry.session.getId().equals(id)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static void shutdown(Entry entry) {
+        entry.session.close();
+        // Queued work still runs; nothing here waits for a stalled boat
+        entry.executor.shutdown();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.kayakstabilizer.fusion;
+
+/**
+ * What updateIMU() does today: roll and pitch from the accelerometer alone, smoothed by a
+ * first-order low-pass with a fixed weight per sample. The gyro is ignored, so the estimate
+ * lags real motion and follows every paddle stroke's acceleration. Kept as the baseline.
+ */
+public final class AccelLowPassFilter extends AttitudeFilter {
+
+    /** The firmware's alpha. */
+    public static final float DEFAULT_ALPHA = 0.1f;
+
+    private final float alpha;
+
+    public AccelLowPassFilter() {
+        this(DEFAULT_ALPHA);
+    }
+
+    public AccelLowPassFilter(float alpha) {
+        this.alpha = alpha;
+    }
+
+    @Override
+    public String getName() {
+        return "lowpass(" + alpha + ")";
+    }
+
+    @Override
+    public void update(float ax, float ay, float az, float gx, float gy, float gz, float dt) {
+        // Starts from level, like the static rollFiltered and pitchFiltered
+        roll = alpha * accelRoll(ay, az) + (1 - alpha) * roll;
+        pitch = alpha * accelPitch(ax, ay, az) + (1 - alpha) * pitch;
+    }
+
+    @Override
+    protected void onReset() {
+    }
+}
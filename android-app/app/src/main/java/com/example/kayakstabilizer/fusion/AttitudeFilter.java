@@ -0,0 +1,102 @@
+package com.example.kayakstabilizer.fusion;
+
+/**
+ * Roll and pitch estimate from one MPU6050's accelerometer and gyro. Implementations keep their
+ * state in a handful of float fields and use float arithmetic only, so they port directly to
+ * updateIMU() on the ESP32; nothing is allocated per sample.
+ *
+ * Axes and signs follow the firmware: roll = atan2(ay, az), pitch = atan2(-ax, sqrt(ay² + az²)),
+ * gx and gy the roll and pitch rates. Feed samples one at a time with {@link #update} or a
+ * recorded stretch with {@link #process}.
+ *
+ * Not thread-safe.
+ */
+public abstract class AttitudeFilter {
+
+    /** getMotion6() scale at the MPU6050's power-on ranges, ±2 g and ±250 °/s. */
+    public static final float ACCEL_LSB_PER_G = 16384f;
+    public static final float GYRO_LSB_PER_DPS = 131f;
+
+    /** updateIMU() runs at 100 Hz; assumed for the first sample of a stream. */
+    public static final float DEFAULT_DT = 0.01f;
+    // Longer gaps are not integrated through
+    private static final float MAX_DT = 0.1f;
+
+    static final float RAD_TO_DEG = (float) (180 / Math.PI);
+    static final float DEG_TO_RAD = (float) (Math.PI / 180);
+
+    private static final long NO_SAMPLE = Long.MIN_VALUE;
+
+    protected float roll;
+    protected float pitch;
+    private long lastMillis = NO_SAMPLE;
+
+    public abstract String getName();
+
+    /**
+     * Adds one sample.
+     *
+     * @param ax acceleration in g (any consistent unit for the filters that only use its direction)
+     * @param gx angular rate in degrees per second
+     * @param dt seconds since the previous sample
+     */
+    public abstract void update(float ax, float ay, float az, float gx, float gy, float gz, float dt);
+
+    /** Clears the estimate; the next sample starts a new one. */
+    public final void reset() {
+        roll = 0f;
+        pitch = 0f;
+        lastMillis = NO_SAMPLE;
+        onReset();
+    }
+
+    protected abstract void onReset();
+
+    /** Degrees. */
+    public final float getRoll() {
+        return roll;
+    }
+
+    /** Degrees. */
+    public final float getPitch() {
+        return pitch;
+    }
+
+    /**
+     * Runs the filter over raw getMotion6() samples, x, y and z interleaved as in a
+     * DiagnosticHistory.Window, continuing from the state left by earlier calls. The time
+     * step comes from {@code millis}.
+     *
+     * @param rollOut  receives the roll after each sample, at the same index; may be null
+     * @param pitchOut receives the pitch after each sample; may be null
+     */
+    public final void process(short[] accel, short[] gyro, long[] millis, int offset, int count,
+                              float[] rollOut, float[] pitchOut) {
+        for (int i = offset; i < offset + count; i++) {
+            long t = millis[i];
+            float dt = lastMillis == NO_SAMPLE ? DEFAULT_DT
+                    : Math.max(0f, Math.min(MAX_DT, (t - lastMillis) / 1000f));
+            lastMillis = t;
+            int a = i * 3;
+            update(accel[a] / ACCEL_LSB_PER_G, accel[a + 1] / ACCEL_LSB_PER_G, accel[a + 2] / ACCEL_LSB_PER_G,
+                    gyro[a] / GYRO_LSB_PER_DPS, gyro[a + 1] / GYRO_LSB_PER_DPS, gyro[a + 2] / GYRO_LSB_PER_DPS,
+                    dt);
+            if (rollOut != null) {
+                rollOut[i] = roll;
+            }
+            if (pitchOut != null) {
+                pitchOut[i] = pitch;
+            }
+        }
+    }
+
+    /** Roll from the gravity direction alone, degrees. */
+    static float accelRoll(float ay, float az) {
+        return (float) Math.atan2(ay, az) * RAD_TO_DEG;
+    }
+
+    /** Pitch from the gravity direction alone, degrees. */
+    static float accelPitch(float ax, float ay, float az) {
+        return (float) Math.atan2(-ax, Math.sqrt(ay * ay + az * az)) * RAD_TO_DEG;
+    }
+}
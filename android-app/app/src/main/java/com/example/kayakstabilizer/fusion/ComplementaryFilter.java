@@ -0,0 +1,55 @@
+package com.example.kayakstabilizer.fusion;
+
+/**
+ * Integrates the gyro for fast response and pulls slowly towards the accelerometer angle to
+ * cancel drift: above 1 / (2π·timeConstant) the estimate follows the gyro, below it the
+ * accelerometer. The cheapest filter that uses gx and gy.
+ */
+public final class ComplementaryFilter extends AttitudeFilter {
+
+    public static final float DEFAULT_TIME_CONSTANT = 0.5f;  // seconds
+
+    private final float timeConstant;
+    private boolean initialized;
+
+    public ComplementaryFilter() {
+        this(DEFAULT_TIME_CONSTANT);
+    }
+
+    public ComplementaryFilter(float timeConstant) {
+        this.timeConstant = timeConstant;
+    }
+
+    @Override
+    public String getName() {
+        return "complementary(" + timeConstant + "s)";
+    }
+
+    @Override
+    public void update(float ax, float ay, float az, float gx, float gy, float gz, float dt) {
+        float accelRoll = accelRoll(ay, az);
+        float accelPitch = accelPitch(ax, ay, az);
+        if (!initialized) {
+            roll = accelRoll;
+            pitch = accelPitch;
+            initialized = true;
+            return;
+        }
+        // Body rates to Euler angle rates; gz matters once the hull is heeled and pitched
+        float r = roll * DEG_TO_RAD;
+        float p = pitch * DEG_TO_RAD;
+        float sinR = (float) Math.sin(r);
+        float cosR = (float) Math.cos(r);
+        float rollRate = gx + (float) Math.tan(p) * (sinR * gy + cosR * gz);
+        float pitchRate = cosR * gy - sinR * gz;
+
+        float k = timeConstant / (timeConstant + dt);
+        roll = k * (roll + rollRate * dt) + (1 - k) * accelRoll;
+        pitch = k * (pitch + pitchRate * dt) + (1 - k) * accelPitch;
+    }
+
+    @Override
+    protected void onReset() {
+        initialized = false;
+    }
+}
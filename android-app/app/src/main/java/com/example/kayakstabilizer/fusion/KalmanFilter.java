@@ -0,0 +1,111 @@
+package com.example.kayakstabilizer.fusion;
+
+/**
+ * Two independent two-state Kalman filters, one per axis: the angle is predicted from the gyro
+ * rate minus an estimated gyro bias and corrected by the accelerometer angle. Compared with the
+ * complementary filter the blend adapts to how well each source has been agreeing, and a
+ * constant gyro offset is learned instead of showing up as a tilt.
+ */
+public final class KalmanFilter extends AttitudeFilter {
+
+    /** Process noise of the angle and of the gyro bias, and accelerometer angle noise (deg²). */
+    public static final float DEFAULT_Q_ANGLE = 0.001f;
+    public static final float DEFAULT_Q_BIAS = 0.003f;
+    // Paddle strokes tilt the accelerometer angle by degrees, so it is trusted far less than
+    // on a bench
+    public static final float DEFAULT_R_MEASURE = 3f;
+
+    private final Axis rollAxis;
+    private final Axis pitchAxis;
+    private boolean initialized;
+
+    public KalmanFilter() {
+        this(DEFAULT_Q_ANGLE, DEFAULT_Q_BIAS, DEFAULT_R_MEASURE);
+    }
+
+    public KalmanFilter(float qAngle, float qBias, float rMeasure) {
+        rollAxis = new Axis(qAngle, qBias, rMeasure);
+        pitchAxis = new Axis(qAngle, qBias, rMeasure);
+    }
+
+    @Override
+    public String getName() {
+        return "kalman(" + rollAxis.rMeasure + ")";
+    }
+
+    @Override
+    public void update(float ax, float ay, float az, float gx, float gy, float gz, float dt) {
+        float accelRoll = accelRoll(ay, az);
+        float accelPitch = accelPitch(ax, ay, az);
+        if (!initialized) {
+            rollAxis.start(accelRoll);
+            pitchAxis.start(accelPitch);
+            roll = accelRoll;
+            pitch = accelPitch;
+            initialized = true;
+            return;
+        }
+        // Same Euler angle rates as the complementary filter
+        float r = roll * DEG_TO_RAD;
+        float p = pitch * DEG_TO_RAD;
+        float sinR = (float) Math.sin(r);
+        float cosR = (float) Math.cos(r);
+        float rollRate = gx + (float) Math.tan(p) * (sinR * gy + cosR * gz);
+        float pitchRate = cosR * gy - sinR * gz;
+
+        roll = rollAxis.update(accelRoll, rollRate, dt);
+        pitch = pitchAxis.update(accelPitch, pitchRate, dt);
+    }
+
+    @Override
+    protected void onReset() {
+        initialized = false;
+    }
+
+    /** Angle and gyro bias with their 2x2 error covariance. */
+    private static final class Axis {
+        final float qAngle, qBias, rMeasure;
+        float angle, bias;
+        float p00, p01, p10, p11;
+
+        Axis(float qAngle, float qBias, float rMeasure) {
+            this.qAngle = qAngle;
+            this.qBias = qBias;
+            this.rMeasure = rMeasure;
+        }
+
+        void start(float measuredAngle) {
+            angle = measuredAngle;
+            bias = 0f;
+            p00 = 0f;
+            p01 = 0f;
+            p10 = 0f;
+            p11 = 0f;
+        }
+
+        float update(float measuredAngle, float rate, float dt) {
+            // Predict
+            angle += dt * (rate - bias);
+            p00 += dt * (dt * p11 - p01 - p10 + qAngle);
+            p01 -= dt * p11;
+            p10 -= dt * p11;
+            p11 += qBias * dt;
+
+            // Correct with the accelerometer angle
+            float s = p00 + rMeasure;
+            float k0 = p00 / s;
+            float k1 = p10 / s;
+            float innovation = measuredAngle - angle;
+            angle += k0 * innovation;
+            bias += k1 * innovation;
+
+            float p00Old = p00;
+            float p01Old = p01;
+            p00 -= k0 * p00Old;
+            p01 -= k0 * p01Old;
+            p10 -= k1 * p00Old;
+            p11 -= k1 * p01Old;
+            return angle;
+        }
+    }
+}
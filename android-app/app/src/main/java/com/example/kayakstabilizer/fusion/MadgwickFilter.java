@@ -0,0 +1,119 @@
+package com.example.kayakstabilizer.fusion;
+
+/**
+ * Madgwick's gradient-descent orientation filter, IMU form (no magnetometer): the gyro
+ * quaternion rate, corrected by one normalised gradient step towards the measured gravity
+ * direction and scaled by {@code beta}. Works on the full orientation, so large combined heel
+ * and pitch need no small-angle assumption. Yaw is unobservable and left to drift.
+ */
+public final class MadgwickFilter extends AttitudeFilter {
+
+    /** Gradient step in rad/s: how hard the accelerometer corrects the gyro. */
+    public static final float DEFAULT_BETA = 0.05f;
+
+    private final float beta;
+    private float q0 = 1f, q1, q2, q3;
+    private boolean initialized;
+
+    public MadgwickFilter() {
+        this(DEFAULT_BETA);
+    }
+
+    public MadgwickFilter(float beta) {
+        this.beta = beta;
+    }
+
+    @Override
+    public String getName() {
+        return "madgwick(" + beta + ")";
+    }
+
+    @Override
+    public void update(float ax, float ay, float az, float gx, float gy, float gz, float dt) {
+        if (!initialized) {
+            if (ax == 0f && ay == 0f && az == 0f) {
+                return;
+            }
+            // Start from the accelerometer attitude instead of converging from level
+            float halfRoll = accelRoll(ay, az) * DEG_TO_RAD * 0.5f;
+            float halfPitch = accelPitch(ax, ay, az) * DEG_TO_RAD * 0.5f;
+            float cr = (float) Math.cos(halfRoll), sr = (float) Math.sin(halfRoll);
+            float cp = (float) Math.cos(halfPitch), sp = (float) Math.sin(halfPitch);
+            q0 = cr * cp;
+            q1 = sr * cp;
+            q2 = cr * sp;
+            q3 = -sr * sp;
+            initialized = true;
+            toEuler();
+            return;
+        }
+        gx *= DEG_TO_RAD;
+        gy *= DEG_TO_RAD;
+        gz *= DEG_TO_RAD;
+
+        // Rate of change of the quaternion from the gyro
+        float qDot0 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+        float qDot1 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+        float qDot2 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+        float qDot3 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+        // Free fall gives no direction to correct towards
+        if (!(ax == 0f && ay == 0f && az == 0f)) {
+            float recipNorm = invSqrt(ax * ax + ay * ay + az * az);
+            ax *= recipNorm;
+            ay *= recipNorm;
+            az *= recipNorm;
+
+            float _2q0 = 2f * q0, _2q1 = 2f * q1, _2q2 = 2f * q2, _2q3 = 2f * q3;
+            float _4q0 = 4f * q0, _4q1 = 4f * q1, _4q2 = 4f * q2;
+            float _8q1 = 8f * q1, _8q2 = 8f * q2;
+            float q0q0 = q0 * q0, q1q1 = q1 * q1, q2q2 = q2 * q2, q3q3 = q3 * q3;
+
+            // Gradient of the error between estimated and measured gravity
+            float s0 = _4q0 * q2q2 + _2q2 * ax + _4q0 * q1q1 - _2q1 * ay;
+            float s1 = _4q1 * q3q3 - _2q3 * ax + 4f * q0q0 * q1 - _2q0 * ay - _4q1
+                    + _8q1 * q1q1 + _8q1 * q2q2 + _4q1 * az;
+            float s2 = 4f * q0q0 * q2 + _2q0 * ax + _4q2 * q3q3 - _2q3 * ay - _4q2
+                    + _8q2 * q1q1 + _8q2 * q2q2 + _4q2 * az;
+            float s3 = 4f * q1q1 * q3 - _2q1 * ax + 4f * q2q2 * q3 - _2q2 * ay;
+            float sNorm = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+            if (sNorm > 0f) {
+                recipNorm = invSqrt(sNorm);
+                qDot0 -= beta * s0 * recipNorm;
+                qDot1 -= beta * s1 * recipNorm;
+                qDot2 -= beta * s2 * recipNorm;
+                qDot3 -= beta * s3 * recipNorm;
+            }
+        }
+
+        q0 += qDot0 * dt;
+        q1 += qDot1 * dt;
+        q2 += qDot2 * dt;
+        q3 += qDot3 * dt;
+        float recipNorm = invSqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+        q0 *= recipNorm;
+        q1 *= recipNorm;
+        q2 *= recipNorm;
+        q3 *= recipNorm;
+        toEuler();
+    }
+
+    private void toEuler() {
+        roll = (float) Math.atan2(q0 * q1 + q2 * q3, 0.5f - q1 * q1 - q2 * q2) * RAD_TO_DEG;
+        float sinPitch = -2f * (q1 * q3 - q0 * q2);
+        pitch = (float) Math.asin(Math.max(-1f, Math.min(1f, sinPitch))) * RAD_TO_DEG;
+    }
+
+    @Override
+    protected void onReset() {
+        q0 = 1f;
+        q1 = 0f;
+        q2 = 0f;
+        q3 = 0f;
+        initialized = false;
+    }
+
+    private static float invSqrt(float x) {
+        return (float) (1.0 / Math.sqrt(x));
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.kayakstabilizer.ingest;
+
+/**
+ * Bounded fan-out stage between a transport's receive thread and the consumers of raw
+ * telemetry (decoding and display, session recording, ...). The producer copies each
+ * notification into every consumer's fixed-size ring and returns; each consumer drains its
+ * ring on its own thread. What happens when a ring is full is chosen per consumer with a
+ * {@link Policy}, and every consumer counts what it lost.
+ *
+ * Frames the {@link Classifier} marks as safety-critical (emergency stop, low battery) are never
+ * shed: they take room reserved beyond the ring's capacity rather than displacing telemetry,
+ * and once {@link #CRITICAL_CAPACITY} of them are queued the producer waits rather than drop
+ * one. Every consumer sees frames in the order they were published, critical or not.
+ *
+ * Producers are serialised, so a live link and a replay may both publish; memory is allocated
+ * when a consumer subscribes and never while frames flow.
+ */
+public final class IngestQueue {
+
+    public static final int DEFAULT_SLOT_SIZE = 256;
+    static final int CRITICAL_CAPACITY = 16;
+
+    public enum Policy {
+        /** Overwrite the oldest queued frame; the consumer always sees the freshest data. */
+        DROP_OLDEST,
+        /** Discard the incoming frame; the consumer sees an unbroken prefix. */
+        DROP_NEWEST,
+        /** Make the producer wait for space; nothing is lost. */
+        BLOCK,
+        /** Queue every Nth frame only, dropping the oldest if even that overflows. */
+        SAMPLE
+    }
+
+    public interface Consumer {
+        /**
+         * Called on the consumer's thread. {@code data} is only valid during the call.
+         *
+         * @param critical true for a frame the {@link Classifier} marked safety-critical
+         */
+        void onFrame(byte[] data, int offset, int length, long receivedNanos, boolean critical);
+    }
+
+    public interface Classifier {
+        /** Called on the producer's thread for every frame; must be cheap. */
+        boolean isCritical(byte[] data, int offset, int length);
+    }
+
+    private final int slotSize;
+    private final Classifier classifier;
+    private final Object producerLock = new Object();
+
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile long oversized;
+    private boolean closed;
+
+    public IngestQueue(Classifier classifier) {
+        this(DEFAULT_SLOT_SIZE, classifier);
+    }
+
+    /**
+     * @param slotSize   largest frame accepted; longer frames are counted and discarded
+     * @param classifier picks the frames that must never be dropped, or null for none
+     */
+    public IngestQueue(int slotSize, Classifier classifier) {
+        this.slotSize = slotSize;
+        this.classifier = classifier;
+    }
+
+    /**
+     * Adds a consumer with its own ring and drain thread.
+     *
+     * @param capacity    frames the ring holds
+     * @param sampleEvery for {@link Policy#SAMPLE}, queue one frame in this many; otherwise ignored
+     */
+    public synchronized Subscription subscribe(String name, Policy policy, int capacity,
+                                               int sampleEvery, Consumer consumer) {
+        if (closed) {
+            throw new IllegalStateException("Queue closed");
+        }
+        if (capacity <= 0 || (policy == Policy.SAMPLE && sampleEvery <= 0)) {
+            throw new IllegalArgumentException("Invalid subscription: " + name);
+        }
+        Subscription subscription = new Subscription(name, policy, capacity,
+                policy == Policy.SAMPLE ? sampleEvery : 1, slotSize, consumer);
+        Subscription[] current = subscriptions;
+        Subscription[] grown = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = subscription;
+        subscriptions = grown;
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Removes a consumer. Frames still queued for it are discarded.
+     */
+    public void unsubscribe(Subscription subscription) {
+        synchronized (this) {
+            Subscription[] current = subscriptions;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscription) {
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            Subscription[] shrunk = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, shrunk, 0, index);
+            System.arraycopy(current, index + 1, shrunk, index, shrunk.length - index);
+            subscriptions = shrunk;
+        }
+        subscription.close();
+    }
+
+    /**
+     * Hands one frame to every consumer. Returns once it is queued everywhere, which only
+     * waits for {@link Policy#BLOCK} consumers and when critical frames are backed up.
+     */
+    public void publish(byte[] data, int offset, int length, long receivedNanos) {
+        // One producer at a time, so classification state and ring order stay consistent
+        synchronized (producerLock) {
+            if (length > slotSize) {
+                oversized++;
+                return;
+            }
+            boolean critical = classifier != null && classifier.isCritical(data, offset, length);
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(data, offset, length, receivedNanos, critical);
+            }
+        }
+    }
+
+    public Subscription[] getSubscriptions() {
+        return subscriptions.clone();
+    }
+
+    /** Frames longer than a slot, discarded before reaching any consumer. */
+    public long getOversized() {
+        return oversized;
+    }
+
+    /** Stops every consumer thread; queued frames are discarded. */
+    public void close() {
+        Subscription[] current;
+        synchronized (this) {
+            closed = true;
+            current = subscriptions;
+            subscriptions = new Subscription[0];
+        }
+        for (Subscription subscription : current) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * Appends one line per consumer with its policy, depth and losses, for logs and dumpsys.
+     */
+    public StringBuilder dump(StringBuilder sb) {
+        sb.append("oversized=").append(oversized).append('\n');
+        for (Subscription subscription : subscriptions) {
+            subscription.dump(sb).append('\n');
+        }
+        return sb;
+    }
+
+    /** One queued frame; slots are preallocated and swapped, never copied. */
+    static final class Frame {
+        final byte[] data;
+        int length;
+        long receivedNanos;
+        boolean critical;
+        // Frames published after this one but shed before it was delivered
+        long newerDropped;
+        // The subscription's dropped count when this frame was queued
+        long droppedBefore;
+
+        Frame(int slotSize) {
+            data = new byte[slotSize];
+        }
+    }
+
+    /**
+     * One consumer: a ring of capacity + {@link #CRITICAL_CAPACITY} slots in arrival order, its
+     * drain thread and counters.
+     */
+    public static final class Subscription extends SlotRing<Frame> {
+        private final Policy policy;
+        private final int capacity;
+        private final int sampleEvery;
+        private final Consumer consumer;
+
+        // Guarded by this
+        private int criticalCount;
+        private int sampleCountdown;
+
+        private volatile long dropped;
+        // Value of dropped when the frame being delivered was taken; drain thread only
+        private long droppedBeforeFrame;
+        private volatile long skipped;
+        private volatile long criticalDelivered;
+        private volatile int maxDepth;
+
+        Subscription(String name, Policy policy, int capacity, int sampleEvery, int slotSize,
+                     Consumer consumer) {
+            super(name, "Ingest-", newFrames(capacity + CRITICAL_CAPACITY, slotSize), new Frame(slotSize));
+            this.policy = policy;
+            this.capacity = capacity;
+            this.sampleEvery = sampleEvery;
+            this.consumer = consumer;
+        }
+
+        private static Frame[] newFrames(int count, int slotSize) {
+            Frame[] frames = new Frame[count];
+            for (int i = 0; i < count; i++) {
+                frames[i] = new Frame(slotSize);
+            }
+            return frames;
+        }
+
+        public Policy getPolicy() {
+            return policy;
+        }
+
+        /** Frames lost to overflow. Never includes critical frames. */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * Frames lost to overflow before the one being delivered; call from
+         * {@link Consumer#onFrame}. With {@link Policy#DROP_OLDEST} and
+         * {@link Policy#DROP_NEWEST} the change between two frames is exactly the number
+         * published between them and shed.
+         */
+        public long getDroppedBeforeFrame() {
+            return droppedBeforeFrame;
+        }
+
+        /** Frames left out by {@link Policy#SAMPLE} on purpose. */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getCriticalDelivered() {
+            return criticalDelivered;
+        }
+
+        /** Deepest the ring has been, a measure of how close the consumer came to shedding. */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public StringBuilder dump(StringBuilder sb) {
+            return sb.append(getName()).append(' ').append(policy)
+                    .append(" capacity=").append(capacity)
+                    .append(" depth=").append(getDepth())
+                    .append(" maxDepth=").append(maxDepth)
+                    .append(" offered=").append(offered)
+                    .append(" delivered=").append(delivered)
+                    .append(" dropped=").append(dropped)
+                    .append(" skipped=").append(skipped)
+                    .append(" critical=").append(criticalDelivered)
+                    .append(" blockedMs=").append(blockedNanos / 1_000_000);
+        }
+
+        synchronized void offer(byte[] data, int offset, int length, long receivedNanos,
+                                boolean critical) {
+            if (closed) {
+                return;
+            }
+            offered++;
+            if (critical) {
+                if (isFull(true)) {
+                    awaitSpace(true);
+                    if (closed) {
+                        return;
+                    }
+                }
+                criticalCount++;
+            } else {
+                if (policy == Policy.SAMPLE && sampleCountdown-- > 0) {
+                    skipped++;
+                    return;
+                }
+                sampleCountdown = sampleEvery - 1;
+                if (isFull(false)) {
+                    switch (policy) {
+                        case DROP_NEWEST:
+                            dropped++;
+                            return;
+                        case BLOCK:
+                            awaitSpace(false);
+                            if (closed) {
+                                return;
+                            }
+                            break;
+                        default:
+                            dropOldest();
+                            break;
+                    }
+                }
+            }
+            Frame frame = append();
+            System.arraycopy(data, offset, frame.data, 0, length);
+            frame.length = length;
+            frame.receivedNanos = receivedNanos;
+            frame.critical = critical;
+            frame.newerDropped = 0;
+            frame.droppedBefore = dropped;
+            if (count > maxDepth) {
+                maxDepth = count;
+            }
+            signalConsumer();
+        }
+
+        // Discards the oldest non-critical frame; critical frames queued ahead of it move up
+        // one slot, keeping their order
+        private void dropOldest() {
+            int index = head;
+            while (slots[index].critical) {
+                index = (index + 1) % slots.length;
+            }
+            Frame freed = slots[index];
+            while (index != head) {
+                int previous = (index + slots.length - 1) % slots.length;
+                slots[index] = slots[previous];
+                slots[index].newerDropped++;
+                index = previous;
+            }
+            slots[head] = freed;
+            head = (head + 1) % slots.length;
+            count--;
+            dropped++;
+        }
+
+        @Override
+        boolean isFull(boolean critical) {
+            return critical ? criticalCount == CRITICAL_CAPACITY : count - criticalCount == capacity;
+        }
+
+        @Override
+        void onTaken(Frame frame) {
+            // Dropping the newest frame never sheds one published before a queued frame
+            droppedBeforeFrame = policy == Policy.DROP_NEWEST
+                    ? frame.droppedBefore : dropped - frame.newerDropped;
+            if (frame.critical) {
+                criticalCount--;
+                criticalDelivered++;
+            }
+        }
+
+        @Override
+        void deliver(Frame frame) {
+            consumer.onFrame(frame.data, 0, frame.length, frame.receivedNanos, frame.critical);
+        }
+
+        @Override
+        synchronized void close() {
+            super.close();
+            criticalCount = 0;
+        }
+    }
+}
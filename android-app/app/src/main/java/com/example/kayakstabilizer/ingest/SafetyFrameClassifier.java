@@ -0,0 +1,103 @@
+package com.example.kayakstabilizer.ingest;
+
+import com.example.kayakstabilizer.telemetry.DiagnosticFrameCodec;
+import com.example.kayakstabilizer.telemetry.TelemetryFrameCodec;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Marks the telemetry frames that must reach every consumer: the firmware's ASCII event
+ * notifications (EMERGENCY_STOP, LOW_BATTERY from the BLE firmware; EMERGENCY STOP ACTIVATED,
+ * LOW BATTERY WARNING and Emergency stop reset from the classic one) and any regular frame
+ * whose emergency or low-battery state differs from the previous one. Only changes are critical, so a long
+ * emergency stop does not turn the whole stream into unsheddable traffic.
+ *
+ * Looks at a few bytes rather than decoding. {@link IngestQueue} calls it from one producer at
+ * a time.
+ */
+public final class SafetyFrameClassifier implements IngestQueue.Classifier {
+
+    private static final int SAFETY_FLAGS =
+            TelemetrySnapshot.FLAG_EMERGENCY | TelemetrySnapshot.FLAG_LOW_BATTERY;
+
+    private static final byte[] EVENT_EMERGENCY_STOP = "EMERGENCY_STOP".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_LOW_BATTERY = "LOW_BATTERY".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLASSIC_EMERGENCY_STOP = "EMERGENCY STOP".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLASSIC_LOW_BATTERY = "LOW BATTERY".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLASSIC_EMERGENCY_RESET = "Emergency stop reset".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_EMERGENCY = "EMERGENCY:".getBytes(StandardCharsets.US_ASCII);
+
+    // Written by the producer; reset() may come from another thread
+    private volatile int lastFlags;
+
+    @Override
+    public boolean isCritical(byte[] data, int offset, int length) {
+        if (TelemetryFrameCodec.isBinaryFrame(data, offset, length)) {
+            return changed(data[offset + 1] & SAFETY_FLAGS);
+        }
+        if (DiagnosticFrameCodec.isDiagnosticFrame(data, offset, length)) {
+            // Sheddable by design; safety state comes with the regular frames
+            return false;
+        }
+        if (startsWith(data, offset, length, EVENT_EMERGENCY_STOP)
+                || startsWith(data, offset, length, CLASSIC_EMERGENCY_STOP)) {
+            lastFlags |= TelemetrySnapshot.FLAG_EMERGENCY;
+            return true;
+        }
+        if (startsWith(data, offset, length, EVENT_LOW_BATTERY)
+                || startsWith(data, offset, length, CLASSIC_LOW_BATTERY)) {
+            lastFlags |= TelemetrySnapshot.FLAG_LOW_BATTERY;
+            return true;
+        }
+        if (startsWith(data, offset, length, CLASSIC_EMERGENCY_RESET)) {
+            lastFlags &= ~TelemetrySnapshot.FLAG_EMERGENCY;
+            return true;
+        }
+        int value = indexAfter(data, offset, length, KEY_EMERGENCY);
+        if (value < 0 || value >= offset + length) {
+            return false;
+        }
+        // ASCII telemetry carries no low-battery state; keep the last one
+        int emergency = data[value] == '1' ? TelemetrySnapshot.FLAG_EMERGENCY : 0;
+        return changed((lastFlags & TelemetrySnapshot.FLAG_LOW_BATTERY) | emergency);
+    }
+
+    /** Forgets the last state, e.g. when a new link or replay starts. */
+    public void reset() {
+        lastFlags = 0;
+    }
+
+    private boolean changed(int flags) {
+        boolean changed = flags != lastFlags;
+        lastFlags = flags;
+        return changed;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Index just past the first occurrence of key, or -1
+    private static int indexAfter(byte[] data, int offset, int length, byte[] key) {
+        int last = offset + length - key.length;
+        outer:
+        for (int i = offset; i <= last; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (data[i + j] != key[j]) {
+                    continue outer;
+                }
+            }
+            return i + key.length;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.kayakstabilizer.ingest;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The part of a subscription that {@link IngestQueue} and {@link TelemetryBus} share: a ring
+ * of preallocated slots guarded by this object, and a daemon thread that takes the oldest slot,
+ * swaps in its spare and hands the taken one to the consumer outside the lock. Either side
+ * parks in wait() when it has to and is only notified while parked. Subclasses decide what a
+ * slot holds, when the ring is full for an incoming item and what to do then.
+ *
+ * A consumer that throws is logged and its subscription closed, so a producer waiting on it is
+ * released rather than blocked for good.
+ */
+abstract class SlotRing<T> {
+    private static final Logger LOG = Logger.getLogger(SlotRing.class.getName());
+
+    private final String name;
+    private final Thread thread;
+    // Drain thread only
+    private T spare;
+
+    // Guarded by this
+    final T[] slots;
+    int head;
+    int count;
+    boolean closed;
+    private boolean consumerWaiting;
+    private boolean producerWaiting;
+
+    // Counters, written under the lock
+    volatile long offered;
+    volatile long delivered;
+    volatile long blockedNanos;
+
+    SlotRing(String name, String threadPrefix, T[] slots, T spare) {
+        this.name = name;
+        this.slots = slots;
+        this.spare = spare;
+        thread = new Thread(this::drain, threadPrefix + name);
+        thread.setDaemon(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Items offered while subscribed. */
+    public long getOffered() {
+        return offered;
+    }
+
+    /** Items handed to the consumer. */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /** Total time the producer waited on this subscription. */
+    public long getBlockedNanos() {
+        return blockedNanos;
+    }
+
+    public synchronized int getDepth() {
+        return count;
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** Whether an item, critical or not, has to wait for the consumer; called under the lock. */
+    abstract boolean isFull(boolean critical);
+
+    /** Called under the lock for every slot taken off the ring, before it is delivered. */
+    void onTaken(T slot) {
+    }
+
+    /** Hands a taken slot to the consumer, on the subscription's thread without the lock. */
+    abstract void deliver(T slot);
+
+    /** Under the lock: the slot for the next item, appended at the tail. */
+    final T append() {
+        return slots[(head + count++) % slots.length];
+    }
+
+    /** Under the lock: wakes the consumer after items were appended. */
+    final void signalConsumer() {
+        if (consumerWaiting) {
+            notifyAll();
+        }
+    }
+
+    /** Under the lock: waits until {@link #isFull} is false or the ring is closed. */
+    final void awaitSpace(boolean critical) {
+        long start = System.nanoTime();
+        boolean interrupted = false;
+        while (!closed && isFull(critical)) {
+            producerWaiting = true;
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            producerWaiting = false;
+        }
+        blockedNanos += System.nanoTime() - start;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        count = 0;
+        notifyAll();
+    }
+
+    private void drain() {
+        try {
+            drainLoop();
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Consumer " + name + " failed; it gets no more items", e);
+        } finally {
+            close();
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            T slot;
+            synchronized (this) {
+                while (!closed && count == 0) {
+                    consumerWaiting = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() ends the thread
+                    }
+                    consumerWaiting = false;
+                }
+                if (closed) {
+                    return;
+                }
+                slot = slots[head];
+                slots[head] = spare;
+                head = (head + 1) % slots.length;
+                count--;
+                delivered++;
+                onTaken(slot);
+                if (producerWaiting) {
+                    notifyAll();
+                }
+            }
+            spare = slot;
+            deliver(slot);
+        }
+    }
+}
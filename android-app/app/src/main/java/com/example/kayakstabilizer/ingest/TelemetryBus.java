@@ -0,0 +1,197 @@
+package com.example.kayakstabilizer.ingest;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+/**
+ * Fan-out of decoded telemetry. A frame is decoded once, by whoever owns the decoder, and the
+ * resulting snapshot is published here; every subscriber gets its own copy on its own thread,
+ * so adding a chart, an alarm or a logger costs a copy of a few dozen bytes per frame, not
+ * another decode.
+ *
+ * Each subscriber picks a {@link Delivery}: {@link Delivery#LATEST} keeps one pending snapshot
+ * and replaces it, for displays that only care about the current state; {@link Delivery#ALL}
+ * queues every snapshot in a bounded ring and makes the publisher wait rather than drop one,
+ * for statistics and recorders. Snapshots are preallocated per subscription and reused.
+ */
+public final class TelemetryBus {
+
+    public enum Delivery {
+        /** Conflated: a slow subscriber skips to the newest snapshot. */
+        LATEST,
+        /** Lossless: every snapshot in order; the publisher waits for a full ring. */
+        ALL
+    }
+
+    public interface Subscriber {
+        /**
+         * Called on the subscription's thread. {@code snapshot} is reused and only valid during
+         * the call. With {@link Delivery#LATEST} its fields include those of skipped snapshots.
+         */
+        void onSnapshot(TelemetrySnapshot snapshot);
+    }
+
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile long published;
+    private boolean closed;
+
+    /**
+     * Adds a subscriber with its own thread.
+     *
+     * @param capacity snapshots queued for {@link Delivery#ALL}; ignored for {@link Delivery#LATEST}
+     */
+    public synchronized Subscription subscribe(String name, Delivery delivery, int capacity,
+                                               Subscriber subscriber) {
+        if (closed) {
+            throw new IllegalStateException("Bus closed");
+        }
+        if (delivery == Delivery.ALL && capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        Subscription subscription = new Subscription(name, delivery,
+                delivery == Delivery.ALL ? capacity : 1, subscriber);
+        Subscription[] current = subscriptions;
+        Subscription[] grown = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = subscription;
+        subscriptions = grown;
+        subscription.start();
+        return subscription;
+    }
+
+    /** Removes a subscriber; snapshots still queued for it are discarded. */
+    public void unsubscribe(Subscription subscription) {
+        synchronized (this) {
+            Subscription[] current = subscriptions;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscription) {
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            Subscription[] shrunk = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, shrunk, 0, index);
+            System.arraycopy(current, index + 1, shrunk, index, shrunk.length - index);
+            subscriptions = shrunk;
+        }
+        subscription.close();
+    }
+
+    /**
+     * Hands a decoded snapshot to every subscriber. Single publisher thread; the snapshot is
+     * copied, so the caller can reuse it straight away. Only waits for a full
+     * {@link Delivery#ALL} ring.
+     */
+    public void publish(TelemetrySnapshot snapshot) {
+        published++;
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(snapshot);
+        }
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    /** Stops every subscriber thread; queued snapshots are discarded. */
+    public void close() {
+        Subscription[] current;
+        synchronized (this) {
+            closed = true;
+            current = subscriptions;
+            subscriptions = new Subscription[0];
+        }
+        for (Subscription subscription : current) {
+            subscription.close();
+        }
+    }
+
+    /** Appends one line per subscriber with its delivery, depth and skipped snapshots. */
+    public StringBuilder dump(StringBuilder sb) {
+        sb.append("published=").append(published).append('\n');
+        for (Subscription subscription : subscriptions) {
+            subscription.dump(sb).append('\n');
+        }
+        return sb;
+    }
+
+    /** One subscriber: its snapshot ring, thread and counters. */
+    public static final class Subscription extends SlotRing<TelemetrySnapshot> {
+        private final Delivery delivery;
+        private final Subscriber subscriber;
+
+        private volatile long conflated;
+
+        Subscription(String name, Delivery delivery, int capacity, Subscriber subscriber) {
+            super(name, "Bus-", newSnapshots(capacity), new TelemetrySnapshot());
+            this.delivery = delivery;
+            this.subscriber = subscriber;
+        }
+
+        private static TelemetrySnapshot[] newSnapshots(int count) {
+            TelemetrySnapshot[] snapshots = new TelemetrySnapshot[count];
+            for (int i = 0; i < count; i++) {
+                snapshots[i] = new TelemetrySnapshot();
+            }
+            return snapshots;
+        }
+
+        public Delivery getDelivery() {
+            return delivery;
+        }
+
+        /** Snapshots replaced by a newer one before {@link Delivery#LATEST} delivered them. */
+        public long getConflated() {
+            return conflated;
+        }
+
+        public StringBuilder dump(StringBuilder sb) {
+            return sb.append(getName()).append(' ').append(delivery)
+                    .append(" capacity=").append(slots.length)
+                    .append(" depth=").append(getDepth())
+                    .append(" offered=").append(offered)
+                    .append(" delivered=").append(delivered)
+                    .append(" conflated=").append(conflated)
+                    .append(" blockedMs=").append(blockedNanos / 1_000_000);
+        }
+
+        synchronized void offer(TelemetrySnapshot snapshot) {
+            if (closed) {
+                return;
+            }
+            offered++;
+            if (delivery == Delivery.LATEST) {
+                TelemetrySnapshot pending = slots[0];
+                // A replaced snapshot must not hide fields only it carried
+                int fields = count > 0 ? pending.fields | snapshot.fields : snapshot.fields;
+                if (count > 0) {
+                    conflated++;
+                }
+                pending.copyFrom(snapshot);
+                pending.fields = fields;
+                count = 1;
+            } else {
+                if (isFull(false)) {
+                    awaitSpace(false);
+                    if (closed) {
+                        return;
+                    }
+                }
+                append().copyFrom(snapshot);
+            }
+            signalConsumer();
+        }
+
+        @Override
+        boolean isFull(boolean critical) {
+            return count == slots.length;
+        }
+
+        @Override
+        void deliver(TelemetrySnapshot snapshot) {
+            subscriber.onSnapshot(snapshot);
+        }
+    }
+}
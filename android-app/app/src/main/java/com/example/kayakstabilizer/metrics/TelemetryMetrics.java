@@ -0,0 +1,344 @@
+package com.example.kayakstabilizer.metrics;
+
+import com.example.kayakstabilizer.telemetry.TelemetryFormat;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+/**
+ * End-to-end health of the telemetry path, from sendBLEData() on the ESP32 to the values on
+ * screen. All state is allocated up front; recording a sample never allocates.
+ *
+ * <ul>
+ * <li>inter-arrival: time between notifications on the phone</li>
+ * <li>transit: arrival time minus firmware send time, relative to the fastest frame seen, so
+ *     the unknown clock offset cancels out and what remains is delay added by the link</li>
+ * <li>decode: time spent in the decoder</li>
+ * <li>display latency: notification arrival to the frame that rendered it</li>
+ * <li>sequence gaps and lost frames from the firmware's frame counter</li>
+ * <li>frames the phone shed itself from a full ingest queue; these leave gaps in the counter
+ *     too, but are counted apart from frames lost on the link</li>
+ * <li>frames per second received and actually rendered</li>
+ * <li>diagnostic batches: samples per second and batches lost, from the batch counter</li>
+ * </ul>
+ *
+ * Arrival and decode are recorded on the Bluetooth thread, display on the main thread.
+ */
+public final class TelemetryMetrics {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Histogram interArrival = new Histogram("inter-arrival", "us");
+    private final Histogram transit = new Histogram("transit", "us");
+    private final Histogram decode = new Histogram("decode", "ns");
+    private final Histogram displayLatency = new Histogram("display latency", "us");
+
+    private long notifications;
+    private long decodeErrors;
+    private long lastArrivalNanos;
+
+    // Sequence tracking
+    private int expectedSequence = -1;
+    private long sequenceGaps;
+    private long lostFrames;
+    private long lateFrames;
+
+    // Shed from a full ingest queue, in total and since the last telemetry or diagnostic frame
+    private long queueDroppedFrames;
+    private long queueDropsSinceFrame;
+    private long queueDropsSinceBatch;
+
+    // Smallest (arrival - send) seen, in microseconds, and RFC 3550 style jitter estimate
+    private long minTransitOffsetMicros = Long.MAX_VALUE;
+    private long lastTransitOffsetMicros = Long.MIN_VALUE;
+    private long lastDeviceMillis = -1;
+    private double jitterMicros;
+
+    // Diagnostic stream
+    private int expectedDiagnosticSequence = -1;
+    private long diagnosticBatches;
+    private long diagnosticSamples;
+    private long lostDiagnosticBatches;
+    private final RateCounter diagnosticRate = new RateCounter();
+
+    private final RateCounter receivedRate = new RateCounter();
+    private final RateCounter displayedRate = new RateCounter();
+    private long displayed;
+
+    /** A notification arrived; call before decoding it. */
+    public synchronized void onNotification(long nowNanos) {
+        notifications++;
+        if (lastArrivalNanos != 0) {
+            interArrival.record((nowNanos - lastArrivalNanos) / 1000);
+        }
+        lastArrivalNanos = nowNanos;
+        receivedRate.tick(nowNanos);
+    }
+
+    /**
+     * Records a decode attempt.
+     *
+     * @param snapshot the decoded frame; its {@link TelemetrySnapshot#receivedNanos} must be set
+     */
+    public synchronized void onDecoded(TelemetrySnapshot snapshot, long decodeNanos, boolean success) {
+        decode.record(decodeNanos);
+        if (!success) {
+            decodeErrors++;
+            return;
+        }
+        if (snapshot.has(TelemetrySnapshot.FIELD_SEQUENCE)) {
+            trackSequence(snapshot.sequence);
+        }
+        if (snapshot.has(TelemetrySnapshot.FIELD_DEVICE_TIME)) {
+            trackTransit(snapshot.deviceMillis, snapshot.receivedNanos);
+        }
+    }
+
+    /**
+     * {@code frames} were shed from the ingest queue just before the frame about to be decoded;
+     * call before {@link #onDecoded} or {@link #onDiagnosticBatch} for that frame.
+     */
+    public synchronized void onQueueDropped(long frames) {
+        queueDroppedFrames += frames;
+        queueDropsSinceFrame += frames;
+        queueDropsSinceBatch += frames;
+    }
+
+    /** A diagnostic batch was decoded. */
+    public synchronized void onDiagnosticBatch(int sequence, int samples, long nowNanos) {
+        diagnosticBatches++;
+        diagnosticSamples += samples;
+        diagnosticRate.tick(nowNanos, samples);
+        if (expectedDiagnosticSequence >= 0) {
+            int delta = (sequence - expectedDiagnosticSequence) & 0xFFFF;
+            if (delta < 0x8000) {
+                lostDiagnosticBatches += delta - Math.min(delta, queueDropsSinceBatch);
+            }
+        }
+        queueDropsSinceBatch = 0;
+        expectedDiagnosticSequence = (sequence + 1) & 0xFFFF;
+    }
+
+    /** A snapshot was rendered; call on the main thread after the views were updated. */
+    public synchronized void onDisplayed(TelemetrySnapshot snapshot, long nowNanos) {
+        displayed++;
+        displayedRate.tick(nowNanos);
+        if (snapshot.receivedNanos != 0) {
+            displayLatency.record((nowNanos - snapshot.receivedNanos) / 1000);
+        }
+    }
+
+    private void trackSequence(int sequence) {
+        if (expectedSequence >= 0) {
+            int delta = (sequence - expectedSequence) & 0xFFFF;
+            if (delta >= 0x8000) {
+                // Behind the expected number: a duplicate or reordered frame
+                lateFrames++;
+                return;
+            }
+            // Frames shed from the queue since the last one account for that much of the gap
+            long lost = delta - Math.min(delta, queueDropsSinceFrame);
+            if (lost != 0) {
+                sequenceGaps++;
+                lostFrames += lost;
+            }
+        }
+        queueDropsSinceFrame = 0;
+        expectedSequence = (sequence + 1) & 0xFFFF;
+    }
+
+    private void trackTransit(long deviceMillis, long receivedNanos) {
+        if (deviceMillis < lastDeviceMillis) {
+            // Firmware rebooted or millis() wrapped: the clock offset is no longer valid
+            minTransitOffsetMicros = Long.MAX_VALUE;
+            lastTransitOffsetMicros = Long.MIN_VALUE;
+        }
+        lastDeviceMillis = deviceMillis;
+
+        long offsetMicros = receivedNanos / 1000 - deviceMillis * 1000;
+        if (offsetMicros < minTransitOffsetMicros) {
+            minTransitOffsetMicros = offsetMicros;
+        }
+        transit.record(offsetMicros - minTransitOffsetMicros);
+
+        if (lastTransitOffsetMicros != Long.MIN_VALUE) {
+            long d = Math.abs(offsetMicros - lastTransitOffsetMicros);
+            jitterMicros += (d - jitterMicros) / 16.0;
+        }
+        lastTransitOffsetMicros = offsetMicros;
+    }
+
+    /** Forgets everything, e.g. on reconnect. */
+    public synchronized void reset() {
+        interArrival.reset();
+        transit.reset();
+        decode.reset();
+        displayLatency.reset();
+        notifications = 0;
+        decodeErrors = 0;
+        lastArrivalNanos = 0;
+        expectedSequence = -1;
+        sequenceGaps = 0;
+        lostFrames = 0;
+        lateFrames = 0;
+        queueDroppedFrames = 0;
+        queueDropsSinceFrame = 0;
+        queueDropsSinceBatch = 0;
+        minTransitOffsetMicros = Long.MAX_VALUE;
+        lastTransitOffsetMicros = Long.MIN_VALUE;
+        lastDeviceMillis = -1;
+        jitterMicros = 0;
+        expectedDiagnosticSequence = -1;
+        diagnosticBatches = 0;
+        diagnosticSamples = 0;
+        lostDiagnosticBatches = 0;
+        diagnosticRate.reset();
+        receivedRate.reset();
+        displayedRate.reset();
+        displayed = 0;
+    }
+
+    /**
+     * Appends a compact multi-line summary for the debug overlay. Allocation-free when
+     * {@code sb} has enough capacity.
+     */
+    public synchronized StringBuilder appendOverlay(StringBuilder sb, long nowNanos) {
+        sb.append("rx ").append(receivedRate.perSecond(nowNanos))
+                .append("/s  shown ").append(displayedRate.perSecond(nowNanos)).append("/s\n");
+        sb.append("lost ").append(lostFrames).append(" in ").append(sequenceGaps)
+                .append(" gaps  shed ").append(queueDroppedFrames)
+                .append("  late ").append(lateFrames)
+                .append("  bad ").append(decodeErrors).append('\n');
+        sb.append("jitter ");
+        TelemetryFormat.appendFixed(sb, (float) (jitterMicros / 1000.0), 1).append(" ms  transit p99 ");
+        TelemetryFormat.appendFixed(sb, transit.getPercentile(0.99) / 1000f, 1).append(" ms\n");
+        sb.append("age p50 ");
+        TelemetryFormat.appendFixed(sb, displayLatency.getPercentile(0.50) / 1000f, 1).append(" p99 ");
+        TelemetryFormat.appendFixed(sb, displayLatency.getPercentile(0.99) / 1000f, 1).append(" ms");
+        if (diagnosticBatches > 0) {
+            sb.append("\ndiag ").append(diagnosticRate.perSecond(nowNanos))
+                    .append(" samples/s  lost ").append(lostDiagnosticBatches).append(" batches");
+        }
+        return sb;
+    }
+
+    /**
+     * Appends the full report, one line per metric, for logs and dumpsys.
+     */
+    public synchronized StringBuilder dump(StringBuilder sb, long nowNanos) {
+        sb.append("notifications=").append(notifications)
+                .append(" decodeErrors=").append(decodeErrors)
+                .append(" displayed=").append(displayed).append('\n');
+        sb.append("receivedPerSecond=").append(receivedRate.perSecond(nowNanos))
+                .append(" displayedPerSecond=").append(displayedRate.perSecond(nowNanos)).append('\n');
+        sb.append("sequenceGaps=").append(sequenceGaps)
+                .append(" lostFrames=").append(lostFrames)
+                .append(" lateFrames=").append(lateFrames)
+                .append(" queueDroppedFrames=").append(queueDroppedFrames).append('\n');
+        sb.append("jitterUs=").append(Math.round(jitterMicros)).append('\n');
+        sb.append("diagnosticBatches=").append(diagnosticBatches)
+                .append(" diagnosticSamples=").append(diagnosticSamples)
+                .append(" lostDiagnosticBatches=").append(lostDiagnosticBatches)
+                .append(" diagnosticSamplesPerSecond=").append(diagnosticRate.perSecond(nowNanos)).append('\n');
+        interArrival.appendSummary(sb).append('\n');
+        transit.appendSummary(sb).append('\n');
+        decode.appendSummary(sb).append('\n');
+        displayLatency.appendSummary(sb).append('\n');
+        return sb;
+    }
+
+    public Histogram getInterArrival() {
+        return interArrival;
+    }
+
+    public Histogram getTransit() {
+        return transit;
+    }
+
+    public Histogram getDecode() {
+        return decode;
+    }
+
+    public Histogram getDisplayLatency() {
+        return displayLatency;
+    }
+
+    public synchronized long getLostFrames() {
+        return lostFrames;
+    }
+
+    /** Frames shed from a full ingest queue on the phone; not part of {@link #getLostFrames()}. */
+    public synchronized long getQueueDroppedFrames() {
+        return queueDroppedFrames;
+    }
+
+    public synchronized long getSequenceGaps() {
+        return sequenceGaps;
+    }
+
+    public synchronized long getLateFrames() {
+        return lateFrames;
+    }
+
+    public synchronized long getDiagnosticSamples() {
+        return diagnosticSamples;
+    }
+
+    public synchronized long getLostDiagnosticBatches() {
+        return lostDiagnosticBatches;
+    }
+
+    public synchronized long getDecodeErrors() {
+        return decodeErrors;
+    }
+
+    public synchronized long getNotifications() {
+        return notifications;
+    }
+
+    public synchronized int getDisplayedPerSecond(long nowNanos) {
+        return displayedRate.perSecond(nowNanos);
+    }
+
+    public synchronized int getReceivedPerSecond(long nowNanos) {
+        return receivedRate.perSecond(nowNanos);
+    }
+
+    /** Events in the last complete one-second window. */
+    private static final class RateCounter {
+        private long windowStart;
+        private int current;
+        private int last;
+
+        void tick(long nowNanos) {
+            tick(nowNanos, 1);
+        }
+
+        void tick(long nowNanos, int events) {
+            roll(nowNanos);
+            current += events;
+        }
+
+        int perSecond(long nowNanos) {
+            roll(nowNanos);
+            return last;
+        }
+
+        void reset() {
+            windowStart = 0;
+            current = 0;
+            last = 0;
+        }
+
+        private void roll(long nowNanos) {
+            if (windowStart == 0) {
+                windowStart = nowNanos;
+                return;
+            }
+            long elapsed = nowNanos - windowStart;
+            if (elapsed >= NANOS_PER_SECOND) {
+                // A window with no events at all in between reads as zero
+                last = elapsed >= 2 * NANOS_PER_SECOND ? 0 : current;
+                current = 0;
+                windowStart = elapsed >= 2 * NANOS_PER_SECOND ? nowNanos : windowStart + NANOS_PER_SECOND;
+            }
+        }
+    }
+}
@@ -0,0 +1,976 @@
+package com.example.kayakstabilizer.service;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothManager;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.kayakstabilizer.MainActivity;
+import com.example.kayakstabilizer.R;
+import com.example.kayakstabilizer.alarm.AlarmEngine;
+import com.example.kayakstabilizer.alarm.AlarmRule;
+import com.example.kayakstabilizer.ble.BleConnectionManager;
+import com.example.kayakstabilizer.command.CommandClient;
+import com.example.kayakstabilizer.command.CommandDispatcher;
+import com.example.kayakstabilizer.command.CommandException;
+import com.example.kayakstabilizer.command.CommandFuture;
+import com.example.kayakstabilizer.command.CommandResult;
+import com.example.kayakstabilizer.ingest.IngestQueue;
+import com.example.kayakstabilizer.ingest.SafetyFrameClassifier;
+import com.example.kayakstabilizer.ingest.TelemetryBus;
+import com.example.kayakstabilizer.metrics.TelemetryMetrics;
+import com.example.kayakstabilizer.session.SessionReader;
+import com.example.kayakstabilizer.session.SessionRecorder;
+import com.example.kayakstabilizer.session.SessionReplayer;
+import com.example.kayakstabilizer.stats.TelemetryStats;
+import com.example.kayakstabilizer.telemetry.DiagnosticBatch;
+import com.example.kayakstabilizer.telemetry.DiagnosticFrameCodec;
+import com.example.kayakstabilizer.telemetry.DiagnosticHistory;
+import com.example.kayakstabilizer.telemetry.TelemetryDecoder;
+import com.example.kayakstabilizer.telemetry.TelemetryHistory;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the stabilizer link for as long as the user wants it, independent of any Activity:
+ * connection handling runs on the service's own handler thread, telemetry is handed from the
+ * thread it arrives on to a bounded {@link IngestQueue} whose consumers decode, store and record
+ * it, each decoded frame is fanned out once through a {@link TelemetryBus}, and commands go
+ * through the service's dispatcher.
+ * While a link is wanted the service is started in the foreground, so rotation and
+ * backgrounding do not interrupt data; Activities bind to it and register an {@link Observer}
+ * or observe {@link #getLatestTelemetry()}.
+ */
+public final class TelemetryService extends Service {
+    private static final String TAG = "TelemetryService";
+
+    // Telemetry history kept in memory for charts and analysis
+    private static final int HISTORY_SECONDS = 10 * 60;
+    private static final int HISTORY_RATE_HZ = 50;
+
+    // Diagnostic stream: the firmware's IMU rate, batched per notification
+    private static final int DIAGNOSTIC_SAMPLES_PER_BATCH = 10;
+    private static final int DIAGNOSTIC_HISTORY_SECONDS = 2 * 60;
+    private static final int DIAGNOSTIC_RATE_HZ = 100;
+    // Regular frames stay out of the history while batches keep arriving within this time
+    private static final long DIAGNOSTIC_HOLD_MS = 1000;
+
+    private static final String NOTIFICATION_CHANNEL_ID = "telemetry";
+    private static final int NOTIFICATION_ID = 1;
+
+    // Ingestion consumers, both shed under load (safety frames excepted). The recorder keeps
+    // what it has queued and notes each stretch it lost in the session file; it never makes
+    // the GATT binder thread wait, as that thread also delivers command completions.
+    private static final int RECORDER_QUEUE_CAPACITY = 256;
+    private static final int TELEMETRY_QUEUE_CAPACITY = 64;
+    // Decoded snapshots queued for the statistics, which must see every frame
+    private static final int STATS_QUEUE_CAPACITY = 64;
+    private static final int ALARM_QUEUE_CAPACITY = 64;
+
+    public interface Observer {
+        /** Called on the main thread, and once with the current status when added. */
+        void onLinkStatusChanged(BleConnectionManager.State state, int attempt, long retryDelayMillis);
+
+        /**
+         * Called on the bus's observer thread with the newest decoded frame, live or replayed;
+         * frames decoded while observers are busy are conflated into the next call.
+         * {@code snapshot} is reused and only valid during the call.
+         */
+        void onTelemetry(TelemetrySnapshot snapshot);
+
+        /**
+         * Called on the telemetry consumer thread after samples were added to
+         * {@link #getHistory()} or {@link #getDiagnosticHistory()}. Must not block.
+         */
+        void onHistoryAppended();
+
+        /**
+         * Called on the main thread with the answer to each SET_PID sent by
+         * {@link #setPid(float, float, float)}: the firmware's ack or nack with the gains in
+         * effect, or the reason there was none.
+         */
+        void onGainsResult(CommandResult result, CommandException error);
+
+        /**
+         * Called on the main thread when an alarm is raised or cleared, after debouncing and
+         * rate limiting; never for frames that leave the alarm state unchanged.
+         */
+        void onAlarmChanged(AlarmRule rule, boolean active, float value);
+    }
+
+    public final class LocalBinder extends Binder {
+        public TelemetryService getService() {
+            return TelemetryService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+
+    private HandlerThread linkThread;
+    private BleConnectionManager connectionManager;
+
+    // Binary command timeouts and urgent command retries run on their own daemon thread
+    private final ScheduledExecutorService commandTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CommandTimeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Serialises GATT writes; unsent slider values are replaced by newer ones
+    private final CommandDispatcher commandDispatcher =
+            new CommandDispatcher(this::writeCommand, this::writeCommandFrame, commandTimer);
+
+    // Binary commands with acknowledgements
+    private final CommandClient commandClient = new CommandClient(commandDispatcher, commandTimer);
+
+    // Gains the user asked for, guarded by pidLock. At most one SET_PID awaits its answer;
+    // values set meanwhile wait behind it and only the newest are sent.
+    private final Object pidLock = new Object();
+    private boolean hasWantedGains;
+    private float wantedKp, wantedKi, wantedKd;
+    private boolean pidInFlight;
+    private boolean pidChangedWhileInFlight;
+    // Firmware that predates the binary protocol never answers; fall back to SET_KP/KI/KD
+    private volatile boolean binaryCommands = true;
+    private volatile boolean binaryConfirmed;
+
+    // Last value of each stabilizer setting, re-sent after a reconnect
+    private final Map<String, String> restorableCommands = new LinkedHashMap<>();
+    private boolean hasConnected = false;
+
+    // Bounded hand-off from the GATT callback and replay threads to the consumers below
+    private final SafetyFrameClassifier safetyClassifier = new SafetyFrameClassifier();
+    private final IngestQueue ingestQueue = new IngestQueue(safetyClassifier);
+    // Decoded once on the telemetry consumer thread, then copied to each subscriber's thread
+    private final TelemetryBus telemetryBus = new TelemetryBus();
+
+    // Telemetry decoding state, reused for every frame (telemetry consumer thread only)
+    private volatile IngestQueue.Subscription telemetrySubscription;
+    private volatile IngestQueue.Subscription recorderSubscription;
+    // Recorder consumer thread only
+    private long recorderDroppedSeen;
+    private long telemetryDroppedSeen;
+    private final TelemetrySnapshot telemetrySnapshot = new TelemetrySnapshot();
+    private final TelemetryHistory telemetryHistory =
+            TelemetryHistory.forDuration(HISTORY_SECONDS, HISTORY_RATE_HZ);
+    private final DiagnosticBatch diagnosticBatch = new DiagnosticBatch();
+    private final DiagnosticHistory diagnosticHistory =
+            DiagnosticHistory.forDuration(DIAGNOSTIC_HISTORY_SECONDS, DIAGNOSTIC_RATE_HZ);
+    private long lastHistoryMillis;
+    private long lastDiagnosticMillis = Long.MIN_VALUE / 2;
+    private volatile boolean diagnosticsWanted;
+
+    // Newest state for lifecycle-aware consumers, fed by the bus's observer thread. The two
+    // snapshots alternate, so the one the LiveData holds is never written; a new one is posted
+    // only once the previous one reached the main thread, and skipped fields are carried over.
+    private final MutableLiveData<TelemetrySnapshot> latestTelemetry = new MutableLiveData<>();
+    private final TelemetrySnapshot[] latestTelemetryBuffers = {new TelemetrySnapshot(), new TelemetrySnapshot()};
+    private final AtomicBoolean latestTelemetryPending = new AtomicBoolean();
+    private volatile TelemetrySnapshot latestTelemetryPosted;
+    private int latestTelemetryIndex;
+    private int latestTelemetrySkippedFields;
+    private final Runnable latestTelemetryDelivery = () -> {
+        latestTelemetry.setValue(latestTelemetryPosted);
+        latestTelemetryPending.set(false);
+    };
+
+    // Sliding-window roll/pitch/battery figures for the status area
+    private final TelemetryStats telemetryStats = new TelemetryStats();
+
+    // Low battery and emergency stop, evaluated on the bus's alarm thread; only changes are
+    // posted to the main thread. A reset is requested here and carried out on that thread.
+    private final AlarmEngine alarmEngine = new AlarmEngine(this::onAlarmChanged,
+            AlarmRule.lowBattery(), AlarmRule.emergencyStop());
+    private volatile boolean alarmResetPending;
+
+    // Latency, jitter and loss of the telemetry path; shown by the debug overlay and dumpsys
+    private final TelemetryMetrics telemetryMetrics = new TelemetryMetrics();
+
+    // Session recording while connected, replay of the last session while not
+    private volatile SessionRecorder sessionRecorder;
+    private SessionReplayer sessionReplayer;
+    private SessionReader replayReader;
+    private volatile boolean replaying;
+
+    // Last link status, replayed to observers as they attach (main thread)
+    private BleConnectionManager.State linkState = BleConnectionManager.State.DISCONNECTED;
+    private int linkAttempt;
+    private long linkRetryDelayMillis;
+    private boolean foreground;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        BluetoothManager bluetoothManager = (BluetoothManager) getSystemService(Context.BLUETOOTH_SERVICE);
+        BluetoothAdapter adapter = bluetoothManager.getAdapter();
+
+        linkThread = new HandlerThread("TelemetryLink");
+        linkThread.start();
+        connectionManager = new BleConnectionManager(this, adapter, linkThread.getLooper());
+        connectionManager.setStatusListener((state, attempt, retryDelayMillis) ->
+                mainHandler.post(() -> onLinkStatusChanged(state, attempt, retryDelayMillis)));
+
+        recorderSubscription = ingestQueue.subscribe("recorder", IngestQueue.Policy.DROP_NEWEST,
+                RECORDER_QUEUE_CAPACITY, 0, (data, offset, length, receivedNanos, critical) -> {
+                    IngestQueue.Subscription subscription = recorderSubscription;
+                    long dropped = subscription != null ? subscription.getDroppedBeforeFrame() : 0;
+                    long missed = dropped - recorderDroppedSeen;
+                    recorderDroppedSeen = dropped;
+                    if (!replaying) {
+                        recordTelemetry(data, offset, length, receivedNanos, missed);
+                    }
+                });
+        telemetrySubscription = ingestQueue.subscribe("telemetry", IngestQueue.Policy.DROP_OLDEST, TELEMETRY_QUEUE_CAPACITY, 0,
+                (data, offset, length, receivedNanos, critical) -> ingest(data, offset, length, receivedNanos));
+        telemetryBus.subscribe("stats", TelemetryBus.Delivery.ALL, STATS_QUEUE_CAPACITY,
+                snapshot -> telemetryStats.update(elapsedMillisAt(snapshot.receivedNanos), snapshot));
+        telemetryBus.subscribe("alarms", TelemetryBus.Delivery.ALL, ALARM_QUEUE_CAPACITY, snapshot -> {
+            if (alarmResetPending) {
+                alarmResetPending = false;
+                alarmEngine.reset();
+            }
+            alarmEngine.evaluate(elapsedMillisAt(snapshot.receivedNanos), snapshot);
+        });
+        telemetryBus.subscribe("observers", TelemetryBus.Delivery.LATEST, 0, snapshot -> {
+            for (Observer observer : observers) {
+                observer.onTelemetry(snapshot);
+            }
+            postLatestTelemetry(snapshot);
+        });
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        startInForeground();
+        // Without a wanted link there is nothing to resume after the process is killed
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mainHandler.removeCallbacksAndMessages(null);
+        stopReplay();
+        ingestQueue.close();
+        telemetryBus.close();
+        commandTimer.shutdownNow();
+        stopRecording();
+        BleConnectionManager manager = connectionManager;
+        new Handler(linkThread.getLooper()).post(manager::close);
+        linkThread.quitSafely();
+    }
+
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+        observer.onLinkStatusChanged(linkState, linkAttempt, linkRetryDelayMillis);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    public void connect(BluetoothDevice device) {
+        stopReplay();
+        synchronized (restorableCommands) {
+            restorableCommands.clear();
+            hasConnected = false;
+        }
+        synchronized (pidLock) {
+            hasWantedGains = false;
+        }
+        keepRunning();
+        connectionManager.connect(device, linkListener, SystemClock.elapsedRealtime());
+        Log.d(TAG, "Connecting to: " + device.getAddress());
+    }
+
+    /**
+     * Connects to the boat from the last session without scanning.
+     *
+     * @return false if there is no cached device or a link is already wanted
+     */
+    public boolean connectToCachedDevice(long requestedAtMillis) {
+        if (connectionManager.getState() != BleConnectionManager.State.DISCONNECTED
+                || connectionManager.getCachedAddress() == null) {
+            return false;
+        }
+        stopReplay();
+        keepRunning();
+        if (!connectionManager.connectToCachedDevice(linkListener, requestedAtMillis)) {
+            return false;
+        }
+        Log.d(TAG, "Connecting to cached device: " + connectionManager.getCachedAddress());
+        return true;
+    }
+
+    /** Disconnects, or cancels a pending connect or reconnect. */
+    public void disconnect() {
+        connectionManager.disconnect();
+    }
+
+    public BleConnectionManager.State getLinkState() {
+        return connectionManager.getState();
+    }
+
+    public boolean isConnected() {
+        return connectionManager.isConnected();
+    }
+
+    public long getLastTimeToConnectMillis() {
+        return connectionManager.getLastTimeToConnectMillis();
+    }
+
+    public void sendCommand(String key, String command) {
+        if (!isConnected()) {
+            return;
+        }
+        synchronized (restorableCommands) {
+            restorableCommands.put(key, command);
+        }
+        commandDispatcher.submit(key, command);
+    }
+
+    /**
+     * Sets all three gains as one atomic SET_PID; the answer reaches
+     * {@link Observer#onGainsResult}. While one is awaiting its answer, later calls only update
+     * the values sent next, so dragging a slider sends the first and the last.
+     */
+    public void setPid(float kp, float ki, float kd) {
+        if (!isConnected()) {
+            return;
+        }
+        synchronized (pidLock) {
+            wantedKp = kp;
+            wantedKi = ki;
+            wantedKd = kd;
+            hasWantedGains = true;
+            if (pidInFlight) {
+                pidChangedWhileInFlight = true;
+                return;
+            }
+            pidInFlight = true;
+        }
+        sendWantedGains();
+    }
+
+    /** Pipelined binary commands, e.g. GET_STATUS. */
+    public CommandClient getCommandClient() {
+        return commandClient;
+    }
+
+    public void emergencyStop() {
+        if (isConnected()) {
+            commandDispatcher.submitUrgent("EMERGENCY_STOP");
+        }
+    }
+
+    public TelemetryMetrics getMetrics() {
+        return telemetryMetrics;
+    }
+
+    /** Decoded telemetry for further consumers, e.g. alarms or analytics. */
+    public TelemetryBus getBus() {
+        return telemetryBus;
+    }
+
+    /**
+     * The newest decoded state, conflated to what the main thread keeps up with. The snapshot
+     * is reused: read it in the observer, do not keep it.
+     */
+    public LiveData<TelemetrySnapshot> getLatestTelemetry() {
+        return latestTelemetry;
+    }
+
+    public TelemetryHistory getHistory() {
+        return telemetryHistory;
+    }
+
+    /** Full-rate raw IMU and servo samples while the diagnostic stream is on. */
+    public DiagnosticHistory getDiagnosticHistory() {
+        return diagnosticHistory;
+    }
+
+    /**
+     * Turns the firmware's diagnostic stream on or off; it is turned on again after a
+     * reconnect. While it runs, the history fills with every IMU sample instead of one per
+     * telemetry frame.
+     *
+     * @return false if the link cannot carry it (an MTU too small for one sample)
+     */
+    public boolean setDiagnostics(boolean enabled) {
+        diagnosticsWanted = enabled;
+        if (!isConnected()) {
+            return true;
+        }
+        return sendDiagnostics(enabled);
+    }
+
+    public TelemetryStats getStats() {
+        return telemetryStats;
+    }
+
+    private void keepRunning() {
+        // Started, not just bound: the link outlives unbinding Activities
+        ContextCompat.startForegroundService(this, new Intent(this, TelemetryService.class));
+    }
+
+    private void startInForeground() {
+        if (foreground) {
+            return;
+        }
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE : 0;
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(), type);
+        foreground = true;
+    }
+
+    private void stopInForeground() {
+        if (foreground) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            foreground = false;
+        }
+        // Destroyed once the last Activity unbinds
+        stopSelf();
+    }
+
+    private Notification buildNotification() {
+        NotificationManager notificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && notificationManager.getNotificationChannel(NOTIFICATION_CHANNEL_ID) == null) {
+            notificationManager.createNotificationChannel(new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.telemetry_channel_name), NotificationManager.IMPORTANCE_LOW));
+        }
+        PendingIntent openApp = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_data_bluetooth)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(describeLinkState())
+                .setContentIntent(openApp)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+    }
+
+    private String describeLinkState() {
+        switch (linkState) {
+            case CONNECTED:
+                return getString(R.string.connected);
+            case WAITING_TO_RECONNECT:
+                return getString(R.string.reconnecting_attempt, linkAttempt);
+            case DISCONNECTED:
+                return getString(R.string.disconnected);
+            default:
+                return getString(R.string.connecting);
+        }
+    }
+
+    private void onLinkStatusChanged(BleConnectionManager.State state, int attempt, long retryDelayMillis) {
+        linkState = state;
+        linkAttempt = attempt;
+        linkRetryDelayMillis = retryDelayMillis;
+        for (Observer observer : observers) {
+            observer.onLinkStatusChanged(state, attempt, retryDelayMillis);
+        }
+        if (state == BleConnectionManager.State.DISCONNECTED) {
+            stopInForeground();
+        } else if (foreground) {
+            NotificationManager notificationManager =
+                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager.notify(NOTIFICATION_ID, buildNotification());
+        }
+    }
+
+    private final StabilizerTransport.Listener linkListener = new StabilizerTransport.Listener() {
+        @Override
+        public void onConnectionStateChanged(boolean connected) {
+            // Delivered on the link thread
+            if (connected) {
+                safetyClassifier.reset();
+                telemetryMetrics.reset();
+                telemetryStats.reset();
+                alarmResetPending = true;
+                startRecording();
+                boolean reconnect;
+                synchronized (restorableCommands) {
+                    reconnect = hasConnected;
+                    hasConnected = true;
+                }
+                binaryCommands = true;
+                binaryConfirmed = false;
+                if (reconnect) {
+                    restoreSettings();
+                }
+                if (diagnosticsWanted) {
+                    sendDiagnostics(true);
+                }
+                Log.d(TAG, "Connected to GATT server");
+            } else {
+                commandDispatcher.reset();
+                commandClient.failAll(CommandException.Reason.DISCONNECTED);
+                stopRecording();
+                Log.d(TAG, "Disconnected from GATT server");
+            }
+        }
+
+        @Override
+        public void onTelemetry(byte[] data, int offset, int length) {
+            // GATT callback thread: copy out and return
+            if (commandClient.onResponse(data, offset, length)) {
+                binaryConfirmed = true;
+                return;
+            }
+            long receivedNanos = System.nanoTime();
+            telemetryMetrics.onNotification(receivedNanos);
+            ingestQueue.publish(data, offset, length, receivedNanos);
+        }
+
+        @Override
+        public void onCommandWritten(boolean success) {
+            commandDispatcher.onWriteComplete(success);
+        }
+    };
+
+    // The firmware starts from its defaults after a power cycle, so put back what the user set
+    private void restoreSettings() {
+        synchronized (restorableCommands) {
+            for (Map.Entry<String, String> entry : restorableCommands.entrySet()) {
+                commandDispatcher.submit(entry.getKey(), entry.getValue());
+            }
+            Log.d(TAG, "Restored " + restorableCommands.size() + " settings after reconnect");
+        }
+        synchronized (pidLock) {
+            if (!hasWantedGains || pidInFlight) {
+                return;
+            }
+            pidInFlight = true;
+        }
+        sendWantedGains();
+    }
+
+    private boolean sendDiagnostics(boolean enabled) {
+        int samples = enabled ? Math.min(DIAGNOSTIC_SAMPLES_PER_BATCH,
+                DiagnosticFrameCodec.samplesForMtu(connectionManager.getMtu())) : 0;
+        if (enabled && samples == 0) {
+            Log.w(TAG, "MTU " + connectionManager.getMtu() + " too small for diagnostics");
+            return false;
+        }
+        commandClient.setDiagnostics(samples).addListener((future, result, error) -> {
+            if (error != null || !result.isAck()) {
+                Log.w(TAG, "SET_DIAGNOSTICS failed: " + (error != null ? error.getMessage() : result));
+            }
+        });
+        return true;
+    }
+
+    private void sendWantedGains() {
+        float kp, ki, kd;
+        synchronized (pidLock) {
+            kp = wantedKp;
+            ki = wantedKi;
+            kd = wantedKd;
+            pidChangedWhileInFlight = false;
+        }
+        if (binaryCommands) {
+            commandClient.setPid(kp, ki, kd).addListener(pidListener);
+            return;
+        }
+        // Three writes the firmware applies one at a time, with no confirmation
+        commandDispatcher.submit("SET_KP", "SET_KP:" + kp);
+        commandDispatcher.submit("SET_KI", "SET_KI:" + ki);
+        commandDispatcher.submit("SET_KD", "SET_KD:" + kd);
+        synchronized (pidLock) {
+            pidInFlight = false;
+        }
+    }
+
+    // Called on the GATT callback or timeout thread
+    private final CommandFuture.Listener pidListener = (future, result, error) -> {
+        boolean fallBack = error != null && error.getReason() == CommandException.Reason.TIMEOUT
+                && !binaryConfirmed;
+        if (fallBack) {
+            Log.w(TAG, "No answer to SET_PID; using ASCII gain commands");
+            binaryCommands = false;
+        } else {
+            mainHandler.post(() -> {
+                for (Observer observer : observers) {
+                    observer.onGainsResult(result, error);
+                }
+            });
+        }
+        boolean sendAgain;
+        synchronized (pidLock) {
+            sendAgain = fallBack || (pidChangedWhileInFlight
+                    && (error == null || error.getReason() != CommandException.Reason.DISCONNECTED));
+            pidInFlight = sendAgain;
+        }
+        if (sendAgain) {
+            sendWantedGains();
+        }
+    };
+
+    // Alarm thread; transitions are rare, so posting each one is cheap
+    private void onAlarmChanged(AlarmRule rule, boolean active, float value, long timeMillis) {
+        Log.w(TAG, "Alarm " + rule.name + (active ? " raised" : " cleared") + " at " + value);
+        mainHandler.post(() -> {
+            for (Observer observer : observers) {
+                observer.onAlarmChanged(rule, active, value);
+            }
+        });
+    }
+
+    // Called by the dispatcher once the previous write has completed
+    private boolean writeCommand(String command) {
+        boolean started = connectionManager.writeCommand(command);
+        Log.d(TAG, "Sent command: " + command);
+        if (started) {
+            recordCommand(command);
+        }
+        return started;
+    }
+
+    private boolean writeCommandFrame(byte[] frame) {
+        boolean started = connectionManager.writeCommand(frame);
+        if (started) {
+            recordCommand(frame);
+        }
+        return started;
+    }
+
+    // Runs on the telemetry consumer thread: the only place frames are decoded
+    private void ingest(byte[] data, int offset, int length, long receivedNanos) {
+        IngestQueue.Subscription subscription = telemetrySubscription;
+        if (subscription != null && subscription.getDroppedBeforeFrame() != telemetryDroppedSeen) {
+            telemetryMetrics.onQueueDropped(subscription.getDroppedBeforeFrame() - telemetryDroppedSeen);
+            telemetryDroppedSeen = subscription.getDroppedBeforeFrame();
+        }
+        if (DiagnosticFrameCodec.isDiagnosticFrame(data, offset, length)) {
+            ingestDiagnostics(data, offset, length, receivedNanos);
+            return;
+        }
+        TelemetrySnapshot snapshot = telemetrySnapshot;
+        snapshot.receivedNanos = receivedNanos;
+        long decodeStart = System.nanoTime();
+        boolean decoded = TelemetryDecoder.decode(data, offset, length, snapshot);
+        telemetryMetrics.onDecoded(snapshot, System.nanoTime() - decodeStart, decoded);
+        if (!decoded) {
+            Log.e(TAG, "Error parsing sensor data: " + new String(data, offset, length));
+            if (snapshot.fields == 0) {
+                return;
+            }
+        }
+        long nowMillis = SystemClock.elapsedRealtime();
+        // Event frames (EMERGENCY_STOP, LOW_BATTERY) carry no attitude and are not samples;
+        // while diagnostics run, the batches fill the history instead
+        if (snapshot.has(TelemetrySnapshot.FIELD_ROLL)
+                && nowMillis - lastDiagnosticMillis >= DIAGNOSTIC_HOLD_MS) {
+            lastHistoryMillis = Math.max(lastHistoryMillis, nowMillis);
+            telemetryHistory.append(lastHistoryMillis, snapshot);
+            for (Observer observer : observers) {
+                observer.onHistoryAppended();
+            }
+        }
+        telemetryBus.publish(snapshot);
+    }
+
+    // Telemetry consumer thread. Samples are placed on the phone clock by their age relative to
+    // the last one in the batch, which arrived now; never earlier than the previous sample.
+    private void ingestDiagnostics(byte[] data, int offset, int length, long receivedNanos) {
+        DiagnosticBatch batch = diagnosticBatch;
+        if (!DiagnosticFrameCodec.decode(data, offset, length, batch) || batch.count == 0) {
+            telemetryMetrics.onDecoded(telemetrySnapshot, 0, false);
+            return;
+        }
+        telemetryMetrics.onDiagnosticBatch(batch.sequence, batch.count, receivedNanos);
+        long nowMillis = SystemClock.elapsedRealtime();
+        lastDiagnosticMillis = nowMillis;
+        long newestDeviceMillis = batch.deviceMillis[batch.count - 1];
+        float battery = telemetrySnapshot.batteryVoltage;
+        int flags = telemetrySnapshot.packFlags();
+        for (int i = 0; i < batch.count; i++) {
+            long millis = Math.max(lastHistoryMillis,
+                    nowMillis - (newestDeviceMillis - batch.deviceMillis[i]));
+            lastHistoryMillis = millis;
+            diagnosticHistory.append(millis, batch, i);
+            telemetryHistory.append(millis, batch.roll[i], batch.pitch[i], battery, flags);
+        }
+        for (Observer observer : observers) {
+            observer.onHistoryAppended();
+        }
+    }
+
+    private File getSessionDir() {
+        File dir = new File(getFilesDir(), "sessions");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Cannot create session directory: " + dir);
+        }
+        return dir;
+    }
+
+    private void startRecording() {
+        stopRecording();
+        File file = new File(getSessionDir(), "session_" + System.currentTimeMillis() + ".kses");
+        try {
+            sessionRecorder = new SessionRecorder(file, SystemClock.elapsedRealtime(),
+                    SessionRecorder.DEFAULT_FLUSH_INTERVAL_MS);
+            Log.d(TAG, "Recording session to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot start session recording", e);
+        }
+    }
+
+    private void stopRecording() {
+        SessionRecorder recorder = sessionRecorder;
+        sessionRecorder = null;
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing session recording", e);
+            }
+        }
+    }
+
+    // missedFrames were shed by the recorder's queue just before this frame
+    private void recordTelemetry(byte[] data, int offset, int length, long receivedNanos, long missedFrames) {
+        SessionRecorder recorder = sessionRecorder;
+        if (recorder != null) {
+            try {
+                // Stamp with the arrival time, not the time the frame left the queue
+                long timestampMillis = elapsedMillisAt(receivedNanos);
+                if (missedFrames > 0) {
+                    recorder.recordGap(timestampMillis, missedFrames);
+                }
+                recorder.recordTelemetry(timestampMillis, data, offset, length);
+            } catch (IOException e) {
+                Log.e(TAG, "Session recording failed", e);
+                stopRecording();
+            }
+        }
+    }
+
+    // SystemClock.elapsedRealtime() at an earlier System.nanoTime()
+    private static long elapsedMillisAt(long nanos) {
+        return SystemClock.elapsedRealtime() - (System.nanoTime() - nanos) / 1_000_000L;
+    }
+
+    private void recordCommand(byte[] frame) {
+        SessionRecorder recorder = sessionRecorder;
+        if (recorder != null) {
+            try {
+                recorder.recordCommand(SystemClock.elapsedRealtime(), frame, 0, frame.length);
+            } catch (IOException e) {
+                Log.e(TAG, "Session recording failed", e);
+                stopRecording();
+            }
+        }
+    }
+
+    private void recordCommand(String command) {
+        SessionRecorder recorder = sessionRecorder;
+        if (recorder != null) {
+            try {
+                recorder.recordCommand(SystemClock.elapsedRealtime(), command);
+            } catch (IOException e) {
+                Log.e(TAG, "Session recording failed", e);
+                stopRecording();
+            }
+        }
+    }
+
+    /**
+     * Replays the most recent recorded session through the live ingestion path, or stops a
+     * replay that is running.
+     *
+     * @return the name of the session being replayed, or null if none was started
+     */
+    public synchronized String toggleReplay() {
+        if (sessionReplayer != null && sessionReplayer.isRunning()) {
+            stopReplay();
+            return null;
+        }
+        File latest = null;
+        File[] sessions = getSessionDir().listFiles();
+        if (sessions != null) {
+            for (File file : sessions) {
+                if (latest == null || file.lastModified() > latest.lastModified()) {
+                    latest = file;
+                }
+            }
+        }
+        if (latest == null) {
+            return null;
+        }
+
+        try {
+            final SessionReader reader = new SessionReader(latest);
+            sessionReplayer = new SessionReplayer(reader, new SessionReplayer.Listener() {
+                @Override
+                public void onTelemetry(byte[] data, int offset, int length, long timestampMillis) {
+                    long receivedNanos = System.nanoTime();
+                    telemetryMetrics.onNotification(receivedNanos);
+                    ingestQueue.publish(data, offset, length, receivedNanos);
+                }
+
+                @Override
+                public void onCommand(byte[] data, int offset, int length, long timestampMillis) {
+                    Log.d(TAG, "Replayed command: " + new String(data, offset, length));
+                }
+
+                @Override
+                public void onReplayFinished() {
+                    finishReplay(reader);
+                }
+            });
+            replayReader = reader;
+            telemetryMetrics.reset();
+            telemetryStats.reset();
+            alarmResetPending = true;
+            safetyClassifier.reset();
+            replaying = true;
+            sessionReplayer.start(1f);
+            return latest.getName();
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot replay session " + latest, e);
+            return null;
+        }
+    }
+
+    // Bus observer thread
+    private void postLatestTelemetry(TelemetrySnapshot snapshot) {
+        if (!latestTelemetryPending.compareAndSet(false, true)) {
+            latestTelemetrySkippedFields |= snapshot.fields;
+            return;
+        }
+        latestTelemetryIndex ^= 1;
+        TelemetrySnapshot next = latestTelemetryBuffers[latestTelemetryIndex];
+        next.copyFrom(snapshot);
+        next.fields |= latestTelemetrySkippedFields;
+        latestTelemetrySkippedFields = 0;
+        latestTelemetryPosted = next;
+        mainHandler.post(latestTelemetryDelivery);
+    }
+
+    public synchronized boolean isReplaying() {
+        return sessionReplayer != null;
+    }
+
+    /** Length of the session being replayed in milliseconds, or 0 if none is. */
+    public synchronized long getReplayDurationMillis() {
+        return replayReader != null ? replayReader.getLastIndexedMillis() : 0;
+    }
+
+    public synchronized long getReplayPositionMillis() {
+        return sessionReplayer != null ? sessionReplayer.getPositionMillis() : 0;
+    }
+
+    /**
+     * Moves the running replay to {@code millis} since the start of the session.
+     */
+    public synchronized void seekReplay(long millis) {
+        if (sessionReplayer != null) {
+            sessionReplayer.seekTo(millis);
+        }
+    }
+
+    private synchronized void stopReplay() {
+        if (sessionReplayer != null) {
+            sessionReplayer.stop();
+            sessionReplayer = null;
+            replayReader = null;
+        }
+        replaying = false;
+    }
+
+    // Replay thread, once per replayer; the reader is closed here rather than in stopReplay()
+    // so the thread never reads a closed file
+    private synchronized void finishReplay(SessionReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing session", e);
+        }
+        if (replayReader == reader) {
+            // Reached the end on its own; a replay started since then is left alone
+            sessionReplayer = null;
+            replayReader = null;
+            replaying = false;
+        }
+    }
+
+    // adb shell dumpsys activity service com.example.kayakstabilizer/.service.TelemetryService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        StringBuilder sb = new StringBuilder(1024);
+        telemetryMetrics.dump(sb, System.nanoTime());
+        writer.println("Link: " + connectionManager.getState()
+                + " timeToConnectMs=" + connectionManager.getLastTimeToConnectMillis()
+                + " timeToTelemetryMs=" + connectionManager.getLastTimeToTelemetryMillis());
+        writer.println("Telemetry metrics:");
+        for (String line : sb.toString().split("\n")) {
+            writer.print("  ");
+            writer.println(line);
+        }
+        sb.setLength(0);
+        ingestQueue.dump(sb);
+        writer.println("Ingest queue:");
+        for (String line : sb.toString().split("\n")) {
+            writer.print("  ");
+            writer.println(line);
+        }
+        SessionRecorder recorder = sessionRecorder;
+        if (recorder != null) {
+            writer.println("Recording: " + recorder.getFile().getName()
+                    + " records=" + recorder.getRecordCount()
+                    + " gapFrames=" + recorder.getGapFrames());
+        }
+        writer.println("Alarms: raised=" + alarmEngine.getRaised()
+                + " suppressed=" + alarmEngine.getSuppressed());
+        sb.setLength(0);
+        telemetryBus.dump(sb);
+        writer.println("Telemetry bus:");
+        for (String line : sb.toString().split("\n")) {
+            writer.print("  ");
+            writer.println(line);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.kayakstabilizer.session;
+
+/**
+ * Layout of a compressed session archive. Header fields are little-endian.
+ *
+ * <pre>
+ * header (16 bytes):       magic "KSAR", version u16, samples per block u16,
+ *                          wall-clock start millis i64
+ * block header (24 bytes): payload length u32, sample count u16, flag run count u16,
+ *                          first millis i64, last millis i64
+ * block payload:           flag runs (flags u8, run length varint) x run count,
+ *                          then a bit stream with, per sample:
+ *                            millis as delta-of-delta (first sample: raw in the header),
+ *                            roll, pitch, battery as Gorilla XOR floats (first sample raw)
+ * </pre>
+ *
+ * Every block starts from scratch, so a reader can skip a block using only its header and
+ * start decoding at any block boundary.
+ */
+final class ArchiveFormat {
+    static final int MAGIC = 0x5241534B;        // "KSAR"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+    static final int BLOCK_HEADER_SIZE = 24;
+    static final int DEFAULT_BLOCK_SAMPLES = 1024;
+    static final int MAX_BLOCK_SAMPLES = 0xFFFF;
+
+    static final int CHANNELS = 3;
+
+    private ArchiveFormat() {
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.kayakstabilizer.session;
+
+/**
+ * MSB-first bit reader over a byte array, the counterpart of {@link BitOutput}.
+ */
+final class BitInput {
+    private byte[] bytes;
+    private int position;
+    private int end;
+    private long pending;
+    private int pendingBits;
+
+    void reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = offset + length;
+        this.pending = 0;
+        this.pendingBits = 0;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    /** Reads {@code count} bits, 0 <= count <= 32, as an unsigned value. */
+    long readBits(int count) {
+        if (count == 0) {
+            return 0;
+        }
+        while (pendingBits < count) {
+            if (position >= end) {
+                throw new IllegalStateException("Archive block truncated");
+            }
+            pending = (pending << 8) | (bytes[position++] & 0xFF);
+            pendingBits += 8;
+        }
+        pendingBits -= count;
+        long value = (pending >>> pendingBits) & ((1L << count) - 1);
+        pending &= (1L << pendingBits) - 1;
+        return value;
+    }
+
+    /** Reads an unsigned LEB128 varint; must be byte-aligned. */
+    int readVarint() {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            if (position >= end) {
+                throw new IllegalStateException("Archive block truncated");
+            }
+            int b = bytes[position++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
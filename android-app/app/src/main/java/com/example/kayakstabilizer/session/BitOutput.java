@@ -0,0 +1,74 @@
+package com.example.kayakstabilizer.session;
+
+/**
+ * Growable MSB-first bit buffer used to build archive blocks.
+ */
+final class BitOutput {
+    private byte[] bytes;
+    private int byteCount;
+    private long pending;
+    private int pendingBits;
+
+    BitOutput(int initialCapacity) {
+        bytes = new byte[initialCapacity];
+    }
+
+    void reset() {
+        byteCount = 0;
+        pending = 0;
+        pendingBits = 0;
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /** Writes the low {@code count} bits of {@code value}, 0 <= count <= 32. */
+    void writeBits(long value, int count) {
+        if (count == 0) {
+            return;
+        }
+        pending = (pending << count) | (value & ((1L << count) - 1));
+        pendingBits += count;
+        while (pendingBits >= 8) {
+            pendingBits -= 8;
+            put((byte) (pending >>> pendingBits));
+        }
+        pending &= (1L << pendingBits) - 1;
+    }
+
+    /** Writes an unsigned LEB128 varint; must be byte-aligned. */
+    void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        put((byte) value);
+    }
+
+    /** Pads to a byte boundary with zero bits. */
+    void flush() {
+        if (pendingBits > 0) {
+            put((byte) (pending << (8 - pendingBits)));
+            pending = 0;
+            pendingBits = 0;
+        }
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int length() {
+        return byteCount;
+    }
+
+    private void put(byte b) {
+        if (byteCount == bytes.length) {
+            byte[] grown = new byte[bytes.length * 2];
+            System.arraycopy(bytes, 0, grown, 0, byteCount);
+            bytes = grown;
+        }
+        bytes[byteCount++] = b;
+    }
+}
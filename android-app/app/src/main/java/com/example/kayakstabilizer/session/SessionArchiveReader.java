@@ -0,0 +1,282 @@
+package com.example.kayakstabilizer.session;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming reader for archives written by {@link SessionArchiveWriter}. One block is held in
+ * memory at a time and samples are decoded on demand into a caller-owned {@link Sample}, so
+ * reading allocates nothing per sample. {@link #skipTo(long)} passes over whole blocks using
+ * only their headers without decoding them.
+ *
+ * Not thread-safe.
+ */
+public final class SessionArchiveReader implements Closeable {
+
+    /** Reusable holder for one sample. */
+    public static final class Sample {
+        public long timestampMillis;  // since the start of the session
+        public float roll;
+        public float pitch;
+        public float battery;
+        public int flags;
+
+        public void copyFrom(Sample other) {
+            timestampMillis = other.timestampMillis;
+            roll = other.roll;
+            pitch = other.pitch;
+            battery = other.battery;
+            flags = other.flags;
+        }
+    }
+
+    private final InputStream in;
+    private final int blockSamples;
+    private final long startWallClockMillis;
+
+    private final byte[] blockHeaderBytes = new byte[ArchiveFormat.BLOCK_HEADER_SIZE];
+    private final ByteBuffer blockHeader =
+            ByteBuffer.wrap(blockHeaderBytes).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] payload = new byte[0];
+    private final BitInput bits = new BitInput();
+
+    // Current block
+    private int blockCount;
+    private int blockIndex;
+    private long firstMillis;
+    private final int[] runFlags;
+    private final int[] runLengths;
+    private int run;
+    private int runRemaining;
+
+    // Decoder state
+    private long previousMillis;
+    private long previousDelta;
+    private final int[] previousBits = new int[ArchiveFormat.CHANNELS];
+    private final int[] previousLeading = new int[ArchiveFormat.CHANNELS];
+    private final int[] previousTrailing = new int[ArchiveFormat.CHANNELS];
+
+    // A sample decoded by skipTo and not yet returned
+    private final Sample lookahead = new Sample();
+    private boolean hasLookahead;
+    private boolean finished;
+
+    public SessionArchiveReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] headerBytes = new byte[ArchiveFormat.HEADER_SIZE];
+        if (!readFully(headerBytes, ArchiveFormat.HEADER_SIZE, true)) {
+            throw new IOException("Not a session archive");
+        }
+        ByteBuffer header = ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != ArchiveFormat.MAGIC) {
+            throw new IOException("Not a session archive");
+        }
+        if ((header.getShort(4) & 0xFFFF) != ArchiveFormat.VERSION) {
+            throw new IOException("Unsupported archive version: " + header.getShort(4));
+        }
+        blockSamples = header.getShort(6) & 0xFFFF;
+        startWallClockMillis = header.getLong(8);
+        runFlags = new int[blockSamples];
+        runLengths = new int[blockSamples];
+    }
+
+    public long getStartWallClockMillis() {
+        return startWallClockMillis;
+    }
+
+    /**
+     * Decodes the next sample into {@code out}.
+     *
+     * @return false at the end of the archive
+     */
+    public boolean next(Sample out) throws IOException {
+        if (hasLookahead) {
+            hasLookahead = false;
+            out.copyFrom(lookahead);
+            return true;
+        }
+        if (blockIndex == blockCount && !loadBlock(Long.MIN_VALUE)) {
+            return false;
+        }
+        decodeSample(out);
+        return true;
+    }
+
+    /**
+     * Moves forward so that the next sample returned is the first one at or after
+     * {@code timestampMillis}. Blocks that end earlier are skipped without being decoded.
+     * The archive is a stream, so this never moves backwards.
+     *
+     * @return false if no such sample exists
+     */
+    public boolean skipTo(long timestampMillis) throws IOException {
+        if (hasLookahead) {
+            if (lookahead.timestampMillis >= timestampMillis) {
+                return true;
+            }
+            hasLookahead = false;
+        }
+        while (true) {
+            if (blockIndex == blockCount && !loadBlock(timestampMillis)) {
+                return false;
+            }
+            decodeSample(lookahead);
+            if (lookahead.timestampMillis >= timestampMillis) {
+                hasLookahead = true;
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Reads block headers until one ends at or after minLastMillis, then loads that block
+    private boolean loadBlock(long minLastMillis) throws IOException {
+        while (true) {
+            if (finished || !readFully(blockHeaderBytes, ArchiveFormat.BLOCK_HEADER_SIZE, true)) {
+                finished = true;
+                return false;
+            }
+            int length = blockHeader.getInt(0);
+            int count = blockHeader.getShort(4) & 0xFFFF;
+            int runs = blockHeader.getShort(6) & 0xFFFF;
+            long first = blockHeader.getLong(8);
+            long last = blockHeader.getLong(16);
+            if (length < 0 || count == 0 || count > blockSamples || runs == 0 || runs > count) {
+                throw new IOException("Corrupt archive block header");
+            }
+            if (last < minLastMillis) {
+                skipFully(length);
+                continue;
+            }
+
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            readFully(payload, length, false);
+            bits.reset(payload, 0, length);
+            int total = 0;
+            for (int i = 0; i < runs; i++) {
+                runFlags[i] = (int) bits.readBits(8);
+                runLengths[i] = bits.readVarint();
+                total += runLengths[i];
+            }
+            if (total != count) {
+                throw new IOException("Corrupt archive flag runs");
+            }
+            run = 0;
+            runRemaining = runLengths[0];
+            blockCount = count;
+            blockIndex = 0;
+            firstMillis = first;
+            return true;
+        }
+    }
+
+    private void decodeSample(Sample out) {
+        if (blockIndex == 0) {
+            previousMillis = firstMillis;
+            previousDelta = 0;
+            for (int c = 0; c < ArchiveFormat.CHANNELS; c++) {
+                previousBits[c] = (int) bits.readBits(32);
+                previousLeading[c] = -1;
+            }
+        } else {
+            previousDelta += readDeltaOfDelta();
+            previousMillis += previousDelta;
+            for (int c = 0; c < ArchiveFormat.CHANNELS; c++) {
+                previousBits[c] = readXor(c);
+            }
+        }
+        blockIndex++;
+
+        if (runRemaining == 0) {
+            runRemaining = runLengths[++run];
+        }
+        runRemaining--;
+
+        out.timestampMillis = previousMillis;
+        out.roll = Float.intBitsToFloat(previousBits[0]);
+        out.pitch = Float.intBitsToFloat(previousBits[1]);
+        out.battery = Float.intBitsToFloat(previousBits[2]);
+        out.flags = runFlags[run];
+    }
+
+    private long readDeltaOfDelta() {
+        long zigzag;
+        if (!bits.readBit()) {
+            return 0;
+        } else if (!bits.readBit()) {
+            zigzag = bits.readBits(7);
+        } else if (!bits.readBit()) {
+            zigzag = bits.readBits(9);
+        } else if (!bits.readBit()) {
+            zigzag = bits.readBits(12);
+        } else {
+            zigzag = bits.readBits(32);
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private int readXor(int channel) {
+        if (!bits.readBit()) {
+            return previousBits[channel];
+        }
+        int xor;
+        if (!bits.readBit()) {
+            int leading = previousLeading[channel];
+            int trailing = previousTrailing[channel];
+            if (leading < 0) {
+                throw new IllegalStateException("Corrupt archive block");
+            }
+            xor = (int) bits.readBits(32 - leading - trailing) << trailing;
+        } else {
+            int leading = (int) bits.readBits(5);
+            int length = (int) bits.readBits(5) + 1;
+            int trailing = 32 - leading - length;
+            if (trailing < 0) {
+                throw new IllegalStateException("Corrupt archive block");
+            }
+            xor = (int) bits.readBits(length) << trailing;
+            previousLeading[channel] = leading;
+            previousTrailing[channel] = trailing;
+        }
+        return previousBits[channel] ^ xor;
+    }
+
+    private boolean readFully(byte[] buffer, int length, boolean eofAllowed) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0) {
+                if (read == 0 && eofAllowed) {
+                    return false;
+                }
+                throw new EOFException("Archive truncated");
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    private void skipFully(long length) throws IOException {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                // skip() may refuse at the end of the stream or on some streams; fall back to read
+                if (in.read() < 0) {
+                    throw new EOFException("Archive truncated");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+}
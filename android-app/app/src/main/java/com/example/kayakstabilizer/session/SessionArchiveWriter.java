@@ -0,0 +1,228 @@
+package com.example.kayakstabilizer.session;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes telemetry samples as a compressed archive (see {@link ArchiveFormat}) for long-term
+ * storage of recorded sessions. Samples are buffered in columns and each full block is
+ * encoded with delta-of-delta timestamps, XOR-compressed floats and run-length flags, which
+ * suits the slowly changing, regularly sampled stream a stabilizer produces.
+ *
+ * Not thread-safe.
+ */
+public final class SessionArchiveWriter implements Closeable {
+
+    // Gaps longer than this start a new block so delta-of-delta values fit 32 bits
+    private static final long MAX_DELTA_MS = Integer.MAX_VALUE / 4;
+
+    private final OutputStream out;
+    private final int blockSamples;
+
+    private final long[] millis;
+    private final float[][] channels;
+    private final byte[] flags;
+    private int count;
+
+    // XOR window per channel; leading -1 until the first window is written
+    private final int[] previousLeading = new int[ArchiveFormat.CHANNELS];
+    private final int[] previousTrailing = new int[ArchiveFormat.CHANNELS];
+
+    private final BitOutput payload;
+    private final ByteBuffer blockHeader =
+            ByteBuffer.allocate(ArchiveFormat.BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long lastMillis = Long.MIN_VALUE;
+    private long samplesWritten;
+    private long bytesWritten;
+    private boolean closed;
+
+    public SessionArchiveWriter(OutputStream out, long startWallClockMillis) throws IOException {
+        this(out, startWallClockMillis, ArchiveFormat.DEFAULT_BLOCK_SAMPLES);
+    }
+
+    /**
+     * @param blockSamples samples per block; smaller blocks seek more finely but compress less
+     */
+    public SessionArchiveWriter(OutputStream out, long startWallClockMillis, int blockSamples)
+            throws IOException {
+        if (blockSamples < 2 || blockSamples > ArchiveFormat.MAX_BLOCK_SAMPLES) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSamples);
+        }
+        this.out = out;
+        this.blockSamples = blockSamples;
+        millis = new long[blockSamples];
+        channels = new float[ArchiveFormat.CHANNELS][blockSamples];
+        flags = new byte[blockSamples];
+        payload = new BitOutput(blockSamples * 4);
+
+        ByteBuffer header = ByteBuffer.allocate(ArchiveFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ArchiveFormat.MAGIC);
+        header.putShort((short) ArchiveFormat.VERSION);
+        header.putShort((short) blockSamples);
+        header.putLong(startWallClockMillis);
+        out.write(header.array());
+        bytesWritten = ArchiveFormat.HEADER_SIZE;
+    }
+
+    /**
+     * Adds one sample.
+     *
+     * @param timestampMillis since the start of the session; must not decrease
+     * @param flags           as packed by {@link com.example.kayakstabilizer.telemetry.TelemetrySnapshot#packFlags()}
+     */
+    public void append(long timestampMillis, float roll, float pitch, float battery, int flags)
+            throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Archive closed");
+        }
+        if (timestampMillis < lastMillis) {
+            throw new IllegalArgumentException("Timestamps must not decrease: " + timestampMillis);
+        }
+        if (count > 0 && timestampMillis - lastMillis > MAX_DELTA_MS) {
+            writeBlock();
+        }
+        millis[count] = timestampMillis;
+        channels[0][count] = roll;
+        channels[1][count] = pitch;
+        channels[2][count] = battery;
+        this.flags[count] = (byte) flags;
+        lastMillis = timestampMillis;
+        if (++count == blockSamples) {
+            writeBlock();
+        }
+    }
+
+    /** Writes the samples buffered so far as a (possibly short) block. */
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    public long getSampleCount() {
+        return samplesWritten + count;
+    }
+
+    /** Bytes written to the stream so far, excluding buffered samples. */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        payload.reset();
+        int runs = encodeFlags();
+        encodeSamples();
+        payload.flush();
+
+        blockHeader.clear();
+        blockHeader.putInt(payload.length());
+        blockHeader.putShort((short) count);
+        blockHeader.putShort((short) runs);
+        blockHeader.putLong(millis[0]);
+        blockHeader.putLong(millis[count - 1]);
+        out.write(blockHeader.array());
+        out.write(payload.array(), 0, payload.length());
+
+        bytesWritten += ArchiveFormat.BLOCK_HEADER_SIZE + payload.length();
+        samplesWritten += count;
+        count = 0;
+    }
+
+    // Flags change a few times per session, so a block is usually a single run
+    private int encodeFlags() {
+        int runs = 0;
+        int start = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i == count || flags[i] != flags[start]) {
+                payload.writeBits(flags[start] & 0xFF, 8);
+                payload.writeVarint(i - start);
+                runs++;
+                start = i;
+            }
+        }
+        return runs;
+    }
+
+    private void encodeSamples() {
+        long previousDelta = 0;
+        for (int c = 0; c < ArchiveFormat.CHANNELS; c++) {
+            payload.writeBits(Float.floatToRawIntBits(channels[c][0]), 32);
+        }
+        for (int c = 0; c < ArchiveFormat.CHANNELS; c++) {
+            previousLeading[c] = -1;
+        }
+        for (int i = 1; i < count; i++) {
+            long delta = millis[i] - millis[i - 1];
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+            for (int c = 0; c < ArchiveFormat.CHANNELS; c++) {
+                writeXor(c, Float.floatToRawIntBits(channels[c][i - 1]),
+                        Float.floatToRawIntBits(channels[c][i]));
+            }
+        }
+    }
+
+    // '0' | '10' + 7 | '110' + 9 | '1110' + 12 | '1111' + 32 bits of the zigzag-encoded value
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+        if (zigzag == 0) {
+            payload.writeBits(0, 1);
+        } else if (zigzag < (1 << 7)) {
+            payload.writeBits(0b10, 2);
+            payload.writeBits(zigzag, 7);
+        } else if (zigzag < (1 << 9)) {
+            payload.writeBits(0b110, 3);
+            payload.writeBits(zigzag, 9);
+        } else if (zigzag < (1 << 12)) {
+            payload.writeBits(0b1110, 4);
+            payload.writeBits(zigzag, 12);
+        } else {
+            payload.writeBits(0b1111, 4);
+            payload.writeBits(zigzag, 32);
+        }
+    }
+
+    // '0': unchanged; '10': meaningful bits inside the previous window; '11': new window as
+    // 5 bits of leading zeros, 5 bits of (length - 1), then the bits
+    private void writeXor(int channel, int previousBits, int bits) {
+        int xor = previousBits ^ bits;
+        if (xor == 0) {
+            payload.writeBits(0, 1);
+            return;
+        }
+        int leading = Integer.numberOfLeadingZeros(xor);
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        int windowLeading = previousLeading[channel];
+        int windowTrailing = previousTrailing[channel];
+        if (windowLeading >= 0 && leading >= windowLeading && trailing >= windowTrailing) {
+            payload.writeBits(0b10, 2);
+            payload.writeBits(xor >>> windowTrailing, 32 - windowLeading - windowTrailing);
+        } else {
+            int length = 32 - leading - trailing;
+            payload.writeBits(0b11, 2);
+            payload.writeBits(leading, 5);
+            payload.writeBits(length - 1, 5);
+            payload.writeBits(xor >>> trailing, length);
+            previousLeading[channel] = leading;
+            previousTrailing[channel] = trailing;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.kayakstabilizer.session;
+
+import com.example.kayakstabilizer.telemetry.TelemetryDecoder;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Converts a recorded session into a compressed archive for long-term storage. Only decoded
+ * attitude samples are kept; frames that carry only some fields update the battery and flags
+ * carried into later samples, and commands are dropped.
+ */
+public final class SessionArchiver {
+
+    private SessionArchiver() {
+    }
+
+    /**
+     * @return the number of samples written
+     */
+    public static long archive(File session, File archive) throws IOException {
+        try (SessionReader reader = new SessionReader(session);
+             SessionArchiveWriter writer = new SessionArchiveWriter(
+                     new BufferedOutputStream(new FileOutputStream(archive)),
+                     reader.getStartWallClockMillis())) {
+            SessionReader.Record record = new SessionReader.Record();
+            TelemetrySnapshot frame = new TelemetrySnapshot();
+            TelemetrySnapshot latest = new TelemetrySnapshot();
+            while (reader.next(record)) {
+                if (record.type != SessionReader.Record.TYPE_TELEMETRY
+                        || !TelemetryDecoder.decode(record.payload, 0, record.length, frame)) {
+                    continue;
+                }
+                merge(frame, latest);
+                if (frame.has(TelemetrySnapshot.FIELD_ROLL)) {
+                    writer.append(record.timestampMillis, latest.roll, latest.pitch,
+                            latest.batteryVoltage, latest.packFlags());
+                }
+            }
+            return writer.getSampleCount();
+        }
+    }
+
+    private static void merge(TelemetrySnapshot from, TelemetrySnapshot into) {
+        if (from.has(TelemetrySnapshot.FIELD_ROLL)) into.roll = from.roll;
+        if (from.has(TelemetrySnapshot.FIELD_PITCH)) into.pitch = from.pitch;
+        if (from.has(TelemetrySnapshot.FIELD_BATTERY)) into.batteryVoltage = from.batteryVoltage;
+        if (from.has(TelemetrySnapshot.FIELD_BATTERY_TYPE)) into.batteryType = from.batteryType;
+        if (from.has(TelemetrySnapshot.FIELD_STABILIZATION)) into.stabilizationEnabled = from.stabilizationEnabled;
+        if (from.has(TelemetrySnapshot.FIELD_EMERGENCY)) into.emergencyStop = from.emergencyStop;
+        if (from.has(TelemetrySnapshot.FIELD_LOW_BATTERY)) into.lowBattery = from.lowBattery;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.kayakstabilizer.session;
+
+/**
+ * Layout of a recorded session file. All values are little-endian.
+ *
+ * <pre>
+ * header (32 bytes): magic "KSES", version u16, header size u16, region size u32,
+ *                    wall-clock start millis i64, reserved
+ * records:           type u8, payload length u16, millis since start u32, payload
+ *                    (a gap record's payload is the number of frames missing, u32)
+ * index (optional):  entries of (millis since start u32, file offset i64)
+ * footer (16 bytes): index offset i64, entry count u32, magic "KIDX"
+ * </pre>
+ *
+ * The file is written in fixed-size memory-mapped regions and a record never spans two of
+ * them; a {@link #TYPE_PAD} byte marks the unused tail of a region. A recording that was not
+ * closed cleanly has no index or footer and ends at the first {@link #TYPE_END} byte.
+ */
+final class SessionFormat {
+    static final int MAGIC = 0x5345534B;        // "KSES"
+    static final int INDEX_MAGIC = 0x5844494B;  // "KIDX"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 7;
+    static final int INDEX_ENTRY_SIZE = 12;
+    static final int FOOTER_SIZE = 16;
+    static final int MAX_PAYLOAD = 0xFFFF;
+
+    static final int TYPE_END = 0;
+    static final int TYPE_TELEMETRY = 1;
+    static final int TYPE_COMMAND = 2;
+    // Telemetry frames the app received but could not record, between the records around it
+    static final int TYPE_GAP = 3;
+    static final int TYPE_PAD = 0xFF;
+
+    private SessionFormat() {
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.kayakstabilizer.session;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Sequential reader for session files written by {@link SessionRecorder}. The file is mapped
+ * read-only and records are copied into a caller-owned {@link Record}, so reading allocates
+ * nothing per record. {@link #seek(long)} uses the index stored at the end of the file; for a
+ * recording that was cut short the index is rebuilt with one scan when the file is opened.
+ *
+ * Not thread-safe.
+ */
+public final class SessionReader implements Closeable {
+
+    /** Reusable holder for one record. */
+    public static final class Record {
+        public static final int TYPE_TELEMETRY = SessionFormat.TYPE_TELEMETRY;
+        public static final int TYPE_COMMAND = SessionFormat.TYPE_COMMAND;
+        /** Telemetry frames missing from the recording here; see {@link #getGapFrames()}. */
+        public static final int TYPE_GAP = SessionFormat.TYPE_GAP;
+
+        public int type;
+        public long timestampMillis;  // since the start of the session
+        public byte[] payload = new byte[64];
+        public int length;
+
+        /** Number of frames missing, for a {@link #TYPE_GAP} record. */
+        public long getGapFrames() {
+            return (payload[0] & 0xFF) | (payload[1] & 0xFF) << 8 | (payload[2] & 0xFF) << 16
+                    | (payload[3] & 0xFFL) << 24;
+        }
+    }
+
+    private static final long INDEX_INTERVAL_MS = 1000;
+
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+    private final int regionSize;
+    private final long startWallClockMillis;
+    private final int dataEnd;
+
+    private int[] indexTimes;
+    private long[] indexOffsets;
+    private int indexCount;
+    private final boolean complete;
+
+    public SessionReader(File file) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < SessionFormat.HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a session file: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt(0) != SessionFormat.MAGIC) {
+                throw new IOException("Not a session file: " + file);
+            }
+            if ((buffer.getShort(4) & 0xFFFF) != SessionFormat.VERSION) {
+                throw new IOException("Unsupported session version: " + buffer.getShort(4));
+            }
+            regionSize = buffer.getInt(8);
+            startWallClockMillis = buffer.getLong(12);
+
+            int footer = (int) size - SessionFormat.FOOTER_SIZE;
+            if (footer >= SessionFormat.HEADER_SIZE && buffer.getInt(footer + 12) == SessionFormat.INDEX_MAGIC) {
+                dataEnd = (int) buffer.getLong(footer);
+                indexCount = buffer.getInt(footer + 8);
+                indexTimes = new int[Math.max(1, indexCount)];
+                indexOffsets = new long[Math.max(1, indexCount)];
+                int position = dataEnd;
+                for (int i = 0; i < indexCount; i++) {
+                    indexTimes[i] = buffer.getInt(position);
+                    indexOffsets[i] = buffer.getLong(position + 4);
+                    position += SessionFormat.INDEX_ENTRY_SIZE;
+                }
+                complete = true;
+            } else {
+                dataEnd = (int) size;
+                complete = false;
+                rebuildIndex();
+            }
+            buffer.position(SessionFormat.HEADER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public long getStartWallClockMillis() {
+        return startWallClockMillis;
+    }
+
+    /** False if the recording was not closed cleanly and the index had to be rebuilt. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /** Timestamp of the last indexed position, a lower bound on the session duration. */
+    public long getLastIndexedMillis() {
+        return indexCount == 0 ? 0 : indexTimes[indexCount - 1];
+    }
+
+    /**
+     * Reads the next record into {@code out}.
+     *
+     * @return false at the end of the session
+     */
+    public boolean next(Record out) {
+        while (true) {
+            int position = buffer.position();
+            if (position + SessionFormat.RECORD_HEADER_SIZE > dataEnd) {
+                return false;
+            }
+            int type = buffer.get(position) & 0xFF;
+            if (type == SessionFormat.TYPE_END) {
+                return false;
+            }
+            if (type == SessionFormat.TYPE_PAD) {
+                buffer.position(Math.min(dataEnd, (position / regionSize + 1) * regionSize));
+                continue;
+            }
+
+            int length = buffer.getShort(position + 1) & 0xFFFF;
+            if (position + SessionFormat.RECORD_HEADER_SIZE + length > dataEnd) {
+                return false;
+            }
+            out.type = type;
+            out.timestampMillis = buffer.getInt(position + 3) & 0xFFFFFFFFL;
+            if (out.payload.length < length) {
+                out.payload = new byte[Math.max(length, out.payload.length * 2)];
+            }
+            buffer.position(position + SessionFormat.RECORD_HEADER_SIZE);
+            buffer.get(out.payload, 0, length);
+            out.length = length;
+            return true;
+        }
+    }
+
+    /**
+     * Positions the reader on the first record at or after {@code millis} since the start of
+     * the session. Jumps via the index and scans at most one index interval of records.
+     */
+    public void seek(long millis) {
+        int entry = Arrays.binarySearch(indexTimes, 0, indexCount, (int) Math.min(millis, Integer.MAX_VALUE));
+        if (entry < 0) {
+            entry = -entry - 2;
+        }
+        buffer.position(entry < 0 ? SessionFormat.HEADER_SIZE : (int) indexOffsets[entry]);
+
+        while (true) {
+            int position = buffer.position();
+            if (position + SessionFormat.RECORD_HEADER_SIZE > dataEnd) {
+                return;
+            }
+            int type = buffer.get(position) & 0xFF;
+            if (type == SessionFormat.TYPE_END) {
+                return;
+            }
+            if (type == SessionFormat.TYPE_PAD) {
+                buffer.position(Math.min(dataEnd, (position / regionSize + 1) * regionSize));
+                continue;
+            }
+            long timestamp = buffer.getInt(position + 3) & 0xFFFFFFFFL;
+            if (timestamp >= millis) {
+                return;
+            }
+            int length = buffer.getShort(position + 1) & 0xFFFF;
+            buffer.position(Math.min(dataEnd, position + SessionFormat.RECORD_HEADER_SIZE + length));
+        }
+    }
+
+    public void rewind() {
+        buffer.position(SessionFormat.HEADER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    private void rebuildIndex() {
+        indexTimes = new int[64];
+        indexOffsets = new long[64];
+        indexCount = 0;
+        long nextIndexMillis = 0;
+        Record record = new Record();
+        buffer.position(SessionFormat.HEADER_SIZE);
+        while (next(record)) {
+            if (record.timestampMillis >= nextIndexMillis) {
+                if (indexCount == indexTimes.length) {
+                    indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+                    indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+                }
+                indexTimes[indexCount] = (int) record.timestampMillis;
+                // The record may have been preceded by padding; index its actual start
+                indexOffsets[indexCount] = buffer.position() - SessionFormat.RECORD_HEADER_SIZE - record.length;
+                indexCount++;
+                nextIndexMillis = record.timestampMillis + INDEX_INTERVAL_MS;
+            }
+        }
+    }
+}
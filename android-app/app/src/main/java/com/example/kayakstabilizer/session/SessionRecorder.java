@@ -0,0 +1,261 @@
+package com.example.kayakstabilizer.session;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends raw telemetry notifications and sent commands to a session file (see
+ * {@link SessionFormat}). Records are copied into a memory-mapped region, so recording a frame
+ * costs a few puts; dirty pages are forced to storage by a background thread every flush
+ * interval. {@link #close()} writes a seek index and trims the file to its used length.
+ *
+ * Thread-safe: telemetry and commands may be recorded from different threads.
+ */
+public final class SessionRecorder implements Closeable {
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+    private static final int REGION_SIZE = 1 << 20;
+    // One seek index entry per second of recording
+    private static final long INDEX_INTERVAL_MS = 1000;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final long startMillis;
+    private final ScheduledExecutorService flushExecutor;
+
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    private int[] indexTimes = new int[64];
+    private long[] indexOffsets = new long[64];
+    private int indexCount;
+    private long nextIndexMillis;
+
+    private long recordCount;
+    private long gapFrames;
+    private boolean closed;
+    // Guarded by this
+    private final byte[] gapPayload = new byte[4];
+
+    /**
+     * Creates (or truncates) {@code file} and starts recording.
+     *
+     * @param startMillis time base of the timestamps passed to the record methods, e.g.
+     *                    SystemClock.elapsedRealtime() at the start of the session
+     */
+    public SessionRecorder(File file, long startMillis, long flushIntervalMillis) throws IOException {
+        this.file = file;
+        this.startMillis = startMillis;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        channel.truncate(0);
+
+        mapRegion(0);
+        region.putInt(SessionFormat.MAGIC);
+        region.putShort((short) SessionFormat.VERSION);
+        region.putShort((short) SessionFormat.HEADER_SIZE);
+        region.putInt(REGION_SIZE);
+        region.putLong(System.currentTimeMillis());
+        region.position(SessionFormat.HEADER_SIZE);
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "SessionRecorderFlush");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flushExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /** Telemetry frames noted as missing with {@link #recordGap(long, long)}. */
+    public synchronized long getGapFrames() {
+        return gapFrames;
+    }
+
+    public void recordTelemetry(long timestampMillis, byte[] data, int offset, int length) throws IOException {
+        record(SessionFormat.TYPE_TELEMETRY, timestampMillis, data, offset, length);
+    }
+
+    public void recordCommand(long timestampMillis, String command) throws IOException {
+        byte[] bytes = command.getBytes(ASCII);
+        record(SessionFormat.TYPE_COMMAND, timestampMillis, bytes, 0, bytes.length);
+    }
+
+    /** Records a binary command frame. */
+    public void recordCommand(long timestampMillis, byte[] data, int offset, int length) throws IOException {
+        record(SessionFormat.TYPE_COMMAND, timestampMillis, data, offset, length);
+    }
+
+    /**
+     * Notes that {@code frames} telemetry frames received at this point were not recorded, so
+     * a reader can tell a shed stretch from a quiet link.
+     */
+    public synchronized void recordGap(long timestampMillis, long frames) throws IOException {
+        int count = (int) Math.min(frames, 0xFFFFFFFFL);
+        byte[] payload = gapPayload;
+        payload[0] = (byte) count;
+        payload[1] = (byte) (count >> 8);
+        payload[2] = (byte) (count >> 16);
+        payload[3] = (byte) (count >>> 24);
+        record(SessionFormat.TYPE_GAP, timestampMillis, payload, 0, payload.length);
+        gapFrames += frames;
+    }
+
+    private synchronized void record(int type, long timestampMillis, byte[] data, int offset, int length)
+            throws IOException {
+        if (closed) {
+            throw new IOException("Recorder is closed");
+        }
+        if (length > SessionFormat.MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Payload too large: " + length);
+        }
+        int needed = SessionFormat.RECORD_HEADER_SIZE + length;
+        if (region.remaining() < needed) {
+            if (region.hasRemaining()) {
+                region.put((byte) SessionFormat.TYPE_PAD);
+            }
+            final MappedByteBuffer full = region;
+            flushExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    full.force();
+                }
+            });
+            mapRegion(regionStart + REGION_SIZE);
+        }
+
+        long relative = Math.max(0, timestampMillis - startMillis);
+        if (relative >= nextIndexMillis) {
+            addIndexEntry((int) relative, regionStart + region.position());
+            nextIndexMillis = relative + INDEX_INTERVAL_MS;
+        }
+
+        region.put((byte) type);
+        region.putShort((short) length);
+        region.putInt((int) relative);
+        region.put(data, offset, length);
+        recordCount++;
+    }
+
+    /**
+     * Forces recorded data to storage. Called periodically by the flush thread.
+     */
+    public void flush() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            current = region;
+        }
+        // force() does not touch the buffer position, so appends can continue meanwhile
+        current.force();
+    }
+
+    /**
+     * Writes the seek index and footer and trims the file. Waits for regions queued for
+     * forcing first, so none is still being written back when the file is truncated.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        // Not under the lock: a flush in progress needs it to see that we are closed
+        flushExecutor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (flushExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            finish();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void finish() throws IOException {
+        try {
+            long end = regionStart + region.position();
+            region.force();
+
+            ByteBuffer trailer = ByteBuffer
+                    .allocate(indexCount * SessionFormat.INDEX_ENTRY_SIZE + SessionFormat.FOOTER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < indexCount; i++) {
+                trailer.putInt(indexTimes[i]);
+                trailer.putLong(indexOffsets[i]);
+            }
+            trailer.putLong(end);
+            trailer.putInt(indexCount);
+            trailer.putInt(SessionFormat.INDEX_MAGIC);
+            trailer.flip();
+
+            long position = end;
+            while (trailer.hasRemaining()) {
+                position += channel.write(trailer, position);
+            }
+            channel.truncate(position);
+            channel.force(false);
+        } finally {
+            region = null;
+            randomAccessFile.close();
+        }
+    }
+
+    private void mapRegion(long start) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        regionStart = start;
+    }
+
+    private void addIndexEntry(int relativeMillis, long offset) {
+        if (indexCount == indexTimes.length) {
+            indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+        }
+        indexTimes[indexCount] = relativeMillis;
+        indexOffsets[indexCount] = offset;
+        indexCount++;
+    }
+}
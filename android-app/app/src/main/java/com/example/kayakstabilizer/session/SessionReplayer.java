@@ -0,0 +1,150 @@
+package com.example.kayakstabilizer.session;
+
+/**
+ * Plays a recorded session back through the same entry points live data uses, either in real
+ * time, scaled by a speed factor, or as fast as possible. Replay runs on its own thread and
+ * can be re-positioned while running with {@link #seekTo(long)}.
+ */
+public final class SessionReplayer {
+    /** Speed value that delivers records without any pacing. */
+    public static final float AS_FAST_AS_POSSIBLE = 0f;
+
+    public interface Listener {
+        /** Raw telemetry notification bytes, valid only during the call. */
+        void onTelemetry(byte[] data, int offset, int length, long timestampMillis);
+
+        /** A command the app sent during the session. */
+        void onCommand(byte[] data, int offset, int length, long timestampMillis);
+
+        /** Called once when the end of the session is reached or replay is stopped. */
+        void onReplayFinished();
+    }
+
+    private static final long NO_SEEK = -1;
+
+    private final SessionReader reader;
+    private final Listener listener;
+    private final SessionReader.Record record = new SessionReader.Record();
+
+    private volatile float speed;
+    private volatile boolean running;
+    private volatile long pendingSeekMillis = NO_SEEK;
+    private volatile long positionMillis;
+    private Thread thread;
+
+    public SessionReplayer(SessionReader reader, Listener listener) {
+        this.reader = reader;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts replay on a background thread.
+     *
+     * @param speed playback rate, e.g. 1 for real time, 4 for four times faster, or
+     *              {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public synchronized void start(float speed) {
+        if (running) {
+            return;
+        }
+        this.speed = speed;
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, "SessionReplayer");
+        thread.start();
+    }
+
+    /**
+     * Replays the whole session on the calling thread.
+     */
+    public void run(float speed) {
+        this.speed = speed;
+        running = true;
+        replay();
+    }
+
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Jumps to {@code millis} since the start of the session; takes effect before the next
+     * record is delivered.
+     */
+    public void seekTo(long millis) {
+        pendingSeekMillis = Math.max(0, millis);
+    }
+
+    /** Timestamp of the record delivered last, in milliseconds since the start of the session. */
+    public long getPositionMillis() {
+        return positionMillis;
+    }
+
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = thread;
+            thread = null;
+        }
+        if (current != null && current != Thread.currentThread()) {
+            current.interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void replay() {
+        long baseNanos = System.nanoTime();
+        long baseMillis = -1;
+        float baseSpeed = speed;
+        try {
+            while (running) {
+                long seek = pendingSeekMillis;
+                if (seek != NO_SEEK) {
+                    pendingSeekMillis = NO_SEEK;
+                    reader.seek(seek);
+                    positionMillis = seek;
+                    baseMillis = -1;
+                }
+                if (!reader.next(record)) {
+                    break;
+                }
+
+                float currentSpeed = speed;
+                if (baseMillis < 0 || currentSpeed != baseSpeed) {
+                    // Re-anchor pacing after a seek or speed change
+                    baseMillis = record.timestampMillis;
+                    baseNanos = System.nanoTime();
+                    baseSpeed = currentSpeed;
+                }
+                if (currentSpeed > 0f) {
+                    long dueNanos = baseNanos
+                            + (long) ((record.timestampMillis - baseMillis) * 1_000_000L / currentSpeed);
+                    long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+                    }
+                }
+
+                positionMillis = record.timestampMillis;
+                if (record.type == SessionReader.Record.TYPE_TELEMETRY) {
+                    listener.onTelemetry(record.payload, 0, record.length, record.timestampMillis);
+                } else if (record.type == SessionReader.Record.TYPE_COMMAND) {
+                    listener.onCommand(record.payload, 0, record.length, record.timestampMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            listener.onReplayFinished();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.kayakstabilizer.stats;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of one channel over a sliding time window, updated in constant time per sample
+ * with no allocation: count, mean and variance (Welford, with removal), RMS, min and max
+ * (monotonic deques), a least-squares slope, and approximate quantiles from a fixed-bin
+ * histogram. All storage is allocated up front.
+ *
+ * The window holds samples younger than {@code windowMillis}, and at most {@code capacity} of
+ * them; a faster stream shortens the window rather than growing memory. Running sums are
+ * rebuilt from the stored samples once per {@code capacity} evictions so floating-point
+ * error cannot accumulate, which keeps the amortised cost per sample constant.
+ *
+ * Not thread-safe.
+ */
+public final class SlidingWindowStats {
+
+    private final long windowMillis;
+    private final int capacity;
+    private final int mask;
+
+    // Samples by sequence number; sample s lives at s & mask while head <= s < tail
+    private final long[] times;
+    private final float[] values;
+    private long head;
+    private long tail;
+
+    // Sequence numbers with increasing values (min) and decreasing values (max)
+    private final long[] minDeque;
+    private final long[] maxDeque;
+    private int minHead, minSize;
+    private int maxHead, maxSize;
+
+    // Welford state and the sums behind RMS and the slope; times are relative to timeOrigin
+    private double mean;
+    private double m2;
+    private double sumSquares;
+    private long timeOrigin;
+    private double sumT, sumTT, sumTV;
+    private int evictionsSinceRebuild;
+
+    private final float histogramMin;
+    private final float binsPerUnit;
+    private final int[] bins;
+
+    /**
+     * @param windowMillis  samples older than this are dropped
+     * @param capacity      maximum samples kept, rounded up to a power of two
+     * @param histogramMin  lower edge of the quantile histogram; smaller values count here
+     * @param histogramMax  upper edge of the quantile histogram; larger values count here
+     * @param histogramBins number of histogram bins; quantiles are accurate to one bin
+     */
+    public SlidingWindowStats(long windowMillis, int capacity,
+                              float histogramMin, float histogramMax, int histogramBins) {
+        if (windowMillis <= 0 || capacity <= 0 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException("Invalid window: " + windowMillis + " ms, " + capacity);
+        }
+        if (!(histogramMax > histogramMin) || histogramBins <= 0) {
+            throw new IllegalArgumentException("Invalid histogram range");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.windowMillis = windowMillis;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.values = new float[size];
+        this.minDeque = new long[size];
+        this.maxDeque = new long[size];
+        this.histogramMin = histogramMin;
+        this.binsPerUnit = histogramBins / (histogramMax - histogramMin);
+        this.bins = new int[histogramBins];
+    }
+
+    /**
+     * Adds a sample and drops those that fell out of the window. Timestamps must not decrease.
+     */
+    public void add(long timeMillis, float value) {
+        if (size() == 0) {
+            timeOrigin = timeMillis;
+        }
+        expire(timeMillis);
+        if (size() == capacity) {
+            evictOldest();
+        }
+
+        long seq = tail++;
+        times[(int) (seq & mask)] = timeMillis;
+        values[(int) (seq & mask)] = value;
+
+        int n = size();
+        double delta = value - mean;
+        mean += delta / n;
+        m2 += delta * (value - mean);
+        sumSquares += (double) value * value;
+        double t = timeMillis - timeOrigin;
+        sumT += t;
+        sumTT += t * t;
+        sumTV += t * value;
+        bins[bin(value)]++;
+
+        while (minSize > 0 && values[(int) (minDeque[(minHead + minSize - 1) & mask] & mask)] >= value) {
+            minSize--;
+        }
+        minDeque[(minHead + minSize++) & mask] = seq;
+        while (maxSize > 0 && values[(int) (maxDeque[(maxHead + maxSize - 1) & mask] & mask)] <= value) {
+            maxSize--;
+        }
+        maxDeque[(maxHead + maxSize++) & mask] = seq;
+    }
+
+    /**
+     * Drops samples older than the window relative to {@code nowMillis}, e.g. when the stream
+     * has stopped and the figures should age out.
+     */
+    public void expire(long nowMillis) {
+        long cutoff = nowMillis - windowMillis;
+        while (head < tail && times[(int) (head & mask)] <= cutoff) {
+            evictOldest();
+        }
+    }
+
+    public void clear() {
+        head = tail = 0;
+        minHead = minSize = 0;
+        maxHead = maxSize = 0;
+        mean = m2 = sumSquares = 0;
+        sumT = sumTT = sumTV = 0;
+        evictionsSinceRebuild = 0;
+        Arrays.fill(bins, 0);
+    }
+
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public double getMean() {
+        return size() > 0 ? mean : Double.NaN;
+    }
+
+    /** Population variance of the samples in the window. */
+    public double getVariance() {
+        int n = size();
+        return n > 0 ? Math.max(0, m2 / n) : Double.NaN;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getRms() {
+        int n = size();
+        return n > 0 ? Math.sqrt(Math.max(0, sumSquares / n)) : Double.NaN;
+    }
+
+    public float getMin() {
+        return minSize > 0 ? values[(int) (minDeque[minHead] & mask)] : Float.NaN;
+    }
+
+    public float getMax() {
+        return maxSize > 0 ? values[(int) (maxDeque[maxHead] & mask)] : Float.NaN;
+    }
+
+    /** Largest absolute value in the window. */
+    public float getPeak() {
+        return size() > 0 ? Math.max(Math.abs(getMin()), Math.abs(getMax())) : Float.NaN;
+    }
+
+    /**
+     * Least-squares slope of value over time, in value units per second, or NaN with fewer
+     * than two distinct timestamps.
+     */
+    public double getSlopePerSecond() {
+        int n = size();
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double sumV = mean * n;
+        double denominator = n * sumTT - sumT * sumT;
+        if (denominator <= 0) {
+            return Double.NaN;
+        }
+        return (n * sumTV - sumT * sumV) / denominator * 1000.0;
+    }
+
+    /**
+     * Approximate quantile from the histogram, e.g. 0.95. Costs one pass over the bins.
+     */
+    public float getQuantile(double quantile) {
+        int n = size();
+        if (n == 0) {
+            return Float.NaN;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (seen >= rank) {
+                // Midpoint of the bin, clamped to the observed range
+                float value = histogramMin + (i + 0.5f) / binsPerUnit;
+                return Math.max(getMin(), Math.min(getMax(), value));
+            }
+        }
+        return getMax();
+    }
+
+    private void evictOldest() {
+        long seq = head++;
+        float value = values[(int) (seq & mask)];
+        int n = size();
+
+        if (n == 0) {
+            mean = m2 = sumSquares = 0;
+            sumT = sumTT = sumTV = 0;
+        } else {
+            double delta = value - mean;
+            mean -= delta / n;
+            m2 -= delta * (value - mean);
+            sumSquares -= (double) value * value;
+            double t = times[(int) (seq & mask)] - timeOrigin;
+            sumT -= t;
+            sumTT -= t * t;
+            sumTV -= t * value;
+        }
+        bins[bin(value)]--;
+
+        if (minSize > 0 && minDeque[minHead] == seq) {
+            minHead = (minHead + 1) & mask;
+            minSize--;
+        }
+        if (maxSize > 0 && maxDeque[maxHead] == seq) {
+            maxHead = (maxHead + 1) & mask;
+            maxSize--;
+        }
+
+        if (++evictionsSinceRebuild >= capacity) {
+            rebuildSums();
+        }
+    }
+
+    // Exact recomputation from the stored samples; also moves the time origin forward so the
+    // time sums stay small
+    private void rebuildSums() {
+        evictionsSinceRebuild = 0;
+        mean = m2 = sumSquares = 0;
+        sumT = sumTT = sumTV = 0;
+        if (head == tail) {
+            return;
+        }
+        timeOrigin = times[(int) (head & mask)];
+        int n = 0;
+        for (long seq = head; seq < tail; seq++) {
+            float value = values[(int) (seq & mask)];
+            n++;
+            double delta = value - mean;
+            mean += delta / n;
+            m2 += delta * (value - mean);
+            sumSquares += (double) value * value;
+            double t = times[(int) (seq & mask)] - timeOrigin;
+            sumT += t;
+            sumTT += t * t;
+            sumTV += t * value;
+        }
+    }
+
+    private int bin(float value) {
+        if (!(value > histogramMin)) {
+            return 0;
+        }
+        int bin = (int) ((value - histogramMin) * binsPerUnit);
+        return bin < bins.length ? bin : bins.length - 1;
+    }
+}
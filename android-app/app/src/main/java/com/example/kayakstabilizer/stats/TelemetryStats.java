@@ -0,0 +1,168 @@
+package com.example.kayakstabilizer.stats;
+
+import com.example.kayakstabilizer.telemetry.TelemetryFormat;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+/**
+ * Live figures over several sliding windows of the decoded telemetry stream: roll RMS and
+ * variance (how well the boat is being held level), peak pitch, roll quantiles and the battery
+ * voltage trend. Each window keeps a fixed number of samples; longer windows thin the stream to
+ * fit, so memory is the same for a 10 second and a 10 minute window and every update is
+ * constant time.
+ *
+ * Updated from one telemetry thread and read from the UI; methods are synchronized.
+ */
+public final class TelemetryStats {
+
+    public static final long[] DEFAULT_WINDOWS_MILLIS = {10_000, 30_000, 5 * 60_000};
+    public static final int DEFAULT_SAMPLES_PER_WINDOW = 2048;
+
+    private static final float ANGLE_RANGE = 90f;
+    private static final int ANGLE_BINS = 360;      // 0.5 degree
+    private static final float BATTERY_RANGE = 25f;
+    private static final int BATTERY_BINS = 250;    // 0.1 V
+
+    private final long[] windowsMillis;
+    private final long[] minIntervalMillis;
+    private final long[] lastAttitudeMillis;
+    private final long[] lastBatteryMillis;
+    private final SlidingWindowStats[] roll;
+    private final SlidingWindowStats[] pitch;
+    private final SlidingWindowStats[] battery;
+
+    public TelemetryStats() {
+        this(DEFAULT_SAMPLES_PER_WINDOW, DEFAULT_WINDOWS_MILLIS);
+    }
+
+    public TelemetryStats(int samplesPerWindow, long... windowsMillis) {
+        int count = windowsMillis.length;
+        this.windowsMillis = windowsMillis.clone();
+        minIntervalMillis = new long[count];
+        lastAttitudeMillis = new long[count];
+        lastBatteryMillis = new long[count];
+        roll = new SlidingWindowStats[count];
+        pitch = new SlidingWindowStats[count];
+        battery = new SlidingWindowStats[count];
+        for (int i = 0; i < count; i++) {
+            long window = windowsMillis[i];
+            minIntervalMillis[i] = window / samplesPerWindow;
+            roll[i] = new SlidingWindowStats(window, samplesPerWindow, -ANGLE_RANGE, ANGLE_RANGE, ANGLE_BINS);
+            pitch[i] = new SlidingWindowStats(window, samplesPerWindow, -ANGLE_RANGE, ANGLE_RANGE, ANGLE_BINS);
+            battery[i] = new SlidingWindowStats(window, samplesPerWindow, 0f, BATTERY_RANGE, BATTERY_BINS);
+        }
+        reset();
+    }
+
+    /**
+     * Adds the fields present in a decoded frame. Timestamps must not decrease.
+     */
+    public synchronized void update(long timeMillis, TelemetrySnapshot snapshot) {
+        boolean attitude = snapshot.has(TelemetrySnapshot.FIELD_ROLL)
+                && snapshot.has(TelemetrySnapshot.FIELD_PITCH);
+        boolean voltage = snapshot.has(TelemetrySnapshot.FIELD_BATTERY);
+        for (int i = 0; i < roll.length; i++) {
+            // Thin the stream so the window's samples span its whole duration
+            if (attitude && timeMillis - lastAttitudeMillis[i] >= minIntervalMillis[i]) {
+                lastAttitudeMillis[i] = timeMillis;
+                roll[i].add(timeMillis, snapshot.roll);
+                pitch[i].add(timeMillis, snapshot.pitch);
+            }
+            if (voltage && timeMillis - lastBatteryMillis[i] >= minIntervalMillis[i]) {
+                lastBatteryMillis[i] = timeMillis;
+                battery[i].add(timeMillis, snapshot.batteryVoltage);
+            }
+        }
+    }
+
+    /** Ages out old samples when no frames are arriving. */
+    public synchronized void expire(long nowMillis) {
+        for (int i = 0; i < roll.length; i++) {
+            roll[i].expire(nowMillis);
+            pitch[i].expire(nowMillis);
+            battery[i].expire(nowMillis);
+        }
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < roll.length; i++) {
+            roll[i].clear();
+            pitch[i].clear();
+            battery[i].clear();
+            lastAttitudeMillis[i] = Long.MIN_VALUE / 2;
+            lastBatteryMillis[i] = Long.MIN_VALUE / 2;
+        }
+    }
+
+    public int getWindowCount() {
+        return windowsMillis.length;
+    }
+
+    public long getWindowMillis(int window) {
+        return windowsMillis[window];
+    }
+
+    /** Index of the window of {@code millis}, or -1. */
+    public int findWindow(long millis) {
+        for (int i = 0; i < windowsMillis.length; i++) {
+            if (windowsMillis[i] == millis) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized int getSampleCount(int window) {
+        return roll[window].size();
+    }
+
+    public synchronized double getRollRms(int window) {
+        return roll[window].getRms();
+    }
+
+    public synchronized double getRollVariance(int window) {
+        return roll[window].getVariance();
+    }
+
+    public synchronized float getRollQuantile(int window, double quantile) {
+        return roll[window].getQuantile(quantile);
+    }
+
+    public synchronized float getPeakRoll(int window) {
+        return roll[window].getPeak();
+    }
+
+    public synchronized float getPeakPitch(int window) {
+        return pitch[window].getPeak();
+    }
+
+    public synchronized double getPitchVariance(int window) {
+        return pitch[window].getVariance();
+    }
+
+    /** Battery voltage trend in volts per hour; negative while draining. NaN until known. */
+    public synchronized double getBatteryVoltsPerHour(int window) {
+        return battery[window].getSlopePerSecond() * 3600.0;
+    }
+
+    /**
+     * Appends a one-line summary of a window for the status area, e.g.
+     * "30s roll rms 2.1 sd 1.8 p95 3.5 | pitch peak 6.0 | batt -0.15 V/h".
+     */
+    public synchronized StringBuilder appendSummary(StringBuilder sb, int window) {
+        sb.append(windowsMillis[window] / 1000).append("s ");
+        if (roll[window].size() == 0) {
+            return sb.append("no data");
+        }
+        sb.append("roll rms ");
+        TelemetryFormat.appendFixed(sb, (float) roll[window].getRms(), 1).append(" sd ");
+        TelemetryFormat.appendFixed(sb, (float) roll[window].getStandardDeviation(), 1).append(" p95 ");
+        TelemetryFormat.appendFixed(sb, roll[window].getQuantile(0.95), 1).append(" | pitch peak ");
+        TelemetryFormat.appendFixed(sb, pitch[window].getPeak(), 1);
+        double voltsPerHour = getBatteryVoltsPerHour(window);
+        if (!Double.isNaN(voltsPerHour)) {
+            sb.append(" | batt ");
+            TelemetryFormat.appendFixed(sb, (float) voltsPerHour, 2).append(" V/h");
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.kayakstabilizer.telemetry;
+
+/**
+ * One diagnostic notification decoded: up to {@link DiagnosticFrameCodec#MAX_SAMPLES} samples
+ * taken by updateIMU() at the full IMU rate, with the raw getMotion6() values, the filtered
+ * attitude and the servo angles at that moment. Storage is allocated once; decode every frame
+ * into the same instance.
+ */
+public final class DiagnosticBatch {
+    public int sequence;
+    public int count;
+
+    public final long[] deviceMillis = new long[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final short[] accelX = new short[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final short[] accelY = new short[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final short[] accelZ = new short[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final short[] gyroX = new short[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final short[] gyroY = new short[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final short[] gyroZ = new short[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final float[] roll = new float[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final float[] pitch = new float[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final int[] servoLeft = new int[DiagnosticFrameCodec.MAX_SAMPLES];
+    public final int[] servoRight = new int[DiagnosticFrameCodec.MAX_SAMPLES];
+
+    public void clear() {
+        count = 0;
+    }
+
+    public boolean isFull() {
+        return count == DiagnosticFrameCodec.MAX_SAMPLES;
+    }
+
+    /**
+     * Adds a sample; the firmware simulator's side of the stream.
+     *
+     * @param imu ax, ay, az, gx, gy, gz as returned by getMotion6()
+     */
+    public void add(long millis, int[] imu, float rollValue, float pitchValue, int left, int right) {
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full");
+        }
+        int i = count++;
+        deviceMillis[i] = millis;
+        accelX[i] = (short) imu[0];
+        accelY[i] = (short) imu[1];
+        accelZ[i] = (short) imu[2];
+        gyroX[i] = (short) imu[3];
+        gyroY[i] = (short) imu[4];
+        gyroZ[i] = (short) imu[5];
+        roll[i] = rollValue;
+        pitch[i] = pitchValue;
+        servoLeft[i] = left;
+        servoRight[i] = right;
+    }
+}
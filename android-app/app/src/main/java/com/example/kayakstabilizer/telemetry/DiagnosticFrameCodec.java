@@ -0,0 +1,123 @@
+package com.example.kayakstabilizer.telemetry;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoder/decoder for the batched diagnostic notification sent while the firmware's
+ * diagnostic stream is on (OP_SET_DIAGNOSTICS). Little-endian:
+ *
+ * <pre>
+ * header                              sample (repeated count times)
+ * offset size field                   offset size field
+ *   0     1   magic 0x83                0     2   millis since the first sample (uint16)
+ *   1     1   sample count              2     6   ax, ay, az raw (int16)
+ *   2     2   batch sequence (uint16)   8     6   gx, gy, gz raw (int16)
+ *   4     4   millis() of sample 0     14     2   roll in centi-degrees (int16)
+ *                                      16     2   pitch in centi-degrees (int16)
+ *                                      18     1   left servo angle (uint8)
+ *                                      19     1   right servo angle (uint8)
+ * </pre>
+ *
+ * A batch is larger than the default 23-byte ATT MTU; {@link #samplesForMtu(int)} gives how
+ * many samples fit once a larger MTU has been negotiated.
+ */
+public final class DiagnosticFrameCodec {
+    public static final int MAGIC = 0x83;
+    public static final int HEADER_SIZE = 8;
+    public static final int SAMPLE_SIZE = 20;
+    /** DIAG_MAX_BATCH in the firmware. */
+    public static final int MAX_SAMPLES = 12;
+
+    // ATT notification header: opcode and attribute handle
+    private static final int ATT_OVERHEAD = 3;
+
+    private DiagnosticFrameCodec() {
+    }
+
+    /** Samples per notification that fit in the given ATT MTU, at most {@link #MAX_SAMPLES}; 0 if none. */
+    public static int samplesForMtu(int mtu) {
+        int fit = (mtu - ATT_OVERHEAD - HEADER_SIZE) / SAMPLE_SIZE;
+        return Math.max(0, Math.min(MAX_SAMPLES, fit));
+    }
+
+    public static boolean isDiagnosticFrame(byte[] data, int offset, int length) {
+        return length >= HEADER_SIZE && (data[offset] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * @return false, leaving {@code out} empty, if the value is not a whole diagnostic batch
+     */
+    public static boolean decode(byte[] data, int offset, int length, DiagnosticBatch out) {
+        out.clear();
+        if (!isDiagnosticFrame(data, offset, length)) {
+            return false;
+        }
+        int count = data[offset + 1] & 0xFF;
+        if (count > MAX_SAMPLES || length < HEADER_SIZE + count * SAMPLE_SIZE) {
+            return false;
+        }
+        out.sequence = getShort(data, offset + 2);
+        long baseMillis = (data[offset + 4] & 0xFF) | (data[offset + 5] & 0xFF) << 8
+                | (data[offset + 6] & 0xFF) << 16 | (data[offset + 7] & 0xFFL) << 24;
+        int p = offset + HEADER_SIZE;
+        for (int i = 0; i < count; i++, p += SAMPLE_SIZE) {
+            out.deviceMillis[i] = (baseMillis + getShort(data, p)) & 0xFFFFFFFFL;
+            out.accelX[i] = (short) getShort(data, p + 2);
+            out.accelY[i] = (short) getShort(data, p + 4);
+            out.accelZ[i] = (short) getShort(data, p + 6);
+            out.gyroX[i] = (short) getShort(data, p + 8);
+            out.gyroY[i] = (short) getShort(data, p + 10);
+            out.gyroZ[i] = (short) getShort(data, p + 12);
+            out.roll[i] = (short) getShort(data, p + 14) / 100f;
+            out.pitch[i] = (short) getShort(data, p + 16) / 100f;
+            out.servoLeft[i] = data[p + 18] & 0xFF;
+            out.servoRight[i] = data[p + 19] & 0xFF;
+        }
+        out.count = count;
+        return true;
+    }
+
+    /**
+     * Writes a batch at the buffer's position; the firmware simulator's side of the stream.
+     *
+     * @throws BufferOverflowException if the batch does not fit
+     */
+    public static void encode(DiagnosticBatch batch, ByteBuffer out) {
+        if (out.remaining() < HEADER_SIZE + batch.count * SAMPLE_SIZE) {
+            throw new BufferOverflowException();
+        }
+        long baseMillis = batch.count > 0 ? batch.deviceMillis[0] : 0;
+        out.put((byte) MAGIC);
+        out.put((byte) batch.count);
+        putShort(out, batch.sequence);
+        putShort(out, (int) baseMillis);
+        putShort(out, (int) (baseMillis >>> 16));
+        for (int i = 0; i < batch.count; i++) {
+            putShort(out, (int) (batch.deviceMillis[i] - baseMillis));
+            putShort(out, batch.accelX[i]);
+            putShort(out, batch.accelY[i]);
+            putShort(out, batch.accelZ[i]);
+            putShort(out, batch.gyroX[i]);
+            putShort(out, batch.gyroY[i]);
+            putShort(out, batch.gyroZ[i]);
+            putShort(out, clamp(Math.round(batch.roll[i] * 100f)));
+            putShort(out, clamp(Math.round(batch.pitch[i] * 100f)));
+            out.put((byte) batch.servoLeft[i]);
+            out.put((byte) batch.servoRight[i]);
+        }
+    }
+
+    private static int getShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static void putShort(ByteBuffer out, int value) {
+        out.put((byte) value);
+        out.put((byte) (value >> 8));
+    }
+
+    private static int clamp(int value) {
+        return value < Short.MIN_VALUE ? Short.MIN_VALUE : (value > Short.MAX_VALUE ? Short.MAX_VALUE : value);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.kayakstabilizer.telemetry;
+
+/**
+ * Fixed-capacity history of diagnostic samples (raw accelerometer and gyro, attitude, servo
+ * angles) at the firmware's full IMU rate, one primitive array per channel, 38 bytes per
+ * sample. Same threading as {@link TelemetryHistory}: one producer appends, readers copy into
+ * their own {@link Window} without blocking it, and the copies are best-effort in the same way.
+ */
+public final class DiagnosticHistory {
+
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final long[] deviceMillis;
+    private final short[] accel;    // x, y, z interleaved
+    private final short[] gyro;     // x, y, z interleaved
+    private final float[] roll;
+    private final float[] pitch;
+    private final byte[] servoLeft;
+    private final byte[] servoRight;
+
+    // Total samples ever appended; slot i is valid while i >= writeCount - capacity
+    private volatile long writeCount;
+
+    /**
+     * @param capacity number of samples kept, rounded up to a power of two
+     */
+    public DiagnosticHistory(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 28)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.deviceMillis = new long[size];
+        this.accel = new short[size * 3];
+        this.gyro = new short[size * 3];
+        this.roll = new float[size];
+        this.pitch = new float[size];
+        this.servoLeft = new byte[size];
+        this.servoRight = new byte[size];
+    }
+
+    public static DiagnosticHistory forDuration(int seconds, int sampleRateHz) {
+        return new DiagnosticHistory(seconds * sampleRateHz);
+    }
+
+    /**
+     * Appends sample {@code index} of a batch. Producer thread only; timestamps must not
+     * decrease.
+     */
+    public void append(long timestampMillis, DiagnosticBatch batch, int index) {
+        long count = writeCount;
+        int slot = (int) count & mask;
+        timestamps[slot] = timestampMillis;
+        deviceMillis[slot] = batch.deviceMillis[index];
+        accel[slot * 3] = batch.accelX[index];
+        accel[slot * 3 + 1] = batch.accelY[index];
+        accel[slot * 3 + 2] = batch.accelZ[index];
+        gyro[slot * 3] = batch.gyroX[index];
+        gyro[slot * 3 + 1] = batch.gyroY[index];
+        gyro[slot * 3 + 2] = batch.gyroZ[index];
+        roll[slot] = batch.roll[index];
+        pitch[slot] = batch.pitch[index];
+        servoLeft[slot] = (byte) batch.servoLeft[index];
+        servoRight[slot] = (byte) batch.servoRight[index];
+        // Volatile write publishes the slot contents to readers
+        writeCount = count + 1;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) Math.min(writeCount, capacity);
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Copies the most recent samples, up to the window's capacity, into {@code out}. Once the
+     * history has wrapped, its oldest sample is left out: the producer writes that slot next.
+     *
+     * @return the number of samples copied
+     */
+    public int copyLatest(Window out) {
+        long end = writeCount;
+        long start = Math.max(Math.max(0, end - capacity), end - out.capacity);
+        int n = (int) (end - start);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) (start + i) & mask;
+            out.timestamps[i] = timestamps[slot];
+            out.deviceMillis[i] = deviceMillis[slot];
+            System.arraycopy(accel, slot * 3, out.accel, i * 3, 3);
+            System.arraycopy(gyro, slot * 3, out.gyro, i * 3, 3);
+            out.roll[i] = roll[slot];
+            out.pitch[i] = pitch[slot];
+            out.servoLeft[i] = servoLeft[slot] & 0xFF;
+            out.servoRight[i] = servoRight[slot] & 0xFF;
+        }
+
+        // Drop samples the producer may have overwritten while we were copying, and the one it
+        // may be writing now
+        long overwritten = writeCount + 1 - capacity - start;
+        if (overwritten > 0) {
+            int skip = (int) Math.min(overwritten, n);
+            n -= skip;
+            System.arraycopy(out.timestamps, skip, out.timestamps, 0, n);
+            System.arraycopy(out.deviceMillis, skip, out.deviceMillis, 0, n);
+            System.arraycopy(out.accel, skip * 3, out.accel, 0, n * 3);
+            System.arraycopy(out.gyro, skip * 3, out.gyro, 0, n * 3);
+            System.arraycopy(out.roll, skip, out.roll, 0, n);
+            System.arraycopy(out.pitch, skip, out.pitch, 0, n);
+            System.arraycopy(out.servoLeft, skip, out.servoLeft, 0, n);
+            System.arraycopy(out.servoRight, skip, out.servoRight, 0, n);
+        }
+        out.count = n;
+        return n;
+    }
+
+    /**
+     * Reader-owned copy of a range of samples. Allocate once and reuse. Accelerometer and gyro
+     * values are interleaved x, y, z.
+     */
+    public static final class Window {
+        public final int capacity;
+        public final long[] timestamps;
+        public final long[] deviceMillis;
+        public final short[] accel;
+        public final short[] gyro;
+        public final float[] roll;
+        public final float[] pitch;
+        public final int[] servoLeft;
+        public final int[] servoRight;
+        public int count;
+
+        public Window(int capacity) {
+            this.capacity = capacity;
+            this.timestamps = new long[capacity];
+            this.deviceMillis = new long[capacity];
+            this.accel = new short[capacity * 3];
+            this.gyro = new short[capacity * 3];
+            this.roll = new float[capacity];
+            this.pitch = new float[capacity];
+            this.servoLeft = new int[capacity];
+            this.servoRight = new int[capacity];
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.kayakstabilizer.telemetry;
+
+/**
+ * Entry point for decoding a data characteristic value. Binary frames are recognised by their
+ * magic byte; anything else is treated as the legacy ASCII format, so older firmware and the
+ * ASCII event frames (EMERGENCY_STOP, LOW_BATTERY) keep working. Diagnostic batches hold many
+ * samples and are decoded with {@link DiagnosticFrameCodec} instead.
+ */
+public final class TelemetryDecoder {
+    private TelemetryDecoder() {
+    }
+
+    public static boolean decode(byte[] data, TelemetrySnapshot out) {
+        return data != null && decode(data, 0, data.length, out);
+    }
+
+    public static boolean decode(byte[] data, int offset, int length, TelemetrySnapshot out) {
+        if (TelemetryFrameCodec.isBinaryFrame(data, offset, length)) {
+            return TelemetryFrameCodec.decode(data, offset, length, out);
+        }
+        if (DiagnosticFrameCodec.isDiagnosticFrame(data, offset, length)) {
+            return false;
+        }
+        return TelemetryParser.parse(data, offset, length, out);
+    }
+}
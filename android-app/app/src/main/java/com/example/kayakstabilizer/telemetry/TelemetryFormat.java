@@ -0,0 +1,37 @@
+package com.example.kayakstabilizer.telemetry;
+
+/**
+ * Allocation-free number formatting for telemetry labels. String.format creates a Formatter,
+ * a String and boxes its arguments on every call, which adds up at telemetry rates.
+ */
+public final class TelemetryFormat {
+    private static final int[] POW10 = {1, 10, 100, 1000, 10000, 100000};
+
+    private TelemetryFormat() {
+    }
+
+    /**
+     * Appends {@code value} rounded to {@code decimals} places (0-5), e.g. 1.5f with two
+     * decimals appends "1.50".
+     */
+    public static StringBuilder appendFixed(StringBuilder sb, float value, int decimals) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return sb.append("--");
+        }
+        int scale = POW10[decimals];
+        long scaled = Math.round(Math.abs((double) value) * scale);
+        if (value < 0 && scaled != 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / scale);
+        if (decimals > 0) {
+            sb.append('.');
+            long fraction = scaled % scale;
+            for (int p = scale / 10; p > 1 && fraction < p; p /= 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+        return sb;
+    }
+}
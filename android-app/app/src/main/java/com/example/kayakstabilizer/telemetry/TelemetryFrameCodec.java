@@ -0,0 +1,153 @@
+package com.example.kayakstabilizer.telemetry;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoder/decoder for the fixed-layout binary telemetry frame sent by sendBLEData() when the
+ * firmware is built with BLE_TELEMETRY_BINARY. All multi-byte fields are little-endian:
+ *
+ * <pre>
+ * offset size field
+ *   0     1   magic/version (0x81 or 0x82); never a printable ASCII character
+ *   1     1   flags: bit0 stabilization, bit1 emergency, bit2 low battery, bits4-5 battery type
+ *   2     2   sequence number (uint16, wraps)
+ *   4     2   roll in centi-degrees (int16)
+ *   6     2   pitch in centi-degrees (int16)
+ *   8     2   battery in millivolts (uint16)
+ *  10     4   firmware millis() when the frame was sent (uint32, version 2 only)
+ * </pre>
+ *
+ * Both versions fit in a single notification at the default 23-byte ATT MTU. The encoder
+ * writes version 2; the decoder accepts both.
+ */
+public final class TelemetryFrameCodec {
+    public static final int MAGIC_V1 = 0x81;
+    public static final int MAGIC_V2 = 0x82;
+    public static final int FRAME_SIZE = 10;
+    public static final int FRAME_SIZE_V2 = 14;
+
+    private static final int DECODED_FIELDS = TelemetrySnapshot.FIELD_ROLL
+            | TelemetrySnapshot.FIELD_PITCH
+            | TelemetrySnapshot.FIELD_BATTERY
+            | TelemetrySnapshot.FIELD_BATTERY_TYPE
+            | TelemetrySnapshot.FIELD_STABILIZATION
+            | TelemetrySnapshot.FIELD_EMERGENCY
+            | TelemetrySnapshot.FIELD_LOW_BATTERY
+            | TelemetrySnapshot.FIELD_SEQUENCE;
+
+    private TelemetryFrameCodec() {
+    }
+
+    public static boolean isBinaryFrame(byte[] data, int offset, int length) {
+        if (length < FRAME_SIZE) {
+            return false;
+        }
+        int magic = data[offset] & 0xFF;
+        return magic == MAGIC_V1 || (magic == MAGIC_V2 && length >= FRAME_SIZE_V2);
+    }
+
+    /**
+     * Writes one version 2 frame at the buffer's position and advances it by
+     * {@link #FRAME_SIZE_V2}. Values outside the representable range are clamped.
+     *
+     * @throws BufferOverflowException if fewer than {@link #FRAME_SIZE_V2} bytes remain
+     */
+    public static void encode(TelemetrySnapshot snapshot, ByteBuffer out) {
+        if (out.remaining() < FRAME_SIZE_V2) {
+            throw new BufferOverflowException();
+        }
+        out.put((byte) MAGIC_V2);
+        out.put((byte) snapshot.packFlags());
+        putShort(out, snapshot.sequence);
+        putShort(out, clamp(Math.round(snapshot.roll * 100f), Short.MIN_VALUE, Short.MAX_VALUE));
+        putShort(out, clamp(Math.round(snapshot.pitch * 100f), Short.MIN_VALUE, Short.MAX_VALUE));
+        putShort(out, clamp(Math.round(snapshot.batteryVoltage * 1000f), 0, 0xFFFF));
+        putShort(out, (int) snapshot.deviceMillis);
+        putShort(out, (int) (snapshot.deviceMillis >>> 16));
+    }
+
+    /**
+     * Reads one frame of either version from the buffer's position and advances past it.
+     *
+     * @return false, without consuming anything, if the magic byte does not match
+     * @throws BufferUnderflowException if the buffer holds less than a whole frame
+     */
+    public static boolean decode(ByteBuffer in, TelemetrySnapshot out) {
+        if (in.remaining() < FRAME_SIZE) {
+            throw new BufferUnderflowException();
+        }
+        int position = in.position();
+        int magic = in.get(position) & 0xFF;
+        if (magic != MAGIC_V1 && magic != MAGIC_V2) {
+            return false;
+        }
+        int size = magic == MAGIC_V2 ? FRAME_SIZE_V2 : FRAME_SIZE;
+        if (in.remaining() < size) {
+            throw new BufferUnderflowException();
+        }
+        int flags = in.get(position + 1) & 0xFF;
+        int sequence = (in.get(position + 2) & 0xFF) | (in.get(position + 3) & 0xFF) << 8;
+        short roll = (short) ((in.get(position + 4) & 0xFF) | (in.get(position + 5) & 0xFF) << 8);
+        short pitch = (short) ((in.get(position + 6) & 0xFF) | (in.get(position + 7) & 0xFF) << 8);
+        int millivolts = (in.get(position + 8) & 0xFF) | (in.get(position + 9) & 0xFF) << 8;
+        long millis = magic == MAGIC_V2
+                ? (in.get(position + 10) & 0xFF) | (in.get(position + 11) & 0xFF) << 8
+                        | (in.get(position + 12) & 0xFF) << 16 | (in.get(position + 13) & 0xFFL) << 24
+                : -1;
+        in.position(position + size);
+
+        apply(flags, sequence, roll, pitch, millivolts, millis, out);
+        return true;
+    }
+
+    /**
+     * Decodes a frame straight from a characteristic value without wrapping it in a buffer.
+     */
+    public static boolean decode(byte[] data, int offset, int length, TelemetrySnapshot out) {
+        if (!isBinaryFrame(data, offset, length)) {
+            return false;
+        }
+        decodeFrame(data, offset, data[offset] & 0xFF, out);
+        return true;
+    }
+
+    private static void decodeFrame(byte[] data, int offset, int magic, TelemetrySnapshot out) {
+        int flags = data[offset + 1] & 0xFF;
+        int sequence = (data[offset + 2] & 0xFF) | (data[offset + 3] & 0xFF) << 8;
+        short roll = (short) ((data[offset + 4] & 0xFF) | (data[offset + 5] & 0xFF) << 8);
+        short pitch = (short) ((data[offset + 6] & 0xFF) | (data[offset + 7] & 0xFF) << 8);
+        int millivolts = (data[offset + 8] & 0xFF) | (data[offset + 9] & 0xFF) << 8;
+        long millis = magic == MAGIC_V2
+                ? (data[offset + 10] & 0xFF) | (data[offset + 11] & 0xFF) << 8
+                        | (data[offset + 12] & 0xFF) << 16 | (data[offset + 13] & 0xFFL) << 24
+                : -1;
+
+        apply(flags, sequence, roll, pitch, millivolts, millis, out);
+    }
+
+    // deviceMillis is -1 for version 1 frames, which carry no timestamp
+    private static void apply(int flags, int sequence, short roll, short pitch, int millivolts,
+                              long deviceMillis, TelemetrySnapshot out) {
+        out.roll = roll / 100f;
+        out.pitch = pitch / 100f;
+        out.batteryVoltage = millivolts / 1000f;
+        out.unpackFlags(flags);
+        out.sequence = sequence;
+        out.fields = DECODED_FIELDS;
+        if (deviceMillis >= 0) {
+            out.deviceMillis = deviceMillis;
+            out.fields |= TelemetrySnapshot.FIELD_DEVICE_TIME;
+        }
+    }
+
+    private static void putShort(ByteBuffer out, int value) {
+        out.put((byte) value);
+        out.put((byte) (value >> 8));
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.kayakstabilizer.telemetry;
+
+/**
+ * Fixed-capacity history of telemetry samples stored as one primitive array per channel, so
+ * memory use is known up front (25 bytes per sample) and appending never allocates. When full,
+ * the oldest samples are overwritten.
+ *
+ * A single producer thread appends; any number of readers copy windows into their own
+ * {@link Window}. Readers never block the producer: after copying, a reader trims the samples
+ * the producer may have overwritten meanwhile, including the slot it may be writing at that
+ * moment. The copied values are plain array reads, which the Java memory model does not order
+ * before that final check, and API 21 offers no load fence to order them; on a weakly ordered
+ * CPU a sample overwritten at the very end of a copy can still slip through. Windows are
+ * therefore best-effort, for charts and statistics where one stray sample does no harm.
+ */
+public final class TelemetryHistory {
+    public static final int CHANNEL_ROLL = 0;
+    public static final int CHANNEL_PITCH = 1;
+    public static final int CHANNEL_BATTERY = 2;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final float[] roll;
+    private final float[] pitch;
+    private final float[] battery;
+    private final byte[] flags;
+
+    // Total samples ever appended; slot i is valid while i >= writeCount - capacity
+    private volatile long writeCount;
+
+    /**
+     * @param capacity number of samples kept, rounded up to a power of two
+     */
+    public TelemetryHistory(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.roll = new float[size];
+        this.pitch = new float[size];
+        this.battery = new float[size];
+        this.flags = new byte[size];
+    }
+
+    public static TelemetryHistory forDuration(int seconds, int sampleRateHz) {
+        return new TelemetryHistory(seconds * sampleRateHz);
+    }
+
+    public void append(long timestampMillis, TelemetrySnapshot snapshot) {
+        append(timestampMillis, snapshot.roll, snapshot.pitch, snapshot.batteryVoltage,
+                snapshot.packFlags());
+    }
+
+    /**
+     * Appends one sample. Producer thread only; timestamps must not decrease.
+     */
+    public void append(long timestampMillis, float rollValue, float pitchValue,
+                       float batteryValue, int flagBits) {
+        long count = writeCount;
+        int slot = (int) count & mask;
+        timestamps[slot] = timestampMillis;
+        roll[slot] = rollValue;
+        pitch[slot] = pitchValue;
+        battery[slot] = batteryValue;
+        flags[slot] = (byte) flagBits;
+        // Volatile write publishes the slot contents to readers
+        writeCount = count + 1;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) Math.min(writeCount, capacity);
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Copies the most recent samples, up to the window's capacity, into {@code out}. Once the
+     * history has wrapped, its oldest sample is left out: the producer writes that slot next.
+     *
+     * @return the number of samples copied
+     */
+    public int copyLatest(Window out) {
+        long end = writeCount;
+        long start = Math.max(Math.max(0, end - capacity), end - out.capacity);
+        return copyRange(start, end, out);
+    }
+
+    /**
+     * Copies the samples with {@code fromMillis <= timestamp < toMillis} into {@code out}. If the
+     * window holds fewer samples than match, the most recent ones are kept.
+     *
+     * @return the number of samples copied
+     */
+    public int copyWindow(long fromMillis, long toMillis, Window out) {
+        long end = writeCount;
+        long oldest = Math.max(0, end - capacity);
+        long start = lowerBound(oldest, end, fromMillis);
+        long stop = lowerBound(start, end, toMillis);
+        start = Math.max(start, stop - out.capacity);
+        return copyRange(start, stop, out);
+    }
+
+    private int copyRange(long start, long end, Window out) {
+        int n = (int) (end - start);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) (start + i) & mask;
+            out.timestamps[i] = timestamps[slot];
+            out.roll[i] = roll[slot];
+            out.pitch[i] = pitch[slot];
+            out.battery[i] = battery[slot];
+            out.flags[i] = flags[slot];
+        }
+
+        // Drop samples the producer may have overwritten while we were copying, and the one it
+        // may be writing now: the slot of sample writeCount is that of writeCount - capacity
+        long overwritten = writeCount + 1 - capacity - start;
+        if (overwritten > 0) {
+            int skip = (int) Math.min(overwritten, n);
+            n -= skip;
+            System.arraycopy(out.timestamps, skip, out.timestamps, 0, n);
+            System.arraycopy(out.roll, skip, out.roll, 0, n);
+            System.arraycopy(out.pitch, skip, out.pitch, 0, n);
+            System.arraycopy(out.battery, skip, out.battery, 0, n);
+            System.arraycopy(out.flags, skip, out.flags, 0, n);
+        }
+        out.count = n;
+        return n;
+    }
+
+    // First sample index in [lo, hi) whose timestamp is >= millis
+    private long lowerBound(long lo, long hi, long millis) {
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (timestamps[(int) mid & mask] < millis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Reader-owned copy of a range of samples. Allocate once and reuse.
+     */
+    public static final class Window {
+        public final int capacity;
+        public final long[] timestamps;
+        public final float[] roll;
+        public final float[] pitch;
+        public final float[] battery;
+        public final byte[] flags;
+        public int count;
+
+        public Window(int capacity) {
+            this.capacity = capacity;
+            this.timestamps = new long[capacity];
+            this.roll = new float[capacity];
+            this.pitch = new float[capacity];
+            this.battery = new float[capacity];
+            this.flags = new byte[capacity];
+        }
+
+        public float[] channel(int channel) {
+            switch (channel) {
+                case CHANNEL_ROLL: return roll;
+                case CHANNEL_PITCH: return pitch;
+                case CHANNEL_BATTERY: return battery;
+                default: throw new IllegalArgumentException("Unknown channel: " + channel);
+            }
+        }
+
+        /**
+         * Reduces a channel to {@code buckets} equal time slices between {@code fromMillis} and
+         * {@code toMillis}, keeping the minimum and maximum of each so spikes survive. Buckets
+         * without samples are set to NaN.
+         */
+        public void downsampleMinMax(int channel, long fromMillis, long toMillis, int buckets,
+                                     float[] outMin, float[] outMax) {
+            float[] values = channel(channel);
+            for (int b = 0; b < buckets; b++) {
+                outMin[b] = Float.NaN;
+                outMax[b] = Float.NaN;
+            }
+            long span = Math.max(1, toMillis - fromMillis);
+            for (int i = 0; i < count; i++) {
+                long t = timestamps[i];
+                if (t < fromMillis || t >= toMillis) {
+                    continue;
+                }
+                int b = (int) ((t - fromMillis) * buckets / span);
+                float v = values[i];
+                // NaN comparisons are false, so an empty bucket takes the first value
+                if (!(outMin[b] <= v)) {
+                    outMin[b] = v;
+                }
+                if (!(outMax[b] >= v)) {
+                    outMax[b] = v;
+                }
+            }
+        }
+    }
+}
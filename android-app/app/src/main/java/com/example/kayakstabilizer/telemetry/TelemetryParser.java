@@ -0,0 +1,244 @@
+package com.example.kayakstabilizer.telemetry;
+
+import java.nio.charset.Charset;
+
+/**
+ * Parses the ASCII frames sent by the ESP32 firmware, e.g.
+ * "ROLL:1.23,PITCH:-0.45,BATTERY:3.92,BATTERY_TYPE:0,STABILIZATION:1,EMERGENCY:0,SEQ:17,TIME:52340",
+ * directly from the characteristic bytes. Nothing is allocated while parsing.
+ */
+public final class TelemetryParser {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[] KEY_ROLL = asciiKey("ROLL");
+    private static final byte[] KEY_PITCH = asciiKey("PITCH");
+    private static final byte[] KEY_BATTERY = asciiKey("BATTERY");
+    private static final byte[] KEY_BATTERY_TYPE = asciiKey("BATTERY_TYPE");
+    private static final byte[] KEY_STABILIZATION = asciiKey("STABILIZATION");
+    private static final byte[] KEY_EMERGENCY = asciiKey("EMERGENCY");
+    // Event frames sent outside the regular sendBLEData() cycle
+    private static final byte[] KEY_EMERGENCY_STOP = asciiKey("EMERGENCY_STOP");
+    private static final byte[] KEY_LOW_BATTERY = asciiKey("LOW_BATTERY");
+    private static final byte[] KEY_TYPE = asciiKey("TYPE");
+    private static final byte[] KEY_SEQUENCE = asciiKey("SEQ");
+    private static final byte[] KEY_TIME = asciiKey("TIME");
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
+
+    private TelemetryParser() {
+    }
+
+    public static boolean parse(byte[] data, TelemetrySnapshot out) {
+        return data != null && parse(data, 0, data.length, out);
+    }
+
+    /**
+     * Parses {@code length} bytes starting at {@code offset} into {@code out}. Only the fields
+     * found in the frame are overwritten; {@link TelemetrySnapshot#fields} is set to exactly
+     * those fields. Unknown keys are skipped.
+     *
+     * @return true if at least one known field was parsed and no known field was malformed
+     */
+    public static boolean parse(byte[] data, int offset, int length, TelemetrySnapshot out) {
+        int end = offset + length;
+        // Firmware strings may arrive NUL- or newline-terminated
+        while (end > offset && (data[end - 1] == 0 || data[end - 1] == '\n' || data[end - 1] == '\r')) {
+            end--;
+        }
+
+        int fields = 0;
+        int i = offset;
+        while (i < end) {
+            int keyStart = i;
+            while (i < end && data[i] != ':' && data[i] != ',') {
+                i++;
+            }
+            if (i >= end || data[i] != ':') {
+                // Field without a value; skip to the next one
+                i++;
+                continue;
+            }
+            int keyEnd = i++;
+            int valueStart = i;
+            while (i < end && data[i] != ',') {
+                i++;
+            }
+            int valueEnd = i++;
+
+            int field = applyField(data, keyStart, keyEnd, valueStart, valueEnd, out);
+            if (field < 0) {
+                out.fields = fields;
+                return false;
+            }
+            fields |= field;
+        }
+
+        // Regular frames carry no low-battery flag; derive it as checkBattery() does, so a
+        // LOW_BATTERY event does not stay latched in a reused snapshot
+        if ((fields & TelemetrySnapshot.FIELD_BATTERY) != 0 && (fields & TelemetrySnapshot.FIELD_LOW_BATTERY) == 0) {
+            out.lowBattery = out.batteryVoltage < TelemetrySnapshot.lowVoltageThreshold(out.batteryType);
+            fields |= TelemetrySnapshot.FIELD_LOW_BATTERY;
+        }
+        out.fields = fields;
+        return fields != 0;
+    }
+
+    // Returns the FIELD_* bit that was written, 0 for unknown keys and -1 for malformed values
+    private static int applyField(byte[] data, int keyStart, int keyEnd,
+                                  int valueStart, int valueEnd, TelemetrySnapshot out) {
+        int keyLength = keyEnd - keyStart;
+        float value;
+        int flag;
+
+        if (keyEquals(data, keyStart, keyLength, KEY_ROLL)) {
+            value = parseFloat(data, valueStart, valueEnd);
+            if (Float.isNaN(value)) return -1;
+            out.roll = value;
+            return TelemetrySnapshot.FIELD_ROLL;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_PITCH)) {
+            value = parseFloat(data, valueStart, valueEnd);
+            if (Float.isNaN(value)) return -1;
+            out.pitch = value;
+            return TelemetrySnapshot.FIELD_PITCH;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_BATTERY)) {
+            value = parseFloat(data, valueStart, valueEnd);
+            if (Float.isNaN(value)) return -1;
+            out.batteryVoltage = value;
+            return TelemetrySnapshot.FIELD_BATTERY;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_BATTERY_TYPE)
+                || keyEquals(data, keyStart, keyLength, KEY_TYPE)) {
+            flag = parseInt(data, valueStart, valueEnd);
+            if (flag < 0) return -1;
+            out.batteryType = flag;
+            return TelemetrySnapshot.FIELD_BATTERY_TYPE;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_STABILIZATION)) {
+            flag = parseInt(data, valueStart, valueEnd);
+            if (flag < 0) return -1;
+            out.stabilizationEnabled = flag != 0;
+            return TelemetrySnapshot.FIELD_STABILIZATION;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_EMERGENCY)
+                || keyEquals(data, keyStart, keyLength, KEY_EMERGENCY_STOP)) {
+            flag = parseInt(data, valueStart, valueEnd);
+            if (flag < 0) return -1;
+            out.emergencyStop = flag != 0;
+            return TelemetrySnapshot.FIELD_EMERGENCY;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_LOW_BATTERY)) {
+            value = parseFloat(data, valueStart, valueEnd);
+            if (Float.isNaN(value)) return -1;
+            out.batteryVoltage = value;
+            out.lowBattery = true;
+            return TelemetrySnapshot.FIELD_BATTERY | TelemetrySnapshot.FIELD_LOW_BATTERY;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_SEQUENCE)) {
+            flag = parseInt(data, valueStart, valueEnd);
+            if (flag < 0) return -1;
+            out.sequence = flag & 0xFFFF;
+            return TelemetrySnapshot.FIELD_SEQUENCE;
+        } else if (keyEquals(data, keyStart, keyLength, KEY_TIME)) {
+            long millis = parseLong(data, valueStart, valueEnd);
+            if (millis < 0) return -1;
+            out.deviceMillis = millis & 0xFFFFFFFFL;
+            return TelemetrySnapshot.FIELD_DEVICE_TIME;
+        }
+        return 0;
+    }
+
+    private static boolean keyEquals(byte[] data, int start, int length, byte[] key) {
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a plain decimal number such as "-12.34" as produced by Arduino's String(float, n).
+     * Exponents are not supported.
+     *
+     * @return the parsed value, or NaN if the bytes are not a valid number
+     */
+    static float parseFloat(byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            byte c = data[i];
+            if (c >= '0' && c <= '9') {
+                if (!seenPoint) {
+                    if (digits >= 9) {
+                        return Float.NaN;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                } else if (fractionDigits < POW10.length - 1) {
+                    // Extra decimals are below float precision anyway; firmware sends two
+                    mantissa = mantissa * 10 + (c - '0');
+                    fractionDigits++;
+                }
+                digits++;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Float.NaN;
+        }
+
+        double value = mantissa / POW10[fractionDigits];
+        return (float) (negative ? -value : value);
+    }
+
+    /**
+     * @return the non-negative integer in the given range, or -1 if it is not a valid number
+     */
+    static int parseInt(byte[] data, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            byte c = data[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @return the non-negative integer in the given range, or -1 if it is not a valid number
+     */
+    static long parseLong(byte[] data, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte c = data[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static byte[] asciiKey(String key) {
+        return key.getBytes(ASCII);
+    }
+}
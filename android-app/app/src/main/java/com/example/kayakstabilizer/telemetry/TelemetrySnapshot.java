@@ -0,0 +1,99 @@
+package com.example.kayakstabilizer.telemetry;
+
+/**
+ * Mutable, primitive-only view of the latest telemetry frame. Instances are meant to be
+ * reused: the parser overwrites the fields it finds and records which ones in {@link #fields}.
+ */
+public final class TelemetrySnapshot {
+    public static final int FIELD_ROLL = 1;
+    public static final int FIELD_PITCH = 1 << 1;
+    public static final int FIELD_BATTERY = 1 << 2;
+    public static final int FIELD_BATTERY_TYPE = 1 << 3;
+    public static final int FIELD_STABILIZATION = 1 << 4;
+    public static final int FIELD_EMERGENCY = 1 << 5;
+    public static final int FIELD_LOW_BATTERY = 1 << 6;
+    public static final int FIELD_SEQUENCE = 1 << 7;
+    public static final int FIELD_DEVICE_TIME = 1 << 8;
+
+    // Status bits as packed into one byte by the binary frame and the history buffer
+    public static final int FLAG_STABILIZATION = 1;
+    public static final int FLAG_EMERGENCY = 1 << 1;
+    public static final int FLAG_LOW_BATTERY = 1 << 2;
+    public static final int FLAG_BATTERY_TYPE_SHIFT = 4;
+    public static final int FLAG_BATTERY_TYPE_MASK = 0x3;
+
+    // Battery types as reported by checkBattery() in the firmware
+    public static final int BATTERY_LIPO = 0;
+    public static final int BATTERY_DRILL_18V = 1;
+    public static final int BATTERY_DRILL_20V = 2;
+
+    // checkBattery() cut-offs: LI_PO_LOW_VOLTAGE, DRILL_18V_LOW_VOLTAGE, DRILL_20V_LOW_VOLTAGE
+    private static final float[] LOW_VOLTAGE = {3.3f, 14.0f, 16.0f};
+
+    public float roll;
+    public float pitch;
+    public float batteryVoltage;
+    public int batteryType;
+    public boolean stabilizationEnabled;
+    public boolean emergencyStop;
+    public boolean lowBattery;
+    // Frame counter (uint16) and firmware millis() (uint32) at send time
+    public int sequence;
+    public long deviceMillis;
+    // Phone-side System.nanoTime() when the notification arrived; set by the receiver, not parsed
+    public long receivedNanos;
+
+    // Bit set of FIELD_* values present in the most recently parsed frame
+    public int fields;
+
+    /** The firmware's low-battery threshold for a BATTERY_* type; unknown types count as LiPo. */
+    public static float lowVoltageThreshold(int batteryType) {
+        return batteryType >= 0 && batteryType < LOW_VOLTAGE.length ? LOW_VOLTAGE[batteryType] : LOW_VOLTAGE[0];
+    }
+
+    public boolean has(int field) {
+        return (fields & field) != 0;
+    }
+
+    public int packFlags() {
+        return (stabilizationEnabled ? FLAG_STABILIZATION : 0)
+                | (emergencyStop ? FLAG_EMERGENCY : 0)
+                | (lowBattery ? FLAG_LOW_BATTERY : 0)
+                | ((batteryType & FLAG_BATTERY_TYPE_MASK) << FLAG_BATTERY_TYPE_SHIFT);
+    }
+
+    public void unpackFlags(int flags) {
+        stabilizationEnabled = (flags & FLAG_STABILIZATION) != 0;
+        emergencyStop = (flags & FLAG_EMERGENCY) != 0;
+        lowBattery = (flags & FLAG_LOW_BATTERY) != 0;
+        batteryType = (flags >> FLAG_BATTERY_TYPE_SHIFT) & FLAG_BATTERY_TYPE_MASK;
+    }
+
+    public void reset() {
+        roll = 0f;
+        pitch = 0f;
+        batteryVoltage = 0f;
+        batteryType = BATTERY_LIPO;
+        stabilizationEnabled = false;
+        emergencyStop = false;
+        lowBattery = false;
+        sequence = 0;
+        deviceMillis = 0;
+        receivedNanos = 0;
+        fields = 0;
+    }
+
+    public void copyFrom(TelemetrySnapshot other) {
+        roll = other.roll;
+        pitch = other.pitch;
+        batteryVoltage = other.batteryVoltage;
+        batteryType = other.batteryType;
+        stabilizationEnabled = other.stabilizationEnabled;
+        emergencyStop = other.emergencyStop;
+        lowBattery = other.lowBattery;
+        sequence = other.sequence;
+        deviceMillis = other.deviceMillis;
+        receivedNanos = other.receivedNanos;
+        fields = other.fields;
+    }
+}
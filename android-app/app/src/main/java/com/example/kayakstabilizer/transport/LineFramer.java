@@ -0,0 +1,149 @@
+package com.example.kayakstabilizer.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a byte stream into newline-terminated frames, e.g. the "ROLL:..,PITCH:..\n" lines the
+ * classic Bluetooth firmware prints over SPP. Bytes are read straight into a ring buffer, so
+ * lines split across reads or several lines coalesced into one read are both handled, and only
+ * complete frames are handed to the listener. Lines longer than the maximum frame length are
+ * dropped up to the next newline.
+ *
+ * Not thread-safe; meant to be owned by a single reader thread.
+ */
+public final class LineFramer {
+
+    public interface FrameListener {
+        /**
+         * Called with a complete frame, without the trailing "\n" or "\r\n". The array is owned
+         * by the framer and only valid for the duration of the call.
+         */
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    private final int maxFrameLength;
+    private final byte[] ring;
+    private final int mask;
+    // Linear copy for frames that wrap around the end of the ring
+    private final byte[] frameBuffer;
+
+    private int start;   // ring index of the first byte of the current partial frame
+    private int length;  // bytes of the current partial frame held in the ring
+    private boolean discarding;
+
+    private long frameCount;
+    private long oversizedCount;
+
+    public LineFramer(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be positive: " + maxFrameLength);
+        }
+        this.maxFrameLength = maxFrameLength;
+        // Room for a full partial frame plus at least as much again for the next read
+        int capacity = Integer.highestOneBit(maxFrameLength) << 2;
+        this.ring = new byte[capacity];
+        this.mask = capacity - 1;
+        this.frameBuffer = new byte[maxFrameLength];
+    }
+
+    /**
+     * Performs a single {@link InputStream#read(byte[], int, int)} directly into the ring buffer
+     * and dispatches every frame completed by it.
+     *
+     * @return the number of bytes read, or -1 at end of stream
+     */
+    public int readFrom(InputStream in, FrameListener listener) throws IOException {
+        int writeIndex = (start + length) & mask;
+        int contiguous = Math.min(ring.length - length, ring.length - writeIndex);
+        int read = in.read(ring, writeIndex, contiguous);
+        if (read > 0) {
+            scan(read, listener);
+        }
+        return read;
+    }
+
+    /**
+     * Copies {@code count} bytes into the ring buffer and dispatches every completed frame.
+     */
+    public void feed(byte[] data, int offset, int count, FrameListener listener) {
+        while (count > 0) {
+            int writeIndex = (start + length) & mask;
+            int chunk = Math.min(count, Math.min(ring.length - length, ring.length - writeIndex));
+            System.arraycopy(data, offset, ring, writeIndex, chunk);
+            scan(chunk, listener);
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    /**
+     * Drops any partial frame, e.g. after the socket was reconnected.
+     */
+    public void reset() {
+        start = 0;
+        length = 0;
+        discarding = false;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getOversizedCount() {
+        return oversizedCount;
+    }
+
+    private void scan(int added, FrameListener listener) {
+        int index = (start + length) & mask;
+        for (int i = 0; i < added; i++) {
+            byte b = ring[index];
+            index = (index + 1) & mask;
+
+            if (discarding) {
+                if (b == '\n') {
+                    discarding = false;
+                }
+                start = index;
+                length = 0;
+            } else if (b == '\n') {
+                emit(listener);
+                start = index;
+                length = 0;
+            } else if (length < maxFrameLength
+                    || (length == maxFrameLength && b == '\r')) {
+                // The CR of a CRLF ending is not part of the frame and may go past the limit
+                length++;
+            } else {
+                oversizedCount++;
+                discarding = true;
+                start = index;
+                length = 0;
+            }
+        }
+    }
+
+    private void emit(FrameListener listener) {
+        int frameLength = length;
+        if (frameLength > 0 && ring[(start + frameLength - 1) & mask] == '\r') {
+            frameLength--;
+        }
+        if (frameLength == 0) {
+            return;
+        }
+        frameCount++;
+
+        int firstPart = ring.length - start;
+        if (frameLength <= firstPart) {
+            listener.onFrame(ring, start, frameLength);
+        } else {
+            System.arraycopy(ring, start, frameBuffer, 0, firstPart);
+            System.arraycopy(ring, 0, frameBuffer, firstPart, frameLength - firstPart);
+            listener.onFrame(frameBuffer, 0, frameLength);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.kayakstabilizer.transport;
+
+import java.util.Random;
+
+/**
+ * Exponential reconnect delays with "equal jitter": attempt n waits between half and all of
+ * min(max, initial * 2^n), so a dropped link is retried quickly at first, several phones do not
+ * retry in lockstep, and a boat that is out of range is not hammered.
+ */
+public final class ReconnectBackoff {
+    public static final long DEFAULT_INITIAL_DELAY_MS = 250;
+    public static final long DEFAULT_MAX_DELAY_MS = 30_000;
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+    private int attempt;
+
+    public ReconnectBackoff() {
+        this(DEFAULT_INITIAL_DELAY_MS, DEFAULT_MAX_DELAY_MS, new Random());
+    }
+
+    public ReconnectBackoff(long initialDelayMillis, long maxDelayMillis, Random random) {
+        if (initialDelayMillis <= 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("Invalid delays " + initialDelayMillis + ", " + maxDelayMillis);
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    /**
+     * @return the delay before the next attempt; each call counts as one attempt
+     */
+    public synchronized long nextDelayMillis() {
+        long ceiling = initialDelayMillis << Math.min(attempt, 20);
+        if (ceiling > maxDelayMillis || ceiling <= 0) {
+            ceiling = maxDelayMillis;
+        }
+        attempt++;
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half));
+    }
+
+    /** Call once a connection is fully established. */
+    public synchronized void reset() {
+        attempt = 0;
+    }
+
+    public synchronized int getAttempt() {
+        return attempt;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.kayakstabilizer.transport;
+
+/**
+ * Link to a stabilizer as seen by the app's telemetry and command paths: raw telemetry
+ * notifications come in, one command write is outstanding at a time. Implemented over BLE GATT
+ * or RFCOMM on the phone and by the firmware simulator on a plain JVM.
+ */
+public interface StabilizerTransport {
+
+    interface Listener {
+        void onConnectionStateChanged(boolean connected);
+
+        /** Raw value of one telemetry notification; the array is only valid during the call. */
+        void onTelemetry(byte[] data, int offset, int length);
+
+        /** Completion of the write started by {@link #writeCommand(String)}. */
+        void onCommandWritten(boolean success);
+    }
+
+    void connect(Listener listener);
+
+    /**
+     * Starts writing {@code command}. Completion is reported through
+     * {@link Listener#onCommandWritten(boolean)}, matching CommandDispatcher's writer contract.
+     *
+     * @return true if the write was started
+     */
+    boolean writeCommand(String command);
+
+    /**
+     * Starts writing a binary command frame (see CommandProtocol), with the same completion
+     * contract as {@link #writeCommand(String)}.
+     */
+    boolean writeCommand(byte[] frame);
+
+    void disconnect();
+
+    boolean isConnected();
+}
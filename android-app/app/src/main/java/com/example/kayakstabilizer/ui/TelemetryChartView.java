@@ -0,0 +1,254 @@
+package com.example.kayakstabilizer.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.example.kayakstabilizer.telemetry.DiagnosticHistory;
+import com.example.kayakstabilizer.telemetry.TelemetryHistory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scrolling roll, pitch and servo traces over the last few seconds, drawn straight from the
+ * service's {@link TelemetryHistory} and {@link DiagnosticHistory}. Each trace is reduced to
+ * one min/max pair per pixel column, so a 100 Hz stream costs the same to draw as a 10 Hz one
+ * and spikes shorter than a pixel still show.
+ *
+ * Every buffer, {@link Path} and {@link Paint} is allocated up front or when the size changes;
+ * {@link #onDraw(Canvas)} allocates nothing. The view redraws only after
+ * {@link #notifyDataChanged()}, at most once per main-thread pass, and the time axis ends at
+ * the newest sample so nothing moves while no data arrives.
+ */
+public final class TelemetryChartView extends View {
+
+    public static final long DEFAULT_SPAN_MILLIS = 10_000;
+
+    // Degrees from level at the top and bottom edge; servo traces are degrees from centre
+    private static final float RANGE_DEGREES = 45f;
+    private static final int SERVO_CENTER = 90;
+    private static final float GRID_STEP_DEGREES = 15f;
+    // A longer pause between samples leaves a gap in the trace
+    private static final long GAP_MILLIS = 500;
+    // Samples copied per draw: the span at the diagnostic stream's 100 Hz
+    private static final int MAX_RATE_HZ = 100;
+
+    private static final int TRACE_ROLL = 0;
+    private static final int TRACE_PITCH = 1;
+    private static final int TRACE_SERVO_LEFT = 2;
+    private static final int TRACE_SERVO_RIGHT = 3;
+    private static final int TRACE_COUNT = 4;
+
+    private final long spanMillis;
+    private final TelemetryHistory.Window window;
+    private final DiagnosticHistory.Window diagnosticWindow;
+
+    private final Paint[] tracePaints = new Paint[TRACE_COUNT];
+    private final Paint gridPaint = new Paint();
+    private final Paint zeroPaint = new Paint();
+    private final Path gridPath = new Path();
+
+    // Per-column min/max of each trace and the line segments built from them; sized to the width
+    private float[][] columnMin = new float[TRACE_COUNT][0];
+    private float[][] columnMax = new float[TRACE_COUNT][0];
+    private float[] lines = new float[0];
+    private int columns;
+
+    private volatile TelemetryHistory history;
+    private volatile DiagnosticHistory diagnosticHistory;
+    private final AtomicBoolean invalidatePending = new AtomicBoolean(false);
+    // Not post(): before API 24 a runnable posted to a detached view is dropped, and
+    // invalidatePending would then never clear
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable invalidateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            invalidatePending.set(false);
+            invalidate();
+        }
+    };
+
+    public TelemetryChartView(Context context) {
+        this(context, null);
+    }
+
+    public TelemetryChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        spanMillis = DEFAULT_SPAN_MILLIS;
+        int capacity = (int) (spanMillis * MAX_RATE_HZ / 1000);
+        window = new TelemetryHistory.Window(capacity);
+        diagnosticWindow = new DiagnosticHistory.Window(capacity);
+
+        float density = getResources().getDisplayMetrics().density;
+        int[] colors = {Color.rgb(0x21, 0x96, 0xF3), Color.rgb(0x4C, 0xAF, 0x50),
+                Color.rgb(0xFF, 0x98, 0x00), Color.rgb(0xE9, 0x1E, 0x63)};
+        for (int i = 0; i < TRACE_COUNT; i++) {
+            Paint paint = new Paint();
+            paint.setColor(colors[i]);
+            paint.setStrokeWidth(1.5f * density);
+            paint.setStrokeCap(Paint.Cap.ROUND);
+            paint.setAntiAlias(true);
+            tracePaints[i] = paint;
+        }
+        gridPaint.setColor(Color.LTGRAY);
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(density);
+        zeroPaint.setColor(Color.GRAY);
+        zeroPaint.setStrokeWidth(density);
+    }
+
+    /** Sets the sample sources; the diagnostic history supplies the servo traces. */
+    public void setHistories(TelemetryHistory history, DiagnosticHistory diagnosticHistory) {
+        this.history = history;
+        this.diagnosticHistory = diagnosticHistory;
+        notifyDataChanged();
+    }
+
+    /**
+     * New samples were appended. Safe to call from any thread and at any rate, attached or
+     * not; calls before the main thread gets to the redraw share it.
+     */
+    public void notifyDataChanged() {
+        if (invalidatePending.compareAndSet(false, true)) {
+            mainHandler.post(invalidateRunnable);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mainHandler.removeCallbacks(invalidateRunnable);
+        invalidatePending.set(false);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        columns = Math.max(0, w - getPaddingLeft() - getPaddingRight());
+        for (int i = 0; i < TRACE_COUNT; i++) {
+            columnMin[i] = new float[columns];
+            columnMax[i] = new float[columns];
+        }
+        // Per column: the min-max stroke and the joint from the previous column
+        lines = new float[columns * 8];
+
+        gridPath.reset();
+        float left = getPaddingLeft();
+        float right = w - getPaddingRight();
+        for (float degrees = GRID_STEP_DEGREES; degrees < RANGE_DEGREES; degrees += GRID_STEP_DEGREES) {
+            gridPath.moveTo(left, toY(degrees));
+            gridPath.lineTo(right, toY(degrees));
+            gridPath.moveTo(left, toY(-degrees));
+            gridPath.lineTo(right, toY(-degrees));
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        canvas.drawPath(gridPath, gridPaint);
+        float zeroY = toY(0f);
+        canvas.drawLine(getPaddingLeft(), zeroY, getWidth() - getPaddingRight(), zeroY, zeroPaint);
+
+        TelemetryHistory source = history;
+        if (source == null || columns == 0 || source.copyLatest(window) == 0) {
+            return;
+        }
+        long to = window.timestamps[window.count - 1] + 1;
+        long from = to - spanMillis;
+        window.downsampleMinMax(TelemetryHistory.CHANNEL_ROLL, from, to, columns,
+                columnMin[TRACE_ROLL], columnMax[TRACE_ROLL]);
+        window.downsampleMinMax(TelemetryHistory.CHANNEL_PITCH, from, to, columns,
+                columnMin[TRACE_PITCH], columnMax[TRACE_PITCH]);
+        drawTrace(canvas, TRACE_ROLL);
+        drawTrace(canvas, TRACE_PITCH);
+
+        DiagnosticHistory diagnostics = diagnosticHistory;
+        if (diagnostics == null || diagnostics.copyLatest(diagnosticWindow) == 0
+                || diagnosticWindow.timestamps[diagnosticWindow.count - 1] < from) {
+            return;
+        }
+        downsampleServo(diagnosticWindow.servoLeft, from, to, TRACE_SERVO_LEFT);
+        downsampleServo(diagnosticWindow.servoRight, from, to, TRACE_SERVO_RIGHT);
+        drawTrace(canvas, TRACE_SERVO_LEFT);
+        drawTrace(canvas, TRACE_SERVO_RIGHT);
+    }
+
+    private void downsampleServo(int[] angles, long from, long to, int trace) {
+        int count = diagnosticWindow.count;
+        float[] outMin = columnMin[trace];
+        float[] outMax = columnMax[trace];
+        for (int c = 0; c < columns; c++) {
+            outMin[c] = Float.NaN;
+            outMax[c] = Float.NaN;
+        }
+        long span = Math.max(1, to - from);
+        long[] timestamps = diagnosticWindow.timestamps;
+        for (int i = 0; i < count; i++) {
+            long t = timestamps[i];
+            if (t < from || t >= to) {
+                continue;
+            }
+            int c = (int) ((t - from) * columns / span);
+            float v = angles[i] - SERVO_CENTER;
+            // NaN comparisons are false, so an empty column takes the first value
+            if (!(outMin[c] <= v)) {
+                outMin[c] = v;
+            }
+            if (!(outMax[c] >= v)) {
+                outMax[c] = v;
+            }
+        }
+    }
+
+    private void drawTrace(Canvas canvas, int trace) {
+        float[] min = columnMin[trace];
+        float[] max = columnMax[trace];
+        float left = getPaddingLeft();
+        // Columns between samples are joined up unless the stream stalled
+        long gapColumns = columns * GAP_MILLIS / spanMillis;
+        int n = 0;
+        int lastColumn = Integer.MIN_VALUE / 2;
+        float lastY = 0;
+        float lastX = 0;
+        for (int c = 0; c < columns; c++) {
+            if (Float.isNaN(min[c])) {
+                continue;
+            }
+            float x = left + c;
+            float yMin = toY(min[c]);
+            float yMax = toY(max[c]);
+            if (c - lastColumn <= gapColumns) {
+                lines[n++] = lastX;
+                lines[n++] = lastY;
+                lines[n++] = x;
+                lines[n++] = (yMin + yMax) * 0.5f;
+            }
+            lines[n++] = x;
+            lines[n++] = yMin;
+            lines[n++] = x;
+            lines[n++] = yMax;
+            lastColumn = c;
+            lastX = x;
+            lastY = (yMin + yMax) * 0.5f;
+        }
+        if (n > 0) {
+            canvas.drawLines(lines, 0, n, tracePaints[trace]);
+        }
+    }
+
+    // Positive angles up; values beyond the range are pinned to the edge
+    private float toY(float degrees) {
+        float clamped = Math.max(-RANGE_DEGREES, Math.min(RANGE_DEGREES, degrees));
+        float top = getPaddingTop();
+        float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        return top + height * (RANGE_DEGREES - clamped) / (2 * RANGE_DEGREES);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.kayakstabilizer.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import com.example.kayakstabilizer.telemetry.TelemetryFormat;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves decoded telemetry from the Bluetooth thread to the screen at most once per display
+ * frame. The producer publishes into a lock-free triple buffer and the main thread picks up
+ * only the newest snapshot in a Choreographer callback, so no matter how fast notifications
+ * arrive there is at most one pending UI update and values on screen are at most one frame old.
+ */
+public final class TelemetryUiBinder {
+
+    public interface Listener {
+        /** Called on the main thread after a new snapshot has been rendered. */
+        void onSnapshotRendered(TelemetrySnapshot snapshot);
+    }
+
+    private static final int DIRTY = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final TextView tvRoll, tvPitch, tvBattery;
+    private final String rollLabel, pitchLabel, batteryLabel;
+    private final Listener listener;
+
+    // Triple buffer: the producer owns backIndex, the UI owns frontIndex and the third slot
+    // is exchanged through readyState together with a "new data" bit
+    private final TelemetrySnapshot[] buffers = {
+            new TelemetrySnapshot(), new TelemetrySnapshot(), new TelemetrySnapshot()
+    };
+    private final AtomicInteger readyState = new AtomicInteger(1);
+    private int backIndex = 0;
+    private int publishedFields;
+    private int frontIndex = 2;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private boolean attached = true;
+
+    private final StringBuilder rollText = new StringBuilder(24);
+    private final StringBuilder pitchText = new StringBuilder(24);
+    private final StringBuilder batteryText = new StringBuilder(24);
+    // Last rendered values in display units (centi-degrees, centi-volts)
+    private int shownRoll = Integer.MIN_VALUE;
+    private int shownPitch = Integer.MIN_VALUE;
+    private int shownBattery = Integer.MIN_VALUE;
+
+    private long publishedCount;
+    private long renderedCount;
+
+    public TelemetryUiBinder(TextView tvRoll, TextView tvPitch, TextView tvBattery,
+                             String rollLabel, String pitchLabel, String batteryLabel,
+                             Listener listener) {
+        this.tvRoll = tvRoll;
+        this.tvPitch = tvPitch;
+        this.tvBattery = tvBattery;
+        this.rollLabel = rollLabel;
+        this.pitchLabel = pitchLabel;
+        this.batteryLabel = batteryLabel;
+        this.listener = listener;
+    }
+
+    /**
+     * Publishes the latest decoded state. Must be called from a single producer thread with a
+     * snapshot that keeps the last known value of fields missing from a frame, as the decoders
+     * do. It is copied, so the caller can reuse it straight away.
+     */
+    public void publish(TelemetrySnapshot snapshot) {
+        TelemetrySnapshot back = buffers[backIndex];
+        back.copyFrom(snapshot);
+        // A frame that is skipped must not hide fields carried by an earlier one
+        publishedFields |= snapshot.fields;
+        back.fields = publishedFields;
+        backIndex = readyState.getAndSet(backIndex | DIRTY) & INDEX_MASK;
+        publishedCount++;
+
+        if (frameScheduled.compareAndSet(false, true)) {
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    /**
+     * Stops rendering; call from the activity's onDestroy. Must be called on the main thread.
+     */
+    public void detach() {
+        attached = false;
+        mainHandler.removeCallbacks(scheduleFrame);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    public long getRenderedCount() {
+        return renderedCount;
+    }
+
+    // Choreographer is per-thread, so frame callbacks are registered from the main thread
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            if (attached) {
+                Choreographer.getInstance().postFrameCallback(frameCallback);
+            }
+        }
+    };
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Clear first so a publish racing with this frame schedules the next one
+            frameScheduled.set(false);
+            if (!attached || (readyState.get() & DIRTY) == 0) {
+                return;
+            }
+            frontIndex = readyState.getAndSet(frontIndex) & INDEX_MASK;
+            render(buffers[frontIndex]);
+        }
+    };
+
+    private void render(TelemetrySnapshot snapshot) {
+        renderedCount++;
+
+        if (snapshot.has(TelemetrySnapshot.FIELD_ROLL)) {
+            int roll = Math.round(snapshot.roll * 100f);
+            if (roll != shownRoll) {
+                shownRoll = roll;
+                setLabel(tvRoll, rollText, rollLabel, snapshot.roll, '°');
+            }
+        }
+        if (snapshot.has(TelemetrySnapshot.FIELD_PITCH)) {
+            int pitch = Math.round(snapshot.pitch * 100f);
+            if (pitch != shownPitch) {
+                shownPitch = pitch;
+                setLabel(tvPitch, pitchText, pitchLabel, snapshot.pitch, '°');
+            }
+        }
+        if (snapshot.has(TelemetrySnapshot.FIELD_BATTERY)) {
+            int battery = Math.round(snapshot.batteryVoltage * 100f);
+            if (battery != shownBattery) {
+                shownBattery = battery;
+                setLabel(tvBattery, batteryText, batteryLabel, snapshot.batteryVoltage, 'V');
+            }
+        }
+
+        if (listener != null) {
+            listener.onSnapshotRendered(snapshot);
+        }
+    }
+
+    private static void setLabel(TextView view, StringBuilder sb, String label, float value, char unit) {
+        sb.setLength(0);
+        TelemetryFormat.appendFixed(sb.append(label), value, 2).append(unit);
+        view.setText(sb);
+    }
+}
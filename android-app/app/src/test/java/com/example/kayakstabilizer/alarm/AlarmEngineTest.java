@@ -0,0 +1,148 @@
+package com.example.kayakstabilizer.alarm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AlarmEngineTest {
+
+    private final List<String> events = new ArrayList<>();
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+
+    @Test
+    public void briefSagDoesNotRaise() {
+        AlarmEngine engine = engine(AlarmRule.lowBattery());
+        battery(engine, 0, 3.2f);
+        battery(engine, 1500, 3.2f);
+        // Recovers above the raise threshold; the pending raise lapses
+        battery(engine, 1600, 3.4f);
+        battery(engine, 1700, 3.2f);
+        battery(engine, 3600, 3.2f);
+        assertTrue(events.isEmpty());
+        assertFalse(engine.isActive(0));
+
+        battery(engine, 3700, 3.2f);
+        assertEquals(Arrays.asList("low battery on 3700"), events);
+        assertEquals(1, engine.getRaised());
+    }
+
+    @Test
+    public void clearsOnlyAboveTheHysteresisBandAfterItsDelay() {
+        AlarmEngine engine = engine(AlarmRule.lowBattery());
+        battery(engine, 0, 3.0f);
+        battery(engine, 2000, 3.0f);
+        // Above the raise threshold but below 3.5 V: stays active however long it lasts
+        battery(engine, 3000, 3.45f);
+        battery(engine, 20_000, 3.45f);
+        assertTrue(engine.isActive(0));
+
+        battery(engine, 21_000, 3.6f);
+        battery(engine, 25_000, 3.6f);
+        battery(engine, 25_500, 3.45f);
+        battery(engine, 26_000, 3.6f);
+        battery(engine, 30_999, 3.6f);
+        assertTrue(engine.isActive(0));
+        battery(engine, 31_000, 3.6f);
+        assertFalse(engine.isActive(0));
+        assertEquals(Arrays.asList("low battery on 2000", "low battery off 31000"), events);
+    }
+
+    @Test
+    public void thresholdsFollowTheBatteryType() {
+        AlarmEngine engine = engine(AlarmRule.lowBattery());
+        snapshot.batteryType = TelemetrySnapshot.BATTERY_DRILL_18V;
+        battery(engine, 0, 13.9f);
+        battery(engine, 2000, 13.9f);
+        assertTrue(engine.isActive(0));
+
+        engine.reset();
+        events.clear();
+        snapshot.batteryType = TelemetrySnapshot.BATTERY_LIPO;
+        battery(engine, 3000, 13.9f);
+        battery(engine, 6000, 13.9f);
+        assertFalse(engine.isActive(0));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void quickRepeatsAreNotReported() {
+        AlarmRule rule = new AlarmRule("roll", AlarmRule.Source.ROLL).thresholds(30f, 20f);
+        rule.minReportIntervalMillis = 10_000;
+        AlarmEngine engine = engine(rule);
+
+        roll(engine, 0, -35f);
+        roll(engine, 100, 5f);
+        // Raised and cleared again within the interval: state changes, listener hears nothing
+        roll(engine, 5000, 40f);
+        assertTrue(engine.isActive(0));
+        roll(engine, 5100, 0f);
+        assertFalse(engine.isActive(0));
+        roll(engine, 10_000, 31f);
+        roll(engine, 10_100, 0f);
+
+        assertEquals(Arrays.asList("roll on 0", "roll off 100", "roll on 10000", "roll off 10100"), events);
+        assertEquals(3, engine.getRaised());
+        assertEquals(1, engine.getSuppressed());
+    }
+
+    @Test
+    public void framesWithoutTheFieldKeepPendingTimers() {
+        AlarmEngine engine = engine(AlarmRule.lowBattery());
+        battery(engine, 0, 3.0f);
+        snapshot.fields = TelemetrySnapshot.FIELD_ROLL;
+        snapshot.batteryVoltage = 5f;
+        engine.evaluate(1000, snapshot);
+        battery(engine, 2000, 3.0f);
+        assertTrue(engine.isActive(0));
+    }
+
+    @Test
+    public void emergencyStopIsReportedAtOnce() {
+        AlarmEngine engine = engine(AlarmRule.emergencyStop());
+        snapshot.fields = TelemetrySnapshot.FIELD_EMERGENCY;
+        snapshot.emergencyStop = true;
+        engine.evaluate(42, snapshot);
+        snapshot.emergencyStop = false;
+        engine.evaluate(43, snapshot);
+        assertEquals(Arrays.asList("emergency stop on 42", "emergency stop off 43"), events);
+    }
+
+    @Test
+    public void resetForgetsStateWithoutReporting() {
+        AlarmRule rule = new AlarmRule("roll", AlarmRule.Source.ROLL).thresholds(30f, 20f);
+        rule.minReportIntervalMillis = 60_000;
+        AlarmEngine engine = engine(rule);
+        roll(engine, 0, 45f);
+        engine.reset();
+        assertFalse(engine.isActive(0));
+        // The interval starts over too
+        roll(engine, 1000, 45f);
+        assertEquals(Arrays.asList("roll on 0", "roll on 1000"), events);
+        assertEquals(0, engine.getSuppressed());
+    }
+
+    private AlarmEngine engine(AlarmRule rule) {
+        return new AlarmEngine((r, active, value, timeMillis) ->
+                events.add(r.name + (active ? " on " : " off ") + timeMillis), rule);
+    }
+
+    private void battery(AlarmEngine engine, long timeMillis, float volts) {
+        snapshot.fields = TelemetrySnapshot.FIELD_BATTERY;
+        snapshot.batteryVoltage = volts;
+        engine.evaluate(timeMillis, snapshot);
+    }
+
+    private void roll(AlarmEngine engine, long timeMillis, float degrees) {
+        snapshot.fields = TelemetrySnapshot.FIELD_ROLL;
+        snapshot.roll = degrees;
+        engine.evaluate(timeMillis, snapshot);
+    }
+}
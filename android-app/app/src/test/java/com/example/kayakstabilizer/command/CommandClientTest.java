@@ -0,0 +1,188 @@
+package com.example.kayakstabilizer.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CommandClientTest {
+
+    /** Accepts every frame, or refuses them all; completions are left to the test. */
+    private static final class FakeLink implements CommandDispatcher.CommandWriter, CommandDispatcher.FrameWriter {
+        volatile boolean refuse;
+
+        @Override
+        public boolean write(String command) {
+            return !refuse;
+        }
+
+        @Override
+        public boolean write(byte[] frame) {
+            return !refuse;
+        }
+    }
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final FakeLink link = new FakeLink();
+    private final CommandDispatcher dispatcher = new CommandDispatcher(link, link);
+
+    @After
+    public void stopTimer() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void matchesResponsesByRequestIdInAnyOrder() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 10_000);
+        CommandFuture pid = client.setPid(2f, 0.5f, 1f);
+        CommandFuture stabilization = client.setStabilization(true);
+        CommandFuture status = client.getStatus();
+        assertEquals(3, client.getInFlightCount());
+        assertEquals(3, new HashSet<>(Arrays.asList(
+                pid.getRequestId(), stabilization.getRequestId(), status.getRequestId())).size());
+
+        answer(client, status, CommandProtocol.STATUS_ACK);
+        answer(client, pid, CommandProtocol.STATUS_ACK);
+        assertTrue(status.isDone());
+        assertTrue(pid.isDone());
+        assertFalse(stabilization.isDone());
+
+        CommandResult result = pid.get(1, TimeUnit.SECONDS);
+        assertEquals(CommandProtocol.OP_SET_PID, result.opcode);
+        assertEquals(pid.getRequestId(), result.requestId);
+        assertEquals(2f, result.kp, 0f);
+        assertEquals(1, client.getInFlightCount());
+        assertEquals(2, client.getAckedCount());
+    }
+
+    @Test
+    public void nackCompletesWithTheStatus() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 10_000);
+        CommandFuture future = client.setStabilization(true);
+        answer(client, future, CommandProtocol.STATUS_REJECTED);
+        CommandResult result = future.get(1, TimeUnit.SECONDS);
+        assertFalse(result.isAck());
+        assertEquals(CommandProtocol.STATUS_REJECTED, result.status);
+        assertEquals(1, client.getNackedCount());
+        assertEquals(0, client.getAckedCount());
+    }
+
+    @Test
+    public void responseForAnotherOpcodeLeavesTheRequestWaiting() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 10_000);
+        CommandFuture future = client.getStatus();
+        byte[] stale = CommandProtocol.encodeResponse(CommandProtocol.OP_SET_PID, future.getRequestId(),
+                CommandProtocol.STATUS_ACK, 0f, 0f, 0f, 0);
+        assertTrue(client.onResponse(stale, 0, stale.length));
+        assertEquals(1, client.getUnmatchedCount());
+        assertFalse(future.isDone());
+        assertEquals(1, client.getInFlightCount());
+
+        answer(client, future, CommandProtocol.STATUS_ACK);
+        assertTrue(future.get(1, TimeUnit.SECONDS).isAck());
+    }
+
+    @Test
+    public void ignoresFramesThatAreNotResponses() {
+        CommandClient client = new CommandClient(dispatcher, timer, 10_000);
+        byte[] telemetry = "ROLL:1.0".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(client.onResponse(telemetry, 0, telemetry.length));
+        assertEquals(0, client.getUnmatchedCount());
+    }
+
+    @Test
+    public void timesOutAndCountsTheLateAnswerAsUnmatched() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 50);
+        CommandFuture future = client.resetEmergency();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<CommandException> error = new AtomicReference<>();
+        future.addListener((f, result, e) -> {
+            error.set(e);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(CommandException.Reason.TIMEOUT, error.get().getReason());
+        assertEquals(1, client.getTimedOutCount());
+        assertEquals(0, client.getInFlightCount());
+
+        answer(client, future, CommandProtocol.STATUS_ACK);
+        assertEquals(1, client.getUnmatchedCount());
+        assertEquals(0, client.getAckedCount());
+    }
+
+    @Test
+    public void answeredRequestDoesNotTimeOut() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 50);
+        CommandFuture future = client.getStatus();
+        answer(client, future, CommandProtocol.STATUS_ACK);
+        Thread.sleep(150);
+        assertTrue(future.get().isAck());
+        assertEquals(0, client.getTimedOutCount());
+    }
+
+    @Test
+    public void refusedWriteFailsAtOnce() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 10_000);
+        link.refuse = true;
+        CommandFuture future = client.setDiagnostics(10);
+        assertTrue(future.isDone());
+        assertEquals(CommandException.Reason.WRITE_FAILED, reasonOf(future));
+        assertEquals(0, client.getInFlightCount());
+    }
+
+    @Test
+    public void failAllReleasesEveryWaiter() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 10_000);
+        CommandFuture first = client.getStatus();
+        CommandFuture second = client.setPid(1f, 1f, 1f);
+        client.failAll(CommandException.Reason.DISCONNECTED);
+        assertEquals(CommandException.Reason.DISCONNECTED, reasonOf(first));
+        assertEquals(CommandException.Reason.DISCONNECTED, reasonOf(second));
+        assertEquals(0, client.getInFlightCount());
+    }
+
+    @Test
+    public void cancelledRequestIgnoresItsLateAnswer() throws Exception {
+        CommandClient client = new CommandClient(dispatcher, timer, 10_000);
+        CommandFuture future = client.getStatus();
+        assertTrue(future.cancel(false));
+        assertEquals(0, client.getInFlightCount());
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+        answer(client, future, CommandProtocol.STATUS_ACK);
+        assertEquals(1, client.getUnmatchedCount());
+        assertEquals(0, client.getAckedCount());
+    }
+
+    private static void answer(CommandClient client, CommandFuture future, int status) {
+        byte[] response = CommandProtocol.encodeResponse(future.getOpcode(), future.getRequestId(),
+                status, 2f, 0.5f, 1f, 0);
+        assertTrue(client.onResponse(response, 0, response.length));
+    }
+
+    private static CommandException.Reason reasonOf(CommandFuture future) throws InterruptedException {
+        try {
+            future.get();
+            throw new AssertionError("Completed without an error");
+        } catch (ExecutionException e) {
+            return ((CommandException) e.getCause()).getReason();
+        }
+    }
+}
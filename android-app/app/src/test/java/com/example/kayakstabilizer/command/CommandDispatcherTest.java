@@ -0,0 +1,201 @@
+package com.example.kayakstabilizer.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class CommandDispatcherTest {
+
+    /** Records what reached the link; refuses the next {@code refusals} writes, or just {@code refused}. */
+    private static final class FakeLink implements CommandDispatcher.CommandWriter, CommandDispatcher.FrameWriter {
+        final List<String> written = new ArrayList<>();
+        int refusals;
+        String refused;
+
+        @Override
+        public synchronized boolean write(String command) {
+            if (command.equals(refused)) {
+                refused = null;
+                return false;
+            }
+            if (refusals > 0) {
+                refusals--;
+                return false;
+            }
+            written.add(command);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean write(byte[] frame) {
+            return write("frame" + frame.length);
+        }
+
+        synchronized List<String> written() {
+            return new ArrayList<>(written);
+        }
+    }
+
+    @Test
+    public void coalescesUnsentCommandsByKey() {
+        FakeLink link = new FakeLink();
+        CommandDispatcher dispatcher = new CommandDispatcher(link);
+        dispatcher.submit("kp", "SET_KP:1.0");
+        dispatcher.submit("kp", "SET_KP:1.5");
+        dispatcher.submit("kp", "SET_KP:2.0");
+        dispatcher.onWriteComplete(true);
+        dispatcher.onWriteComplete(true);
+        assertEquals(Arrays.asList("SET_KP:1.0", "SET_KP:2.0"), link.written());
+        assertEquals(1, dispatcher.getCoalescedCount());
+    }
+
+    @Test
+    public void urgentCommandsGoFirst() {
+        FakeLink link = new FakeLink();
+        CommandDispatcher dispatcher = new CommandDispatcher(link, link);
+        dispatcher.submit("kp", "SET_KP:1.0");
+        dispatcher.submit("kd", "SET_KD:0.5");
+        dispatcher.submitFrame(new byte[3]);
+        dispatcher.submitUrgent("EMERGENCY_STOP");
+        for (int i = 0; i < 3; i++) {
+            dispatcher.onWriteComplete(true);
+        }
+        assertEquals(Arrays.asList("SET_KP:1.0", "EMERGENCY_STOP", "frame3", "SET_KD:0.5"), link.written());
+    }
+
+    @Test
+    public void refusedUrgentCommandIsNotOvertaken() throws InterruptedException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            FakeLink link = new FakeLink();
+            CommandDispatcher dispatcher = new CommandDispatcher(link, link, timer);
+            dispatcher.submit("kp", "SET_KP:1.0");
+            dispatcher.submitFrame(new byte[3]);
+            dispatcher.submit("kd", "SET_KD:0.5");
+            link.refused = "EMERGENCY_STOP";
+            dispatcher.submitUrgent("EMERGENCY_STOP");
+
+            // The stop's first write is refused when SET_KP completes; the frame and SET_KD wait
+            dispatcher.onWriteComplete(true);
+            awaitWritten(link, 2);
+            assertEquals(Arrays.asList("SET_KP:1.0", "EMERGENCY_STOP"), link.written());
+            assertEquals(1, dispatcher.getFailedCount());
+            assertEquals(2, dispatcher.getPendingCount());
+
+            dispatcher.onWriteComplete(true);
+            dispatcher.onWriteComplete(true);
+            assertEquals(Arrays.asList("SET_KP:1.0", "EMERGENCY_STOP", "frame3", "SET_KD:0.5"), link.written());
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void refusedUrgentCommandWaitsForTheNextPumpWithoutATimer() {
+        FakeLink link = new FakeLink();
+        CommandDispatcher dispatcher = new CommandDispatcher(link);
+        dispatcher.submit("kp", "SET_KP:1.0");
+        dispatcher.submit("kd", "SET_KD:0.5");
+        link.refused = "EMERGENCY_STOP";
+        dispatcher.submitUrgent("EMERGENCY_STOP");
+        dispatcher.onWriteComplete(true);
+        assertEquals(Arrays.asList("SET_KP:1.0"), link.written());
+
+        dispatcher.submit("ki", "SET_KI:0.1");
+        dispatcher.onWriteComplete(true);
+        dispatcher.onWriteComplete(true);
+        assertEquals(Arrays.asList("SET_KP:1.0", "EMERGENCY_STOP", "SET_KD:0.5", "SET_KI:0.1"), link.written());
+    }
+
+    @Test
+    public void refusedKeyedCommandIsRetried() throws InterruptedException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            FakeLink link = new FakeLink();
+            CommandDispatcher dispatcher = new CommandDispatcher(link, null, timer);
+            link.refusals = 2;
+            dispatcher.submit("STABILIZATION_ON");
+            assertEquals(1, dispatcher.getPendingCount());
+            awaitWritten(link, 1);
+            assertEquals(Arrays.asList("STABILIZATION_ON"), link.written());
+            assertEquals(2, dispatcher.getFailedCount());
+            assertEquals(0, dispatcher.getPendingCount());
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void refusedKeyedCommandTakesANewerValue() {
+        FakeLink link = new FakeLink();
+        CommandDispatcher dispatcher = new CommandDispatcher(link);
+        link.refusals = 2;
+        dispatcher.submit("kp", "SET_KP:1.0");
+        dispatcher.submit("kd", "SET_KD:0.5");
+        assertTrue(link.written().isEmpty());
+        assertEquals(2, dispatcher.getPendingCount());
+        dispatcher.submit("kp", "SET_KP:2.0");
+        dispatcher.onWriteComplete(true);
+        assertEquals(Arrays.asList("SET_KP:2.0", "SET_KD:0.5"), link.written());
+        assertEquals(1, dispatcher.getCoalescedCount());
+    }
+
+    @Test
+    public void refusedFrameIsDroppedAndReported() {
+        FakeLink link = new FakeLink();
+        CommandDispatcher dispatcher = new CommandDispatcher(link, link);
+        List<String> reports = new ArrayList<>();
+        dispatcher.setFrameListener((frame, started) -> reports.add(frame.length + (started ? " sent" : " refused")));
+        link.refusals = 1;
+        dispatcher.submitFrame(new byte[4]);
+        assertEquals(0, dispatcher.getPendingCount());
+        dispatcher.submit("kp", "SET_KP:1.0");
+        assertEquals(Arrays.asList("SET_KP:1.0"), link.written());
+        assertEquals(Arrays.asList("4 refused"), reports);
+        assertEquals(1, dispatcher.getFailedCount());
+    }
+
+    @Test
+    public void retriesRefusedUrgentCommandOnTheTimer() throws InterruptedException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            FakeLink link = new FakeLink();
+            CommandDispatcher dispatcher = new CommandDispatcher(link, null, timer);
+            link.refusals = 3;
+            dispatcher.submitUrgent("EMERGENCY_STOP");
+            awaitWritten(link, 1);
+            assertEquals(Arrays.asList("EMERGENCY_STOP"), link.written());
+            assertEquals(3, dispatcher.getFailedCount());
+            assertEquals(1, dispatcher.getSentCount());
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void resetForgetsTheOutstandingWrite() {
+        FakeLink link = new FakeLink();
+        CommandDispatcher dispatcher = new CommandDispatcher(link);
+        dispatcher.submit("kp", "SET_KP:1.0");
+        dispatcher.submit("kd", "SET_KD:0.5");
+        dispatcher.reset();
+        dispatcher.submit("ki", "SET_KI:0.1");
+        assertEquals(Arrays.asList("SET_KP:1.0", "SET_KI:0.1"), link.written());
+        assertTrue(dispatcher.getPendingCount() == 0);
+    }
+
+    private static void awaitWritten(FakeLink link, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (link.written().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
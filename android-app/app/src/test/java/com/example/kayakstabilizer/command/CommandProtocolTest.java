@@ -0,0 +1,82 @@
+package com.example.kayakstabilizer.command;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+public class CommandProtocolTest {
+
+    @Test
+    public void setPidCarriesTheGainsLittleEndian() {
+        byte[] frame = CommandProtocol.encodeSetPid(0x1234, 2.5f, 0.1f, 0.75f);
+        ByteBuffer expected = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        expected.put((byte) 0xC1).put((byte) CommandProtocol.OP_SET_PID).putShort((short) 0x1234);
+        expected.putFloat(2.5f).putFloat(0.1f).putFloat(0.75f);
+        assertArrayEquals(expected.array(), frame);
+
+        assertTrue(CommandProtocol.isCommand(frame, 0, frame.length));
+        assertEquals(0x1234, CommandProtocol.getShort(frame, 2));
+        assertEquals(0.1f, CommandProtocol.getFloat(frame, CommandProtocol.HEADER_SIZE + 4), 0f);
+    }
+
+    @Test
+    public void encodesCommandsWithFewOrNoArguments() {
+        assertArrayEquals(new byte[] {(byte) 0xC1, 0x02, 7, 0, 1},
+                CommandProtocol.encodeSetStabilization(7, true));
+        assertArrayEquals(new byte[] {(byte) 0xC1, 0x02, 7, 0, 0},
+                CommandProtocol.encodeSetStabilization(7, false));
+        assertArrayEquals(new byte[] {(byte) 0xC1, 0x06, 8, 0, 10},
+                CommandProtocol.encodeSetDiagnostics(8, 10));
+        assertArrayEquals(new byte[] {(byte) 0xC1, 0x05, (byte) 0xFF, (byte) 0xFF},
+                CommandProtocol.encode(CommandProtocol.OP_GET_STATUS, 0xFFFF));
+    }
+
+    @Test
+    public void responseRoundTrips() {
+        int flags = TelemetrySnapshot.FLAG_EMERGENCY;
+        byte[] frame = CommandProtocol.encodeResponse(CommandProtocol.OP_SET_PID, 0xBEEF,
+                CommandProtocol.STATUS_OUT_OF_RANGE, 3f, 0.2f, 1.5f, flags);
+        assertEquals(CommandProtocol.RESPONSE_SIZE, frame.length);
+
+        // At an offset, as inside a larger buffer
+        byte[] buffer = new byte[frame.length + 3];
+        System.arraycopy(frame, 0, buffer, 3, frame.length);
+        CommandResult result = new CommandResult();
+        assertTrue(CommandProtocol.decodeResponse(buffer, 3, frame.length, result));
+        assertEquals(CommandProtocol.OP_SET_PID, result.opcode);
+        assertEquals(0xBEEF, result.requestId);
+        assertEquals(CommandProtocol.STATUS_OUT_OF_RANGE, result.status);
+        assertFalse(result.isAck());
+        assertEquals(3f, result.kp, 0f);
+        assertEquals(0.2f, result.ki, 0f);
+        assertEquals(1.5f, result.kd, 0f);
+        assertEquals(flags, result.flags);
+        assertTrue(result.isEmergencyStop());
+    }
+
+    @Test
+    public void otherFramesAreNotResponses() {
+        CommandResult result = new CommandResult();
+        byte[] response = CommandProtocol.encodeResponse(1, 1, 0, 0f, 0f, 0f, 0);
+        assertFalse(CommandProtocol.decodeResponse(response, 0, response.length - 1, result));
+
+        byte[] command = CommandProtocol.encodeSetPid(1, 1f, 1f, 1f);
+        byte[] padded = new byte[CommandProtocol.RESPONSE_SIZE];
+        System.arraycopy(command, 0, padded, 0, command.length);
+        assertFalse(CommandProtocol.decodeResponse(padded, 0, padded.length, result));
+        assertFalse(CommandProtocol.isCommand(response, 0, response.length));
+
+        byte[] ascii = "SET_KP:1.000000000".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(CommandProtocol.isResponse(ascii, 0, ascii.length));
+        assertFalse(CommandProtocol.isCommand(ascii, 0, ascii.length));
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.kayakstabilizer.fleet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class BoatSessionTest {
+
+    /** Runs nothing until told to, like a boat executor that has fallen behind. */
+    private static final class StalledExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private static final class NullTransport implements StabilizerTransport {
+        @Override
+        public void connect(Listener listener) {
+        }
+
+        @Override
+        public boolean writeCommand(String command) {
+            return true;
+        }
+
+        @Override
+        public boolean writeCommand(byte[] frame) {
+            return true;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    }
+
+    private final StalledExecutor executor = new StalledExecutor();
+    // Roll of each regular frame delivered, or -1 for an emergency stop
+    private final List<Integer> delivered = new ArrayList<>();
+    private final BoatSession boat = new BoatSession("boat", new NullTransport(), executor,
+            new FleetSessionManager.Listener() {
+                @Override
+                public void onStateChanged(BoatSession boat, BoatSession.State state) {
+                }
+
+                @Override
+                public void onTelemetry(BoatSession boat, TelemetrySnapshot snapshot) {
+                    delivered.add(snapshot.has(TelemetrySnapshot.FIELD_ROLL) ? (int) snapshot.roll : -1);
+                }
+            }, 10, 10);
+
+    @Test
+    public void emergencyStopSurvivesAFullInbox() {
+        boat.onConnectionStateChanged(true);
+        executor.runAll();
+        for (int i = 0; i < 10; i++) {
+            receive("ROLL:" + i);
+        }
+        receive("EMERGENCY_STOP:1");
+        for (int i = 10; i < 110; i++) {
+            receive("ROLL:" + i);
+        }
+        executor.runAll();
+
+        // The emergency stop plus the newest 64 regular frames, in arrival order
+        assertEquals(1 + BoatSession.INBOX_CAPACITY, delivered.size());
+        assertEquals(-1, (int) delivered.get(0));
+        assertEquals(110 - BoatSession.INBOX_CAPACITY, (int) delivered.get(1));
+        assertEquals(109, (int) delivered.get(delivered.size() - 1));
+
+        BoatStatus status = boat.getStatus(new BoatStatus());
+        assertTrue(status.telemetry.emergencyStop);
+        assertEquals(111 - 1 - BoatSession.INBOX_CAPACITY, status.framesDropped);
+        assertEquals(0, status.criticalDropped);
+        assertEquals(status.framesDropped, boat.getMetrics().getQueueDroppedFrames());
+    }
+
+    @Test
+    public void criticalFramesKeepTheirPlaceAmongRegularOnes() {
+        boat.onConnectionStateChanged(true);
+        executor.runAll();
+        for (int i = 0; i < 100; i++) {
+            receive(i == 70 ? "EMERGENCY_STOP:1" : "ROLL:" + i);
+        }
+        executor.runAll();
+        assertEquals(1 + BoatSession.INBOX_CAPACITY, delivered.size());
+        // Regular frames 35..69, the stop, then 71..99
+        assertEquals(35, (int) delivered.get(0));
+        assertEquals(-1, (int) delivered.get(70 - 35));
+        assertEquals(71, (int) delivered.get(70 - 35 + 1));
+    }
+
+    @Test
+    public void aFloodOfCriticalFramesIsCounted() {
+        boat.onConnectionStateChanged(true);
+        executor.runAll();
+        int slots = BoatSession.INBOX_CAPACITY + BoatSession.INBOX_CRITICAL_CAPACITY;
+        for (int i = 0; i < slots + 20; i++) {
+            receive("EMERGENCY_STOP:1");
+        }
+        // No room left for a regular frame either
+        receive("ROLL:5");
+        executor.runAll();
+
+        assertEquals(slots, delivered.size());
+        assertEquals(-1, (int) delivered.get(slots - 1));
+        BoatStatus status = boat.getStatus(new BoatStatus());
+        assertEquals(21, status.framesDropped);
+        assertEquals(20, status.criticalDropped);
+    }
+
+    private void receive(String frame) {
+        byte[] data = frame.getBytes(StandardCharsets.US_ASCII);
+        boat.onTelemetry(data, 0, data.length);
+    }
+}
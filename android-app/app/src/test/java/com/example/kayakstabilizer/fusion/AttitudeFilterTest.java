@@ -0,0 +1,150 @@
+package com.example.kayakstabilizer.fusion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AttitudeFilterTest {
+
+    private static final float DT = AttitudeFilter.DEFAULT_DT;
+
+    @Test
+    public void everyFilterSettlesOnAStaticTilt() {
+        for (AttitudeFilter filter : allFilters()) {
+            for (int i = 0; i < 3000; i++) {
+                feed(filter, 20f, -10f, 0f, 0f);
+            }
+            assertEquals(filter.getName(), 20f, filter.getRoll(), 0.1f);
+            assertEquals(filter.getName(), -10f, filter.getPitch(), 0.1f);
+        }
+    }
+
+    @Test
+    public void gyroFiltersStartFromTheAccelerometerAttitude() {
+        AttitudeFilter[] filters = {new ComplementaryFilter(), new KalmanFilter(), new MadgwickFilter()};
+        for (AttitudeFilter filter : filters) {
+            feed(filter, -35f, 15f, 0f, 0f);
+            assertEquals(filter.getName(), -35f, filter.getRoll(), 0.01f);
+            assertEquals(filter.getName(), 15f, filter.getPitch(), 0.01f);
+        }
+    }
+
+    @Test
+    public void gyroFiltersFollowARollFasterThanTheLowPass() {
+        AttitudeFilter lowPass = new AccelLowPassFilter();
+        AttitudeFilter[] filters = {new ComplementaryFilter(), new KalmanFilter(), new MadgwickFilter(), lowPass};
+        for (AttitudeFilter filter : filters) {
+            feed(filter, 0f, 0f, 0f, 0f);
+            // A 30 deg/s heel for half a second, measured consistently by both sensors
+            for (int i = 1; i <= 50; i++) {
+                feed(filter, 30f * i * DT, 0f, 30f, 0f);
+            }
+            if (filter != lowPass) {
+                assertEquals(filter.getName(), 15f, filter.getRoll(), 0.5f);
+            }
+        }
+        assertTrue(lowPass.getRoll() < 13f);
+    }
+
+    @Test
+    public void gyroFiltersDampAccelerationSpikes() {
+        AttitudeFilter lowPass = new AccelLowPassFilter();
+        AttitudeFilter[] filters = {new ComplementaryFilter(), new KalmanFilter(), new MadgwickFilter(), lowPass};
+        for (AttitudeFilter filter : filters) {
+            for (int i = 0; i < 500; i++) {
+                feed(filter, 0f, 0f, 0f, 0f);
+            }
+            // A paddle stroke: a sideways jolt of 0.5 g for 50 ms while the hull stays level
+            for (int i = 0; i < 5; i++) {
+                filter.update(0f, 0.5f, 1f, 0f, 0f, 0f, DT);
+            }
+            if (filter != lowPass) {
+                assertEquals(filter.getName(), 0f, filter.getRoll(), 3f);
+            }
+        }
+        assertTrue(lowPass.getRoll() > 8f);
+    }
+
+    @Test
+    public void kalmanLearnsAConstantGyroBias() {
+        KalmanFilter kalman = new KalmanFilter();
+        ComplementaryFilter complementary = new ComplementaryFilter();
+        for (int i = 0; i < 6000; i++) {
+            feed(kalman, 5f, 0f, 2f, 0f);
+            feed(complementary, 5f, 0f, 2f, 0f);
+        }
+        assertEquals(5f, kalman.getRoll(), 0.1f);
+        // The complementary filter settles a bias times its time constant off
+        assertEquals(5f + 2f * ComplementaryFilter.DEFAULT_TIME_CONSTANT, complementary.getRoll(), 0.1f);
+    }
+
+    @Test
+    public void madgwickSurvivesFreeFall() {
+        MadgwickFilter filter = new MadgwickFilter();
+        filter.update(0f, 0f, 0f, 10f, 0f, 0f, DT);
+        feed(filter, 10f, 5f, 0f, 0f);
+        for (int i = 0; i < 10; i++) {
+            filter.update(0f, 0f, 0f, 0f, 0f, 0f, DT);
+        }
+        assertEquals(10f, filter.getRoll(), 0.01f);
+        assertEquals(5f, filter.getPitch(), 0.01f);
+    }
+
+    @Test
+    public void processScalesRawSamplesAndTakesTheStepFromTheTimestamps() {
+        ComplementaryFilter stepped = new ComplementaryFilter();
+        ComplementaryFilter recorded = new ComplementaryFilter();
+        int n = 20;
+        short[] accel = new short[n * 3];
+        short[] gyro = new short[n * 3];
+        long[] millis = new long[n];
+        for (int i = 0; i < n; i++) {
+            accel[i * 3 + 2] = (short) AttitudeFilter.ACCEL_LSB_PER_G;
+            gyro[i * 3] = (short) (10 * AttitudeFilter.GYRO_LSB_PER_DPS);
+            millis[i] = 1000 + i * 20L;
+            stepped.update(0f, 0f, 1f, 10f, 0f, 0f, 0.02f);
+        }
+        float[] rolls = new float[n];
+        recorded.process(accel, gyro, millis, 0, n, rolls, null);
+        assertEquals(stepped.getRoll(), recorded.getRoll(), 1e-4f);
+        assertEquals(recorded.getRoll(), rolls[n - 1], 0f);
+        assertEquals(0f, rolls[0], 0f);
+
+        // Continues from where it stopped; a long gap is not integrated through
+        long[] later = {millis[n - 1] + 60_000};
+        recorded.process(accel, gyro, later, 0, 1, null, null);
+        stepped.update(0f, 0f, 1f, 10f, 0f, 0f, 0.1f);
+        assertEquals(stepped.getRoll(), recorded.getRoll(), 1e-4f);
+    }
+
+    @Test
+    public void resetStartsANewEstimate() {
+        for (AttitudeFilter filter : allFilters()) {
+            for (int i = 0; i < 100; i++) {
+                feed(filter, 30f, 0f, 0f, 0f);
+            }
+            filter.reset();
+            assertEquals(0f, filter.getRoll(), 0f);
+            feed(filter, -5f, 0f, 0f, 0f);
+            if (!(filter instanceof AccelLowPassFilter)) {
+                assertEquals(filter.getName(), -5f, filter.getRoll(), 0.01f);
+            }
+        }
+    }
+
+    private static AttitudeFilter[] allFilters() {
+        return new AttitudeFilter[] {
+                new AccelLowPassFilter(), new ComplementaryFilter(), new KalmanFilter(), new MadgwickFilter()};
+    }
+
+    /** One sample of a hull at the given attitude, in degrees, with the given body rates. */
+    private static void feed(AttitudeFilter filter, float roll, float pitch, float gx, float gy) {
+        double r = Math.toRadians(roll);
+        double p = Math.toRadians(pitch);
+        float ax = (float) -Math.sin(p);
+        float ay = (float) (Math.cos(p) * Math.sin(r));
+        float az = (float) (Math.cos(p) * Math.cos(r));
+        filter.update(ax, ay, az, gx, gy, 0f, DT);
+    }
+}
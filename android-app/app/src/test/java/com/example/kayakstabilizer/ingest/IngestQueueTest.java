@@ -0,0 +1,144 @@
+package com.example.kayakstabilizer.ingest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class IngestQueueTest {
+
+    // Frames are one byte, their number; numbers from 100 up are critical
+    private static final int FIRST_CRITICAL = 100;
+
+    private final IngestQueue queue = new IngestQueue(16,
+            (data, offset, length) -> (data[offset] & 0xFF) >= FIRST_CRITICAL);
+
+    /** Records frame numbers; holds the first frame until released, so the ring fills up. */
+    private static final class Recorder implements IngestQueue.Consumer {
+        final List<Integer> frames = new ArrayList<>();
+        final List<Long> droppedBefore = new ArrayList<>();
+        IngestQueue.Subscription subscription;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done;
+
+        @Override
+        public void onFrame(byte[] data, int offset, int length, long receivedNanos, boolean critical) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                frames.add(data[offset] & 0xFF);
+                droppedBefore.add(subscription.getDroppedBeforeFrame());
+            }
+            if (done != null) {
+                done.countDown();
+            }
+        }
+
+        synchronized List<Integer> frames() {
+            return new ArrayList<>(frames);
+        }
+
+        synchronized List<Long> droppedBefore() {
+            return new ArrayList<>(droppedBefore);
+        }
+    }
+
+    @After
+    public void closeQueue() {
+        queue.close();
+    }
+
+    @Test
+    public void criticalFramesKeepTheirPlaceWhenOldTelemetryIsShed() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        IngestQueue.Subscription subscription =
+                queue.subscribe("test", IngestQueue.Policy.DROP_OLDEST, 3, 0, recorder);
+        recorder.subscription = subscription;
+        publish(1);
+        assertTrue(recorder.started.await(5, TimeUnit.SECONDS));
+        // 1 is being consumed; the ring holds three telemetry frames besides the critical ones
+        publish(2, 101, 3, 4, 102, 5, 6);
+        recorder.done = new CountDownLatch(6);
+        recorder.release.countDown();
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(1, 101, 4, 102, 5, 6), recorder.frames());
+        // 2 was published before 101 and 3 after it
+        assertEquals(Arrays.asList(0L, 1L, 2L, 2L, 2L, 2L), recorder.droppedBefore());
+        assertEquals(2, subscription.getDropped());
+        assertEquals(2, subscription.getCriticalDelivered());
+    }
+
+    @Test
+    public void dropNewestKeepsTheQueuedFramesAndCriticalOnes() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        IngestQueue.Subscription subscription =
+                queue.subscribe("test", IngestQueue.Policy.DROP_NEWEST, 2, 0, recorder);
+        recorder.subscription = subscription;
+        publish(1);
+        assertTrue(recorder.started.await(5, TimeUnit.SECONDS));
+        publish(2, 3, 4, 101, 5);
+        recorder.done = new CountDownLatch(4);
+        recorder.release.countDown();
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(1, 2, 3, 101), recorder.frames());
+        assertEquals(2, subscription.getDropped());
+        // Frame 4 was shed after 3 was queued: the gap shows up before 101, not earlier
+        assertEquals(Arrays.asList(0L, 0L, 0L, 1L), recorder.droppedBefore());
+    }
+
+    @Test
+    public void blockDeliversEveryFrameInOrder() throws InterruptedException {
+        final List<Integer> frames = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(200);
+        queue.subscribe("test", IngestQueue.Policy.BLOCK, 4, 0, (data, offset, length, nanos, critical) -> {
+            frames.add(data[offset] & 0xFF);
+            done.countDown();
+        });
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int frame = i % 10 == 0 ? FIRST_CRITICAL + i / 10 : i % 100;
+            expected.add(frame);
+            publish(frame);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (frames) {
+            assertEquals(expected, frames);
+        }
+    }
+
+    @Test
+    public void failingConsumerDoesNotBlockTheProducer() throws InterruptedException {
+        final CountDownLatch failed = new CountDownLatch(1);
+        IngestQueue.Subscription subscription =
+                queue.subscribe("test", IngestQueue.Policy.BLOCK, 1, 0, (data, offset, length, nanos, critical) -> {
+                    failed.countDown();
+                    throw new IllegalStateException("consumer bug");
+                });
+        publish(1);
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            publish(2);
+        }
+        assertEquals(0, subscription.getDepth());
+    }
+
+    private void publish(int... frames) {
+        for (int frame : frames) {
+            queue.publish(new byte[] {(byte) frame}, 0, 1, System.nanoTime());
+        }
+    }
+}
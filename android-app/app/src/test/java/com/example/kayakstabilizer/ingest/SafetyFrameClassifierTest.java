@@ -0,0 +1,99 @@
+package com.example.kayakstabilizer.ingest;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.kayakstabilizer.telemetry.TelemetryFrameCodec;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class SafetyFrameClassifierTest {
+
+    // Lines as kayak_stabilizer_ble.ino sends them
+    private static final String BLE_FRAME =
+            "ROLL:1.25,PITCH:-0.50,BATTERY:3.92,BATTERY_TYPE:0,STABILIZATION:1,EMERGENCY:%d,SEQ:%d,TIME:52340";
+    private static final String BLE_EMERGENCY_STOP = "EMERGENCY_STOP:1";
+    private static final String BLE_LOW_BATTERY = "LOW_BATTERY:3.21,TYPE:0";
+
+    // Lines as kayak_stabilizer.ino sends them over RFCOMM
+    private static final String CLASSIC_FRAME = "ROLL:1.25,PITCH:-0.50,L_SERVO:92,R_SERVO:88";
+    private static final String CLASSIC_EMERGENCY_STOP = "EMERGENCY STOP ACTIVATED";
+    private static final String CLASSIC_LOW_BATTERY = "LOW BATTERY WARNING";
+    private static final String CLASSIC_EMERGENCY_RESET = "Emergency stop reset";
+    private static final String CLASSIC_GAIN_REPLY = "Kp set to: 2.00";
+
+    private final SafetyFrameClassifier classifier = new SafetyFrameClassifier();
+
+    @Test
+    public void bleEventsAreCritical() {
+        assertTrue(isCritical(BLE_EMERGENCY_STOP));
+        assertTrue(isCritical(BLE_LOW_BATTERY));
+    }
+
+    @Test
+    public void bleFramesAreCriticalOnlyWhenTheEmergencyStateChanges() {
+        assertFalse(isCritical(String.format(BLE_FRAME, 0, 1)));
+        assertTrue(isCritical(String.format(BLE_FRAME, 1, 2)));
+        assertFalse(isCritical(String.format(BLE_FRAME, 1, 3)));
+        assertTrue(isCritical(String.format(BLE_FRAME, 0, 4)));
+        assertFalse(isCritical(String.format(BLE_FRAME, 0, 5)));
+    }
+
+    @Test
+    public void bleEventThenMatchingFrameIsNotCriticalTwice() {
+        assertTrue(isCritical(BLE_EMERGENCY_STOP));
+        assertFalse(isCritical(String.format(BLE_FRAME, 1, 7)));
+    }
+
+    @Test
+    public void binaryFramesAreCriticalOnFlagChanges() {
+        TelemetrySnapshot snapshot = new TelemetrySnapshot();
+        snapshot.batteryVoltage = 3.9f;
+        assertFalse(isCritical(binary(snapshot)));
+        snapshot.lowBattery = true;
+        assertTrue(isCritical(binary(snapshot)));
+        assertFalse(isCritical(binary(snapshot)));
+        snapshot.emergencyStop = true;
+        assertTrue(isCritical(binary(snapshot)));
+    }
+
+    @Test
+    public void classicEventsAreCritical() {
+        assertTrue(isCritical(CLASSIC_EMERGENCY_STOP));
+        assertTrue(isCritical(CLASSIC_LOW_BATTERY));
+        assertTrue(isCritical(CLASSIC_EMERGENCY_RESET));
+    }
+
+    @Test
+    public void classicTelemetryAndRepliesAreNotCritical() {
+        assertFalse(isCritical(CLASSIC_FRAME));
+        assertFalse(isCritical(CLASSIC_GAIN_REPLY));
+        assertFalse(isCritical(CLASSIC_FRAME));
+    }
+
+    @Test
+    public void resetForgetsTheLastState() {
+        assertTrue(isCritical(String.format(BLE_FRAME, 1, 1)));
+        classifier.reset();
+        assertTrue(isCritical(String.format(BLE_FRAME, 1, 2)));
+    }
+
+    private boolean isCritical(String line) {
+        byte[] data = ("xx" + line).getBytes(StandardCharsets.US_ASCII);
+        return classifier.isCritical(data, 2, data.length - 2);
+    }
+
+    private boolean isCritical(byte[] frame) {
+        return classifier.isCritical(frame, 0, frame.length);
+    }
+
+    private static byte[] binary(TelemetrySnapshot snapshot) {
+        ByteBuffer buffer = ByteBuffer.allocate(TelemetryFrameCodec.FRAME_SIZE_V2);
+        TelemetryFrameCodec.encode(snapshot, buffer);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.kayakstabilizer.ingest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TelemetryBusTest {
+
+    private final TelemetryBus bus = new TelemetryBus();
+
+    @After
+    public void closeBus() {
+        bus.close();
+    }
+
+    @Test
+    public void allDeliversEverySnapshotInOrder() throws InterruptedException {
+        final List<Integer> sequences = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(10_000);
+        bus.subscribe("all", TelemetryBus.Delivery.ALL, 8, snapshot -> {
+            sequences.add(snapshot.sequence);
+            done.countDown();
+        });
+        TelemetrySnapshot snapshot = new TelemetrySnapshot();
+        for (int i = 0; i < 10_000; i++) {
+            snapshot.sequence = i;
+            bus.publish(snapshot);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, (int) sequences.get(i));
+        }
+    }
+
+    @Test
+    public void latestKeepsTheFieldsOfSkippedSnapshots() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final TelemetrySnapshot last = new TelemetrySnapshot();
+        TelemetryBus.Subscription subscription = bus.subscribe("latest", TelemetryBus.Delivery.LATEST, 0, snapshot -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (last) {
+                last.copyFrom(snapshot);
+            }
+            done.countDown();
+        });
+
+        TelemetrySnapshot snapshot = new TelemetrySnapshot();
+        snapshot.fields = TelemetrySnapshot.FIELD_ROLL;
+        bus.publish(snapshot);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        snapshot.fields = TelemetrySnapshot.FIELD_EMERGENCY;
+        snapshot.emergencyStop = true;
+        bus.publish(snapshot);
+        snapshot.fields = TelemetrySnapshot.FIELD_ROLL;
+        snapshot.roll = 4.5f;
+        bus.publish(snapshot);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        synchronized (last) {
+            assertEquals(4.5f, last.roll, 0f);
+            assertTrue(last.has(TelemetrySnapshot.FIELD_EMERGENCY));
+            assertTrue(last.emergencyStop);
+        }
+        assertEquals(1, subscription.getConflated());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.kayakstabilizer.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.junit.Test;
+
+public class TelemetryMetricsTest {
+
+    private final TelemetryMetrics metrics = new TelemetryMetrics();
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+
+    @Test
+    public void sequenceGapsCountAsLostFrames() {
+        decode(1);
+        decode(2);
+        decode(6);
+        assertEquals(3, metrics.getLostFrames());
+        assertEquals(1, metrics.getSequenceGaps());
+        assertEquals(0, metrics.getQueueDroppedFrames());
+    }
+
+    @Test
+    public void framesShedByTheQueueAreNotLinkLosses() {
+        decode(1);
+        metrics.onQueueDropped(3);
+        decode(5);
+        assertEquals(0, metrics.getLostFrames());
+        assertEquals(0, metrics.getSequenceGaps());
+        assertEquals(3, metrics.getQueueDroppedFrames());
+    }
+
+    @Test
+    public void onlyTheRestOfAGapIsLost() {
+        decode(1);
+        metrics.onQueueDropped(2);
+        decode(6);
+        assertEquals(2, metrics.getLostFrames());
+        assertEquals(1, metrics.getSequenceGaps());
+
+        // Drops not matched by a gap do not hide later link losses
+        metrics.onQueueDropped(1);
+        decode(7);
+        decode(9);
+        assertEquals(3, metrics.getLostFrames());
+        assertEquals(3, metrics.getQueueDroppedFrames());
+    }
+
+    @Test
+    public void shedDiagnosticBatchesAreNotLost() {
+        metrics.onDiagnosticBatch(10, 5, 1_000_000L);
+        metrics.onQueueDropped(2);
+        metrics.onDiagnosticBatch(13, 5, 2_000_000L);
+        assertEquals(0, metrics.getLostDiagnosticBatches());
+        metrics.onDiagnosticBatch(16, 5, 3_000_000L);
+        assertEquals(2, metrics.getLostDiagnosticBatches());
+    }
+
+    private void decode(int sequence) {
+        snapshot.fields = TelemetrySnapshot.FIELD_SEQUENCE;
+        snapshot.sequence = sequence;
+        metrics.onDecoded(snapshot, 100, true);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.kayakstabilizer.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SessionArchiveTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void roundTripsEverySampleBitForBit() throws IOException {
+        long[] millis = new long[5000];
+        float[][] values = new float[3][millis.length];
+        int[] flags = new int[millis.length];
+        long time = 0;
+        float roll = 0f;
+        for (int i = 0; i < millis.length; i++) {
+            // Regular 20 ms frames with jitter, stalls and one gap beyond what a block encodes
+            time += i == 2500 ? 1L << 31 : i % 500 == 0 ? 5000 : 20 + random.nextInt(3) - 1;
+            roll += (float) random.nextGaussian();
+            millis[i] = time;
+            values[0][i] = roll;
+            values[1][i] = i % 100 == 0 ? Float.NaN : (float) Math.sin(i / 50.0) * 10f;
+            values[2][i] = 12.6f - i / 1000f;
+            flags[i] = i / 700 % 4;
+        }
+        values[0][10] = Float.POSITIVE_INFINITY;
+        values[0][11] = -0f;
+
+        byte[] archive = write(millis, values, flags, 256);
+        SessionArchiveReader reader = new SessionArchiveReader(new ByteArrayInputStream(archive));
+        assertEquals(START, reader.getStartWallClockMillis());
+        SessionArchiveReader.Sample sample = new SessionArchiveReader.Sample();
+        for (int i = 0; i < millis.length; i++) {
+            assertTrue(reader.next(sample));
+            assertEquals(millis[i], sample.timestampMillis);
+            assertSameBits(values[0][i], sample.roll);
+            assertSameBits(values[1][i], sample.pitch);
+            assertSameBits(values[2][i], sample.battery);
+            assertEquals(flags[i], sample.flags);
+        }
+        assertFalse(reader.next(sample));
+    }
+
+    @Test
+    public void compressesASteadyStream() throws IOException {
+        int n = 10_000;
+        long[] millis = new long[n];
+        float[][] values = new float[3][n];
+        for (int i = 0; i < n; i++) {
+            millis[i] = i * 20L;
+            values[0][i] = Math.round(Math.sin(i / 40.0) * 100) / 10f;
+            values[1][i] = 0.5f;
+            values[2][i] = 12.4f;
+        }
+        byte[] archive = write(millis, values, new int[n], ArchiveFormat.DEFAULT_BLOCK_SAMPLES);
+        // 20 bytes a sample uncompressed
+        assertTrue("archive of " + archive.length + " bytes", archive.length < n * 20 / 4);
+    }
+
+    @Test
+    public void skipToLandsOnTheFirstSampleAtOrAfter() throws IOException {
+        int n = 1000;
+        long[] millis = new long[n];
+        for (int i = 0; i < n; i++) {
+            millis[i] = i * 10L;
+        }
+        float[][] values = new float[3][n];
+        byte[] archive = write(millis, values, new int[n], 64);
+
+        SessionArchiveReader reader = new SessionArchiveReader(new ByteArrayInputStream(archive));
+        SessionArchiveReader.Sample sample = new SessionArchiveReader.Sample();
+        assertTrue(reader.skipTo(4321));
+        assertTrue(reader.skipTo(4325));
+        assertTrue(reader.next(sample));
+        assertEquals(4330, sample.timestampMillis);
+        assertTrue(reader.next(sample));
+        assertEquals(4340, sample.timestampMillis);
+        // Never backwards
+        assertTrue(reader.skipTo(0));
+        assertTrue(reader.next(sample));
+        assertEquals(4350, sample.timestampMillis);
+        assertFalse(reader.skipTo(10_000));
+        assertFalse(reader.next(sample));
+    }
+
+    @Test
+    public void rejectsDecreasingTimestamps() throws IOException {
+        SessionArchiveWriter writer = new SessionArchiveWriter(new ByteArrayOutputStream(), START, 16);
+        writer.append(100, 0f, 0f, 0f, 0);
+        writer.append(100, 0f, 0f, 0f, 0);
+        try {
+            writer.append(99, 0f, 0f, 0f, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(2, writer.getSampleCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new SessionArchiveReader(new ByteArrayInputStream(new byte[32]));
+    }
+
+    @Test
+    public void reportsATruncatedBlock() throws IOException {
+        long[] millis = {0, 20, 40, 60};
+        byte[] archive = write(millis, new float[3][4], new int[4], 16);
+        SessionArchiveReader reader = new SessionArchiveReader(
+                new ByteArrayInputStream(Arrays.copyOf(archive, archive.length - 1)));
+        try {
+            reader.next(new SessionArchiveReader.Sample());
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+
+    private static byte[] write(long[] millis, float[][] values, int[] flags, int blockSamples)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SessionArchiveWriter writer = new SessionArchiveWriter(bytes, START, blockSamples)) {
+            for (int i = 0; i < millis.length; i++) {
+                writer.append(millis[i], values[0][i], values[1][i], values[2][i], flags[i]);
+            }
+            assertEquals(millis.length, writer.getSampleCount());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameBits(float expected, float actual) {
+        assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(actual));
+    }
+}
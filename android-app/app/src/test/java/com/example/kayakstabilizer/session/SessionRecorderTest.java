@@ -0,0 +1,202 @@
+package com.example.kayakstabilizer.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SessionRecorderTest {
+
+    private static final long START = 50_000;
+    // Large enough that a 1 MB region holds 17 of them and pads the rest
+    private static final int LARGE_PAYLOAD = 60_000;
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("session", ".kses");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void roundTripsRecordsOfBothTypes() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, START, 60_000);
+        recorder.recordTelemetry(START + 20, payload(12, 1), 2, 8);
+        recorder.recordCommand(START + 40, "KP:2.5");
+        recorder.recordCommand(START + 60, new byte[] {(byte) 0xC1, 3}, 0, 2);
+        assertEquals(3, recorder.getRecordCount());
+        recorder.close();
+
+        SessionReader reader = new SessionReader(file);
+        try {
+            assertTrue(reader.isComplete());
+            SessionReader.Record record = new SessionReader.Record();
+            assertTrue(reader.next(record));
+            assertEquals(SessionReader.Record.TYPE_TELEMETRY, record.type);
+            assertEquals(20, record.timestampMillis);
+            assertPayload(payload(12, 1), 2, record, 8);
+
+            assertTrue(reader.next(record));
+            assertEquals(SessionReader.Record.TYPE_COMMAND, record.type);
+            assertEquals("KP:2.5", new String(record.payload, 0, record.length, "US-ASCII"));
+            assertTrue(reader.next(record));
+            assertEquals(60, record.timestampMillis);
+            assertEquals(2, record.length);
+            assertFalse(reader.next(record));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void recordsSpanRegionsWithPadding() throws IOException {
+        int count = 40;
+        SessionRecorder recorder = new SessionRecorder(file, START, 60_000);
+        for (int i = 0; i < count; i++) {
+            recorder.recordTelemetry(START + i * 100L, payload(LARGE_PAYLOAD, i), 0, LARGE_PAYLOAD);
+        }
+        recorder.close();
+        // Two padded regions and the start of a third, trimmed to what was used
+        assertTrue(file.length() > 2L << 20);
+        assertTrue(file.length() < 3L << 20);
+
+        SessionReader reader = new SessionReader(file);
+        try {
+            SessionReader.Record record = new SessionReader.Record();
+            for (int i = 0; i < count; i++) {
+                assertTrue(reader.next(record));
+                assertEquals(i * 100L, record.timestampMillis);
+                assertPayload(payload(LARGE_PAYLOAD, i), 0, record, LARGE_PAYLOAD);
+            }
+            assertFalse(reader.next(record));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void seekUsesTheIndex() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, START, 60_000);
+        // A frame every 250 ms for a minute, one index entry per second
+        for (int i = 0; i < 240; i++) {
+            recorder.recordTelemetry(START + i * 250L, payload(4, i), 0, 4);
+        }
+        recorder.close();
+
+        SessionReader reader = new SessionReader(file);
+        try {
+            assertEquals(59_000, reader.getLastIndexedMillis());
+            SessionReader.Record record = new SessionReader.Record();
+            reader.seek(12_600);
+            assertTrue(reader.next(record));
+            assertEquals(12_750, record.timestampMillis);
+            assertPayload(payload(4, 51), 0, record, 4);
+
+            reader.seek(0);
+            assertTrue(reader.next(record));
+            assertEquals(0, record.timestampMillis);
+
+            reader.seek(30_000);
+            assertTrue(reader.next(record));
+            assertEquals(30_000, record.timestampMillis);
+
+            reader.seek(120_000);
+            assertFalse(reader.next(record));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void readsAnUnclosedRecordingUpToTheEndMarker() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, START, 60_000);
+        try {
+            for (int i = 0; i < 20; i++) {
+                recorder.recordTelemetry(START + i * 100L, payload(LARGE_PAYLOAD, i), 0, LARGE_PAYLOAD);
+            }
+            // The recorder is still open: no footer, and the mapped region is zero past the last record
+            SessionReader reader = new SessionReader(file);
+            try {
+                assertFalse(reader.isComplete());
+                assertEquals(1000, reader.getLastIndexedMillis());
+                SessionReader.Record record = new SessionReader.Record();
+                int read = 0;
+                while (reader.next(record)) {
+                    assertEquals(read * 100L, record.timestampMillis);
+                    read++;
+                }
+                assertEquals(20, read);
+
+                // The rebuilt index skips the padding of the first region
+                reader.seek(1750);
+                assertTrue(reader.next(record));
+                assertEquals(1800, record.timestampMillis);
+                assertPayload(payload(LARGE_PAYLOAD, 18), 0, record, LARGE_PAYLOAD);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            recorder.close();
+        }
+    }
+
+    @Test
+    public void gapsAreRecordedInPlace() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, START, 60_000);
+        recorder.recordTelemetry(START + 10, payload(4, 1), 0, 4);
+        recorder.recordGap(START + 30, 0x1_0000_0005L);
+        recorder.recordTelemetry(START + 30, payload(4, 2), 0, 4);
+        assertEquals(0x1_0000_0005L, recorder.getGapFrames());
+        recorder.close();
+
+        SessionReader reader = new SessionReader(file);
+        try {
+            SessionReader.Record record = new SessionReader.Record();
+            assertTrue(reader.next(record));
+            assertTrue(reader.next(record));
+            assertEquals(SessionReader.Record.TYPE_GAP, record.type);
+            assertEquals(30, record.timestampMillis);
+            // More than a u32 holds is saturated
+            assertEquals(0xFFFFFFFFL, record.getGapFrames());
+            assertTrue(reader.next(record));
+            assertEquals(SessionReader.Record.TYPE_TELEMETRY, record.type);
+            assertPayload(payload(4, 2), 0, record, 4);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void refusesRecordsAfterClose() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, START, 60_000);
+        recorder.close();
+        recorder.close();
+        recorder.recordCommand(START, "STAB:1");
+    }
+
+    private static byte[] payload(int length, int seed) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (i * 31 + seed);
+        }
+        return payload;
+    }
+
+    private static void assertPayload(byte[] expected, int offset, SessionReader.Record record, int length) {
+        assertEquals(length, record.length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(expected[offset + i], record.payload[i]);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.kayakstabilizer.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+public class SlidingWindowStatsTest {
+
+    @Test
+    public void matchesARecomputationOverTheWindow() {
+        SlidingWindowStats stats = new SlidingWindowStats(1000, 64, -50f, 50f, 100);
+        ArrayDeque<long[]> window = new ArrayDeque<>();
+        Random random = new Random(42);
+        long time = 0;
+        // Enough samples for several rebuilds; irregular spacing exercises both eviction paths
+        for (int i = 0; i < 2000; i++) {
+            time += 1 + random.nextInt(40);
+            float value = (float) (random.nextGaussian() * 10);
+            stats.add(time, value);
+            window.addLast(new long[] {time, Float.floatToIntBits(value)});
+            while (window.peekFirst()[0] <= time - 1000 || window.size() > 64) {
+                window.removeFirst();
+            }
+            assertMatches(window, stats);
+        }
+    }
+
+    @Test
+    public void windowIsCappedAtTheRoundedCapacity() {
+        SlidingWindowStats stats = new SlidingWindowStats(60_000, 5, 0f, 10f, 10);
+        for (int i = 0; i < 20; i++) {
+            stats.add(i, i);
+        }
+        assertEquals(8, stats.size());
+        assertEquals(12f, stats.getMin(), 0f);
+        assertEquals(19f, stats.getMax(), 0f);
+    }
+
+    @Test
+    public void slopeOfARampIsPerSecond() {
+        SlidingWindowStats stats = new SlidingWindowStats(10_000, 256, 0f, 100f, 100);
+        for (int i = 0; i < 100; i++) {
+            stats.add(i * 20L, 3f + 0.5f * i * 20 / 1000f);
+        }
+        assertEquals(0.5, stats.getSlopePerSecond(), 1e-4);
+    }
+
+    @Test
+    public void slopeNeedsTwoDistinctTimestamps() {
+        SlidingWindowStats stats = new SlidingWindowStats(1000, 16, 0f, 10f, 10);
+        stats.add(5, 1f);
+        assertTrue(Double.isNaN(stats.getSlopePerSecond()));
+        stats.add(5, 2f);
+        assertTrue(Double.isNaN(stats.getSlopePerSecond()));
+    }
+
+    @Test
+    public void quantilesAreAccurateToOneBin() {
+        SlidingWindowStats stats = new SlidingWindowStats(100_000, 1024, 0f, 100f, 100);
+        for (int i = 0; i < 1000; i++) {
+            stats.add(i, i / 10f);
+        }
+        assertEquals(50f, stats.getQuantile(0.5), 1f);
+        assertEquals(95f, stats.getQuantile(0.95), 1f);
+        assertEquals(0f, stats.getQuantile(0), 1f);
+        assertEquals(99.9f, stats.getQuantile(1), 1f);
+    }
+
+    @Test
+    public void quantilesStayWithinTheObservedRange() {
+        SlidingWindowStats stats = new SlidingWindowStats(1000, 16, -10f, 10f, 4);
+        stats.add(0, 42f);
+        stats.add(1, 43f);
+        // Lands in the top bin, whose midpoint lies below the smallest sample
+        assertEquals(42f, stats.getQuantile(0.5), 0f);
+    }
+
+    @Test
+    public void expireEmptiesAStoppedStream() {
+        SlidingWindowStats stats = new SlidingWindowStats(1000, 16, 0f, 10f, 10);
+        stats.add(0, 1f);
+        stats.add(500, 2f);
+        stats.expire(1200);
+        assertEquals(1, stats.size());
+        assertEquals(2f, stats.getMin(), 0f);
+        stats.expire(1500);
+        assertEquals(0, stats.size());
+        assertTrue(Double.isNaN(stats.getMean()));
+        assertTrue(Double.isNaN(stats.getVariance()));
+        assertTrue(Double.isNaN(stats.getRms()));
+        assertTrue(Float.isNaN(stats.getMin()));
+        assertTrue(Float.isNaN(stats.getPeak()));
+        assertTrue(Float.isNaN(stats.getQuantile(0.5)));
+    }
+
+    @Test
+    public void clearStartsOver() {
+        SlidingWindowStats stats = new SlidingWindowStats(1000, 16, 0f, 10f, 10);
+        for (int i = 0; i < 10; i++) {
+            stats.add(i, 9f);
+        }
+        stats.clear();
+        stats.add(100, 1f);
+        stats.add(200, 3f);
+        assertEquals(2, stats.size());
+        assertEquals(2.0, stats.getMean(), 1e-9);
+        assertEquals(1.0, stats.getVariance(), 1e-9);
+        assertEquals(3f, stats.getMax(), 0f);
+        assertEquals(2f, stats.getQuantile(0.5), 1f);
+    }
+
+    private static void assertMatches(ArrayDeque<long[]> window, SlidingWindowStats stats) {
+        int n = window.size();
+        assertEquals(n, stats.size());
+        double sum = 0;
+        double squares = 0;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (long[] sample : window) {
+            float value = Float.intBitsToFloat((int) sample[1]);
+            sum += value;
+            squares += (double) value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double mean = sum / n;
+        double variance = 0;
+        for (long[] sample : window) {
+            double d = Float.intBitsToFloat((int) sample[1]) - mean;
+            variance += d * d;
+        }
+        variance /= n;
+        assertEquals(mean, stats.getMean(), 1e-6);
+        assertEquals(variance, stats.getVariance(), 1e-4);
+        assertEquals(Math.sqrt(squares / n), stats.getRms(), 1e-4);
+        assertEquals(min, stats.getMin(), 0f);
+        assertEquals(max, stats.getMax(), 0f);
+        assertEquals(Math.max(Math.abs(min), Math.abs(max)), stats.getPeak(), 0f);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.kayakstabilizer.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class DiagnosticFrameCodecTest {
+
+    @Test
+    public void batchRoundTrips() {
+        DiagnosticBatch batch = batch(DiagnosticFrameCodec.MAX_SAMPLES, 123_456L);
+        batch.sequence = 0xFFFE;
+        byte[] frame = encode(batch);
+        assertEquals(DiagnosticFrameCodec.HEADER_SIZE + 12 * DiagnosticFrameCodec.SAMPLE_SIZE, frame.length);
+
+        DiagnosticBatch decoded = new DiagnosticBatch();
+        assertTrue(DiagnosticFrameCodec.decode(frame, 0, frame.length, decoded));
+        assertEquals(0xFFFE, decoded.sequence);
+        assertEquals(batch.count, decoded.count);
+        for (int i = 0; i < batch.count; i++) {
+            assertEquals(batch.deviceMillis[i], decoded.deviceMillis[i]);
+            assertEquals(batch.accelX[i], decoded.accelX[i]);
+            assertEquals(batch.accelY[i], decoded.accelY[i]);
+            assertEquals(batch.accelZ[i], decoded.accelZ[i]);
+            assertEquals(batch.gyroX[i], decoded.gyroX[i]);
+            assertEquals(batch.gyroY[i], decoded.gyroY[i]);
+            assertEquals(batch.gyroZ[i], decoded.gyroZ[i]);
+            assertEquals(batch.roll[i], decoded.roll[i], 0.005f);
+            assertEquals(batch.pitch[i], decoded.pitch[i], 0.005f);
+            assertEquals(batch.servoLeft[i], decoded.servoLeft[i]);
+            assertEquals(batch.servoRight[i], decoded.servoRight[i]);
+        }
+    }
+
+    @Test
+    public void deviceMillisWrapLikeTheFirmwareCounter() {
+        DiagnosticBatch batch = batch(3, 0xFFFFFFF0L);
+        DiagnosticBatch decoded = new DiagnosticBatch();
+        byte[] frame = encode(batch);
+        assertTrue(DiagnosticFrameCodec.decode(frame, 0, frame.length, decoded));
+        assertEquals(0xFFFFFFF0L, decoded.deviceMillis[0]);
+        // 20 ms later the uint32 millis() has wrapped
+        assertEquals(0x4L, decoded.deviceMillis[2]);
+    }
+
+    @Test
+    public void anglesBeyondInt16AreClamped() {
+        DiagnosticBatch batch = new DiagnosticBatch();
+        batch.add(0, new int[6], 400f, -400f, 0, 255);
+        DiagnosticBatch decoded = new DiagnosticBatch();
+        byte[] frame = encode(batch);
+        assertTrue(DiagnosticFrameCodec.decode(frame, 0, frame.length, decoded));
+        assertEquals(327.67f, decoded.roll[0], 0.001f);
+        assertEquals(-327.68f, decoded.pitch[0], 0.001f);
+        assertEquals(255, decoded.servoRight[0]);
+    }
+
+    @Test
+    public void decodesAtAnOffset() {
+        byte[] frame = encode(batch(2, 1000));
+        byte[] buffer = new byte[frame.length + 5];
+        System.arraycopy(frame, 0, buffer, 5, frame.length);
+        DiagnosticBatch decoded = new DiagnosticBatch();
+        assertTrue(DiagnosticFrameCodec.decode(buffer, 5, frame.length, decoded));
+        assertEquals(2, decoded.count);
+        assertEquals(1010, decoded.deviceMillis[1]);
+    }
+
+    @Test
+    public void rejectsATruncatedBatch() {
+        byte[] frame = encode(batch(4, 1000));
+        DiagnosticBatch decoded = new DiagnosticBatch();
+        assertFalse(DiagnosticFrameCodec.decode(frame, 0, frame.length - 1, decoded));
+        assertEquals(0, decoded.count);
+        assertFalse(DiagnosticFrameCodec.decode(frame, 0, DiagnosticFrameCodec.HEADER_SIZE - 1, decoded));
+    }
+
+    @Test
+    public void rejectsAWrongCountByte() {
+        byte[] frame = encode(batch(4, 1000));
+        DiagnosticBatch decoded = new DiagnosticBatch();
+
+        byte[] tooMany = Arrays.copyOf(frame, frame.length);
+        tooMany[1] = 5;
+        assertFalse(DiagnosticFrameCodec.decode(tooMany, 0, tooMany.length, decoded));
+
+        // Even with the bytes for it, more than the firmware ever batches
+        byte[] padded = Arrays.copyOf(frame, DiagnosticFrameCodec.HEADER_SIZE + 13 * DiagnosticFrameCodec.SAMPLE_SIZE);
+        padded[1] = 13;
+        assertFalse(DiagnosticFrameCodec.decode(padded, 0, padded.length, decoded));
+        assertEquals(0, decoded.count);
+    }
+
+    @Test
+    public void rejectsOtherFrames() {
+        byte[] frame = encode(batch(1, 0));
+        frame[0] = (byte) 0x82;
+        DiagnosticBatch decoded = new DiagnosticBatch();
+        assertFalse(DiagnosticFrameCodec.isDiagnosticFrame(frame, 0, frame.length));
+        assertFalse(DiagnosticFrameCodec.decode(frame, 0, frame.length, decoded));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void encodeRefusesABufferTooSmall() {
+        DiagnosticFrameCodec.encode(batch(2, 0), ByteBuffer.allocate(DiagnosticFrameCodec.HEADER_SIZE + 39));
+    }
+
+    @Test
+    public void samplesForMtu() {
+        assertEquals(0, DiagnosticFrameCodec.samplesForMtu(23));
+        assertEquals(1, DiagnosticFrameCodec.samplesForMtu(31));
+        assertEquals(DiagnosticFrameCodec.MAX_SAMPLES, DiagnosticFrameCodec.samplesForMtu(512));
+    }
+
+    @Test
+    public void historyKeepsDecodedSamples() {
+        DiagnosticHistory history = new DiagnosticHistory(16);
+        DiagnosticBatch batch = batch(DiagnosticFrameCodec.MAX_SAMPLES, 5000);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < batch.count; i++) {
+                history.append(round * 1000L + i, batch, i);
+            }
+        }
+        DiagnosticHistory.Window window = new DiagnosticHistory.Window(32);
+        // 24 appended into 16 slots; the slot written next is left out
+        assertEquals(15, history.copyLatest(window));
+        assertEquals(9, window.timestamps[0]);
+        assertEquals(batch.deviceMillis[9], window.deviceMillis[0]);
+        assertEquals(batch.accelY[9], window.accel[1]);
+        assertEquals(1011, window.timestamps[14]);
+        assertEquals(batch.gyroZ[11], window.gyro[14 * 3 + 2]);
+        assertEquals(batch.servoRight[11], window.servoRight[14]);
+    }
+
+    // Samples 10 ms apart with distinct, partly negative values in every field
+    private static DiagnosticBatch batch(int count, long firstMillis) {
+        DiagnosticBatch batch = new DiagnosticBatch();
+        batch.sequence = 7;
+        for (int i = 0; i < count; i++) {
+            int[] imu = {-16384 + i, 100 * i, 16384 - i, -32768 + i, 32767 - i, -i};
+            batch.add((firstMillis + i * 10L) & 0xFFFFFFFFL, imu, -45.67f + i, 12.34f - i, 90 + i, 180 - i);
+        }
+        return batch;
+    }
+
+    private static byte[] encode(DiagnosticBatch batch) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        DiagnosticFrameCodec.encode(batch, buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.kayakstabilizer.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TelemetryFrameCodecTest {
+
+    @Test
+    public void version2RoundTrips() {
+        TelemetrySnapshot snapshot = snapshot(-12.34f, 5.67f, 3.921f);
+        snapshot.sequence = 0xFFFF;
+        snapshot.deviceMillis = 0xFFFFFFFEL;
+        snapshot.batteryType = TelemetrySnapshot.BATTERY_DRILL_20V;
+        snapshot.emergencyStop = true;
+        byte[] frame = encode(snapshot);
+        assertEquals(TelemetryFrameCodec.FRAME_SIZE_V2, frame.length);
+        assertEquals(TelemetryFrameCodec.MAGIC_V2, frame[0] & 0xFF);
+
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        assertTrue(TelemetryFrameCodec.decode(frame, 0, frame.length, decoded));
+        assertEquals(-12.34f, decoded.roll, 0.001f);
+        assertEquals(5.67f, decoded.pitch, 0.001f);
+        assertEquals(3.921f, decoded.batteryVoltage, 0.0005f);
+        assertEquals(0xFFFF, decoded.sequence);
+        assertEquals(0xFFFFFFFEL, decoded.deviceMillis);
+        assertEquals(TelemetrySnapshot.BATTERY_DRILL_20V, decoded.batteryType);
+        assertTrue(decoded.emergencyStop);
+        assertTrue(decoded.stabilizationEnabled);
+        assertFalse(decoded.lowBattery);
+        assertTrue(decoded.has(TelemetrySnapshot.FIELD_DEVICE_TIME));
+    }
+
+    @Test
+    public void version1RoundTripsWithoutATimestamp() {
+        byte[] frame = Arrays.copyOf(encode(snapshot(1.5f, -0.25f, 12.6f)), TelemetryFrameCodec.FRAME_SIZE);
+        frame[0] = (byte) TelemetryFrameCodec.MAGIC_V1;
+
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        decoded.deviceMillis = 42;
+        assertTrue(TelemetryFrameCodec.decode(frame, 0, frame.length, decoded));
+        assertEquals(1.5f, decoded.roll, 0.001f);
+        assertEquals(-0.25f, decoded.pitch, 0.001f);
+        assertEquals(12.6f, decoded.batteryVoltage, 0.0005f);
+        assertFalse(decoded.has(TelemetrySnapshot.FIELD_DEVICE_TIME));
+        assertEquals(42, decoded.deviceMillis);
+
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        TelemetrySnapshot fromBuffer = new TelemetrySnapshot();
+        assertTrue(TelemetryFrameCodec.decode(buffer, fromBuffer));
+        assertEquals(TelemetryFrameCodec.FRAME_SIZE, buffer.position());
+        assertEquals(decoded.roll, fromBuffer.roll, 0f);
+    }
+
+    @Test
+    public void negativeAnglesAndInt16LimitsSurvive() {
+        float[] angles = {-0.01f, -1f, -179.99f, 327.67f, -327.68f};
+        for (float angle : angles) {
+            TelemetrySnapshot decoded = roundTrip(snapshot(angle, -angle, 3.7f));
+            assertEquals(angle, decoded.roll, 0.001f);
+            assertEquals(-angle > 327.67f ? 327.67f : -angle, decoded.pitch, 0.001f);
+        }
+    }
+
+    @Test
+    public void valuesOutsideTheFieldsAreClamped() {
+        TelemetrySnapshot decoded = roundTrip(snapshot(400f, -400f, 70f));
+        assertEquals(327.67f, decoded.roll, 0.001f);
+        assertEquals(-327.68f, decoded.pitch, 0.001f);
+        assertEquals(65.535f, decoded.batteryVoltage, 0.0005f);
+
+        decoded = roundTrip(snapshot(0f, 0f, -1f));
+        assertEquals(0f, decoded.batteryVoltage, 0f);
+    }
+
+    @Test
+    public void bufferDecodeReadsFramesBackToBack() {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * TelemetryFrameCodec.FRAME_SIZE_V2);
+        TelemetryFrameCodec.encode(snapshot(1f, 2f, 3f), buffer);
+        TelemetryFrameCodec.encode(snapshot(-4f, -5f, 6f), buffer);
+        buffer.flip();
+
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        assertTrue(TelemetryFrameCodec.decode(buffer, decoded));
+        assertEquals(1f, decoded.roll, 0.001f);
+        assertTrue(TelemetryFrameCodec.decode(buffer, decoded));
+        assertEquals(-4f, decoded.roll, 0.001f);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void rejectsAnUnknownVersionByte() {
+        byte[] frame = encode(snapshot(1f, 2f, 3f));
+        frame[0] = (byte) 0x80;
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        assertFalse(TelemetryFrameCodec.isBinaryFrame(frame, 0, frame.length));
+        assertFalse(TelemetryFrameCodec.decode(frame, 0, frame.length, decoded));
+
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        assertFalse(TelemetryFrameCodec.decode(buffer, decoded));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void rejectsAWrongLength() {
+        byte[] frame = encode(snapshot(1f, 2f, 3f));
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        // A version 2 frame cut short is not mistaken for a version 1 frame
+        assertFalse(TelemetryFrameCodec.decode(frame, 0, TelemetryFrameCodec.FRAME_SIZE_V2 - 1, decoded));
+        assertFalse(TelemetryFrameCodec.decode(frame, 0, TelemetryFrameCodec.FRAME_SIZE - 1, decoded));
+        assertEquals(0, decoded.fields);
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void bufferDecodeRefusesATruncatedVersion2Frame() {
+        byte[] frame = encode(snapshot(1f, 2f, 3f));
+        TelemetryFrameCodec.decode(ByteBuffer.wrap(frame, 0, TelemetryFrameCodec.FRAME_SIZE_V2 - 2),
+                new TelemetrySnapshot());
+    }
+
+    @Test
+    public void decoderPicksBinaryByTheMagicByte() {
+        byte[] frame = encode(snapshot(-8.5f, 1.25f, 3.3f));
+        byte[] padded = new byte[frame.length + 3];
+        System.arraycopy(frame, 0, padded, 3, frame.length);
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        assertTrue(TelemetryDecoder.decode(padded, 3, frame.length, decoded));
+        assertEquals(-8.5f, decoded.roll, 0.001f);
+        assertTrue(decoded.has(TelemetrySnapshot.FIELD_SEQUENCE));
+    }
+
+    @Test
+    public void decoderParsesAsciiFrames() {
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        assertTrue(TelemetryDecoder.decode(ascii("ROLL:-3.50,PITCH:1.25,BATTERY:3.92\n"), decoded));
+        assertEquals(-3.5f, decoded.roll, 0.001f);
+        assertEquals(3.92f, decoded.batteryVoltage, 0.001f);
+        assertFalse(decoded.has(TelemetrySnapshot.FIELD_SEQUENCE));
+
+        assertTrue(TelemetryDecoder.decode(ascii("EMERGENCY_STOP:1"), decoded));
+        assertTrue(decoded.emergencyStop);
+    }
+
+    @Test
+    public void decoderLeavesDiagnosticBatchesAndNullsAlone() {
+        DiagnosticBatch batch = new DiagnosticBatch();
+        batch.add(1000, new int[6], 1f, 2f, 90, 90);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        DiagnosticFrameCodec.encode(batch, buffer);
+        byte[] diagnostic = Arrays.copyOf(buffer.array(), buffer.position());
+
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        assertFalse(TelemetryDecoder.decode(diagnostic, decoded));
+        assertFalse(TelemetryDecoder.decode(null, decoded));
+    }
+
+    private static TelemetrySnapshot snapshot(float roll, float pitch, float volts) {
+        TelemetrySnapshot snapshot = new TelemetrySnapshot();
+        snapshot.roll = roll;
+        snapshot.pitch = pitch;
+        snapshot.batteryVoltage = volts;
+        snapshot.stabilizationEnabled = true;
+        snapshot.sequence = 17;
+        snapshot.deviceMillis = 52_340;
+        return snapshot;
+    }
+
+    private static TelemetrySnapshot roundTrip(TelemetrySnapshot snapshot) {
+        byte[] frame = encode(snapshot);
+        TelemetrySnapshot decoded = new TelemetrySnapshot();
+        assertTrue(TelemetryFrameCodec.decode(frame, 0, frame.length, decoded));
+        return decoded;
+    }
+
+    private static byte[] encode(TelemetrySnapshot snapshot) {
+        ByteBuffer buffer = ByteBuffer.allocate(TelemetryFrameCodec.FRAME_SIZE_V2);
+        TelemetryFrameCodec.encode(snapshot, buffer);
+        return buffer.array();
+    }
+
+    private static byte[] ascii(String frame) {
+        return frame.getBytes(StandardCharsets.US_ASCII);
+    }
+}
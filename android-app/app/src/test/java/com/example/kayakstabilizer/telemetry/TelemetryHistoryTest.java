@@ -0,0 +1,140 @@
+package com.example.kayakstabilizer.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TelemetryHistoryTest {
+
+    @Test
+    public void keepsTheNewestSamplesOnceFull() {
+        TelemetryHistory history = new TelemetryHistory(6);
+        assertEquals(8, history.capacity());
+        for (int i = 0; i < 20; i++) {
+            append(history, i);
+        }
+        assertEquals(8, history.size());
+        assertEquals(20, history.getWriteCount());
+
+        TelemetryHistory.Window window = new TelemetryHistory.Window(16);
+        // The oldest slot is the next to be written, so it is never handed out
+        assertEquals(7, history.copyLatest(window));
+        for (int i = 0; i < 7; i++) {
+            assertSample(window, i, 13 + i);
+        }
+    }
+
+    @Test
+    public void copyLatestIsLimitedByTheWindow() {
+        TelemetryHistory history = new TelemetryHistory(16);
+        for (int i = 0; i < 5; i++) {
+            append(history, i);
+        }
+        TelemetryHistory.Window window = new TelemetryHistory.Window(3);
+        assertEquals(3, history.copyLatest(window));
+        assertSample(window, 0, 2);
+        assertSample(window, 2, 4);
+
+        TelemetryHistory.Window large = new TelemetryHistory.Window(16);
+        assertEquals(5, history.copyLatest(large));
+        assertSample(large, 0, 0);
+    }
+
+    @Test
+    public void copyWindowSelectsByTimestamp() {
+        TelemetryHistory history = new TelemetryHistory(64);
+        for (int i = 0; i < 100; i++) {
+            append(history, i);
+        }
+        TelemetryHistory.Window window = new TelemetryHistory.Window(64);
+        // Samples are 10 ms apart; [705, 800) holds samples 71..79
+        assertEquals(9, history.copyWindow(705, 800, window));
+        assertSample(window, 0, 71);
+        assertSample(window, 8, 79);
+
+        // Older than the history: only what is left, without the slot written next
+        assertEquals(10, history.copyWindow(0, 470, window));
+        assertSample(window, 0, 37);
+
+        assertEquals(0, history.copyWindow(5000, 6000, window));
+    }
+
+    @Test
+    public void copyWindowKeepsTheNewestWhenTheWindowIsSmall() {
+        TelemetryHistory history = new TelemetryHistory(64);
+        for (int i = 0; i < 50; i++) {
+            append(history, i);
+        }
+        TelemetryHistory.Window window = new TelemetryHistory.Window(4);
+        assertEquals(4, history.copyWindow(0, 300, window));
+        assertSample(window, 0, 26);
+        assertSample(window, 3, 29);
+    }
+
+    @Test
+    public void downsampleKeepsExtremesAndMarksEmptyBuckets() {
+        TelemetryHistory history = new TelemetryHistory(16);
+        history.append(0, 1f, 0f, 12f, 0);
+        history.append(10, -4f, 0f, 12f, 0);
+        history.append(20, 3f, 0f, 12f, 0);
+        history.append(60, 7f, 0f, 12f, 0);
+        history.append(100, 9f, 0f, 12f, 0);
+        TelemetryHistory.Window window = new TelemetryHistory.Window(16);
+        history.copyLatest(window);
+
+        float[] min = new float[4];
+        float[] max = new float[4];
+        window.downsampleMinMax(TelemetryHistory.CHANNEL_ROLL, 0, 100, 4, min, max);
+        assertEquals(-4f, min[0], 0f);
+        assertEquals(3f, max[0], 0f);
+        assertTrue(Float.isNaN(min[1]));
+        assertTrue(Float.isNaN(max[1]));
+        assertEquals(7f, min[2], 0f);
+        assertEquals(7f, max[2], 0f);
+        // 100 is outside [0, 100)
+        assertTrue(Float.isNaN(max[3]));
+    }
+
+    @Test
+    public void concurrentCopiesHoldOnlyWholeSamples() throws InterruptedException {
+        TelemetryHistory history = new TelemetryHistory(64);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 2_000_000 && failure.get() == null; i++) {
+                append(history, i);
+            }
+        });
+        producer.start();
+        TelemetryHistory.Window window = new TelemetryHistory.Window(64);
+        while (producer.isAlive() && failure.get() == null) {
+            int n = history.copyLatest(window);
+            for (int i = 0; i < n; i++) {
+                float expected = window.timestamps[i] / 10f;
+                if (window.roll[i] != expected || window.pitch[i] != -expected
+                        || (i > 0 && window.timestamps[i] <= window.timestamps[i - 1])) {
+                    failure.set("sample " + i + " of " + n + ": t=" + window.timestamps[i]
+                            + " roll=" + window.roll[i]);
+                    break;
+                }
+            }
+        }
+        producer.join();
+        assertNull(failure.get());
+    }
+
+    // Sample i is at 10 * i ms with roll i and pitch -i
+    private static void append(TelemetryHistory history, int i) {
+        history.append(i * 10L, i, -i, 12f, i & 0x7);
+    }
+
+    private static void assertSample(TelemetryHistory.Window window, int index, int sample) {
+        assertEquals(sample * 10L, window.timestamps[index]);
+        assertEquals(sample, window.roll[index], 0f);
+        assertEquals(-sample, window.pitch[index], 0f);
+        assertEquals(sample & 0x7, window.flags[index]);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.kayakstabilizer.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+public class TelemetryParserTest {
+    private static final byte[] FRAME = ascii(
+            "ROLL:1.23,PITCH:-0.45,BATTERY:3.92,BATTERY_TYPE:0,STABILIZATION:1,EMERGENCY:0,SEQ:17,TIME:52340");
+
+    @Test
+    public void parsesEveryField() {
+        TelemetrySnapshot out = new TelemetrySnapshot();
+        assertTrue(TelemetryParser.parse(FRAME, out));
+        assertEquals(1.23f, out.roll, 1e-6f);
+        assertEquals(-0.45f, out.pitch, 1e-6f);
+        assertEquals(3.92f, out.batteryVoltage, 1e-6f);
+        assertEquals(TelemetrySnapshot.BATTERY_LIPO, out.batteryType);
+        assertTrue(out.stabilizationEnabled);
+        assertFalse(out.emergencyStop);
+        assertFalse(out.lowBattery);
+        assertEquals(17, out.sequence);
+        assertEquals(52340, out.deviceMillis);
+    }
+
+    @Test
+    public void overwritesOnlyTheFieldsInTheFrame() {
+        TelemetrySnapshot out = new TelemetrySnapshot();
+        TelemetryParser.parse(FRAME, out);
+        assertTrue(TelemetryParser.parse(ascii("EMERGENCY_STOP:1"), out));
+        assertEquals(TelemetrySnapshot.FIELD_EMERGENCY, out.fields);
+        assertTrue(out.emergencyStop);
+        assertEquals(1.23f, out.roll, 1e-6f);
+    }
+
+    @Test
+    public void rejectsMalformedValues() {
+        TelemetrySnapshot out = new TelemetrySnapshot();
+        assertFalse(TelemetryParser.parse(ascii("ROLL:1.2x,PITCH:0"), out));
+        assertFalse(TelemetryParser.parse(ascii("UNKNOWN:5"), out));
+    }
+
+    @Test
+    public void lowBatteryClearsWhenTheVoltageRecovers() {
+        TelemetrySnapshot out = new TelemetrySnapshot();
+        assertTrue(TelemetryParser.parse(ascii("LOW_BATTERY:3.21,TYPE:0"), out));
+        assertTrue(out.lowBattery);
+        assertTrue((out.packFlags() & TelemetrySnapshot.FLAG_LOW_BATTERY) != 0);
+
+        TelemetryParser.parse(FRAME, out);
+        assertTrue(out.has(TelemetrySnapshot.FIELD_LOW_BATTERY));
+        assertFalse(out.lowBattery);
+        assertEquals(0, out.packFlags() & TelemetrySnapshot.FLAG_LOW_BATTERY);
+    }
+
+    @Test
+    public void regularFrameBelowTheCutOffReportsLowBattery() {
+        TelemetrySnapshot out = new TelemetrySnapshot();
+        TelemetryParser.parse(ascii("ROLL:0.00,BATTERY:13.80,BATTERY_TYPE:1"), out);
+        assertTrue(out.lowBattery);
+        TelemetryParser.parse(ascii("ROLL:0.00,BATTERY:14.20,BATTERY_TYPE:1"), out);
+        assertFalse(out.lowBattery);
+    }
+
+    @Test
+    public void allocatesNothingPerFrame() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        TelemetrySnapshot out = new TelemetrySnapshot();
+        byte[] lowBattery = ascii("LOW_BATTERY:3.21,TYPE:0");
+        int frames = 200_000;
+
+        // Warm up so class loading and JIT compilation are not counted
+        for (int i = 0; i < frames; i++) {
+            TelemetryParser.parse(FRAME, 0, FRAME.length, out);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < frames; i++) {
+            TelemetryParser.parse(FRAME, 0, FRAME.length, out);
+            TelemetryParser.parse(lowBattery, 0, lowBattery.length, out);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals("bytes allocated per frame", 0, allocated / (2L * frames));
+    }
+
+    private static byte[] ascii(String frame) {
+        return frame.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.kayakstabilizer.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LineFramerTest {
+    private static final int MAX_FRAME = 128;
+
+    /** Hands out the data in reads of random size, as a busy RFCOMM socket would. */
+    private static final class ChunkedInputStream extends InputStream {
+        private final byte[] data;
+        private final Random random;
+        private int position;
+
+        ChunkedInputStream(byte[] data, long seed) {
+            this.data = data;
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == data.length) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, 1 + random.nextInt(300)), data.length - position);
+            System.arraycopy(data, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+
+    private static final class Collector implements LineFramer.FrameListener {
+        final List<String> frames = new ArrayList<>();
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            frames.add(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void recoversEveryLineFromRandomlySizedReads() throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        List<String> expected = new ArrayList<>();
+        int oversized = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String line;
+            if (i % 997 == 0) {
+                line = repeat('X', MAX_FRAME + 1 + random.nextInt(400));
+                oversized++;
+            } else {
+                line = "ROLL:" + (random.nextInt(9000) / 100.0) + ",PITCH:" + i + ",SEQ:" + (i & 0xFFFF);
+                expected.add(line);
+            }
+            stream.write(line.getBytes(StandardCharsets.US_ASCII));
+            stream.write(random.nextBoolean() ? "\r\n".getBytes(StandardCharsets.US_ASCII) : new byte[] {'\n'});
+        }
+
+        LineFramer framer = new LineFramer(MAX_FRAME);
+        Collector collector = new Collector();
+        InputStream in = new ChunkedInputStream(stream.toByteArray(), 7);
+        while (framer.readFrom(in, collector) >= 0) {
+            // Keep reading until end of stream
+        }
+
+        assertEquals(expected, collector.frames);
+        assertEquals(expected.size(), framer.getFrameCount());
+        assertEquals(oversized, framer.getOversizedCount());
+    }
+
+    @Test
+    public void acceptsALineOfExactlyTheMaximumWithEitherEnding() {
+        String line = repeat('A', MAX_FRAME);
+        LineFramer framer = new LineFramer(MAX_FRAME);
+        Collector collector = new Collector();
+        byte[] data = (line + "\n" + line + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        framer.feed(data, 0, data.length, collector);
+
+        assertEquals(2, collector.frames.size());
+        assertEquals(line, collector.frames.get(0));
+        assertEquals(line, collector.frames.get(1));
+        assertEquals(0, framer.getOversizedCount());
+    }
+
+    @Test
+    public void dropsLinesOverTheMaximumUpToTheNextNewline() {
+        LineFramer framer = new LineFramer(MAX_FRAME);
+        Collector collector = new Collector();
+        // One byte too many, and a CR inside the line that is not followed by LF
+        byte[] data = (repeat('B', MAX_FRAME + 1) + "\n" + repeat('C', MAX_FRAME) + "\rD\nok\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        framer.feed(data, 0, data.length, collector);
+
+        assertEquals(1, collector.frames.size());
+        assertEquals("ok", collector.frames.get(0));
+        assertEquals(2, framer.getOversizedCount());
+    }
+
+    @Test
+    public void joinsFramesSplitAcrossFeedsAndAroundTheRing() {
+        LineFramer framer = new LineFramer(16);
+        Collector collector = new Collector();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String frame = "F" + i;
+            expected.append(frame).append(',');
+            byte[] bytes = (frame + "\n").getBytes(StandardCharsets.US_ASCII);
+            for (byte b : bytes) {
+                framer.feed(new byte[] {b}, 0, 1, collector);
+            }
+        }
+        StringBuilder actual = new StringBuilder();
+        for (String frame : collector.frames) {
+            actual.append(frame).append(',');
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
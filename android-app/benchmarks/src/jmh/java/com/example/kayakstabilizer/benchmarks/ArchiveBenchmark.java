@@ -0,0 +1,89 @@
+package com.example.kayakstabilizer.benchmarks;
+
+import com.example.kayakstabilizer.session.SessionArchiveReader;
+import com.example.kayakstabilizer.session.SessionArchiveWriter;
+import com.example.kayakstabilizer.simulator.FirmwareSimulator;
+import com.example.kayakstabilizer.telemetry.TelemetryParser;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Decoding ten minutes of 50 Hz simulated telemetry from the compressed archive against
+ * parsing the same session stored as ASCII notifications, normalised to one sample per op.
+ * The archive holds the values the ASCII frames decode to, so both decode identical data.
+ * Setup prints the size of each format.
+ */
+@State(Scope.Thread)
+public class ArchiveBenchmark {
+    private static final int SAMPLES = 30_000;
+    private static final int PERIOD_MS = 20;
+
+    private byte[] ascii;
+    private int[] lineEnds;
+    private byte[] archive;
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+    private final SessionArchiveReader.Sample sample = new SessionArchiveReader.Sample();
+
+    @Setup
+    public void setup() throws IOException {
+        FirmwareSimulator firmware = new FirmwareSimulator();
+        firmware.getPlant().setAttitude(8, -3);
+        ByteBuffer line = ByteBuffer.allocate(256);
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        SessionArchiveWriter writer = new SessionArchiveWriter(compressed, 0);
+        lineEnds = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            firmware.advanceTo((long) i * PERIOD_MS);
+            line.clear();
+            firmware.writeTelemetry(line, false);
+            TelemetryParser.parse(line.array(), 0, line.position(), snapshot);
+            writer.append((long) i * PERIOD_MS, snapshot.roll, snapshot.pitch,
+                    snapshot.batteryVoltage, snapshot.packFlags());
+            text.write(line.array(), 0, line.position());
+            text.write('\n');
+            lineEnds[i] = text.size() - 1;
+        }
+        writer.close();
+        ascii = text.toByteArray();
+        archive = compressed.toByteArray();
+        System.out.printf(Locale.US, "%nascii=%d bytes archive=%d bytes ratio=%.1fx (%.2f bytes/sample)%n",
+                ascii.length, archive.length, (double) ascii.length / archive.length,
+                (double) archive.length / SAMPLES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float parseAscii() {
+        float sum = 0;
+        int start = 0;
+        for (int end : lineEnds) {
+            TelemetryParser.parse(ascii, start, end - start, snapshot);
+            sum += snapshot.roll + snapshot.pitch + snapshot.batteryVoltage;
+            start = end + 1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float decodeArchive() throws IOException {
+        float sum = 0;
+        SessionArchiveReader reader = new SessionArchiveReader(new ByteArrayInputStream(archive));
+        while (reader.next(sample)) {
+            sum += sample.roll + sample.pitch + sample.battery;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.kayakstabilizer.benchmarks;
+
+import com.example.kayakstabilizer.telemetry.TelemetryFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One PID slider step per op: the value label plus the command string handed to sendCommand.
+ * {@code stringFormat} is what the slider listeners do today.
+ */
+@State(Scope.Thread)
+public class CommandFormatBenchmark {
+
+    private final StringBuilder label = new StringBuilder(16);
+    private final StringBuilder command = new StringBuilder(16);
+    private int progress;
+
+    private float nextValue() {
+        progress = (progress + 1) % 101;
+        return progress / 10.0f;
+    }
+
+    @Benchmark
+    public void stringFormat(Blackhole bh) {
+        float kpValue = nextValue();
+        bh.consume(String.format("%.1f", kpValue));
+        bh.consume("SET_KP:" + kpValue);
+    }
+
+    @Benchmark
+    public void appendFixed(Blackhole bh) {
+        float kpValue = nextValue();
+        label.setLength(0);
+        bh.consume(TelemetryFormat.appendFixed(label, kpValue, 1));
+        command.setLength(0);
+        // The dispatcher queues Strings, so the command itself still allocates
+        bh.consume(TelemetryFormat.appendFixed(command.append("SET_KP:"), kpValue, 1).toString());
+    }
+}
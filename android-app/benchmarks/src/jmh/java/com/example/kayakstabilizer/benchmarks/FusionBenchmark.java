@@ -0,0 +1,90 @@
+package com.example.kayakstabilizer.benchmarks;
+
+import com.example.kayakstabilizer.fusion.AccelLowPassFilter;
+import com.example.kayakstabilizer.fusion.AttitudeFilter;
+import com.example.kayakstabilizer.fusion.ComplementaryFilter;
+import com.example.kayakstabilizer.fusion.KalmanFilter;
+import com.example.kayakstabilizer.fusion.MadgwickFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost per IMU sample of each attitude filter, fed one sample at a time as updateIMU() would
+ * and over a recorded batch. The ratio to "lowpass", the firmware's current algorithm, is the
+ * figure to carry over to the ESP32, which has to fit one update into the 10 ms IMU period.
+ */
+@State(Scope.Thread)
+public class FusionBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"lowpass", "complementary", "madgwick", "kalman"})
+    public String filterName;
+
+    private final short[] accel = new short[SAMPLES * 3];
+    private final short[] gyro = new short[SAMPLES * 3];
+    private final long[] millis = new long[SAMPLES];
+    private final float[] rollOut = new float[SAMPLES];
+    private final float[] pitchOut = new float[SAMPLES];
+    private final float[] ax = new float[SAMPLES];
+    private final float[] ay = new float[SAMPLES];
+    private final float[] az = new float[SAMPLES];
+    private final float[] gx = new float[SAMPLES];
+    private final float[] gy = new float[SAMPLES];
+    private AttitudeFilter filter;
+    private long timeMillis;
+    private int index;
+
+    @Setup
+    public void setup() {
+        // A rolling and pitching hull: gravity in the sensor frame and its rates, at 100 Hz
+        for (int i = 0; i < SAMPLES; i++) {
+            double t = i * 0.01;
+            double roll = Math.toRadians(20 * Math.sin(2 * Math.PI * 0.7 * t));
+            double pitch = Math.toRadians(6 * Math.sin(2 * Math.PI * 1.1 * t));
+            ax[i] = (float) -Math.sin(pitch);
+            ay[i] = (float) (Math.sin(roll) * Math.cos(pitch));
+            az[i] = (float) (Math.cos(roll) * Math.cos(pitch));
+            gx[i] = (float) (20 * 2 * Math.PI * 0.7 * Math.cos(2 * Math.PI * 0.7 * t));
+            gy[i] = (float) (6 * 2 * Math.PI * 1.1 * Math.cos(2 * Math.PI * 1.1 * t));
+            accel[i * 3] = (short) Math.round(ax[i] * AttitudeFilter.ACCEL_LSB_PER_G);
+            accel[i * 3 + 1] = (short) Math.round(ay[i] * AttitudeFilter.ACCEL_LSB_PER_G);
+            accel[i * 3 + 2] = (short) Math.round(az[i] * AttitudeFilter.ACCEL_LSB_PER_G);
+            gyro[i * 3] = (short) Math.round(gx[i] * AttitudeFilter.GYRO_LSB_PER_DPS);
+            gyro[i * 3 + 1] = (short) Math.round(gy[i] * AttitudeFilter.GYRO_LSB_PER_DPS);
+            millis[i] = i * 10L;
+        }
+        if (filterName.equals("complementary")) {
+            filter = new ComplementaryFilter();
+        } else if (filterName.equals("madgwick")) {
+            filter = new MadgwickFilter();
+        } else if (filterName.equals("kalman")) {
+            filter = new KalmanFilter();
+        } else {
+            filter = new AccelLowPassFilter();
+        }
+        timeMillis = 0;
+    }
+
+    @Benchmark
+    public float update() {
+        int i = index = (index + 1) & (SAMPLES - 1);
+        filter.update(ax[i], ay[i], az[i], gx[i], gy[i], 0f, AttitudeFilter.DEFAULT_DT);
+        return filter.getRoll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float processBatch() {
+        // Continue the timeline so every batch sees the nominal 10 ms step
+        for (int i = 0; i < SAMPLES; i++) {
+            millis[i] = timeMillis += 10;
+        }
+        filter.process(accel, gyro, millis, 0, SAMPLES, rollOut, pitchOut);
+        return rollOut[SAMPLES - 1];
+    }
+}
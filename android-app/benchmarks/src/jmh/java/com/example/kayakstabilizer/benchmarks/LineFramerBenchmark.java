@@ -0,0 +1,92 @@
+package com.example.kayakstabilizer.benchmarks;
+
+import com.example.kayakstabilizer.telemetry.TelemetryParser;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.LineFramer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Framing and parsing the RFCOMM telemetry stream, normalised to one line per op. The stream
+ * arrives in {@code chunkSize} reads that split lines at arbitrary points.
+ */
+@State(Scope.Thread)
+public class LineFramerBenchmark {
+    private static final int LINES = 64;
+
+    @Param({"16", "128", "1024"})
+    public int chunkSize;
+
+    private byte[] stream;
+    private final LineFramer framer = new LineFramer(256);
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+    private float sink;
+
+    private final LineFramer.FrameListener parseListener = (data, offset, length) -> {
+        TelemetryParser.parse(data, offset, length, snapshot);
+        sink += snapshot.roll;
+    };
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            sb.append("ROLL:").append(i % 30 - 15).append('.').append(i % 100)
+                    .append(",PITCH:").append(i % 7).append(".25,BATTERY:3.9").append(i % 10)
+                    .append("\r\n");
+        }
+        stream = sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public float lineFramer() {
+        framer.reset();
+        for (int off = 0; off < stream.length; off += chunkSize) {
+            framer.feed(stream, off, Math.min(chunkSize, stream.length - off), parseListener);
+        }
+        return sink;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void bufferedReaderSplit(Blackhole bh) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ChunkedInputStream(stream, chunkSize), StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            for (String part : line.split(",")) {
+                if (part.startsWith("ROLL:")) {
+                    bh.consume(Float.parseFloat(part.substring(5)));
+                }
+            }
+        }
+    }
+
+    /** Returns at most {@code chunk} bytes per read, like a socket. */
+    private static final class ChunkedInputStream extends ByteArrayInputStream {
+        private final int chunk;
+
+        ChunkedInputStream(byte[] data, int chunk) {
+            super(data);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunk));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.kayakstabilizer.benchmarks;
+
+import com.example.kayakstabilizer.simulator.FirmwareSimulator;
+import com.example.kayakstabilizer.simulator.PidController;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * PID math mirrored from the firmware's updatePID(), and one 20 ms firmware period (PID step,
+ * two IMU updates, 20 ms of hull physics) of the simulator that the tuning tools run.
+ */
+@State(Scope.Thread)
+public class PidBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private final float[] roll = new float[SAMPLES];
+    private final float[] pitch = new float[SAMPLES];
+    private int index;
+
+    private PidController pid;
+    private FirmwareSimulator firmware;
+    private long simMillis;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < SAMPLES; i++) {
+            roll[i] = (float) (20 * Math.sin(i * 0.05));
+            pitch[i] = (float) (8 * Math.cos(i * 0.03));
+        }
+        pid = new PidController();
+        FirmwareSimulator.Config config = new FirmwareSimulator.Config();
+        // Keep the battery healthy so long runs never trip the low-voltage emergency stop
+        config.batteryDrainVoltsPerHour = 0f;
+        firmware = new FirmwareSimulator(config);
+        simMillis = 0;
+    }
+
+    @Benchmark
+    public int pidUpdate() {
+        int i = index = (index + 1) & (SAMPLES - 1);
+        pid.update(roll[i], pitch[i]);
+        return pid.getLeftServoAngle() + pid.getRightServoAngle();
+    }
+
+    @Benchmark
+    public float firmwarePidPeriod() {
+        simMillis += 1000 / PidController.DEFAULT_UPDATE_RATE;
+        firmware.advanceTo(simMillis);
+        return firmware.getRoll();
+    }
+}
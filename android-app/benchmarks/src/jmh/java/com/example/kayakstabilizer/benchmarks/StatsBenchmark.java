@@ -0,0 +1,60 @@
+package com.example.kayakstabilizer.benchmarks;
+
+import com.example.kayakstabilizer.stats.SlidingWindowStats;
+import com.example.kayakstabilizer.stats.TelemetryStats;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-frame cost of the sliding-window statistics. The update cost should not change with the
+ * window capacity; run with -prof gc to confirm it allocates nothing.
+ */
+@State(Scope.Thread)
+public class StatsBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"256", "4096", "65536"})
+    public int capacity;
+
+    private final float[] roll = new float[SAMPLES];
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+    private SlidingWindowStats window;
+    private TelemetryStats stats;
+    private long timeMillis;
+    private int index;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < SAMPLES; i++) {
+            roll[i] = (float) (20 * Math.sin(i * 0.05) + 3 * Math.sin(i * 0.71));
+        }
+        // Long enough that the capacity, not the duration, bounds the window
+        window = new SlidingWindowStats(Long.MAX_VALUE / 4, capacity, -90f, 90f, 360);
+        stats = new TelemetryStats();
+        snapshot.fields = TelemetrySnapshot.FIELD_ROLL | TelemetrySnapshot.FIELD_PITCH
+                | TelemetrySnapshot.FIELD_BATTERY;
+        snapshot.batteryVoltage = 3.9f;
+        timeMillis = 0;
+    }
+
+    @Benchmark
+    public double windowAdd() {
+        int i = index = (index + 1) & (SAMPLES - 1);
+        window.add(timeMillis += 20, roll[i]);
+        return window.getRms();
+    }
+
+    @Benchmark
+    public double telemetryStatsUpdate() {
+        int i = index = (index + 1) & (SAMPLES - 1);
+        snapshot.roll = roll[i];
+        snapshot.pitch = roll[(i + 300) & (SAMPLES - 1)] / 3;
+        stats.update(timeMillis += 20, snapshot);
+        return stats.getRollVariance(0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.kayakstabilizer.benchmarks;
+
+import com.example.kayakstabilizer.telemetry.TelemetryDecoder;
+import com.example.kayakstabilizer.telemetry.TelemetryFrameCodec;
+import com.example.kayakstabilizer.telemetry.TelemetryParser;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One BLE telemetry notification per op. {@code legacySplit} is the original
+ * parseAndUpdateSensorData(String) body with the TextView writes replaced by the Blackhole.
+ */
+@State(Scope.Thread)
+public class TelemetryParseBenchmark {
+
+    private byte[] ascii;
+    private byte[] binary;
+    private final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+
+    @Setup
+    public void setup() {
+        ascii = "ROLL:-12.34,PITCH:5.67,BATTERY:3.92,BATTERY_TYPE:0,STABILIZATION:1,EMERGENCY:0,SEQ:42,TIME:123456"
+                .getBytes(StandardCharsets.US_ASCII);
+
+        TelemetrySnapshot frame = new TelemetrySnapshot();
+        frame.roll = -12.34f;
+        frame.pitch = 5.67f;
+        frame.batteryVoltage = 3.92f;
+        frame.stabilizationEnabled = true;
+        frame.sequence = 42;
+        frame.deviceMillis = 123456;
+        ByteBuffer buffer = ByteBuffer.allocate(TelemetryFrameCodec.FRAME_SIZE_V2);
+        TelemetryFrameCodec.encode(frame, buffer);
+        binary = buffer.array();
+    }
+
+    @Benchmark
+    public void legacySplit(Blackhole bh) {
+        String data = new String(ascii);
+        String[] parts = data.split(",");
+        for (String part : parts) {
+            if (part.contains("ROLL:")) {
+                String rollValue = part.split(":")[1];
+                bh.consume("Roll: " + rollValue + "°");
+            } else if (part.contains("PITCH:")) {
+                String pitchValue = part.split(":")[1];
+                bh.consume("Pitch: " + pitchValue + "°");
+            } else if (part.contains("BATTERY:")) {
+                String batteryValue = part.split(":")[1];
+                bh.consume("Battery: " + batteryValue + "V");
+                try {
+                    bh.consume(Float.parseFloat(batteryValue) < 3.3f);
+                } catch (NumberFormatException e) {
+                    bh.consume(e);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public float parseAscii() {
+        TelemetryParser.parse(ascii, snapshot);
+        return snapshot.roll + snapshot.pitch + snapshot.batteryVoltage;
+    }
+
+    @Benchmark
+    public float decodeBinary() {
+        TelemetryDecoder.decode(binary, snapshot);
+        return snapshot.roll + snapshot.pitch + snapshot.batteryVoltage;
+    }
+
+    @Benchmark
+    public float decodeAutoDetectAscii() {
+        TelemetryDecoder.decode(ascii, snapshot);
+        return snapshot.roll + snapshot.pitch + snapshot.batteryVoltage;
+    }
+}
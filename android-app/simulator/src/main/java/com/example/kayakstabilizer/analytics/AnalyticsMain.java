@@ -0,0 +1,218 @@
+package com.example.kayakstabilizer.analytics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Batch analysis of recorded sessions from the command line. Finds every .kses and .ksar file
+ * under a directory, one subdirectory per boat, and writes two {@link SummaryTable}s to the
+ * output directory: sessions.ksum with a row per session and devices.ksum with a row per
+ * boat, then prints the boat table.
+ *
+ * Usage: AnalyticsMain directory [outputDirectory] [threads]
+ */
+public final class AnalyticsMain {
+
+    private AnalyticsMain() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: AnalyticsMain directory [outputDirectory] [threads]");
+            return;
+        }
+        File root = new File(args[0]);
+        File outputDir = args.length > 1 ? new File(args[1]) : root;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<File> files = new ArrayList<>();
+        collect(root, files);
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        System.out.printf(Locale.US, "Analyzing %d session files (%.1f MB) on %d threads%n",
+                files.size(), bytes / 1e6, threads);
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(threads);
+        long start = System.nanoTime();
+        List<SessionSummary> sessions = analyzer.analyze(files, new BatchAnalyzer.Listener() {
+            @Override
+            public void onProgress(int done, int total) {
+            }
+
+            @Override
+            public void onError(File file, Exception e) {
+                System.out.println("Skipped " + file + ": " + e.getMessage());
+            }
+        });
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000L);
+        analyzer.shutdown();
+
+        long samples = 0;
+        for (SessionSummary session : sessions) {
+            samples += session.samples;
+        }
+        System.out.printf(Locale.US, "Done in %d ms (%.0f files/s, %.0f MB/s, %.1f M samples/s)%n",
+                elapsedMs, files.size() * 1000.0 / elapsedMs, bytes / 1e3 / elapsedMs, samples / 1e3 / elapsedMs);
+
+        List<DeviceSummary> devices = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= sessions.size(); i++) {
+            if (i == sessions.size() || !sessions.get(i).device.equals(sessions.get(from).device)) {
+                devices.add(DeviceSummary.of(sessions.get(from).device, sessions.subList(from, i)));
+                from = i;
+            }
+        }
+
+        outputDir.mkdirs();
+        sessionTable(sessions).write(new File(outputDir, "sessions.ksum"));
+        deviceTable(devices).write(new File(outputDir, "devices.ksum"));
+        System.out.println("Wrote sessions.ksum and devices.ksum to " + outputDir);
+
+        System.out.printf(Locale.US, "%-16s %5s %7s %17s %17s %5s %15s %13s %s%n", "", "", "",
+                "roll rms", "", "", "battery start", "discharge", "");
+        System.out.printf(Locale.US, "%-16s %5s %7s %8s %8s %8s %5s %7s %7s %6s %6s %s%n",
+                "device", "runs", "hours", "deg", "/30d", "pitch", "stops", "V", "/30d", "V/h", "/30d", "gains");
+        for (DeviceSummary device : devices) {
+            System.out.printf(Locale.US, "%-16s %5d %7.1f %8.2f %+8.2f %8.2f %5d %7.2f %+7.2f %6.2f %+6.2f %s%n",
+                    device.device, device.sessions, device.totalMillis / 3_600_000.0,
+                    device.rollRms, device.rollRmsTrend, device.pitchRms, device.emergencies,
+                    device.batteryStart, device.batteryStartTrend,
+                    device.dischargeVoltsPerHour, device.dischargeTrend,
+                    Float.isNaN(device.kp) ? "-"
+                            : String.format(Locale.US, "%.2f/%.2f/%.2f", device.kp, device.ki, device.kd));
+        }
+    }
+
+    private static void collect(File dir, List<File> out) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collect(child, out);
+            } else if (SessionAnalyzer.accepts(child)) {
+                out.add(child);
+            }
+        }
+    }
+
+    private static SummaryTable sessionTable(List<SessionSummary> sessions) {
+        int n = sessions.size();
+        String[] device = new String[n];
+        String[] file = new String[n];
+        long[] start = new long[n], duration = new long[n], samples = new long[n];
+        long[] emergencies = new long[n], lowBattery = new long[n], gainChanges = new long[n];
+        float[] rollRms = new float[n], pitchRms = new float[n], maxAbsRoll = new float[n];
+        float[] batteryStart = new float[n], batteryEnd = new float[n], batteryMin = new float[n];
+        float[] discharge = new float[n], kp = new float[n], ki = new float[n], kd = new float[n];
+        float[][] curve = new float[SessionSummary.CURVE_BUCKETS][n];
+        for (int i = 0; i < n; i++) {
+            SessionSummary s = sessions.get(i);
+            device[i] = s.device;
+            file[i] = s.file;
+            start[i] = s.startWallClockMillis;
+            duration[i] = s.durationMillis;
+            samples[i] = s.samples;
+            rollRms[i] = s.rollRms;
+            pitchRms[i] = s.pitchRms;
+            maxAbsRoll[i] = s.maxAbsRoll;
+            emergencies[i] = s.emergencies;
+            lowBattery[i] = s.lowBatteryMillis;
+            batteryStart[i] = s.batteryStart;
+            batteryEnd[i] = s.batteryEnd;
+            batteryMin[i] = s.batteryMin;
+            discharge[i] = s.dischargeVoltsPerHour;
+            for (int b = 0; b < SessionSummary.CURVE_BUCKETS; b++) {
+                curve[b][i] = s.batteryCurve[b];
+            }
+            kp[i] = s.kp;
+            ki[i] = s.ki;
+            kd[i] = s.kd;
+            gainChanges[i] = s.gainChanges;
+        }
+        SummaryTable table = new SummaryTable(n);
+        table.addStrings("device", device);
+        table.addStrings("file", file);
+        table.addLongs("start_millis", start);
+        table.addLongs("duration_millis", duration);
+        table.addLongs("samples", samples);
+        table.addFloats("roll_rms", rollRms);
+        table.addFloats("pitch_rms", pitchRms);
+        table.addFloats("max_abs_roll", maxAbsRoll);
+        table.addLongs("emergencies", emergencies);
+        table.addLongs("low_battery_millis", lowBattery);
+        table.addFloats("battery_start", batteryStart);
+        table.addFloats("battery_end", batteryEnd);
+        table.addFloats("battery_min", batteryMin);
+        table.addFloats("discharge_v_per_h", discharge);
+        for (int b = 0; b < SessionSummary.CURVE_BUCKETS; b++) {
+            // Named by the start of the bucket, e.g. battery_15min
+            table.addFloats("battery_" + b * SessionSummary.CURVE_BUCKET_MILLIS / 60_000 + "min", curve[b]);
+        }
+        table.addFloats("kp", kp);
+        table.addFloats("ki", ki);
+        table.addFloats("kd", kd);
+        table.addLongs("gain_changes", gainChanges);
+        return table;
+    }
+
+    private static SummaryTable deviceTable(List<DeviceSummary> devices) {
+        int n = devices.size();
+        String[] device = new String[n];
+        long[] sessions = new long[n], firstStart = new long[n], lastStart = new long[n];
+        long[] total = new long[n], samples = new long[n], emergencies = new long[n], lowBattery = new long[n];
+        float[] rollRms = new float[n], pitchRms = new float[n], rollTrend = new float[n];
+        float[] batteryStart = new float[n], discharge = new float[n];
+        float[] batteryTrend = new float[n], dischargeTrend = new float[n];
+        float[] kp = new float[n], ki = new float[n], kd = new float[n];
+        for (int i = 0; i < n; i++) {
+            DeviceSummary d = devices.get(i);
+            device[i] = d.device;
+            sessions[i] = d.sessions;
+            firstStart[i] = d.firstStartWallClockMillis;
+            lastStart[i] = d.lastStartWallClockMillis;
+            total[i] = d.totalMillis;
+            samples[i] = d.samples;
+            rollRms[i] = d.rollRms;
+            pitchRms[i] = d.pitchRms;
+            emergencies[i] = d.emergencies;
+            lowBattery[i] = d.lowBatteryMillis;
+            batteryStart[i] = d.batteryStart;
+            discharge[i] = d.dischargeVoltsPerHour;
+            rollTrend[i] = d.rollRmsTrend;
+            batteryTrend[i] = d.batteryStartTrend;
+            dischargeTrend[i] = d.dischargeTrend;
+            kp[i] = d.kp;
+            ki[i] = d.ki;
+            kd[i] = d.kd;
+        }
+        SummaryTable table = new SummaryTable(n);
+        table.addStrings("device", device);
+        table.addLongs("sessions", sessions);
+        table.addLongs("first_start_millis", firstStart);
+        table.addLongs("last_start_millis", lastStart);
+        table.addLongs("total_millis", total);
+        table.addLongs("samples", samples);
+        table.addFloats("roll_rms", rollRms);
+        table.addFloats("pitch_rms", pitchRms);
+        table.addLongs("emergencies", emergencies);
+        table.addLongs("low_battery_millis", lowBattery);
+        table.addFloats("battery_start", batteryStart);
+        table.addFloats("discharge_v_per_h", discharge);
+        table.addFloats("roll_rms_per_30d", rollTrend);
+        table.addFloats("battery_start_per_30d", batteryTrend);
+        table.addFloats("discharge_per_30d", dischargeTrend);
+        table.addFloats("kp", kp);
+        table.addFloats("ki", ki);
+        table.addFloats("kd", kd);
+        return table;
+    }
+}
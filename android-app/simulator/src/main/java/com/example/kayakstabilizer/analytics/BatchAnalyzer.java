@@ -0,0 +1,118 @@
+package com.example.kayakstabilizer.analytics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analyzes session files on a fixed pool of threads, one file per task and one
+ * {@link SessionAnalyzer} per thread. Memory is bounded by the pool size rather than the
+ * number or length of the files: each thread holds one file open, and only the small
+ * {@link SessionSummary} of each file is kept. The largest files are started first so a long
+ * session does not run on its own after the rest of the pool has gone idle.
+ *
+ * A file's device is the name of the directory it is in, e.g. {@code season/boat-07/}.
+ */
+public final class BatchAnalyzer {
+
+    static final Comparator<SessionSummary> BY_DEVICE_AND_START = new Comparator<SessionSummary>() {
+        @Override
+        public int compare(SessionSummary a, SessionSummary b) {
+            int byDevice = a.device.compareTo(b.device);
+            if (byDevice != 0) {
+                return byDevice;
+            }
+            int byStart = Long.compare(a.startWallClockMillis, b.startWallClockMillis);
+            return byStart != 0 ? byStart : a.file.compareTo(b.file);
+        }
+    };
+
+    public interface Listener {
+        void onProgress(int done, int total);
+
+        /** The file could not be read; it is left out of the results. */
+        void onError(File file, Exception e);
+    }
+
+    private final ExecutorService pool;
+    private final ThreadLocal<SessionAnalyzer> analyzers = new ThreadLocal<SessionAnalyzer>() {
+        @Override
+        protected SessionAnalyzer initialValue() {
+            return new SessionAnalyzer();
+        }
+    };
+
+    public BatchAnalyzer(int threads) {
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    public BatchAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the summaries of the files that could be read, by device and then start time
+     */
+    public List<SessionSummary> analyze(List<File> files, final Listener listener) throws InterruptedException {
+        List<File> bySize = new ArrayList<>(files);
+        Collections.sort(bySize, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(b.length(), a.length());
+            }
+        });
+
+        final int total = bySize.size();
+        final AtomicInteger done = new AtomicInteger();
+        List<Future<SessionSummary>> futures = new ArrayList<>(total);
+        for (final File file : bySize) {
+            futures.add(pool.submit(() -> {
+                try {
+                    SessionSummary summary = new SessionSummary();
+                    analyzers.get().analyze(file, deviceOf(file), summary);
+                    return summary;
+                } catch (IOException | RuntimeException e) {
+                    if (listener != null) {
+                        listener.onError(file, e);
+                    }
+                    return null;
+                } finally {
+                    if (listener != null) {
+                        listener.onProgress(done.incrementAndGet(), total);
+                    }
+                }
+            }));
+        }
+
+        List<SessionSummary> summaries = new ArrayList<>(total);
+        for (Future<SessionSummary> future : futures) {
+            try {
+                SessionSummary summary = future.get();
+                if (summary != null) {
+                    summaries.add(summary);
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        Collections.sort(summaries, BY_DEVICE_AND_START);
+        return summaries;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    static String deviceOf(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        return parent != null ? parent.getName() : "";
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.kayakstabilizer.analytics;
+
+import java.util.List;
+
+/**
+ * Aggregates of all sessions of one device. RMS values are over all samples, not a mean of the
+ * per-session values. The trends are least-squares slopes across the device's sessions by start
+ * date, per 30 days: a rising roll RMS trend points at a hull or controller getting worse, a
+ * falling battery start trend at a pack that no longer charges full and a more negative
+ * discharge trend at one that sags faster under load. NaN needs two sessions on different days.
+ */
+public final class DeviceSummary {
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final double MILLIS_PER_30_DAYS = 30.0 * MILLIS_PER_DAY;
+
+    public String device;
+    public int sessions;
+    public long firstStartWallClockMillis;
+    public long lastStartWallClockMillis;
+    public long totalMillis;
+    public long samples;
+
+    public float rollRms;
+    public float pitchRms;
+    public int emergencies;
+    public long lowBatteryMillis;
+    /** Means over the sessions with a battery reading. */
+    public float batteryStart;
+    public float dischargeVoltsPerHour;
+
+    public float rollRmsTrend;
+    public float batteryStartTrend;
+    public float dischargeTrend;
+
+    /** Gains in effect at the end of the most recent session that recorded them. */
+    public float kp = Float.NaN;
+    public float ki = Float.NaN;
+    public float kd = Float.NaN;
+
+    /**
+     * @param sessions the device's sessions in order of their start time
+     */
+    public static DeviceSummary of(String device, List<SessionSummary> sessions) {
+        DeviceSummary out = new DeviceSummary();
+        out.device = device;
+        out.sessions = sessions.size();
+        out.firstStartWallClockMillis = sessions.get(0).startWallClockMillis;
+        out.lastStartWallClockMillis = sessions.get(sessions.size() - 1).startWallClockMillis;
+
+        double rollSquares = 0;
+        double pitchSquares = 0;
+        for (SessionSummary session : sessions) {
+            out.totalMillis += session.durationMillis;
+            out.samples += session.samples;
+            out.emergencies += session.emergencies;
+            out.lowBatteryMillis += session.lowBatteryMillis;
+            if (session.samples > 0) {
+                rollSquares += (double) session.rollRms * session.rollRms * session.samples;
+                pitchSquares += (double) session.pitchRms * session.pitchRms * session.samples;
+            }
+            if (!Float.isNaN(session.kp)) {
+                out.kp = session.kp;
+                out.ki = session.ki;
+                out.kd = session.kd;
+            }
+        }
+        out.rollRms = out.samples > 0 ? (float) Math.sqrt(rollSquares / out.samples) : Float.NaN;
+        out.pitchRms = out.samples > 0 ? (float) Math.sqrt(pitchSquares / out.samples) : Float.NaN;
+
+        int n = sessions.size();
+        long[] starts = new long[n];
+        float[] rollRms = new float[n];
+        float[] batteryStart = new float[n];
+        float[] discharge = new float[n];
+        for (int i = 0; i < n; i++) {
+            SessionSummary session = sessions.get(i);
+            starts[i] = session.startWallClockMillis;
+            rollRms[i] = session.rollRms;
+            batteryStart[i] = session.batteryStart;
+            discharge[i] = session.dischargeVoltsPerHour;
+        }
+        out.batteryStart = mean(batteryStart);
+        out.dischargeVoltsPerHour = mean(discharge);
+        out.rollRmsTrend = trend(starts, rollRms);
+        out.batteryStartTrend = trend(starts, batteryStart);
+        out.dischargeTrend = trend(starts, discharge);
+        return out;
+    }
+
+    private static float mean(float[] values) {
+        double sum = 0;
+        int n = 0;
+        for (float value : values) {
+            if (!Float.isNaN(value)) {
+                sum += value;
+                n++;
+            }
+        }
+        return n > 0 ? (float) (sum / n) : Float.NaN;
+    }
+
+    // Least-squares slope per 30 days, skipping sessions without a value
+    private static float trend(long[] starts, float[] values) {
+        int n = 0;
+        double meanX = 0;
+        double meanY = 0;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < starts.length; i++) {
+            if (!Float.isNaN(values[i])) {
+                n++;
+                meanX += starts[i] / MILLIS_PER_30_DAYS;
+                meanY += values[i];
+                first = Math.min(first, starts[i]);
+                last = Math.max(last, starts[i]);
+            }
+        }
+        // Sessions within one day span too little time for a seasonal trend
+        if (n < 2 || last - first < MILLIS_PER_DAY) {
+            return Float.NaN;
+        }
+        meanX /= n;
+        meanY /= n;
+        double sxx = 0;
+        double sxy = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (!Float.isNaN(values[i])) {
+                double dx = starts[i] / MILLIS_PER_30_DAYS - meanX;
+                sxx += dx * dx;
+                sxy += dx * (values[i] - meanY);
+            }
+        }
+        return (float) (sxy / sxx);
+    }
+}
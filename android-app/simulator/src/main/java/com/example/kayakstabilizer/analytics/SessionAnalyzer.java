@@ -0,0 +1,264 @@
+package com.example.kayakstabilizer.analytics;
+
+import com.example.kayakstabilizer.command.CommandProtocol;
+import com.example.kayakstabilizer.command.CommandResult;
+import com.example.kayakstabilizer.session.SessionArchiveReader;
+import com.example.kayakstabilizer.session.SessionReader;
+import com.example.kayakstabilizer.telemetry.TelemetryDecoder;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reduces one session file, recorded (.kses) or archived (.ksar), to a {@link SessionSummary}
+ * in a single pass. Records are read into reused holders and folded into running sums, so the
+ * memory needed does not grow with the length of the session.
+ *
+ * Gains are taken from the firmware's command acknowledgements when the session has any,
+ * since they report what was actually applied; otherwise from the commands sent.
+ *
+ * Not thread-safe; use one analyzer per thread.
+ */
+public final class SessionAnalyzer {
+    private static final int ARCHIVE_BUFFER_SIZE = 64 * 1024;
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    private final SessionReader.Record record = new SessionReader.Record();
+    private final SessionArchiveReader.Sample sample = new SessionArchiveReader.Sample();
+    private final TelemetrySnapshot frame = new TelemetrySnapshot();
+    private final TelemetrySnapshot latest = new TelemetrySnapshot();
+    private final CommandResult response = new CommandResult();
+
+    private long samples;
+    private long lastMillis;
+    private double rollSquares;
+    private double pitchSquares;
+    private float maxAbsRoll;
+    private boolean emergency;
+    private int emergencyCount;
+    private boolean lowBattery;
+    private long lowBatteryMillis;
+
+    // Battery voltage against hours since the start, for the least-squares slope
+    private long batterySamples;
+    private float batteryStart, batteryEnd, batteryMin;
+    private double sumHours, sumVolts, sumHoursSquared, sumHoursVolts;
+    private final double[] curveSums = new double[SessionSummary.CURVE_BUCKETS];
+    private final int[] curveCounts = new int[SessionSummary.CURVE_BUCKETS];
+
+    private final Gains commanded = new Gains();
+    private final Gains acknowledged = new Gains();
+
+    public static boolean accepts(File file) {
+        String name = file.getName();
+        return name.endsWith(".kses") || name.endsWith(".ksar");
+    }
+
+    public void analyze(File file, String device, SessionSummary out) throws IOException {
+        start(device, file.getName(), out);
+        if (file.getName().endsWith(".ksar")) {
+            readArchive(file, out);
+        } else {
+            readSession(file, out);
+        }
+        finish(out);
+    }
+
+    private void readSession(File file, SessionSummary out) throws IOException {
+        try (SessionReader reader = new SessionReader(file)) {
+            out.startWallClockMillis = reader.getStartWallClockMillis();
+            while (reader.next(record)) {
+                if (record.type == SessionReader.Record.TYPE_GAP) {
+                    continue;
+                }
+                if (record.type == SessionReader.Record.TYPE_COMMAND) {
+                    onCommand(record.payload, record.length);
+                } else if (CommandProtocol.decodeResponse(record.payload, 0, record.length, response)) {
+                    acknowledged.set(response.kp, response.ki, response.kd);
+                } else if (TelemetryDecoder.decode(record.payload, 0, record.length, frame)) {
+                    merge(frame, latest);
+                    if (frame.has(TelemetrySnapshot.FIELD_ROLL)) {
+                        onSample(record.timestampMillis, latest.roll, latest.pitch,
+                                latest.batteryVoltage, latest.packFlags());
+                    }
+                }
+            }
+        }
+    }
+
+    private void readArchive(File file, SessionSummary out) throws IOException {
+        try (SessionArchiveReader reader = new SessionArchiveReader(
+                new BufferedInputStream(new FileInputStream(file), ARCHIVE_BUFFER_SIZE))) {
+            out.startWallClockMillis = reader.getStartWallClockMillis();
+            while (reader.next(sample)) {
+                onSample(sample.timestampMillis, sample.roll, sample.pitch, sample.battery, sample.flags);
+            }
+        }
+    }
+
+    private void onCommand(byte[] data, int length) {
+        if (CommandProtocol.isCommand(data, 0, length)) {
+            if ((data[1] & 0xFF) == CommandProtocol.OP_SET_PID && length >= CommandProtocol.HEADER_SIZE + 12) {
+                commanded.set(CommandProtocol.getFloat(data, CommandProtocol.HEADER_SIZE),
+                        CommandProtocol.getFloat(data, CommandProtocol.HEADER_SIZE + 4),
+                        CommandProtocol.getFloat(data, CommandProtocol.HEADER_SIZE + 8));
+            }
+            return;
+        }
+        // Legacy ASCII commands set one gain each
+        String command = new String(data, 0, length, StandardCharsets.US_ASCII);
+        try {
+            if (command.startsWith("SET_KP:")) {
+                commanded.set(Float.parseFloat(command.substring(7)), commanded.ki, commanded.kd);
+            } else if (command.startsWith("SET_KI:")) {
+                commanded.set(commanded.kp, Float.parseFloat(command.substring(7)), commanded.kd);
+            } else if (command.startsWith("SET_KD:")) {
+                commanded.set(commanded.kp, commanded.ki, Float.parseFloat(command.substring(7)));
+            }
+        } catch (NumberFormatException e) {
+            // The firmware would have applied 0; the acknowledgement, if any, says so
+        }
+    }
+
+    private void onSample(long millis, float roll, float pitch, float battery, int flags) {
+        samples++;
+        rollSquares += (double) roll * roll;
+        pitchSquares += (double) pitch * pitch;
+        maxAbsRoll = Math.max(maxAbsRoll, Math.abs(roll));
+
+        boolean nowEmergency = (flags & TelemetrySnapshot.FLAG_EMERGENCY) != 0;
+        if (nowEmergency && !emergency) {
+            emergencyCount++;
+        }
+        emergency = nowEmergency;
+        if (lowBattery) {
+            lowBatteryMillis += millis - lastMillis;
+        }
+        lowBattery = (flags & TelemetrySnapshot.FLAG_LOW_BATTERY) != 0;
+        lastMillis = millis;
+
+        // 0 V until the first frame that carries the battery
+        if (battery > 0f) {
+            if (batterySamples == 0) {
+                batteryStart = battery;
+                batteryMin = battery;
+            }
+            batterySamples++;
+            batteryEnd = battery;
+            batteryMin = Math.min(batteryMin, battery);
+            double hours = millis / MILLIS_PER_HOUR;
+            sumHours += hours;
+            sumVolts += battery;
+            sumHoursSquared += hours * hours;
+            sumHoursVolts += hours * battery;
+            long bucket = millis / SessionSummary.CURVE_BUCKET_MILLIS;
+            if (bucket < SessionSummary.CURVE_BUCKETS) {
+                curveSums[(int) bucket] += battery;
+                curveCounts[(int) bucket]++;
+            }
+        }
+    }
+
+    private void start(String device, String file, SessionSummary out) {
+        out.clear(device, file);
+        latest.reset();
+        samples = 0;
+        lastMillis = 0;
+        rollSquares = 0;
+        pitchSquares = 0;
+        maxAbsRoll = 0f;
+        emergency = false;
+        lowBattery = false;
+        emergencyCount = 0;
+        lowBatteryMillis = 0;
+        batterySamples = 0;
+        sumHours = 0;
+        sumVolts = 0;
+        sumHoursSquared = 0;
+        sumHoursVolts = 0;
+        for (int i = 0; i < SessionSummary.CURVE_BUCKETS; i++) {
+            curveSums[i] = 0;
+            curveCounts[i] = 0;
+        }
+        commanded.clear();
+        acknowledged.clear();
+    }
+
+    private void finish(SessionSummary out) {
+        out.samples = samples;
+        out.durationMillis = lastMillis;
+        out.emergencies = emergencyCount;
+        out.lowBatteryMillis = lowBatteryMillis;
+        if (samples > 0) {
+            out.rollRms = (float) Math.sqrt(rollSquares / samples);
+            out.pitchRms = (float) Math.sqrt(pitchSquares / samples);
+            out.maxAbsRoll = maxAbsRoll;
+        }
+        if (batterySamples > 0) {
+            out.batteryStart = batteryStart;
+            out.batteryEnd = batteryEnd;
+            out.batteryMin = batteryMin;
+            double denominator = batterySamples * sumHoursSquared - sumHours * sumHours;
+            if (denominator > 0) {
+                out.dischargeVoltsPerHour =
+                        (float) ((batterySamples * sumHoursVolts - sumHours * sumVolts) / denominator);
+            }
+            for (int i = 0; i < SessionSummary.CURVE_BUCKETS; i++) {
+                if (curveCounts[i] > 0) {
+                    out.batteryCurve[i] = (float) (curveSums[i] / curveCounts[i]);
+                }
+            }
+        }
+        Gains gains = acknowledged.known ? acknowledged : commanded;
+        if (gains.known) {
+            out.kp = gains.kp;
+            out.ki = gains.ki;
+            out.kd = gains.kd;
+        }
+        out.gainChanges = commanded.changes;
+    }
+
+    private static void merge(TelemetrySnapshot from, TelemetrySnapshot into) {
+        if (from.has(TelemetrySnapshot.FIELD_ROLL)) into.roll = from.roll;
+        if (from.has(TelemetrySnapshot.FIELD_PITCH)) into.pitch = from.pitch;
+        if (from.has(TelemetrySnapshot.FIELD_BATTERY)) into.batteryVoltage = from.batteryVoltage;
+        if (from.has(TelemetrySnapshot.FIELD_BATTERY_TYPE)) into.batteryType = from.batteryType;
+        if (from.has(TelemetrySnapshot.FIELD_STABILIZATION)) into.stabilizationEnabled = from.stabilizationEnabled;
+        if (from.has(TelemetrySnapshot.FIELD_EMERGENCY)) into.emergencyStop = from.emergencyStop;
+        if (from.has(TelemetrySnapshot.FIELD_LOW_BATTERY)) into.lowBattery = from.lowBattery;
+    }
+
+    /** Last known gains; a gain not yet seen is NaN. */
+    private static final class Gains {
+        float kp, ki, kd;
+        boolean known;
+        int changes;
+
+        void clear() {
+            kp = Float.NaN;
+            ki = Float.NaN;
+            kd = Float.NaN;
+            known = false;
+            changes = 0;
+        }
+
+        void set(float kp, float ki, float kd) {
+            // The first value seen of each gain is the starting point, not a change
+            if (changed(this.kp, kp) || changed(this.ki, ki) || changed(this.kd, kd)) {
+                changes++;
+            }
+            this.kp = kp;
+            this.ki = ki;
+            this.kd = kd;
+            known = true;
+        }
+
+        private static boolean changed(float from, float to) {
+            return !Float.isNaN(from) && Float.compare(from, to) != 0;
+        }
+    }
+}
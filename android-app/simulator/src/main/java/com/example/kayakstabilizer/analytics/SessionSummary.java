@@ -0,0 +1,62 @@
+package com.example.kayakstabilizer.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates of one recorded session. Values that the session gave no data for are NaN: the
+ * battery fields without a battery reading, the gains if no command or acknowledgement carrying
+ * them was recorded (archives keep neither).
+ */
+public final class SessionSummary {
+    /** The battery curve is the mean voltage per bucket of time since the session started. */
+    public static final long CURVE_BUCKET_MILLIS = 15 * 60_000L;
+    public static final int CURVE_BUCKETS = 16;
+
+    public String device;
+    public String file;
+    public long startWallClockMillis;
+    public long durationMillis;
+    public long samples;
+
+    public float rollRms;
+    public float pitchRms;
+    public float maxAbsRoll;
+    /** Times the emergency stop engaged, counted on the change from off to on. */
+    public int emergencies;
+    public long lowBatteryMillis;
+
+    public float batteryStart;
+    public float batteryEnd;
+    public float batteryMin;
+    /** Least-squares slope of the battery voltage over the session, volts per hour. */
+    public float dischargeVoltsPerHour;
+    public final float[] batteryCurve = new float[CURVE_BUCKETS];
+
+    /** Gains in effect at the end of the session, and how many commands changed a gain. */
+    public float kp;
+    public float ki;
+    public float kd;
+    public int gainChanges;
+
+    void clear(String device, String file) {
+        this.device = device;
+        this.file = file;
+        startWallClockMillis = 0;
+        durationMillis = 0;
+        samples = 0;
+        rollRms = Float.NaN;
+        pitchRms = Float.NaN;
+        maxAbsRoll = Float.NaN;
+        emergencies = 0;
+        lowBatteryMillis = 0;
+        batteryStart = Float.NaN;
+        batteryEnd = Float.NaN;
+        batteryMin = Float.NaN;
+        dischargeVoltsPerHour = Float.NaN;
+        Arrays.fill(batteryCurve, Float.NaN);
+        kp = Float.NaN;
+        ki = Float.NaN;
+        kd = Float.NaN;
+        gainChanges = 0;
+    }
+}
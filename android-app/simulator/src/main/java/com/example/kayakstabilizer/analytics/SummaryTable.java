@@ -0,0 +1,200 @@
+package com.example.kayakstabilizer.analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A table of equally long columns stored column by column, so a reader can pull out one metric
+ * for every session without parsing the rest. All values are little-endian.
+ *
+ * <pre>
+ * header (12 bytes): magic "KSUM", version u16, column count u16, row count u32
+ * column:            type u8, name length u8, name UTF-8, then per row:
+ *                      i64 ({@link #TYPE_LONG}), f32 ({@link #TYPE_FLOAT}) or
+ *                      length u16 and UTF-8 ({@link #TYPE_STRING})
+ * </pre>
+ */
+public final class SummaryTable {
+    static final int MAGIC = 0x4D55534B;  // "KSUM"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+
+    public static final int TYPE_LONG = 1;
+    public static final int TYPE_FLOAT = 2;
+    public static final int TYPE_STRING = 3;
+
+    private final int rows;
+    private final List<String> names = new ArrayList<>();
+    private final List<Object> columns = new ArrayList<>();
+
+    public SummaryTable(int rows) {
+        this.rows = rows;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public void addLongs(String name, long[] values) {
+        add(name, values, values.length);
+    }
+
+    public void addFloats(String name, float[] values) {
+        add(name, values, values.length);
+    }
+
+    public void addStrings(String name, String[] values) {
+        add(name, values, values.length);
+    }
+
+    public long[] getLongs(String name) {
+        return (long[]) get(name, long[].class);
+    }
+
+    public float[] getFloats(String name) {
+        return (float[]) get(name, float[].class);
+    }
+
+    public String[] getStrings(String name) {
+        return (String[]) get(name, String[].class);
+    }
+
+    public void write(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort((short) VERSION).putShort((short) names.size()).putInt(rows);
+            out.write(header.array());
+            for (int c = 0; c < names.size(); c++) {
+                writeColumn(out, names.get(c), columns.get(c));
+            }
+        }
+    }
+
+    public static SummaryTable read(File file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not a summary table: " + file);
+        }
+        int version = in.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported summary version: " + version);
+        }
+        int columnCount = in.getShort() & 0xFFFF;
+        int rows = in.getInt();
+        if (rows < 0) {
+            throw new IOException("Corrupt summary table: " + file);
+        }
+        SummaryTable table = new SummaryTable(rows);
+        try {
+            for (int c = 0; c < columnCount; c++) {
+                int type = in.get() & 0xFF;
+                byte[] name = new byte[in.get() & 0xFF];
+                in.get(name);
+                table.add(new String(name, StandardCharsets.UTF_8), readValues(in, type, table.rows), table.rows);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Summary table truncated: " + file);
+        }
+        return table;
+    }
+
+    private void add(String name, Object values, int length) {
+        if (length != rows) {
+            throw new IllegalArgumentException(name + ": " + length + " values for " + rows + " rows");
+        }
+        if (name.getBytes(StandardCharsets.UTF_8).length > 0xFF || names.contains(name)) {
+            throw new IllegalArgumentException("Bad column name: " + name);
+        }
+        names.add(name);
+        columns.add(values);
+    }
+
+    private Object get(String name, Class<?> type) {
+        int index = names.indexOf(name);
+        if (index < 0 || columns.get(index).getClass() != type) {
+            throw new IllegalArgumentException("No " + type.getSimpleName() + " column " + name);
+        }
+        return columns.get(index);
+    }
+
+    private void writeColumn(OutputStream out, String name, Object values) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer;
+        if (values instanceof long[]) {
+            buffer = columnBuffer(TYPE_LONG, nameBytes, rows * 8);
+            for (long value : (long[]) values) {
+                buffer.putLong(value);
+            }
+        } else if (values instanceof float[]) {
+            buffer = columnBuffer(TYPE_FLOAT, nameBytes, rows * 4);
+            for (float value : (float[]) values) {
+                buffer.putFloat(value);
+            }
+        } else {
+            String[] strings = (String[]) values;
+            byte[][] encoded = new byte[rows][];
+            int size = 0;
+            for (int i = 0; i < rows; i++) {
+                encoded[i] = strings[i] == null ? new byte[0] : strings[i].getBytes(StandardCharsets.UTF_8);
+                if (encoded[i].length > 0xFFFF) {
+                    throw new IllegalArgumentException(name + ": value too long in row " + i);
+                }
+                size += 2 + encoded[i].length;
+            }
+            buffer = columnBuffer(TYPE_STRING, nameBytes, size);
+            for (byte[] value : encoded) {
+                buffer.putShort((short) value.length).put(value);
+            }
+        }
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    private static ByteBuffer columnBuffer(int type, byte[] name, int valueBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + name.length + valueBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) type).put((byte) name.length).put(name);
+        return buffer;
+    }
+
+    private static Object readValues(ByteBuffer in, int type, int rows) throws IOException {
+        switch (type) {
+            case TYPE_LONG: {
+                long[] values = new long[rows];
+                in.asLongBuffer().get(values);
+                in.position(in.position() + rows * 8);
+                return values;
+            }
+            case TYPE_FLOAT: {
+                float[] values = new float[rows];
+                in.asFloatBuffer().get(values);
+                in.position(in.position() + rows * 4);
+                return values;
+            }
+            case TYPE_STRING: {
+                String[] values = new String[rows];
+                for (int i = 0; i < rows; i++) {
+                    byte[] bytes = new byte[in.getShort() & 0xFFFF];
+                    in.get(bytes);
+                    values[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                return values;
+            }
+            default:
+                throw new IOException("Unknown column type: " + type);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.kayakstabilizer.simulator;
+
+import com.example.kayakstabilizer.command.CommandClient;
+import com.example.kayakstabilizer.command.CommandDispatcher;
+import com.example.kayakstabilizer.command.CommandProtocol;
+import com.example.kayakstabilizer.command.CommandResult;
+import com.example.kayakstabilizer.metrics.Histogram;
+import com.example.kayakstabilizer.metrics.TelemetryMetrics;
+import com.example.kayakstabilizer.telemetry.DiagnosticBatch;
+import com.example.kayakstabilizer.telemetry.DiagnosticFrameCodec;
+import com.example.kayakstabilizer.telemetry.DiagnosticHistory;
+import com.example.kayakstabilizer.telemetry.TelemetryDecoder;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diagnostic stream check: turns on the firmware's batched IMU stream the way the app does,
+ * keeps the regular telemetry at the firmware's 10 Hz, and verifies that every 100 Hz IMU
+ * sample arrives: samples per second, batches lost, and gaps in the firmware timestamps.
+ *
+ * Usage: DiagnosticSimulatorMain [samplesPerBatch] [seconds] [lossRate]
+ */
+public final class DiagnosticSimulatorMain {
+
+    private static final double TELEMETRY_RATE_HZ = 10;
+    private static final int MAX_ATTEMPTS = 5;
+
+    private DiagnosticSimulatorMain() {
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int samplesPerBatch = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        double lossRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.0;
+
+        FirmwareSimulator firmware = new FirmwareSimulator();
+        firmware.getPlant().setAttitude(15, -5);
+        SimulatedTransport transport = new SimulatedTransport(firmware, SimulatedTransport.Format.BINARY,
+                TELEMETRY_RATE_HZ, lossRate, 3);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CommandTimeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Client client = new Client(transport, timer, seconds);
+        transport.connect(client);
+        client.connected.await();
+
+        CommandResult result = send(client.commands, samplesPerBatch);
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        send(client.commands, 0);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        transport.disconnect();
+        timer.shutdownNow();
+
+        long expected = Math.round(elapsed * FirmwareSimulator.IMU_UPDATE_RATE);
+        System.out.printf(Locale.US, "samplesPerBatch=%d (%d bytes) duration=%.1f s loss=%.2f enable=%s%n",
+                samplesPerBatch, DiagnosticFrameCodec.HEADER_SIZE + samplesPerBatch * DiagnosticFrameCodec.SAMPLE_SIZE,
+                elapsed, lossRate, CommandProtocol.statusName(result.status));
+        System.out.printf(Locale.US, "telemetry frames=%d (%.1f/s)%n",
+                client.telemetryFrames, client.telemetryFrames / elapsed);
+        System.out.printf(Locale.US, "diagnostic batches sent=%d received=%d lost=%d%n",
+                transport.getDiagnosticBatchesSent(), client.batches,
+                client.metrics.getLostDiagnosticBatches());
+        System.out.printf(Locale.US, "samples received=%d (%.1f/s) expected~%d timestampGaps=%d missingSamples=%d%n",
+                client.samples, client.samples / elapsed, expected, client.timestampGaps, client.missingSamples);
+        System.out.printf(Locale.US, "history: %d samples, last roll=%.2f servo=%d/%d%n",
+                client.history.size(), client.lastRoll, client.lastLeft, client.lastRight);
+        System.out.println(client.decode.appendSummary(new StringBuilder()));
+    }
+
+    // With loss configured the answer can be lost too; the command is idempotent, so resend
+    private static CommandResult send(CommandClient commands, int samplesPerBatch)
+            throws InterruptedException, ExecutionException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return commands.setDiagnostics(samplesPerBatch).get();
+            } catch (ExecutionException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static final class Client implements StabilizerTransport.Listener {
+        final CommandDispatcher dispatcher;
+        final CommandClient commands;
+        final CountDownLatch connected = new CountDownLatch(1);
+        final TelemetryMetrics metrics = new TelemetryMetrics();
+        final Histogram decode = new Histogram("batch decode", "ns");
+        final DiagnosticBatch batch = new DiagnosticBatch();
+        final DiagnosticHistory history;
+        final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+
+        long telemetryFrames;
+        long batches;
+        long samples;
+        long timestampGaps;
+        long missingSamples;
+        long lastDeviceMillis = -1;
+        float lastRoll;
+        int lastLeft, lastRight;
+
+        Client(SimulatedTransport transport, ScheduledExecutorService timer, int seconds) {
+            dispatcher = new CommandDispatcher(transport::writeCommand, transport::writeCommand);
+            commands = new CommandClient(dispatcher, timer);
+            history = DiagnosticHistory.forDuration(seconds + 5, FirmwareSimulator.IMU_UPDATE_RATE);
+        }
+
+        @Override
+        public void onConnectionStateChanged(boolean isConnected) {
+            if (isConnected) {
+                connected.countDown();
+            } else {
+                dispatcher.reset();
+            }
+        }
+
+        @Override
+        public void onTelemetry(byte[] data, int offset, int length) {
+            long now = System.nanoTime();
+            if (commands.onResponse(data, offset, length)) {
+                return;
+            }
+            if (!DiagnosticFrameCodec.isDiagnosticFrame(data, offset, length)) {
+                if (TelemetryDecoder.decode(data, offset, length, snapshot)) {
+                    telemetryFrames++;
+                }
+                return;
+            }
+            boolean ok = DiagnosticFrameCodec.decode(data, offset, length, batch);
+            decode.record(System.nanoTime() - now);
+            if (!ok) {
+                return;
+            }
+            metrics.onDiagnosticBatch(batch.sequence, batch.count, now);
+            batches++;
+            samples += batch.count;
+            long periodMillis = 1000 / FirmwareSimulator.IMU_UPDATE_RATE;
+            for (int i = 0; i < batch.count; i++) {
+                long millis = batch.deviceMillis[i];
+                if (lastDeviceMillis >= 0 && millis - lastDeviceMillis != periodMillis) {
+                    timestampGaps++;
+                    missingSamples += Math.max(0, (millis - lastDeviceMillis) / periodMillis - 1);
+                }
+                lastDeviceMillis = millis;
+                history.append(millis, batch, i);
+            }
+            int last = batch.count - 1;
+            lastRoll = batch.roll[last];
+            lastLeft = batch.servoLeft[last];
+            lastRight = batch.servoRight[last];
+        }
+
+        @Override
+        public void onCommandWritten(boolean success) {
+            dispatcher.onWriteComplete(success);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.kayakstabilizer.simulator;
+
+import com.example.kayakstabilizer.command.CommandProtocol;
+import com.example.kayakstabilizer.telemetry.DiagnosticBatch;
+import com.example.kayakstabilizer.telemetry.DiagnosticFrameCodec;
+import com.example.kayakstabilizer.telemetry.TelemetryFormat;
+import com.example.kayakstabilizer.telemetry.TelemetryFrameCodec;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Headless model of kayak_stabilizer_ble.ino running on simulated time: the loop() schedule
+ * (IMU at 100 Hz, PID at 50 Hz, battery check every pass), updateIMU() with its accelerometer
+ * atan2 and alpha = 0.1 low-pass, updatePID(), checkBattery() thresholds per battery type,
+ * processCommand() with the ASCII and binary command sets, both sendBLEData() frame formats
+ * and the batched diagnostic stream. The hull is a {@link KayakPlant} driven by a
+ * {@link WaveDisturbance}.
+ *
+ * Not thread-safe; owned by one simulation thread.
+ */
+public final class FirmwareSimulator {
+    public static final int IMU_UPDATE_RATE = 100;  // Hz
+    public static final int LOOP_PERIOD_MS = 10;    // delay(10) in loop()
+
+    public static final float LI_PO_LOW_VOLTAGE = 3.3f;
+    public static final float DRILL_18V_LOW_VOLTAGE = 14.0f;
+    public static final float DRILL_20V_LOW_VOLTAGE = 16.0f;
+
+    private static final int MAX_PENDING_EVENTS = 16;
+
+    public static final class Config {
+        public KayakPlant.Config plant = new KayakPlant.Config();
+        public WaveDisturbance.Config waves = new WaveDisturbance.Config();
+        public int batteryType = TelemetrySnapshot.BATTERY_LIPO;
+        public float batteryStartVoltage = 4.1f;
+        public float batteryDrainVoltsPerHour = 0.15f;
+        public boolean stabilizationEnabled = true;
+    }
+
+    private final KayakPlant plant;
+    private final WaveDisturbance waves;
+    private final PidController pid;
+
+    // Firmware globals
+    private float roll, pitch;
+    private float rollFiltered, pitchFiltered;
+    private boolean emergencyStop;
+    private boolean stabilizationEnabled;
+    private float batteryVoltage;
+    private final int batteryType;
+    private boolean lowBattery;
+    private int telemetrySequence;
+
+    private final float batteryStartVoltage;
+    private final float batteryDrainVoltsPerHour;
+
+    private long timeMillis;
+    private long lastImuUpdate;
+    private long lastPidUpdate;
+    private final int pidPeriodMillis;
+
+    private final int[] imu = new int[6];
+    private final double[] forcing = new double[2];
+    private final TelemetrySnapshot frame = new TelemetrySnapshot();
+    private final StringBuilder text = new StringBuilder(96);
+
+    // ASCII notifications raised outside sendBLEData(), e.g. LOW_BATTERY
+    private final String[] pendingEvents = new String[MAX_PENDING_EVENTS];
+    private int pendingEventCount;
+
+    // Binary command responses, notified like events
+    private final byte[][] pendingResponses = new byte[MAX_PENDING_EVENTS][];
+    private int pendingResponseCount;
+
+    // Diagnostic stream: samples per notification (0 = off) and the batch being filled
+    private int diagBatchSize;
+    private int diagSequence;
+    private final DiagnosticBatch diagBatch = new DiagnosticBatch();
+    private final byte[][] pendingDiagnostics = new byte[MAX_PENDING_EVENTS][];
+    private int pendingDiagnosticCount;
+
+    public FirmwareSimulator(Config config) {
+        plant = new KayakPlant(config.plant);
+        waves = new WaveDisturbance(config.waves);
+        pid = new PidController();
+        pidPeriodMillis = 1000 / pid.getUpdateRate();
+        batteryType = config.batteryType;
+        batteryStartVoltage = config.batteryStartVoltage;
+        batteryDrainVoltsPerHour = config.batteryDrainVoltsPerHour;
+        batteryVoltage = batteryStartVoltage;
+        stabilizationEnabled = config.stabilizationEnabled;
+    }
+
+    public FirmwareSimulator() {
+        this(new Config());
+    }
+
+    /**
+     * Runs the firmware loop and hull physics up to {@code millis} of simulated time.
+     */
+    public void advanceTo(long millis) {
+        while (timeMillis < millis) {
+            timeMillis++;
+            waves.sample(timeMillis / 1000.0, forcing);
+            plant.step(0.001, pid.getLeftServoAngle(), pid.getRightServoAngle(), forcing[0], forcing[1]);
+
+            if (timeMillis % LOOP_PERIOD_MS == 0) {
+                loop();
+            }
+        }
+    }
+
+    private void loop() {
+        if (timeMillis - lastImuUpdate >= 1000 / IMU_UPDATE_RATE) {
+            updateIMU();
+            lastImuUpdate = timeMillis;
+        }
+        if (timeMillis - lastPidUpdate >= pidPeriodMillis) {
+            updatePID();
+            lastPidUpdate = timeMillis;
+        }
+        checkBattery();
+    }
+
+    private void updateIMU() {
+        plant.readImu(imu);
+        int ax = imu[0], ay = imu[1], az = imu[2];
+
+        // Same simplified calculation as the firmware (int arithmetic for the squares)
+        float rawRoll = (float) (Math.atan2(ay, az) * 180 / Math.PI);
+        float rawPitch = (float) (Math.atan2(-ax, Math.sqrt(ay * ay + az * az)) * 180 / Math.PI);
+
+        float alpha = 0.1f;
+        rollFiltered = alpha * rawRoll + (1 - alpha) * rollFiltered;
+        pitchFiltered = alpha * rawPitch + (1 - alpha) * pitchFiltered;
+        roll = rollFiltered;
+        pitch = pitchFiltered;
+
+        recordDiagnosticSample();
+    }
+
+    private void recordDiagnosticSample() {
+        if (diagBatchSize == 0) {
+            diagBatch.clear();
+            return;
+        }
+        diagBatch.add(timeMillis & 0xFFFFFFFFL, imu, roll, pitch,
+                pid.getLeftServoAngle(), pid.getRightServoAngle());
+        if (diagBatch.count >= diagBatchSize) {
+            diagBatch.sequence = diagSequence++ & 0xFFFF;
+            ByteBuffer out = ByteBuffer.allocate(DiagnosticFrameCodec.HEADER_SIZE
+                    + diagBatch.count * DiagnosticFrameCodec.SAMPLE_SIZE);
+            DiagnosticFrameCodec.encode(diagBatch, out);
+            diagBatch.clear();
+            // A full notification queue drops the batch, as notify() would on a congested link
+            if (pendingDiagnosticCount < pendingDiagnostics.length) {
+                pendingDiagnostics[pendingDiagnosticCount++] = out.array();
+            }
+        }
+    }
+
+    private void updatePID() {
+        if (emergencyStop || !stabilizationEnabled) {
+            if (!stabilizationEnabled) {
+                pid.centerServos();
+            }
+            return;
+        }
+        pid.update(roll, pitch);
+    }
+
+    private void checkBattery() {
+        float hours = timeMillis / 3_600_000f;
+        batteryVoltage = Math.max(0f, batteryStartVoltage - batteryDrainVoltsPerHour * hours);
+
+        float lowVoltageThreshold;
+        switch (batteryType) {
+            case TelemetrySnapshot.BATTERY_DRILL_18V: lowVoltageThreshold = DRILL_18V_LOW_VOLTAGE; break;
+            case TelemetrySnapshot.BATTERY_DRILL_20V: lowVoltageThreshold = DRILL_20V_LOW_VOLTAGE; break;
+            default: lowVoltageThreshold = LI_PO_LOW_VOLTAGE; break;
+        }
+
+        lowBattery = batteryVoltage < lowVoltageThreshold;
+        if (lowBattery) {
+            emergencyStop = true;
+            text.setLength(0);
+            TelemetryFormat.appendFixed(text.append("LOW_BATTERY:"), batteryVoltage, 2)
+                    .append(",TYPE:").append(batteryType);
+            raiseEvent(text.toString());
+        }
+    }
+
+    /**
+     * Applies a command string the way processCommand() does. Unknown commands are ignored;
+     * malformed numbers become 0 like Arduino's String.toFloat().
+     */
+    public void processCommand(String command) {
+        if (command.startsWith("SET_KP:")) {
+            pid.setKp(toFloat(command.substring(7)));
+        } else if (command.startsWith("SET_KI:")) {
+            pid.setKi(toFloat(command.substring(7)));
+        } else if (command.startsWith("SET_KD:")) {
+            pid.setKd(toFloat(command.substring(7)));
+        } else if (command.equals("STABILIZATION_ON")) {
+            stabilizationEnabled = true;
+        } else if (command.equals("STABILIZATION_OFF")) {
+            stabilizationEnabled = false;
+        } else if (command.equals("EMERGENCY_STOP")) {
+            emergencyStop = true;
+            pid.centerServos();
+        } else if (command.equals("RESET_EMERGENCY")) {
+            emergencyStop = false;
+        }
+        // GET_STATUS only prints to the serial console on the device
+    }
+
+    /**
+     * Applies a binary command frame the way processBinaryCommand() does and queues its
+     * response for {@link #pollResponse()}. Frames that are not commands are ignored.
+     */
+    public void processCommand(byte[] frame, int offset, int length) {
+        if (!CommandProtocol.isCommand(frame, offset, length)) {
+            return;
+        }
+        int opcode = frame[offset + 1] & 0xFF;
+        int requestId = CommandProtocol.getShort(frame, offset + 2);
+        int arguments = length - CommandProtocol.HEADER_SIZE;
+        int status = CommandProtocol.STATUS_ACK;
+        switch (opcode) {
+            case CommandProtocol.OP_SET_PID:
+                if (arguments != 12) {
+                    status = CommandProtocol.STATUS_BAD_LENGTH;
+                    break;
+                }
+                float kp = CommandProtocol.getFloat(frame, offset + 4);
+                float ki = CommandProtocol.getFloat(frame, offset + 8);
+                float kd = CommandProtocol.getFloat(frame, offset + 12);
+                if (!isValidGain(kp) || !isValidGain(ki) || !isValidGain(kd)) {
+                    status = CommandProtocol.STATUS_OUT_OF_RANGE;
+                    break;
+                }
+                pid.setGains(kp, ki, kd);
+                break;
+            case CommandProtocol.OP_SET_STABILIZATION:
+                if (arguments != 1) {
+                    status = CommandProtocol.STATUS_BAD_LENGTH;
+                    break;
+                }
+                stabilizationEnabled = frame[offset + 4] != 0;
+                break;
+            case CommandProtocol.OP_EMERGENCY_STOP:
+                emergencyStop = true;
+                pid.centerServos();
+                break;
+            case CommandProtocol.OP_RESET_EMERGENCY:
+                // checkBattery() would latch the stop again on the next pass
+                if (lowBattery) {
+                    status = CommandProtocol.STATUS_REJECTED;
+                } else {
+                    emergencyStop = false;
+                }
+                break;
+            case CommandProtocol.OP_GET_STATUS:
+                break;
+            case CommandProtocol.OP_SET_DIAGNOSTICS:
+                if (arguments != 1) {
+                    status = CommandProtocol.STATUS_BAD_LENGTH;
+                } else if ((frame[offset + 4] & 0xFF) > DiagnosticFrameCodec.MAX_SAMPLES) {
+                    status = CommandProtocol.STATUS_OUT_OF_RANGE;
+                } else {
+                    diagBatchSize = frame[offset + 4] & 0xFF;
+                }
+                break;
+            default:
+                status = CommandProtocol.STATUS_UNKNOWN_OPCODE;
+                break;
+        }
+        if (pendingResponseCount < pendingResponses.length) {
+            pendingResponses[pendingResponseCount++] = CommandProtocol.encodeResponse(opcode, requestId,
+                    status, pid.getKp(), pid.getKi(), pid.getKd(), packFlags());
+        }
+    }
+
+    /**
+     * Removes and returns the oldest pending command response, or null if there is none.
+     */
+    public byte[] pollResponse() {
+        if (pendingResponseCount == 0) {
+            return null;
+        }
+        byte[] response = pendingResponses[0];
+        pendingResponseCount--;
+        System.arraycopy(pendingResponses, 1, pendingResponses, 0, pendingResponseCount);
+        pendingResponses[pendingResponseCount] = null;
+        return response;
+    }
+
+    /**
+     * Removes and returns the oldest diagnostic batch notification, or null if there is none.
+     */
+    public byte[] pollDiagnostics() {
+        if (pendingDiagnosticCount == 0) {
+            return null;
+        }
+        byte[] batch = pendingDiagnostics[0];
+        pendingDiagnosticCount--;
+        System.arraycopy(pendingDiagnostics, 1, pendingDiagnostics, 0, pendingDiagnosticCount);
+        pendingDiagnostics[pendingDiagnosticCount] = null;
+        return batch;
+    }
+
+    /** Stops the diagnostic stream, as the firmware does when the link drops. */
+    public void onDisconnected() {
+        diagBatchSize = 0;
+        diagBatch.clear();
+    }
+
+    private static boolean isValidGain(float gain) {
+        return gain >= 0f && gain <= CommandProtocol.MAX_GAIN;
+    }
+
+    private int packFlags() {
+        return (stabilizationEnabled ? TelemetrySnapshot.FLAG_STABILIZATION : 0)
+                | (emergencyStop ? TelemetrySnapshot.FLAG_EMERGENCY : 0)
+                | (lowBattery ? TelemetrySnapshot.FLAG_LOW_BATTERY : 0)
+                | ((batteryType & TelemetrySnapshot.FLAG_BATTERY_TYPE_MASK) << TelemetrySnapshot.FLAG_BATTERY_TYPE_SHIFT);
+    }
+
+    /**
+     * Simulates a press of the emergency button.
+     */
+    public void pressEmergencyButton() {
+        emergencyStop = true;
+        pid.centerServos();
+        raiseEvent("EMERGENCY_STOP:1");
+    }
+
+    /**
+     * Writes the next sendBLEData() notification into {@code out}.
+     *
+     * @param binary true for the BLE_TELEMETRY_BINARY frame, false for the ASCII string
+     */
+    public void writeTelemetry(ByteBuffer out, boolean binary) {
+        if (binary) {
+            frame.roll = roll;
+            frame.pitch = pitch;
+            frame.batteryVoltage = batteryVoltage;
+            frame.batteryType = batteryType;
+            frame.stabilizationEnabled = stabilizationEnabled;
+            frame.emergencyStop = emergencyStop;
+            frame.lowBattery = lowBattery;
+            frame.sequence = telemetrySequence++ & 0xFFFF;
+            frame.deviceMillis = timeMillis & 0xFFFFFFFFL;
+            TelemetryFrameCodec.encode(frame, out);
+            return;
+        }
+
+        text.setLength(0);
+        TelemetryFormat.appendFixed(text.append("ROLL:"), roll, 2);
+        TelemetryFormat.appendFixed(text.append(",PITCH:"), pitch, 2);
+        TelemetryFormat.appendFixed(text.append(",BATTERY:"), batteryVoltage, 2);
+        text.append(",BATTERY_TYPE:").append(batteryType)
+                .append(",STABILIZATION:").append(stabilizationEnabled ? 1 : 0)
+                .append(",EMERGENCY:").append(emergencyStop ? 1 : 0)
+                .append(",SEQ:").append(telemetrySequence++ & 0xFFFF)
+                .append(",TIME:").append(timeMillis & 0xFFFFFFFFL);
+        for (int i = 0; i < text.length(); i++) {
+            out.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Removes and returns the oldest pending event notification, or null if there is none.
+     */
+    public String pollEvent() {
+        if (pendingEventCount == 0) {
+            return null;
+        }
+        String event = pendingEvents[0];
+        pendingEventCount--;
+        System.arraycopy(pendingEvents, 1, pendingEvents, 0, pendingEventCount);
+        pendingEvents[pendingEventCount] = null;
+        return event;
+    }
+
+    private void raiseEvent(String event) {
+        // Like notifications sent while the link is congested, the newest are lost
+        if (pendingEventCount < MAX_PENDING_EVENTS) {
+            pendingEvents[pendingEventCount++] = event;
+        }
+    }
+
+    private static float toFloat(String value) {
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            return 0f;
+        }
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public PidController getPid() {
+        return pid;
+    }
+
+    public KayakPlant getPlant() {
+        return plant;
+    }
+
+    /** Latest raw getMotion6() values: ax, ay, az, gx, gy, gz. */
+    public int[] getRawImu() {
+        return imu;
+    }
+
+    public float getRoll() {
+        return roll;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public float getBatteryVoltage() {
+        return batteryVoltage;
+    }
+
+    public boolean isEmergencyStop() {
+        return emergencyStop;
+    }
+
+    public boolean isStabilizationEnabled() {
+        return stabilizationEnabled;
+    }
+
+    public boolean isLowBattery() {
+        return lowBattery;
+    }
+}
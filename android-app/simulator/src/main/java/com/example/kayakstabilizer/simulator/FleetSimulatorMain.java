@@ -0,0 +1,133 @@
+package com.example.kayakstabilizer.simulator;
+
+import com.example.kayakstabilizer.fleet.BoatSession;
+import com.example.kayakstabilizer.fleet.BoatStatus;
+import com.example.kayakstabilizer.fleet.FleetSessionManager;
+import com.example.kayakstabilizer.metrics.Histogram;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fleet load test: runs several simulated boats through one {@link FleetSessionManager},
+ * refreshes the fleet view at display rate the way the UI would, and broadcasts
+ * EMERGENCY_STOP every few seconds. With a slow boat configured, that boat's listener blocks
+ * on every frame to show that only its own telemetry suffers.
+ *
+ * Usage: FleetSimulatorMain [boats] [rateHz] [seconds] [slowBoatMillis]
+ */
+public final class FleetSimulatorMain {
+
+    private static final long VIEW_REFRESH_MS = 16;
+    private static final long STOP_INTERVAL_MS = 3000;
+    private static final long RESET_AFTER_MS = 500;
+
+    private FleetSimulatorMain() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int boats = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        double rateHz = args.length > 1 ? Double.parseDouble(args[1]) : 50;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long slowBoatMillis = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        Histogram stopLatency = new Histogram("estop", "us");
+        Histogram viewRefresh = new Histogram("view", "us");
+        FleetListener listener = new FleetListener(slowBoatMillis, stopLatency);
+        FleetSessionManager fleet = new FleetSessionManager(listener);
+
+        List<FirmwareSimulator> firmwares = new ArrayList<>();
+        for (int i = 0; i < boats; i++) {
+            FirmwareSimulator.Config config = new FirmwareSimulator.Config();
+            config.plant.seed = 100 + i;
+            config.waves.seed = 200 + i;
+            FirmwareSimulator firmware = new FirmwareSimulator(config);
+            firmware.getPlant().setAttitude(5 + i, -2);
+            firmwares.add(firmware);
+            fleet.addBoat("boat-" + (i + 1), new SimulatedTransport(firmware,
+                    SimulatedTransport.Format.BINARY, rateHz, 0.0, 3 + i));
+        }
+
+        List<BoatStatus> view = new ArrayList<>();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        long nextStop = start + STOP_INTERVAL_MS * 1_000_000L;
+        long resetAt = Long.MAX_VALUE;
+        int stopsSent = 0;
+        while (System.nanoTime() < deadline) {
+            long refreshStart = System.nanoTime();
+            fleet.getFleetStatus(view);
+            viewRefresh.record((System.nanoTime() - refreshStart) / 1000);
+
+            long now = System.nanoTime();
+            if (now >= nextStop) {
+                listener.stopSentNanos = System.nanoTime();
+                listener.stopped.clear();
+                stopsSent += fleet.emergencyStopAll();
+                nextStop = now + STOP_INTERVAL_MS * 1_000_000L;
+                resetAt = now + RESET_AFTER_MS * 1_000_000L;
+            } else if (now >= resetAt) {
+                fleet.broadcast("RESET_EMERGENCY", "RESET_EMERGENCY");
+                resetAt = Long.MAX_VALUE;
+            }
+            Thread.sleep(VIEW_REFRESH_MS);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        fleet.getFleetStatus(view);
+        fleet.close();
+
+        System.out.printf(Locale.US, "boats=%d rate=%.0f Hz duration=%.1f s slowBoat=%d ms%n",
+                boats, rateHz, elapsed, slowBoatMillis);
+        for (int i = 0; i < view.size(); i++) {
+            BoatStatus status = view.get(i);
+            System.out.printf(Locale.US,
+                    "%-8s %-10s decoded=%6d (%5.0f/s) dropped=%5d lost=%d firmwareKp=%.2f%n",
+                    status.id, status.state, status.framesDecoded, status.framesDecoded / elapsed,
+                    status.framesDropped, status.lostFrames, firmwares.get(i).getPid().getKp());
+        }
+        System.out.printf(Locale.US, "emergency stops sent=%d acknowledged=%d%n",
+                stopsSent, stopLatency.getCount());
+        System.out.println(stopLatency.appendSummary(new StringBuilder()));
+        System.out.println(viewRefresh.appendSummary(new StringBuilder()));
+    }
+
+    private static final class FleetListener implements FleetSessionManager.Listener {
+        private final long slowBoatMillis;
+        private final Histogram stopLatency;
+
+        volatile long stopSentNanos;
+        final ConcurrentHashMap<String, Boolean> stopped = new ConcurrentHashMap<>();
+
+        FleetListener(long slowBoatMillis, Histogram stopLatency) {
+            this.slowBoatMillis = slowBoatMillis;
+            this.stopLatency = stopLatency;
+        }
+
+        @Override
+        public void onStateChanged(BoatSession boat, BoatSession.State state) {
+            if (state == BoatSession.State.CONNECTED) {
+                // Same gains everywhere, so every boat's command path is exercised too
+                boat.submit("SET_KP", "SET_KP:2.5");
+            }
+        }
+
+        @Override
+        public void onTelemetry(BoatSession boat, TelemetrySnapshot snapshot) {
+            // Emergency stop latency: broadcast until the boat's telemetry reports it
+            if (snapshot.emergencyStop && stopSentNanos != 0
+                    && stopped.putIfAbsent(boat.getId(), Boolean.TRUE) == null) {
+                stopLatency.record((snapshot.receivedNanos - stopSentNanos) / 1000);
+            }
+            if (slowBoatMillis > 0 && boat.getId().equals("boat-1")) {
+                try {
+                    Thread.sleep(slowBoatMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.kayakstabilizer.simulator;
+
+import com.example.kayakstabilizer.fusion.AccelLowPassFilter;
+import com.example.kayakstabilizer.fusion.AttitudeFilter;
+import com.example.kayakstabilizer.fusion.ComplementaryFilter;
+import com.example.kayakstabilizer.fusion.KalmanFilter;
+import com.example.kayakstabilizer.fusion.MadgwickFilter;
+import com.example.kayakstabilizer.session.SessionReader;
+import com.example.kayakstabilizer.telemetry.DiagnosticBatch;
+import com.example.kayakstabilizer.telemetry.DiagnosticFrameCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Compares attitude filters with the firmware's accelerometer low-pass on a raw IMU stream:
+ * how far each estimate lags the reference, how much noise is left once that lag is taken out,
+ * and what a sample costs on this JVM.
+ *
+ * Without a file the stream is simulated: the hull in waves with the servos centred, sampled
+ * like updateIMU(), plus the surge and sway of alternating paddle strokes on the accelerometer
+ * and a constant gyro offset; the reference is the true attitude. With a session recorded while the diagnostic stream was
+ * on, the raw samples are replayed and the reference is a zero-phase estimate (the
+ * complementary filter run forwards and backwards in time, averaged), which has no lag but is
+ * only as good as the filter.
+ *
+ * Usage: FusionComparisonMain [session.kses | seconds] [strokeG]
+ */
+public final class FusionComparisonMain {
+
+    private static final int RATE_HZ = FirmwareSimulator.IMU_UPDATE_RATE;
+    private static final int MAX_LAG_SAMPLES = RATE_HZ / 2;
+    // Not scored while the filters settle
+    private static final int WARMUP_SAMPLES = 2 * RATE_HZ;
+    private static final double STROKES_PER_SECOND = 1.0;
+    // Uncalibrated zero-rate offset of the gyro, deg/s; the firmware does not calibrate it
+    private static final double[] GYRO_OFFSET = {1.5, -1.0, 0.5};
+    private static final int TIMING_RUNS = 5;
+
+    private FusionComparisonMain() {
+    }
+
+    /** Raw samples as in a DiagnosticHistory.Window, with the attitude to score against. */
+    private static final class Stream {
+        int count;
+        short[] accel = new short[3 * 1024];
+        short[] gyro = new short[3 * 1024];
+        long[] millis = new long[1024];
+        float[] referenceRoll;
+        float[] referencePitch;
+        String description;
+
+        void add(long timeMillis, int ax, int ay, int az, int gx, int gy, int gz) {
+            if (count == millis.length) {
+                millis = Arrays.copyOf(millis, count * 2);
+                accel = Arrays.copyOf(accel, count * 6);
+                gyro = Arrays.copyOf(gyro, count * 6);
+            }
+            millis[count] = timeMillis;
+            accel[count * 3] = (short) ax;
+            accel[count * 3 + 1] = (short) ay;
+            accel[count * 3 + 2] = (short) az;
+            gyro[count * 3] = (short) gx;
+            gyro[count * 3 + 1] = (short) gy;
+            gyro[count * 3 + 2] = (short) gz;
+            count++;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? args[0] : "120";
+        double strokeG = args.length > 1 ? Double.parseDouble(args[1]) : 0.3;
+        File file = new File(source);
+        Stream stream = file.isFile() ? load(file) : simulate(Integer.parseInt(source), strokeG);
+        if (stream.count <= WARMUP_SAMPLES + MAX_LAG_SAMPLES) {
+            System.out.println("Not enough IMU samples: " + stream.count
+                    + " (record with the diagnostic stream on)");
+            return;
+        }
+
+        AttitudeFilter[] filters = {
+                new AccelLowPassFilter(), new ComplementaryFilter(), new MadgwickFilter(), new KalmanFilter()
+        };
+        float[] roll = new float[stream.count];
+        float[] pitch = new float[stream.count];
+        double[] rollScore = new double[3];
+        double[] pitchScore = new double[3];
+
+        System.out.printf(Locale.US, "%s: %d samples (%.1f s)%n", stream.description, stream.count,
+                (stream.millis[stream.count - 1] - stream.millis[0]) / 1000.0);
+        System.out.printf(Locale.US, "%-22s %25s %25s %10s%n", "",
+                "roll lag/noise/rms", "pitch lag/noise/rms", "ns/sample");
+        System.out.printf(Locale.US, "%-22s %25s %25s%n", "", "ms / deg / deg", "ms / deg / deg");
+        for (AttitudeFilter filter : filters) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < TIMING_RUNS; run++) {
+                filter.reset();
+                long start = System.nanoTime();
+                filter.process(stream.accel, stream.gyro, stream.millis, 0, stream.count, roll, pitch);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            score(roll, stream.referenceRoll, stream.count, rollScore);
+            score(pitch, stream.referencePitch, stream.count, pitchScore);
+            System.out.printf(Locale.US, "%-22s %9.0f %7.2f %7.2f %9.0f %7.2f %7.2f %10.1f%n",
+                    filter.getName(),
+                    rollScore[0], rollScore[1], rollScore[2],
+                    pitchScore[0], pitchScore[1], pitchScore[2],
+                    (double) best / stream.count);
+        }
+    }
+
+    /**
+     * Lag in ms that best aligns the estimate with the reference, RMS error at that lag, and
+     * RMS error as is.
+     */
+    private static void score(float[] estimate, float[] reference, int count, double[] out) {
+        double bestRms = Double.MAX_VALUE;
+        int bestLag = 0;
+        double rmsAsIs = 0;
+        for (int lag = 0; lag <= MAX_LAG_SAMPLES; lag++) {
+            double sum = 0;
+            int n = 0;
+            for (int i = WARMUP_SAMPLES + MAX_LAG_SAMPLES; i < count; i++) {
+                double error = estimate[i] - reference[i - lag];
+                sum += error * error;
+                n++;
+            }
+            double rms = Math.sqrt(sum / n);
+            if (lag == 0) {
+                rmsAsIs = rms;
+            }
+            if (rms < bestRms) {
+                bestRms = rms;
+                bestLag = lag;
+            }
+        }
+        out[0] = bestLag * 1000.0 / RATE_HZ;
+        out[1] = bestRms;
+        out[2] = rmsAsIs;
+    }
+
+    private static Stream simulate(int seconds, double strokeG) {
+        KayakPlant plant = new KayakPlant(new KayakPlant.Config());
+        WaveDisturbance waves = new WaveDisturbance(new WaveDisturbance.Config());
+        double[] forcing = new double[2];
+        int[] imu = new int[6];
+        Stream stream = new Stream();
+        stream.description = String.format(Locale.US, "simulated, paddle strokes %.2f g", strokeG);
+        int samples = seconds * RATE_HZ;
+        stream.referenceRoll = new float[samples];
+        stream.referencePitch = new float[samples];
+
+        long periodMillis = 1000 / RATE_HZ;
+        for (long t = 1; stream.count < samples; t++) {
+            waves.sample(t / 1000.0, forcing);
+            plant.step(0.001, PidController.SERVO_CENTER, PidController.SERVO_CENTER, forcing[0], forcing[1]);
+            if (t % periodMillis != 0) {
+                continue;
+            }
+            plant.readImu(imu);
+            // Power phase of each stroke: surge forward, then drag slows the hull again (zero
+            // mean); sway towards the side being paddled
+            double phase = (t / 1000.0 * STROKES_PER_SECOND) % 2.0;
+            double side = phase < 1.0 ? 1.0 : -1.0;
+            double power = (phase % 1.0) < 0.5 ? Math.pow(Math.sin(2 * Math.PI * (phase % 1.0)), 2) : 0.0;
+            int surge = (int) Math.round(strokeG * (power - 0.25) * KayakPlant.ACCEL_LSB_PER_G);
+            int sway = (int) Math.round(side * 0.5 * strokeG * power * KayakPlant.ACCEL_LSB_PER_G);
+            stream.referenceRoll[stream.count] = (float) plant.getRoll();
+            stream.referencePitch[stream.count] = (float) plant.getPitch();
+            stream.add(t, clamp(imu[0] + surge), clamp(imu[1] + sway), imu[2],
+                    clamp(imu[3] + (int) Math.round(GYRO_OFFSET[0] * KayakPlant.GYRO_LSB_PER_DPS)),
+                    clamp(imu[4] + (int) Math.round(GYRO_OFFSET[1] * KayakPlant.GYRO_LSB_PER_DPS)),
+                    clamp(imu[5] + (int) Math.round(GYRO_OFFSET[2] * KayakPlant.GYRO_LSB_PER_DPS)));
+        }
+        return stream;
+    }
+
+    private static Stream load(File file) throws IOException {
+        Stream stream = new Stream();
+        stream.description = file.getName() + ", zero-phase reference";
+        DiagnosticBatch batch = new DiagnosticBatch();
+        SessionReader.Record record = new SessionReader.Record();
+        try (SessionReader reader = new SessionReader(file)) {
+            while (reader.next(record)) {
+                if (record.type != SessionReader.Record.TYPE_TELEMETRY
+                        || !DiagnosticFrameCodec.decode(record.payload, 0, record.length, batch)) {
+                    continue;
+                }
+                for (int i = 0; i < batch.count; i++) {
+                    stream.add(batch.deviceMillis[i], batch.accelX[i], batch.accelY[i], batch.accelZ[i],
+                            batch.gyroX[i], batch.gyroY[i], batch.gyroZ[i]);
+                }
+            }
+        }
+        zeroPhaseReference(stream);
+        return stream;
+    }
+
+    // Forward and time-reversed passes lag by the same amount in opposite directions
+    private static void zeroPhaseReference(Stream stream) {
+        int n = stream.count;
+        float[] forwardRoll = new float[n];
+        float[] forwardPitch = new float[n];
+        new ComplementaryFilter().process(stream.accel, stream.gyro, stream.millis, 0, n,
+                forwardRoll, forwardPitch);
+
+        short[] accel = new short[n * 3];
+        short[] gyro = new short[n * 3];
+        long[] millis = new long[n];
+        long last = n > 0 ? stream.millis[n - 1] : 0;
+        for (int i = 0; i < n; i++) {
+            int from = (n - 1 - i) * 3;
+            System.arraycopy(stream.accel, from, accel, i * 3, 3);
+            for (int axis = 0; axis < 3; axis++) {
+                gyro[i * 3 + axis] = (short) Math.max(Short.MIN_VALUE + 1, -stream.gyro[from + axis]);
+            }
+            millis[i] = last - stream.millis[n - 1 - i];
+        }
+        float[] backwardRoll = new float[n];
+        float[] backwardPitch = new float[n];
+        new ComplementaryFilter().process(accel, gyro, millis, 0, n, backwardRoll, backwardPitch);
+
+        stream.referenceRoll = new float[n];
+        stream.referencePitch = new float[n];
+        for (int i = 0; i < n; i++) {
+            stream.referenceRoll[i] = (forwardRoll[i] + backwardRoll[n - 1 - i]) / 2;
+            stream.referencePitch[i] = (forwardPitch[i] + backwardPitch[n - 1 - i]) / 2;
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.kayakstabilizer.simulator;
+
+import java.util.Random;
+
+/**
+ * Roll and pitch dynamics of the hull as two damped oscillators driven by wave forcing and by
+ * the stabilizer servos. Servo deflection is recovered from the differential mix used by the
+ * firmware (left = 90 + roll - pitch, right = 90 - roll - pitch) and passes through a
+ * first-order lag. Also synthesises raw MPU6050 readings (+-2 g, +-250 deg/s ranges) for the
+ * current attitude so the firmware's IMU path can be exercised.
+ */
+public final class KayakPlant {
+
+    public static final class Config {
+        public double rollNaturalFrequencyHz = 0.7;
+        public double rollDampingRatio = 0.12;
+        public double pitchNaturalFrequencyHz = 1.1;
+        public double pitchDampingRatio = 0.25;
+        // Angular acceleration per degree of effective servo deflection, deg/s^2
+        public double rollServoAuthority = 4.0;
+        public double pitchServoAuthority = 3.0;
+        public double servoTimeConstantSeconds = 0.08;
+        // Standard deviation of accelerometer noise in g and gyro noise in deg/s
+        public double accelNoise = 0.01;
+        public double gyroNoise = 0.5;
+        public long seed = 2;
+    }
+
+    public static final double ACCEL_LSB_PER_G = 16384.0;
+    public static final double GYRO_LSB_PER_DPS = 131.0;
+
+    private final double rollOmega, rollZeta, pitchOmega, pitchZeta;
+    private final double rollAuthority, pitchAuthority;
+    private final double servoTau;
+    private final double accelNoise, gyroNoise;
+    private final Random random;
+
+    private double roll, rollRate;
+    private double pitch, pitchRate;
+    private double rollDeflection, pitchDeflection;
+
+    public KayakPlant(Config config) {
+        rollOmega = 2 * Math.PI * config.rollNaturalFrequencyHz;
+        rollZeta = config.rollDampingRatio;
+        pitchOmega = 2 * Math.PI * config.pitchNaturalFrequencyHz;
+        pitchZeta = config.pitchDampingRatio;
+        rollAuthority = config.rollServoAuthority;
+        pitchAuthority = config.pitchServoAuthority;
+        servoTau = config.servoTimeConstantSeconds;
+        accelNoise = config.accelNoise;
+        gyroNoise = config.gyroNoise;
+        random = new Random(config.seed);
+    }
+
+    public void setAttitude(double rollDegrees, double pitchDegrees) {
+        roll = rollDegrees;
+        pitch = pitchDegrees;
+        rollRate = 0;
+        pitchRate = 0;
+    }
+
+    /**
+     * Advances the hull by {@code dt} seconds (semi-implicit Euler).
+     *
+     * @param leftServo     commanded left servo angle, degrees (90 = neutral)
+     * @param rightServo    commanded right servo angle, degrees
+     * @param rollForcing   wave forcing on roll, deg/s^2
+     * @param pitchForcing  wave forcing on pitch, deg/s^2
+     */
+    public void step(double dt, int leftServo, int rightServo, double rollForcing, double pitchForcing) {
+        double rollCommand = (leftServo - rightServo) / 2.0;
+        double pitchCommand = -((leftServo + rightServo) / 2.0 - PidController.SERVO_CENTER);
+        double lag = dt / (servoTau + dt);
+        rollDeflection += (rollCommand - rollDeflection) * lag;
+        pitchDeflection += (pitchCommand - pitchDeflection) * lag;
+
+        double rollAccel = -rollOmega * rollOmega * roll - 2 * rollZeta * rollOmega * rollRate
+                + rollAuthority * rollDeflection + rollForcing;
+        double pitchAccel = -pitchOmega * pitchOmega * pitch - 2 * pitchZeta * pitchOmega * pitchRate
+                + pitchAuthority * pitchDeflection + pitchForcing;
+
+        rollRate += rollAccel * dt;
+        pitchRate += pitchAccel * dt;
+        roll += rollRate * dt;
+        pitch += pitchRate * dt;
+    }
+
+    /**
+     * Raw MPU6050 getMotion6() values for the current state.
+     *
+     * @param out receives ax, ay, az, gx, gy, gz
+     */
+    public void readImu(int[] out) {
+        double r = Math.toRadians(roll);
+        double p = Math.toRadians(pitch);
+        // Inverse of the firmware's roll = atan2(ay, az), pitch = atan2(-ax, sqrt(ay^2 + az^2))
+        double ax = -Math.sin(p) + random.nextGaussian() * accelNoise;
+        double ay = Math.sin(r) * Math.cos(p) + random.nextGaussian() * accelNoise;
+        double az = Math.cos(r) * Math.cos(p) + random.nextGaussian() * accelNoise;
+        out[0] = toInt16(ax * ACCEL_LSB_PER_G);
+        out[1] = toInt16(ay * ACCEL_LSB_PER_G);
+        out[2] = toInt16(az * ACCEL_LSB_PER_G);
+        out[3] = toInt16((rollRate + random.nextGaussian() * gyroNoise) * GYRO_LSB_PER_DPS);
+        out[4] = toInt16((pitchRate + random.nextGaussian() * gyroNoise) * GYRO_LSB_PER_DPS);
+        out[5] = toInt16(random.nextGaussian() * gyroNoise * GYRO_LSB_PER_DPS);
+    }
+
+    public double getRoll() {
+        return roll;
+    }
+
+    public double getPitch() {
+        return pitch;
+    }
+
+    public double getRollRate() {
+        return rollRate;
+    }
+
+    public double getPitchRate() {
+        return pitchRate;
+    }
+
+    private static int toInt16(double value) {
+        long v = Math.round(value);
+        return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+    }
+}
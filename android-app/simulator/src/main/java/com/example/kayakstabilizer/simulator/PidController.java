@@ -0,0 +1,147 @@
+package com.example.kayakstabilizer.simulator;
+
+/**
+ * Port of updatePID() from kayak_stabilizer_ble.ino: one set of gains applied to roll and
+ * pitch, integral clamped to +-10, outputs limited to MAX_SERVO_ANGLE and mixed
+ * differentially onto the left and right servos. Arithmetic follows the C code, including the
+ * double-precision integral step and the truncation of the servo angles to int.
+ */
+public final class PidController {
+    public static final int DEFAULT_UPDATE_RATE = 50;  // PID_UPDATE_RATE, Hz
+    public static final int MAX_SERVO_ANGLE = 30;      // degrees
+    public static final float INTEGRAL_LIMIT = 10f;
+    public static final int SERVO_CENTER = 90;
+
+    private final int updateRate;
+
+    private float kp = 2.0f;
+    private float ki = 0.1f;
+    private float kd = 0.5f;
+
+    private float rollIntegral, pitchIntegral;
+    private float rollPrevError, pitchPrevError;
+    private float rollOutput, pitchOutput;
+    private int leftServoAngle = SERVO_CENTER;
+    private int rightServoAngle = SERVO_CENTER;
+
+    public PidController() {
+        this(DEFAULT_UPDATE_RATE);
+    }
+
+    public PidController(int updateRate) {
+        this.updateRate = updateRate;
+    }
+
+    public void setGains(float kp, float ki, float kd) {
+        this.kp = kp;
+        this.ki = ki;
+        this.kd = kd;
+    }
+
+    public void setKp(float kp) {
+        this.kp = kp;
+    }
+
+    public void setKi(float ki) {
+        this.ki = ki;
+    }
+
+    public void setKd(float kd) {
+        this.kd = kd;
+    }
+
+    public float getKp() {
+        return kp;
+    }
+
+    public float getKi() {
+        return ki;
+    }
+
+    public float getKd() {
+        return kd;
+    }
+
+    public int getUpdateRate() {
+        return updateRate;
+    }
+
+    /**
+     * One control step for the current attitude; target is level (0 degrees).
+     */
+    public void update(float roll, float pitch) {
+        float rollError = 0 - roll;
+        float pitchError = 0 - pitch;
+
+        rollIntegral = (float) (rollIntegral + rollError * (1.0 / updateRate));
+        pitchIntegral = (float) (pitchIntegral + pitchError * (1.0 / updateRate));
+
+        rollIntegral = constrain(rollIntegral, -INTEGRAL_LIMIT, INTEGRAL_LIMIT);
+        pitchIntegral = constrain(pitchIntegral, -INTEGRAL_LIMIT, INTEGRAL_LIMIT);
+
+        float rollDerivative = (rollError - rollPrevError) * updateRate;
+        float pitchDerivative = (pitchError - pitchPrevError) * updateRate;
+
+        float rollOut = kp * rollError + ki * rollIntegral + kd * rollDerivative;
+        float pitchOut = kp * pitchError + ki * pitchIntegral + kd * pitchDerivative;
+
+        rollPrevError = rollError;
+        pitchPrevError = pitchError;
+
+        rollOutput = constrain(rollOut, -MAX_SERVO_ANGLE, MAX_SERVO_ANGLE);
+        pitchOutput = constrain(pitchOut, -MAX_SERVO_ANGLE, MAX_SERVO_ANGLE);
+
+        int left = (int) (SERVO_CENTER + rollOutput - pitchOutput);
+        int right = (int) (SERVO_CENTER - rollOutput - pitchOutput);
+        leftServoAngle = constrain(left, SERVO_CENTER - MAX_SERVO_ANGLE, SERVO_CENTER + MAX_SERVO_ANGLE);
+        rightServoAngle = constrain(right, SERVO_CENTER - MAX_SERVO_ANGLE, SERVO_CENTER + MAX_SERVO_ANGLE);
+    }
+
+    /** Servos to neutral, as done when stabilization is off or on emergency stop. */
+    public void centerServos() {
+        leftServoAngle = SERVO_CENTER;
+        rightServoAngle = SERVO_CENTER;
+    }
+
+    public void reset() {
+        rollIntegral = 0;
+        pitchIntegral = 0;
+        rollPrevError = 0;
+        pitchPrevError = 0;
+        rollOutput = 0;
+        pitchOutput = 0;
+        centerServos();
+    }
+
+    public float getRollOutput() {
+        return rollOutput;
+    }
+
+    public float getPitchOutput() {
+        return pitchOutput;
+    }
+
+    public float getRollIntegral() {
+        return rollIntegral;
+    }
+
+    public float getPitchIntegral() {
+        return pitchIntegral;
+    }
+
+    public int getLeftServoAngle() {
+        return leftServoAngle;
+    }
+
+    public int getRightServoAngle() {
+        return rightServoAngle;
+    }
+
+    private static float constrain(float value, float min, float max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    private static int constrain(int value, int min, int max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+}
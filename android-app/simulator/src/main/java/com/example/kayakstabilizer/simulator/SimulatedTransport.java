@@ -0,0 +1,273 @@
+package com.example.kayakstabilizer.simulator;
+
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+/**
+ * {@link StabilizerTransport} backed by a {@link FirmwareSimulator} running on its own thread.
+ * Telemetry is emitted at a fixed wall-clock rate, from the firmware's 10 Hz up to several kHz
+ * for load testing; if the listener falls behind, the simulator skips ahead instead of
+ * bursting, and the skipped frames are counted. Commands are applied on the simulation thread
+ * between frames, like BLE writes landing between loop() passes.
+ */
+public final class SimulatedTransport implements StabilizerTransport {
+
+    public enum Format {
+        /** BLE_TELEMETRY_BINARY frames, one per notification. */
+        BINARY,
+        /** The firmware's ASCII notification, one per callback. */
+        ASCII,
+        /** ASCII lines terminated by '\n', as sent over the classic Bluetooth link. */
+        ASCII_LINES
+    }
+
+    private static final int MAX_CATCH_UP_FRAMES = 4;
+    private static final long SPIN_THRESHOLD_NANOS = 200_000L;
+
+    private final FirmwareSimulator firmware;
+    private final Format format;
+    private final double rateHz;
+    private final double lossRate;
+    private final Random random;
+
+    private final ByteBuffer frame = ByteBuffer.allocate(256);
+    // ASCII commands as String, binary frames as byte[], in write order
+    private final ArrayDeque<Object> commands = new ArrayDeque<>();
+
+    private volatile Listener listener;
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile long framesSent;
+    private volatile long framesSkipped;
+    private volatile long framesLost;
+    private volatile long commandsApplied;
+    private volatile long diagnosticBatchesSent;
+
+    public SimulatedTransport(FirmwareSimulator firmware, Format format, double rateHz) {
+        this(firmware, format, rateHz, 0.0, 3);
+    }
+
+    /**
+     * @param lossRate probability that a notification is dropped on the air
+     */
+    public SimulatedTransport(FirmwareSimulator firmware, Format format, double rateHz,
+                              double lossRate, long seed) {
+        if (rateHz <= 0) {
+            throw new IllegalArgumentException("rateHz must be positive");
+        }
+        this.firmware = firmware;
+        this.format = format;
+        this.rateHz = rateHz;
+        this.lossRate = lossRate;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public synchronized void connect(Listener listener) {
+        if (running) {
+            return;
+        }
+        this.listener = listener;
+        running = true;
+        thread = new Thread(this::run, "SimulatedTransport");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public boolean writeCommand(String command) {
+        if (!running) {
+            return false;
+        }
+        synchronized (commands) {
+            commands.add(command);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean writeCommand(byte[] frame) {
+        if (!running) {
+            return false;
+        }
+        synchronized (commands) {
+            commands.add(frame.clone());
+        }
+        return true;
+    }
+
+    @Override
+    public void disconnect() {
+        Thread t;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            t = thread;
+            thread = null;
+        }
+        t.interrupt();
+        if (t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return running;
+    }
+
+    private void run() {
+        Listener l = listener;
+        l.onConnectionStateChanged(true);
+
+        long periodNanos = (long) (1_000_000_000L / rateHz);
+        long start = System.nanoTime();
+        long simStartMillis = firmware.getTimeMillis();
+        long frameIndex = 0;
+
+        while (running) {
+            applyCommand(l);
+
+            long target = start + frameIndex * periodNanos;
+            long now = System.nanoTime();
+            if (now < target) {
+                long sleepNanos = target - now;
+                if (sleepNanos < SPIN_THRESHOLD_NANOS) {
+                    // Sleep granularity is too coarse for kHz rates
+                    Thread.yield();
+                    continue;
+                }
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                } catch (InterruptedException e) {
+                    break;
+                }
+                continue;
+            }
+
+            long behind = (now - target) / periodNanos;
+            if (behind > MAX_CATCH_UP_FRAMES) {
+                framesSkipped += behind;
+                frameIndex += behind;
+            }
+
+            firmware.advanceTo(simStartMillis + (long) (frameIndex * 1000.0 / rateHz));
+            frameIndex++;
+
+            String event;
+            while ((event = firmware.pollEvent()) != null) {
+                deliver(l, event.getBytes(StandardCharsets.US_ASCII));
+            }
+            byte[] batch;
+            while ((batch = firmware.pollDiagnostics()) != null) {
+                if (format == Format.ASCII_LINES) {
+                    continue;
+                }
+                if (lossRate > 0 && random.nextDouble() < lossRate) {
+                    framesLost++;
+                    continue;
+                }
+                l.onTelemetry(batch, 0, batch.length);
+                diagnosticBatchesSent++;
+            }
+
+            frame.clear();
+            firmware.writeTelemetry(frame, format == Format.BINARY);
+            if (format == Format.ASCII_LINES) {
+                frame.put((byte) '\n');
+            }
+            if (lossRate > 0 && random.nextDouble() < lossRate) {
+                framesLost++;
+                continue;
+            }
+            l.onTelemetry(frame.array(), 0, frame.position());
+            framesSent++;
+        }
+
+        running = false;
+        firmware.onDisconnected();
+        l.onConnectionStateChanged(false);
+    }
+
+    private void deliver(Listener l, byte[] event) {
+        if (format == Format.ASCII_LINES) {
+            byte[] line = new byte[event.length + 1];
+            System.arraycopy(event, 0, line, 0, event.length);
+            line[event.length] = '\n';
+            event = line;
+        }
+        l.onTelemetry(event, 0, event.length);
+    }
+
+    private void applyCommand(Listener l) {
+        // At most one write per pass, like one write per BLE connection event
+        Object command;
+        synchronized (commands) {
+            command = commands.poll();
+        }
+        if (command == null) {
+            return;
+        }
+        if (command instanceof byte[]) {
+            byte[] frame = (byte[]) command;
+            firmware.processCommand(frame, 0, frame.length);
+        } else {
+            firmware.processCommand((String) command);
+        }
+        commandsApplied++;
+        l.onCommandWritten(true);
+
+        byte[] response;
+        while ((response = firmware.pollResponse()) != null) {
+            if (format == Format.ASCII_LINES) {
+                // The classic link carries text lines only
+                continue;
+            }
+            // Acks are notifications like telemetry, so they can be lost on the air too
+            if (lossRate > 0 && random.nextDouble() < lossRate) {
+                framesLost++;
+                continue;
+            }
+            l.onTelemetry(response, 0, response.length);
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public FirmwareSimulator getFirmware() {
+        return firmware;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    public long getFramesLost() {
+        return framesLost;
+    }
+
+    public long getDiagnosticBatchesSent() {
+        return diagnosticBatchesSent;
+    }
+
+    public long getCommandsApplied() {
+        return commandsApplied;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.kayakstabilizer.simulator;
+
+import com.example.kayakstabilizer.command.CommandDispatcher;
+import com.example.kayakstabilizer.metrics.TelemetryMetrics;
+import com.example.kayakstabilizer.telemetry.TelemetryDecoder;
+import com.example.kayakstabilizer.telemetry.TelemetryHistory;
+import com.example.kayakstabilizer.telemetry.TelemetrySnapshot;
+import com.example.kayakstabilizer.transport.LineFramer;
+import com.example.kayakstabilizer.transport.StabilizerTransport;
+
+import java.util.Locale;
+
+/**
+ * Headless load test: runs the app's telemetry and command paths against the simulated
+ * firmware with no phone or ESP32 attached.
+ *
+ * Usage: SimulatorMain [BINARY|ASCII|ASCII_LINES] [rateHz] [seconds] [lossRate]
+ */
+public final class SimulatorMain {
+
+    private SimulatorMain() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SimulatedTransport.Format format = args.length > 0
+                ? SimulatedTransport.Format.valueOf(args[0]) : SimulatedTransport.Format.BINARY;
+        double rateHz = args.length > 1 ? Double.parseDouble(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        double lossRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.0;
+
+        FirmwareSimulator firmware = new FirmwareSimulator();
+        firmware.getPlant().setAttitude(15, -5);
+        SimulatedTransport transport = new SimulatedTransport(firmware, format, rateHz, lossRate, 3);
+
+        Client client = new Client(transport, (int) Math.ceil(rateHz));
+        transport.connect(client);
+
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        int step = 0;
+        while (System.nanoTime() < deadline) {
+            // Slider drags: far more writes than the link can take, which the dispatcher coalesces
+            float kp = 1.0f + (step % 50) * 0.02f;
+            client.dispatcher.submit("SET_KP", String.format(Locale.US, "SET_KP:%.2f", kp));
+            client.dispatcher.submit("SET_KD", String.format(Locale.US, "SET_KD:%.2f", kp / 4));
+            if (step % 500 == 250) {
+                client.dispatcher.submitUrgent("EMERGENCY_STOP");
+            } else if (step % 500 == 300) {
+                client.dispatcher.submit("RESET_EMERGENCY");
+            }
+            step++;
+            Thread.sleep(2);
+        }
+        transport.disconnect();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.US, "format=%s rate=%.0f Hz duration=%.1f s%n", format, rateHz, elapsed);
+        System.out.printf(Locale.US, "frames: sent=%d decoded=%d rejected=%d skipped=%d lost=%d (%.0f/s)%n",
+                transport.getFramesSent(), client.decoded, client.rejected,
+                transport.getFramesSkipped(), transport.getFramesLost(), client.decoded / elapsed);
+        if (client.framer != null) {
+            System.out.printf(Locale.US, "framer: lines=%d oversized=%d%n",
+                    client.framer.getFrameCount(), client.framer.getOversizedCount());
+        }
+        System.out.printf(Locale.US, "commands: submitted=%d sent=%d coalesced=%d failed=%d applied=%d%n",
+                client.dispatcher.getSubmittedCount(), client.dispatcher.getSentCount(),
+                client.dispatcher.getCoalescedCount(), client.dispatcher.getFailedCount(),
+                transport.getCommandsApplied());
+        System.out.printf(Locale.US, "history: %d samples; firmware roll=%.2f pitch=%.2f kp=%.2f emergency=%b%n",
+                client.history.size(), firmware.getRoll(), firmware.getPitch(),
+                firmware.getPid().getKp(), firmware.isEmergencyStop());
+        System.out.print(client.metrics.dump(new StringBuilder(), System.nanoTime()));
+    }
+
+    private static final class Client implements StabilizerTransport.Listener, LineFramer.FrameListener {
+        final CommandDispatcher dispatcher;
+        final TelemetryHistory history;
+        final LineFramer framer;
+        final TelemetrySnapshot snapshot = new TelemetrySnapshot();
+        final TelemetryMetrics metrics = new TelemetryMetrics();
+
+        long decoded;
+        long rejected;
+        private long receivedNanos;
+
+        Client(SimulatedTransport transport, int historyRateHz) {
+            dispatcher = new CommandDispatcher(transport::writeCommand);
+            history = TelemetryHistory.forDuration(60, historyRateHz);
+            framer = transport.getFormat() == SimulatedTransport.Format.ASCII_LINES ? new LineFramer(256) : null;
+        }
+
+        @Override
+        public void onConnectionStateChanged(boolean connected) {
+            if (!connected) {
+                dispatcher.reset();
+            }
+        }
+
+        @Override
+        public void onTelemetry(byte[] data, int offset, int length) {
+            receivedNanos = System.nanoTime();
+            metrics.onNotification(receivedNanos);
+            if (framer != null) {
+                framer.feed(data, offset, length, this);
+            } else {
+                onFrame(data, offset, length);
+            }
+        }
+
+        @Override
+        public void onFrame(byte[] data, int offset, int length) {
+            snapshot.receivedNanos = receivedNanos;
+            long decodeStart = System.nanoTime();
+            boolean ok = TelemetryDecoder.decode(data, offset, length, snapshot);
+            metrics.onDecoded(snapshot, System.nanoTime() - decodeStart, ok);
+            if (!ok) {
+                rejected++;
+                return;
+            }
+            decoded++;
+            // No screen here; "display" is the moment the sample lands in the history
+            metrics.onDisplayed(snapshot, System.nanoTime());
+            if (snapshot.has(TelemetrySnapshot.FIELD_ROLL)) {
+                history.append(System.currentTimeMillis(), snapshot);
+            }
+        }
+
+        @Override
+        public void onCommandWritten(boolean success) {
+            dispatcher.onWriteComplete(success);
+        }
+    }
+}
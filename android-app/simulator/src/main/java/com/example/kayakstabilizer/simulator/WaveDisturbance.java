@@ -0,0 +1,159 @@
+package com.example.kayakstabilizer.simulator;
+
+import java.util.Random;
+
+/**
+ * Deterministic wave forcing on the hull: a sum of sinusoidal swell components plus occasional
+ * decaying impulses for wakes and paddle strokes. Outputs angular accelerations in deg/s^2.
+ */
+public final class WaveDisturbance {
+    // Rotated phasors are re-anchored with exact sin/cos this often to bound drift
+    private static final int ANCHOR_INTERVAL = 4096;
+
+    public static final class Config {
+        public double rollAmplitude = 40.0;      // deg/s^2 total swell forcing on roll
+        public double pitchAmplitude = 25.0;     // deg/s^2 total swell forcing on pitch
+        public double minPeriodSeconds = 2.0;
+        public double maxPeriodSeconds = 8.0;
+        public int components = 6;
+        public double impulsesPerMinute = 6.0;   // wakes, paddle strokes
+        public double impulseAmplitude = 150.0;  // deg/s^2 peak
+        public double impulseDecaySeconds = 0.3;
+        public long seed = 1;
+
+        public Config calm() {
+            rollAmplitude = 10.0;
+            pitchAmplitude = 6.0;
+            impulsesPerMinute = 1.0;
+            return this;
+        }
+
+        /** No forcing at all, for step responses. */
+        public Config still() {
+            rollAmplitude = 0.0;
+            pitchAmplitude = 0.0;
+            impulsesPerMinute = 0.0;
+            return this;
+        }
+
+        public Config rough() {
+            rollAmplitude = 90.0;
+            pitchAmplitude = 60.0;
+            impulsesPerMinute = 20.0;
+            return this;
+        }
+    }
+
+    private final double[] omega;
+    private final double[] rollAmp;
+    private final double[] pitchAmp;
+    private final double[] rollPhase;
+    private final double[] pitchPhase;
+
+    // Component phasors, advanced by rotation while the step size stays the same
+    private final double[] rollSin;
+    private final double[] rollCos;
+    private final double[] pitchSin;
+    private final double[] pitchCos;
+    private final double[] stepSin;
+    private final double[] stepCos;
+    private double stepDt = Double.NaN;
+    private double stepDecay;
+    private int stepsSinceAnchor;
+
+    private final Random random;
+    private final double impulseProbabilityPerSecond;
+    private final double impulseAmplitude;
+    private final double impulseDecay;
+    private double impulseRoll;
+    private double impulsePitch;
+    private double lastTime;
+
+    public WaveDisturbance(Config config) {
+        random = new Random(config.seed);
+        int n = Math.max(1, config.components);
+        omega = new double[n];
+        rollAmp = new double[n];
+        pitchAmp = new double[n];
+        rollPhase = new double[n];
+        pitchPhase = new double[n];
+        for (int i = 0; i < n; i++) {
+            double period = config.minPeriodSeconds
+                    + random.nextDouble() * (config.maxPeriodSeconds - config.minPeriodSeconds);
+            omega[i] = 2 * Math.PI / period;
+            rollAmp[i] = config.rollAmplitude / n * (0.5 + random.nextDouble());
+            pitchAmp[i] = config.pitchAmplitude / n * (0.5 + random.nextDouble());
+            rollPhase[i] = random.nextDouble() * 2 * Math.PI;
+            pitchPhase[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        rollSin = new double[n];
+        rollCos = new double[n];
+        pitchSin = new double[n];
+        pitchCos = new double[n];
+        stepSin = new double[n];
+        stepCos = new double[n];
+        impulseProbabilityPerSecond = config.impulsesPerMinute / 60.0;
+        impulseAmplitude = config.impulseAmplitude;
+        impulseDecay = config.impulseDecaySeconds;
+    }
+
+    /**
+     * Forcing at time {@code t}. Must be called with non-decreasing times.
+     *
+     * @param out receives roll acceleration at [0] and pitch acceleration at [1]
+     */
+    public void sample(double t, double[] out) {
+        double dt = t - lastTime;
+        lastTime = t;
+
+        // Simulations sample on a fixed step; rotating the phasors then replaces the sin calls
+        boolean rotate = Math.abs(dt - stepDt) < 1e-9 && stepsSinceAnchor < ANCHOR_INTERVAL;
+        if (!rotate) {
+            anchor(t, dt);
+        }
+
+        if (dt > 0) {
+            double decay = rotate ? stepDecay : Math.exp(-dt / impulseDecay);
+            impulseRoll *= decay;
+            impulsePitch *= decay;
+            if (random.nextDouble() < impulseProbabilityPerSecond * dt) {
+                impulseRoll += (random.nextDouble() * 2 - 1) * impulseAmplitude;
+                impulsePitch += (random.nextDouble() * 2 - 1) * impulseAmplitude * 0.5;
+            }
+        }
+
+        double roll = impulseRoll;
+        double pitch = impulsePitch;
+        for (int i = 0; i < omega.length; i++) {
+            if (rotate) {
+                double c = stepCos[i], s = stepSin[i];
+                double rs = rollSin[i], rc = rollCos[i];
+                rollSin[i] = rs * c + rc * s;
+                rollCos[i] = rc * c - rs * s;
+                double ps = pitchSin[i], pc = pitchCos[i];
+                pitchSin[i] = ps * c + pc * s;
+                pitchCos[i] = pc * c - ps * s;
+            }
+            roll += rollAmp[i] * rollSin[i];
+            pitch += pitchAmp[i] * pitchSin[i];
+        }
+        stepsSinceAnchor++;
+        out[0] = roll;
+        out[1] = pitch;
+    }
+
+    private void anchor(double t, double dt) {
+        for (int i = 0; i < omega.length; i++) {
+            rollSin[i] = Math.sin(omega[i] * t + rollPhase[i]);
+            rollCos[i] = Math.cos(omega[i] * t + rollPhase[i]);
+            pitchSin[i] = Math.sin(omega[i] * t + pitchPhase[i]);
+            pitchCos[i] = Math.cos(omega[i] * t + pitchPhase[i]);
+            stepSin[i] = Math.sin(omega[i] * dt);
+            stepCos[i] = Math.cos(omega[i] * dt);
+        }
+        stepDt = dt;
+        stepDecay = Math.exp(-dt / impulseDecay);
+        // Counts the sample about to be taken; rotation resumes from the next one
+        stepsSinceAnchor = -1;
+    }
+}
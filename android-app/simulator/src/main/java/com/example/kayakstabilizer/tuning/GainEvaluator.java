@@ -0,0 +1,120 @@
+package com.example.kayakstabilizer.tuning;
+
+import com.example.kayakstabilizer.simulator.FirmwareSimulator;
+import com.example.kayakstabilizer.simulator.PidController;
+import com.example.kayakstabilizer.simulator.WaveDisturbance;
+
+/**
+ * Runs one gain set through a {@link TuningScenario} on the firmware simulator, so the
+ * controller sees the same IMU low-pass, loop timing and integer servo mix as on the boat.
+ * Metrics are taken from the true hull attitude, not the filtered estimate.
+ */
+public final class GainEvaluator {
+
+    /** Weights that fold the metrics into a single score; lower is better. */
+    public static final class Weights {
+        public double settlingPerSecond = 1.0;
+        public double overshootPerPercent = 0.05;
+        public double travelPerDegreePerSecond = 0.002;
+        public double rmsRollPerDegree = 0.5;
+        // Charged instead of a settling time when the hull never settles
+        public double unsettledPenaltySeconds = 20.0;
+    }
+
+    private static final int SAMPLE_PERIOD_MS = FirmwareSimulator.LOOP_PERIOD_MS;
+
+    private final TuningScenario scenario;
+    private final Weights weights;
+
+    public GainEvaluator(TuningScenario scenario, Weights weights) {
+        this.scenario = scenario;
+        this.weights = weights;
+    }
+
+    public TuningResult evaluate(float kp, float ki, float kd) {
+        // Step response in flat water
+        FirmwareSimulator.Config stepConfig = new FirmwareSimulator.Config();
+        stepConfig.plant = scenario.plant;
+        stepConfig.waves = new WaveDisturbance.Config().still();
+        FirmwareSimulator step = new FirmwareSimulator(stepConfig);
+        step.getPid().setGains(kp, ki, kd);
+
+        long time = millis(scenario.warmupSeconds);
+        step.advanceTo(time);
+        step.getPlant().setAttitude(scenario.initialRoll, scenario.initialPitch);
+
+        double travel = 0;
+        int lastLeft = step.getPid().getLeftServoAngle();
+        int lastRight = step.getPid().getRightServoAngle();
+        double rollSign = Math.signum(scenario.initialRoll);
+        double pitchSign = Math.signum(scenario.initialPitch);
+        double worstOvershoot = 0;
+        long lastOutsideBand = 0;
+        boolean outsideAtEnd = false;
+
+        long stepEnd = time + millis(scenario.stepSeconds);
+        long stepStart = time;
+        while (time < stepEnd) {
+            time += SAMPLE_PERIOD_MS;
+            step.advanceTo(time);
+
+            double roll = step.getPlant().getRoll();
+            double pitch = step.getPlant().getPitch();
+            worstOvershoot = Math.max(worstOvershoot, Math.max(-roll * rollSign, -pitch * pitchSign));
+            outsideAtEnd = Math.abs(roll) > scenario.settlingBand || Math.abs(pitch) > scenario.settlingBand;
+            if (outsideAtEnd) {
+                lastOutsideBand = time - stepStart;
+            }
+
+            PidController pid = step.getPid();
+            travel += Math.abs(pid.getLeftServoAngle() - lastLeft) + Math.abs(pid.getRightServoAngle() - lastRight);
+            lastLeft = pid.getLeftServoAngle();
+            lastRight = pid.getRightServoAngle();
+        }
+
+        double initial = Math.max(Math.abs(scenario.initialRoll), Math.abs(scenario.initialPitch));
+        double overshootPercent = initial > 0 ? 100.0 * worstOvershoot / initial : 0;
+        double settlingSeconds = outsideAtEnd ? Double.POSITIVE_INFINITY : lastOutsideBand / 1000.0;
+
+        // Disturbance rejection in waves
+        double rollSquares = 0;
+        int samples = 0;
+        if (scenario.disturbanceSeconds > 0) {
+            FirmwareSimulator.Config waveConfig = new FirmwareSimulator.Config();
+            waveConfig.plant = scenario.plant;
+            waveConfig.waves = scenario.waves;
+            FirmwareSimulator waves = new FirmwareSimulator(waveConfig);
+            waves.getPid().setGains(kp, ki, kd);
+
+            long waveEnd = millis(scenario.disturbanceSeconds);
+            lastLeft = waves.getPid().getLeftServoAngle();
+            lastRight = waves.getPid().getRightServoAngle();
+            for (long t = SAMPLE_PERIOD_MS; t <= waveEnd; t += SAMPLE_PERIOD_MS) {
+                waves.advanceTo(t);
+                double roll = waves.getPlant().getRoll();
+                rollSquares += roll * roll;
+                samples++;
+
+                PidController pid = waves.getPid();
+                travel += Math.abs(pid.getLeftServoAngle() - lastLeft) + Math.abs(pid.getRightServoAngle() - lastRight);
+                lastLeft = pid.getLeftServoAngle();
+                lastRight = pid.getRightServoAngle();
+            }
+        }
+
+        double rmsRoll = samples > 0 ? Math.sqrt(rollSquares / samples) : 0;
+        double travelPerSecond = travel / (scenario.stepSeconds + scenario.disturbanceSeconds);
+
+        double score = weights.settlingPerSecond
+                        * (outsideAtEnd ? weights.unsettledPenaltySeconds : settlingSeconds)
+                + weights.overshootPerPercent * overshootPercent
+                + weights.travelPerDegreePerSecond * travelPerSecond
+                + weights.rmsRollPerDegree * rmsRoll;
+
+        return new TuningResult(kp, ki, kd, settlingSeconds, overshootPercent, travelPerSecond, rmsRoll, score);
+    }
+
+    private static long millis(double seconds) {
+        return Math.round(seconds * 1000);
+    }
+}
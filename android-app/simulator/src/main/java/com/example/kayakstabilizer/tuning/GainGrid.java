@@ -0,0 +1,67 @@
+package com.example.kayakstabilizer.tuning;
+
+/**
+ * Cartesian grid of Kp/Ki/Kd candidates. Values are kept as slider progress and scaled the way
+ * the app's SeekBar listeners do (Kp and Kd progress / 10, Ki progress / 100), so every
+ * candidate can be sent to the boat exactly as the sliders would send it.
+ */
+public final class GainGrid {
+    public static final float KP_SCALE = 10.0f;
+    public static final float KI_SCALE = 100.0f;
+    public static final float KD_SCALE = 10.0f;
+
+    private final int[] kpSteps;
+    private final int[] kiSteps;
+    private final int[] kdSteps;
+
+    private GainGrid(int[] kpSteps, int[] kiSteps, int[] kdSteps) {
+        this.kpSteps = kpSteps;
+        this.kiSteps = kiSteps;
+        this.kdSteps = kdSteps;
+    }
+
+    /**
+     * Grid over slider progress ranges, inclusive, with the given stride.
+     */
+    public static GainGrid ofProgress(int kpFrom, int kpTo, int kpStride,
+                                      int kiFrom, int kiTo, int kiStride,
+                                      int kdFrom, int kdTo, int kdStride) {
+        return new GainGrid(range(kpFrom, kpTo, kpStride), range(kiFrom, kiTo, kiStride),
+                range(kdFrom, kdTo, kdStride));
+    }
+
+    /**
+     * 25 x 16 x 25 = 10,000 points inside the sliders' ranges: Kp and Kd 0.2..5.0 in 0.2 steps,
+     * Ki 0.00..0.15 in 0.01 steps.
+     */
+    public static GainGrid sliderDefault() {
+        return ofProgress(2, 50, 2, 0, 15, 1, 2, 50, 2);
+    }
+
+    public int size() {
+        return kpSteps.length * kiSteps.length * kdSteps.length;
+    }
+
+    public float kp(int index) {
+        return kpSteps[index / (kiSteps.length * kdSteps.length)] / KP_SCALE;
+    }
+
+    public float ki(int index) {
+        return kiSteps[(index / kdSteps.length) % kiSteps.length] / KI_SCALE;
+    }
+
+    public float kd(int index) {
+        return kdSteps[index % kdSteps.length] / KD_SCALE;
+    }
+
+    private static int[] range(int from, int to, int stride) {
+        if (stride <= 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range " + from + ".." + to + " / " + stride);
+        }
+        int[] values = new int[(to - from) / stride + 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i * stride;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.kayakstabilizer.tuning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sweeps a {@link GainGrid} across all cores with fork-join. Leaves evaluate a slice of the
+ * grid and keep only their best {@code topN}; merges keep the best {@code topN} of both halves,
+ * so memory stays bounded however large the grid is.
+ */
+public final class PidTuner {
+    private static final int LEAF_SIZE = 16;
+
+    static final Comparator<TuningResult> BY_SCORE = new Comparator<TuningResult>() {
+        @Override
+        public int compare(TuningResult a, TuningResult b) {
+            return Double.compare(a.score, b.score);
+        }
+    };
+
+    public interface ProgressListener {
+        void onProgress(long evaluated, int total);
+    }
+
+    private final GainEvaluator evaluator;
+    private final ForkJoinPool pool;
+
+    public PidTuner(TuningScenario scenario, GainEvaluator.Weights weights, int parallelism) {
+        this.evaluator = new GainEvaluator(scenario, weights);
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public PidTuner(TuningScenario scenario, GainEvaluator.Weights weights) {
+        this(scenario, weights, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the best {@code topN} results, best first
+     */
+    public List<TuningResult> sweep(GainGrid grid, int topN, ProgressListener listener) {
+        AtomicLong evaluated = new AtomicLong();
+        List<TuningResult> best = pool.invoke(new SweepTask(grid, 0, grid.size(), topN, evaluated, listener));
+        Collections.sort(best, BY_SCORE);
+        return best;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private final class SweepTask extends RecursiveTask<List<TuningResult>> {
+        private static final long serialVersionUID = 1L;
+
+        private final GainGrid grid;
+        private final int from, to, topN;
+        private final AtomicLong evaluated;
+        private final ProgressListener listener;
+
+        SweepTask(GainGrid grid, int from, int to, int topN, AtomicLong evaluated, ProgressListener listener) {
+            this.grid = grid;
+            this.from = from;
+            this.to = to;
+            this.topN = topN;
+            this.evaluated = evaluated;
+            this.listener = listener;
+        }
+
+        @Override
+        protected List<TuningResult> compute() {
+            if (to - from <= LEAF_SIZE) {
+                // Max-heap on score so the worst kept result is evicted first
+                PriorityQueue<TuningResult> kept = new PriorityQueue<>(topN + 1, Collections.reverseOrder(BY_SCORE));
+                for (int i = from; i < to; i++) {
+                    offer(kept, evaluator.evaluate(grid.kp(i), grid.ki(i), grid.kd(i)));
+                }
+                long done = evaluated.addAndGet(to - from);
+                if (listener != null) {
+                    listener.onProgress(done, grid.size());
+                }
+                return new ArrayList<>(kept);
+            }
+
+            int mid = (from + to) >>> 1;
+            SweepTask left = new SweepTask(grid, from, mid, topN, evaluated, listener);
+            left.fork();
+            List<TuningResult> right = new SweepTask(grid, mid, to, topN, evaluated, listener).compute();
+            return merge(left.join(), right);
+        }
+
+        private List<TuningResult> merge(List<TuningResult> a, List<TuningResult> b) {
+            PriorityQueue<TuningResult> kept = new PriorityQueue<>(topN + 1, Collections.reverseOrder(BY_SCORE));
+            for (TuningResult r : a) {
+                offer(kept, r);
+            }
+            for (TuningResult r : b) {
+                offer(kept, r);
+            }
+            return new ArrayList<>(kept);
+        }
+
+        private void offer(PriorityQueue<TuningResult> kept, TuningResult result) {
+            kept.add(result);
+            if (kept.size() > topN) {
+                kept.poll();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.kayakstabilizer.tuning;
+
+import com.example.kayakstabilizer.simulator.WaveDisturbance;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Offline PID tuning from the command line.
+ *
+ * Usage: TuningMain [calm|default|rough] [topN] [threads]
+ */
+public final class TuningMain {
+
+    private TuningMain() {
+    }
+
+    public static void main(String[] args) {
+        String sea = args.length > 0 ? args[0] : "default";
+        int topN = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        TuningScenario scenario = new TuningScenario();
+        if (sea.equals("calm")) {
+            scenario.waves = new WaveDisturbance.Config().calm();
+        } else if (sea.equals("rough")) {
+            scenario.waves = new WaveDisturbance.Config().rough();
+        }
+
+        GainGrid grid = GainGrid.sliderDefault();
+        PidTuner tuner = new PidTuner(scenario, new GainEvaluator.Weights(), threads);
+        System.out.printf(Locale.US, "Sweeping %d gain sets on %d threads (%s sea)%n", grid.size(), threads, sea);
+
+        long start = System.nanoTime();
+        List<TuningResult> best = tuner.sweep(grid, topN, null);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        tuner.shutdown();
+
+        System.out.printf(Locale.US, "Done in %d ms (%.0f evaluations/s)%n",
+                elapsedMs, grid.size() * 1000.0 / Math.max(1, elapsedMs));
+        for (int i = 0; i < best.size(); i++) {
+            System.out.printf(Locale.US, "%2d. %s%n", i + 1, best.get(i));
+        }
+        if (!best.isEmpty()) {
+            System.out.println("Commands for the best gains:");
+            for (String command : best.get(0).toCommands()) {
+                System.out.println("  " + command);
+            }
+        }
+    }
+}
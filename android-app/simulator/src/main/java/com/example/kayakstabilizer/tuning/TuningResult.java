@@ -0,0 +1,50 @@
+package com.example.kayakstabilizer.tuning;
+
+import java.util.Locale;
+
+/**
+ * Metrics for one gain set. Settling time is {@link Double#POSITIVE_INFINITY} if the hull never
+ * stayed inside the settling band before the step phase ended.
+ */
+public final class TuningResult {
+    public final float kp;
+    public final float ki;
+    public final float kd;
+
+    public final double settlingSeconds;
+    public final double overshootPercent;
+    public final double servoTravelDegreesPerSecond;
+    public final double rmsRollDegrees;
+    public final double score;
+
+    TuningResult(float kp, float ki, float kd, double settlingSeconds, double overshootPercent,
+                 double servoTravelDegreesPerSecond, double rmsRollDegrees, double score) {
+        this.kp = kp;
+        this.ki = ki;
+        this.kd = kd;
+        this.settlingSeconds = settlingSeconds;
+        this.overshootPercent = overshootPercent;
+        this.servoTravelDegreesPerSecond = servoTravelDegreesPerSecond;
+        this.rmsRollDegrees = rmsRollDegrees;
+        this.score = score;
+    }
+
+    public boolean isSettled() {
+        return settlingSeconds != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * The commands the app's sliders would send for these gains.
+     */
+    public String[] toCommands() {
+        return new String[] {"SET_KP:" + kp, "SET_KI:" + ki, "SET_KD:" + kd};
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "Kp=%.1f Ki=%.2f Kd=%.1f settle=%.2fs overshoot=%.1f%% travel=%.1f deg/s rms=%.2f deg score=%.3f",
+                kp, ki, kd, settlingSeconds, overshootPercent, servoTravelDegreesPerSecond,
+                rmsRollDegrees, score);
+    }
+}
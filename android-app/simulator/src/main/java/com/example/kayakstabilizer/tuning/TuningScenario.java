@@ -0,0 +1,20 @@
+package com.example.kayakstabilizer.tuning;
+
+import com.example.kayakstabilizer.simulator.KayakPlant;
+import com.example.kayakstabilizer.simulator.WaveDisturbance;
+
+/**
+ * What each candidate is put through: a step response from a sudden heel in flat water, then
+ * a stretch of wave forcing. Every candidate sees the same seeded plant noise and waves.
+ */
+public final class TuningScenario {
+    public KayakPlant.Config plant = new KayakPlant.Config();
+    public WaveDisturbance.Config waves = new WaveDisturbance.Config();
+
+    public double warmupSeconds = 0.5;        // lets the firmware's IMU low-pass settle at level
+    public double initialRoll = 15.0;         // degrees, applied as a sudden heel
+    public double initialPitch = 0.0;
+    public double stepSeconds = 6.0;
+    public double disturbanceSeconds = 10.0;
+    public double settlingBand = 2.0;         // degrees
+}
@@ -26,6 +26,42 @@
 #define MAX_SERVO_ANGLE 30   // degrees
 #define BUTTON_DEBOUNCE_TIME 50  // ms
 #define BLE_UPDATE_RATE 10   // Hz
+#define PID_PERSIST_DELAY 2000  // ms of no PID changes before writing them to flash
+
+// Telemetry frame format (must match TelemetryFrameCodec in the app)
+#define BLE_TELEMETRY_BINARY 1  // 0 = legacy ASCII "ROLL:..,PITCH:.." frames
+#define TELEMETRY_FRAME_MAGIC 0x82  // version 2: adds the millis() timestamp
+#define TELEMETRY_FRAME_SIZE 14
+#define TELEMETRY_FLAG_STABILIZATION 0x01
+#define TELEMETRY_FLAG_EMERGENCY 0x02
+#define TELEMETRY_FLAG_LOW_BATTERY 0x04
+
+// Binary command protocol (must match CommandProtocol in the app)
+#define COMMAND_FRAME_MAGIC 0xC1
+#define COMMAND_RESPONSE_MAGIC 0xA1
+#define COMMAND_HEADER_SIZE 4
+#define COMMAND_RESPONSE_SIZE 18
+#define COMMAND_RESPONSE_SLOTS 4  // responses built on the BLE task, waiting for loop()
+#define OP_SET_PID 0x01
+#define OP_SET_STABILIZATION 0x02
+#define OP_EMERGENCY_STOP 0x03
+#define OP_RESET_EMERGENCY 0x04
+#define OP_GET_STATUS 0x05
+#define OP_SET_DIAGNOSTICS 0x06
+#define STATUS_ACK 0
+#define STATUS_UNKNOWN_OPCODE 1
+#define STATUS_BAD_LENGTH 2
+#define STATUS_OUT_OF_RANGE 3
+#define STATUS_REJECTED 4
+#define MAX_PID_GAIN 100.0f
+
+// Diagnostic stream: every IMU sample with its raw getMotion6() values and the servo outputs,
+// several per notification. Off until the app asks for it with OP_SET_DIAGNOSTICS, which
+// carries the samples per notification the negotiated MTU allows.
+#define DIAG_FRAME_MAGIC 0x83
+#define DIAG_HEADER_SIZE 8
+#define DIAG_SAMPLE_SIZE 20
+#define DIAG_MAX_BATCH 12  // 248 bytes; needs an ATT MTU of 251
 
 // Battery constants
 #define LI_PO_LOW_VOLTAGE 3.3  // V
@@ -36,6 +72,8 @@
 float Kp = 2.0;
 float Ki = 0.1;
 float Kd = 0.5;
+// Commands arrive on the BLE task while updatePID() runs in loop(); gains change together
+portMUX_TYPE pidMux = portMUX_INITIALIZER_UNLOCKED;
 
 // Global variables
 MPU6050 mpu;
@@ -53,10 +91,29 @@ float rollPrevError = 0, pitchPrevError = 0;
 unsigned long lastImuUpdate = 0;
 unsigned long lastPidUpdate = 0;
 unsigned long lastBleUpdate = 0;
+unsigned long lastPidChange = 0;
+bool pidDirty = false;
+volatile bool stabilizationDirty = false;  // set on the BLE task, saved from loop()
 bool emergencyStop = false;
 bool stabilizationEnabled = false;
 float batteryVoltage = 0;
 int batteryType = 0;  // 0=LiPo, 1=18V Drill, 2=20V Drill
+bool lowBattery = false;
+uint16_t telemetrySequence = 0;
+
+// Command responses waiting to be notified. Only loop() touches pDataCharacteristic, so the
+// BLE task queues them here; guarded by responseMux
+portMUX_TYPE responseMux = portMUX_INITIALIZER_UNLOCKED;
+uint8_t pendingResponses[COMMAND_RESPONSE_SLOTS][COMMAND_RESPONSE_SIZE];
+uint8_t pendingResponseHead = 0;
+uint8_t pendingResponseCount = 0;
+
+// Diagnostic batch being filled by updateIMU(); the size is set from the BLE task
+volatile uint8_t diagBatchSize = 0;  // samples per notification, 0 = off
+uint8_t diagFrame[DIAG_HEADER_SIZE + DIAG_MAX_BATCH * DIAG_SAMPLE_SIZE];
+uint8_t diagCount = 0;
+uint16_t diagSequence = 0;
+uint32_t diagBaseMillis = 0;
 
 // Button debouncing
 unsigned long lastEmergencyButtonPress = 0;
@@ -79,6 +136,7 @@ class MyServerCallbacks: public BLEServerCallbacks {
 
     void onDisconnect(BLEServer* pServer) {
         deviceConnected = false;
+        diagBatchSize = 0;  // the next connection may not have the MTU for it
         Serial.println("BLE Device disconnected");
     }
 };
@@ -86,7 +144,9 @@ class MyServerCallbacks: public BLEServerCallbacks {
 class MyCommandCallbacks: public BLECharacteristicCallbacks {
     void onWrite(BLECharacteristic *pCharacteristic) {
         std::string value = pCharacteristic->getValue();
-        if (value.length() > 0) {
+        if (value.length() > 0 && (uint8_t) value[0] == COMMAND_FRAME_MAGIC) {
+            processBinaryCommand((const uint8_t*) value.data(), value.length());
+        } else if (value.length() > 0) {
             String command = String(value.c_str());
             processCommand(command);
         }
@@ -154,6 +214,13 @@ void loop() {
     // Update battery monitoring
     checkBattery();
 
+    // Persist PID gains once slider changes have settled
+    persistPidIfIdle();
+    persistStabilizationIfDirty();
+
+    // Answer binary commands received since the last pass
+    sendPendingResponses();
+
     // Send BLE data
     if (currentTime - lastBleUpdate >= 1000 / BLE_UPDATE_RATE && deviceConnected) {
         sendBLEData();
@@ -281,6 +348,47 @@ void updateIMU() {
 
     roll = rollFiltered;
     pitch = pitchFiltered;
+
+    recordDiagnosticSample(ax, ay, az, gx, gy, gz);
+}
+
+// Appends one sample to the diagnostic batch and notifies it once full. Layout, little-endian:
+// header magic, count, sequence (uint16), millis() of the first sample (uint32); then per
+// sample: millis offset (uint16), ax ay az gx gy gz (int16), roll and pitch in centi-degrees
+// (int16), left and right servo angle (uint8).
+void recordDiagnosticSample(int16_t ax, int16_t ay, int16_t az, int16_t gx, int16_t gy, int16_t gz) {
+    uint8_t batchSize = diagBatchSize;
+    if (batchSize == 0 || !deviceConnected) {
+        diagCount = 0;
+        return;
+    }
+
+    uint32_t now = millis();
+    if (diagCount == 0) {
+        diagBaseMillis = now;
+    }
+    uint8_t* sample = &diagFrame[DIAG_HEADER_SIZE + diagCount * DIAG_SAMPLE_SIZE];
+    putInt16(&sample[0], now - diagBaseMillis);
+    putInt16(&sample[2], ax);
+    putInt16(&sample[4], ay);
+    putInt16(&sample[6], az);
+    putInt16(&sample[8], gx);
+    putInt16(&sample[10], gy);
+    putInt16(&sample[12], gz);
+    putInt16(&sample[14], constrain(lroundf(roll * 100), -32768, 32767));
+    putInt16(&sample[16], constrain(lroundf(pitch * 100), -32768, 32767));
+    sample[18] = servoLeft.read();
+    sample[19] = servoRight.read();
+
+    if (++diagCount >= batchSize) {
+        diagFrame[0] = DIAG_FRAME_MAGIC;
+        diagFrame[1] = diagCount;
+        putInt16(&diagFrame[2], diagSequence++);
+        putUint32(&diagFrame[4], diagBaseMillis);
+        pDataCharacteristic->setValue(diagFrame, DIAG_HEADER_SIZE + diagCount * DIAG_SAMPLE_SIZE);
+        pDataCharacteristic->notify();
+        diagCount = 0;
+    }
 }
 
 void updatePID() {
@@ -308,9 +416,12 @@ void updatePID() {
     float rollDerivative = (rollError - rollPrevError) * PID_UPDATE_RATE;
     float pitchDerivative = (pitchError - pitchPrevError) * PID_UPDATE_RATE;
 
-    // PID outputs
-    float rollOutput = Kp * rollError + Ki * rollIntegral + Kd * rollDerivative;
-    float pitchOutput = Kp * pitchError + Ki * pitchIntegral + Kd * pitchDerivative;
+    // PID outputs, from one consistent set of gains
+    portENTER_CRITICAL(&pidMux);
+    float kp = Kp, ki = Ki, kd = Kd;
+    portEXIT_CRITICAL(&pidMux);
+    float rollOutput = kp * rollError + ki * rollIntegral + kd * rollDerivative;
+    float pitchOutput = kp * pitchError + ki * pitchIntegral + kd * pitchDerivative;
 
     // Update previous errors
     rollPrevError = rollError;
@@ -361,7 +472,8 @@ void checkBattery() {
         default: lowVoltageThreshold = LI_PO_LOW_VOLTAGE; break;
     }
 
-    if (batteryVoltage < lowVoltageThreshold) {
+    lowBattery = batteryVoltage < lowVoltageThreshold;
+    if (lowBattery) {
         Serial.printf("LOW BATTERY WARNING: %.2fV (Type: %d)\n", batteryVoltage, batteryType);
         emergencyStop = true;
 
@@ -373,18 +485,82 @@ void checkBattery() {
     }
 }
 
+void putInt16(uint8_t* buffer, int value) {
+    buffer[0] = value & 0xFF;
+    buffer[1] = (value >> 8) & 0xFF;
+}
+
+void putUint32(uint8_t* buffer, uint32_t value) {
+    buffer[0] = value & 0xFF;
+    buffer[1] = (value >> 8) & 0xFF;
+    buffer[2] = (value >> 16) & 0xFF;
+    buffer[3] = (value >> 24) & 0xFF;
+}
+
 void sendBLEData() {
     if (!deviceConnected) return;
 
+#if BLE_TELEMETRY_BINARY
+    uint8_t frame[TELEMETRY_FRAME_SIZE];
+    uint8_t flags = (stabilizationEnabled ? TELEMETRY_FLAG_STABILIZATION : 0) |
+                    (emergencyStop ? TELEMETRY_FLAG_EMERGENCY : 0) |
+                    (lowBattery ? TELEMETRY_FLAG_LOW_BATTERY : 0) |
+                    ((batteryType & 0x03) << 4);
+
+    frame[0] = TELEMETRY_FRAME_MAGIC;
+    frame[1] = flags;
+    putInt16(&frame[2], telemetrySequence++);
+    putInt16(&frame[4], constrain(lroundf(roll * 100), -32768, 32767));
+    putInt16(&frame[6], constrain(lroundf(pitch * 100), -32768, 32767));
+    putInt16(&frame[8], constrain(lroundf(batteryVoltage * 1000), 0, 65535));
+    putUint32(&frame[10], millis());
+
+    pDataCharacteristic->setValue(frame, TELEMETRY_FRAME_SIZE);
+    pDataCharacteristic->notify();
+#else
     String data = "ROLL:" + String(roll, 2) +
                   ",PITCH:" + String(pitch, 2) +
                   ",BATTERY:" + String(batteryVoltage, 2) +
                   ",BATTERY_TYPE:" + String(batteryType) +
                   ",STABILIZATION:" + String(stabilizationEnabled ? 1 : 0) +
-                  ",EMERGENCY:" + String(emergencyStop ? 1 : 0);
+                  ",EMERGENCY:" + String(emergencyStop ? 1 : 0) +
+                  ",SEQ:" + String(telemetrySequence++) +
+                  ",TIME:" + String(millis());
 
     pDataCharacteristic->setValue(data.c_str());
     pDataCharacteristic->notify();
+#endif
+}
+
+void markPidDirty() {
+    pidDirty = true;
+    lastPidChange = millis();
+}
+
+void persistPidIfIdle() {
+    // Read millis() here: processCommand() runs on the BLE task and may have just updated lastPidChange
+    if (pidDirty && millis() - lastPidChange >= PID_PERSIST_DELAY) {
+        portENTER_CRITICAL(&pidMux);
+        float kp = Kp, ki = Ki, kd = Kd;
+        portEXIT_CRITICAL(&pidMux);
+        preferences.putFloat("Kp", kp);
+        preferences.putFloat("Ki", ki);
+        preferences.putFloat("Kd", kd);
+        pidDirty = false;
+        Serial.println("PID parameters saved");
+    }
+}
+
+// BLE task: flash writes are left to loop()
+void markStabilizationDirty() {
+    stabilizationDirty = true;
+}
+
+void persistStabilizationIfDirty() {
+    if (stabilizationDirty) {
+        stabilizationDirty = false;
+        preferences.putBool("stabilizationEnabled", stabilizationEnabled);
+    }
 }
 
 void processCommand(String command) {
@@ -392,23 +568,23 @@ void processCommand(String command) {
 
     if (command.startsWith("SET_KP:")) {
         Kp = command.substring(7).toFloat();
-        preferences.putFloat("Kp", Kp);
+        markPidDirty();
         Serial.printf("Kp set to: %.2f\n", Kp);
     } else if (command.startsWith("SET_KI:")) {
         Ki = command.substring(7).toFloat();
-        preferences.putFloat("Ki", Ki);
+        markPidDirty();
         Serial.printf("Ki set to: %.2f\n", Ki);
     } else if (command.startsWith("SET_KD:")) {
         Kd = command.substring(7).toFloat();
-        preferences.putFloat("Kd", Kd);
+        markPidDirty();
         Serial.printf("Kd set to: %.2f\n", Kd);
     } else if (command == "STABILIZATION_ON") {
         stabilizationEnabled = true;
-        preferences.putBool("stabilizationEnabled", true);
+        markStabilizationDirty();
         Serial.println("Stabilization enabled");
     } else if (command == "STABILIZATION_OFF") {
         stabilizationEnabled = false;
-        preferences.putBool("stabilizationEnabled", false);
+        markStabilizationDirty();
         Serial.println("Stabilization disabled");
     } else if (command == "EMERGENCY_STOP") {
         emergencyStop = true;
@@ -422,4 +598,152 @@ void processCommand(String command) {
         // Status will be sent in next BLE update
         Serial.println("Status request received");
     }
-}
\ No newline at end of file
+}
+
+float getFloat32(const uint8_t* buffer) {
+    uint32_t bits = (uint32_t) buffer[0] | ((uint32_t) buffer[1] << 8) |
+                    ((uint32_t) buffer[2] << 16) | ((uint32_t) buffer[3] << 24);
+    float value;
+    memcpy(&value, &bits, sizeof(value));
+    return value;
+}
+
+void putFloat32(uint8_t* buffer, float value) {
+    uint32_t bits;
+    memcpy(&bits, &value, sizeof(bits));
+    putUint32(buffer, bits);
+}
+
+bool isValidGain(float gain) {
+    // Also false for NaN
+    return gain >= 0.0f && gain <= MAX_PID_GAIN;
+}
+
+// Answers every binary command with its status and the settings now in effect. Runs on the
+// BLE task, so the response is only queued; sendPendingResponses() notifies it from loop().
+void sendCommandResponse(uint8_t opcode, uint16_t requestId, uint8_t status) {
+    if (!deviceConnected) return;
+
+    uint8_t response[COMMAND_RESPONSE_SIZE];
+    portENTER_CRITICAL(&pidMux);
+    float kp = Kp, ki = Ki, kd = Kd;
+    portEXIT_CRITICAL(&pidMux);
+
+    response[0] = COMMAND_RESPONSE_MAGIC;
+    response[1] = opcode;
+    putInt16(&response[2], requestId);
+    response[4] = status;
+    putFloat32(&response[5], kp);
+    putFloat32(&response[9], ki);
+    putFloat32(&response[13], kd);
+    response[17] = (stabilizationEnabled ? TELEMETRY_FLAG_STABILIZATION : 0) |
+                   (emergencyStop ? TELEMETRY_FLAG_EMERGENCY : 0) |
+                   (lowBattery ? TELEMETRY_FLAG_LOW_BATTERY : 0) |
+                   ((batteryType & 0x03) << 4);
+
+    bool queued = false;
+    portENTER_CRITICAL(&responseMux);
+    if (pendingResponseCount < COMMAND_RESPONSE_SLOTS) {
+        uint8_t tail = (pendingResponseHead + pendingResponseCount) % COMMAND_RESPONSE_SLOTS;
+        memcpy(pendingResponses[tail], response, COMMAND_RESPONSE_SIZE);
+        pendingResponseCount++;
+        queued = true;
+    }
+    portEXIT_CRITICAL(&responseMux);
+    if (!queued) {
+        // The app times the command out and retries it
+        Serial.println("Command response dropped");
+    }
+}
+
+void sendPendingResponses() {
+    uint8_t response[COMMAND_RESPONSE_SIZE];
+    while (true) {
+        portENTER_CRITICAL(&responseMux);
+        bool pending = pendingResponseCount > 0;
+        if (pending) {
+            memcpy(response, pendingResponses[pendingResponseHead], COMMAND_RESPONSE_SIZE);
+            pendingResponseHead = (pendingResponseHead + 1) % COMMAND_RESPONSE_SLOTS;
+            pendingResponseCount--;
+        }
+        portEXIT_CRITICAL(&responseMux);
+        if (!pending) return;
+        if (deviceConnected) {
+            pDataCharacteristic->setValue(response, COMMAND_RESPONSE_SIZE);
+            pDataCharacteristic->notify();
+        }
+    }
+}
+
+void processBinaryCommand(const uint8_t* frame, size_t length) {
+    if (length < COMMAND_HEADER_SIZE) return;
+
+    uint8_t opcode = frame[1];
+    uint16_t requestId = frame[2] | (frame[3] << 8);
+    size_t arguments = length - COMMAND_HEADER_SIZE;
+    uint8_t status = STATUS_ACK;
+
+    switch (opcode) {
+        case OP_SET_PID: {
+            if (arguments != 12) {
+                status = STATUS_BAD_LENGTH;
+                break;
+            }
+            float kp = getFloat32(&frame[4]);
+            float ki = getFloat32(&frame[8]);
+            float kd = getFloat32(&frame[12]);
+            if (!isValidGain(kp) || !isValidGain(ki) || !isValidGain(kd)) {
+                status = STATUS_OUT_OF_RANGE;
+                break;
+            }
+            portENTER_CRITICAL(&pidMux);
+            Kp = kp;
+            Ki = ki;
+            Kd = kd;
+            portEXIT_CRITICAL(&pidMux);
+            markPidDirty();
+            Serial.printf("PID set to: %.2f %.2f %.2f\n", kp, ki, kd);
+            break;
+        }
+        case OP_SET_STABILIZATION:
+            if (arguments != 1) {
+                status = STATUS_BAD_LENGTH;
+                break;
+            }
+            stabilizationEnabled = frame[4] != 0;
+            markStabilizationDirty();
+            break;
+        case OP_EMERGENCY_STOP:
+            emergencyStop = true;
+            servoLeft.write(90);
+            servoRight.write(90);
+            Serial.println("Emergency stop activated");
+            break;
+        case OP_RESET_EMERGENCY:
+            // checkBattery() would latch the stop again on the next pass
+            if (lowBattery) {
+                status = STATUS_REJECTED;
+            } else {
+                emergencyStop = false;
+                Serial.println("Emergency stop reset");
+            }
+            break;
+        case OP_GET_STATUS:
+            break;
+        case OP_SET_DIAGNOSTICS:
+            if (arguments != 1) {
+                status = STATUS_BAD_LENGTH;
+            } else if (frame[4] > DIAG_MAX_BATCH) {
+                status = STATUS_OUT_OF_RANGE;
+            } else {
+                diagBatchSize = frame[4];
+                Serial.printf("Diagnostics: %d samples per notification\n", diagBatchSize);
+            }
+            break;
+        default:
+            status = STATUS_UNKNOWN_OPCODE;
+            break;
+    }
+
+    sendCommandResponse(opcode, requestId, status);
+}